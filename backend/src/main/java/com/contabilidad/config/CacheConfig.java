@@ -0,0 +1,38 @@
+package com.contabilidad.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.cache.transaction.TransactionAwareCacheManagerProxy;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableCaching
+public class CacheConfig {
+
+    /**
+     * Cuentas contables usadas como referencia al registrar partidas
+     */
+    public static final String CUENTAS = "cuentas";
+
+    /**
+     * Terceros usados como referencia al registrar transacciones
+     */
+    public static final String TERCEROS = "terceros";
+
+    /**
+     * Caché acotada en memoria para datos de referencia.
+     * Las invalidaciones se aplican al confirmar la transacción para no volver a
+     * cargar datos que aún no han sido confirmados. Las escrituras de otras instancias
+     * vacían la caché a través de {@link com.contabilidad.service.VersionesService}.
+     */
+    @Bean
+    public CacheManager cacheManager(@Value("${contabilidad.cache.referencia.spec}") String especificacion) {
+        CaffeineCacheManager cacheManager = new CaffeineCacheManager(CUENTAS, TERCEROS);
+        cacheManager.setCacheSpecification(especificacion);
+        cacheManager.setAllowNullValues(false);
+        return new TransactionAwareCacheManagerProxy(cacheManager);
+    }
+}
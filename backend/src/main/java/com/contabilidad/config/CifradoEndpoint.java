@@ -0,0 +1,41 @@
+package com.contabilidad.config;
+
+import com.contabilidad.dto.EstadoRotacionClavesDTO;
+import com.contabilidad.service.RotacionClavesService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+import org.springframework.lang.Nullable;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+
+/**
+ * Endpoint de actuator con las claves de cifrado y el avance de la rotación:
+ * GET /actuator/cifrado consulta el estado y POST /actuator/cifrado inicia una rotación
+ * (con {"generarClave": false} solo recifra lo que no usa la clave activa); responde 409 si ya hay una en curso.
+ */
+@Component
+@Endpoint(id = "cifrado")
+public class CifradoEndpoint {
+    
+    @Autowired
+    private RotacionClavesService rotacionClavesService;
+    
+    @ReadOperation
+    public EstadoRotacionClavesDTO estado() {
+        return rotacionClavesService.getEstado();
+    }
+    
+    @WriteOperation
+    public WebEndpointResponse<EstadoRotacionClavesDTO> rotar(@Nullable Boolean generarClave) throws IOException {
+        try {
+            EstadoRotacionClavesDTO estado = rotacionClavesService.iniciarRotacion(generarClave == null || generarClave);
+            return new WebEndpointResponse<>(estado, 202);
+        } catch (IllegalStateException e) {
+            return new WebEndpointResponse<>(rotacionClavesService.getEstado(), 409);
+        }
+    }
+}
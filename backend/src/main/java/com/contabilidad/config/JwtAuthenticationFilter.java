@@ -0,0 +1,42 @@
+package com.contabilidad.config;
+
+import com.contabilidad.service.TokenService;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.security.core.context.SecurityContext;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+
+/**
+ * Autentica cada petición con el token del header Authorization: Bearer.
+ * Un token ausente o inválido deja la petición sin autenticar y la regla de acceso decide (401 en /api/**).
+ */
+public class JwtAuthenticationFilter extends OncePerRequestFilter {
+    
+    private static final String PREFIJO = "Bearer ";
+    
+    private final TokenService tokenService;
+    
+    public JwtAuthenticationFilter(TokenService tokenService) {
+        this.tokenService = tokenService;
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        String header = request.getHeader(HttpHeaders.AUTHORIZATION);
+        if (header != null && header.regionMatches(true, 0, PREFIJO, 0, PREFIJO.length())) {
+            tokenService.verificar(header.substring(PREFIJO.length()).trim()).ifPresent(autenticacion -> {
+                SecurityContext contexto = SecurityContextHolder.createEmptyContext();
+                contexto.setAuthentication(autenticacion);
+                SecurityContextHolder.setContext(contexto);
+            });
+        }
+        filterChain.doFilter(request, response);
+    }
+}
@@ -0,0 +1,78 @@
+package com.contabilidad.config;
+
+import com.contabilidad.service.LimiteTasaService;
+import com.contabilidad.service.LimiteTasaService.Grupo;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.security.authentication.AnonymousAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Aplica los límites de {@link LimiteTasaService} a /api/** antes de llegar a los controladores.
+ * Va después de {@link JwtAuthenticationFilter}: con token el cliente es el usuario junto con la IP de origen,
+ * para que todos los que comparten la cuenta de la API no agoten una sola cuota; sin token es solo la IP.
+ * Si el cliente agotó su cuota responde 429 con Retry-After sin tocar la base de datos.
+ */
+public class LimiteTasaFilter extends OncePerRequestFilter {
+    
+    // Lecturas pesadas: exportaciones, cargas masivas, detección de duplicados y listados en streaming
+    private static final List<String> RUTAS_REPORTES = List.of(
+            "/api/exportaciones", "/api/snapshots", "/api/importaciones", "/api/terceros/duplicados", "/api/reportes");
+    
+    private final LimiteTasaService limiteTasaService;
+    
+    public LimiteTasaFilter(LimiteTasaService limiteTasaService) {
+        this.limiteTasaService = limiteTasaService;
+    }
+    
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return HttpMethod.OPTIONS.matches(request.getMethod()) || !ruta(request).startsWith("/api/");
+    }
+    
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response,
+                                    FilterChain filterChain) throws ServletException, IOException {
+        long espera = limiteTasaService.consumir(clasificar(request), cliente(request));
+        if (espera > 0) {
+            long segundos = Math.max(1, TimeUnit.NANOSECONDS.toSeconds(espera + TimeUnit.SECONDS.toNanos(1) - 1));
+            response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+            response.setHeader(HttpHeaders.RETRY_AFTER, Long.toString(segundos));
+            return;
+        }
+        filterChain.doFilter(request, response);
+    }
+    
+    private static Grupo clasificar(HttpServletRequest request) {
+        String ruta = ruta(request);
+        if (ruta.endsWith("/stream") || RUTAS_REPORTES.stream().anyMatch(ruta::startsWith)) {
+            return Grupo.REPORTES;
+        }
+        String metodo = request.getMethod();
+        return HttpMethod.GET.matches(metodo) || HttpMethod.HEAD.matches(metodo) ? Grupo.LECTURA : Grupo.ESCRITURA;
+    }
+    
+    private static String cliente(HttpServletRequest request) {
+        Authentication autenticacion = SecurityContextHolder.getContext().getAuthentication();
+        if (autenticacion != null && autenticacion.isAuthenticated()
+                && !(autenticacion instanceof AnonymousAuthenticationToken)) {
+            return "usuario:" + autenticacion.getName() + "@" + request.getRemoteAddr();
+        }
+        return "ip:" + request.getRemoteAddr();
+    }
+    
+    private static String ruta(HttpServletRequest request) {
+        return request.getRequestURI().substring(request.getContextPath().length());
+    }
+}
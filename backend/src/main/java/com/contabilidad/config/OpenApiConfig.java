@@ -83,7 +83,7 @@ public class OpenApiConfig {
                     
                     La API utiliza autenticación JWT. Para acceder a los endpoints protegidos:
                     
-                    1. Obtener token de autenticación
+                    1. Obtener token de autenticación en `POST /api/auth/token` con `{"usuario": ..., "contrasena": ...}`
                     2. Incluir en header: `Authorization: Bearer <token>`
                     
                     ### 📝 **Ejemplos de Uso**
@@ -0,0 +1,91 @@
+package com.contabilidad.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.web.servlet.config.annotation.AsyncSupportConfigurer;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.time.Duration;
+
+/**
+ * Compartimentos (bulkheads) que separan los reportes del registro de transacciones.
+ * <p>
+ * Los reportes tienen su propio pool de conexiones y su propio ejecutor acotado: una ráfaga de reportes
+ * puede agotar solo sus recursos, nunca las conexiones ni los hilos de Tomcat que usan las escrituras.
+ * Los endpoints de reportes son asíncronos (Callable o StreamingResponseBody) y se ejecutan en
+ * {@link #REPORTES_EXECUTOR}; con el ejecutor y su cola llenos se rechazan de inmediato con 503.
+ */
+@Configuration
+public class ReportesConfig implements WebMvcConfigurer {
+
+    public static final String REPORTES_DATA_SOURCE = "reportesDataSource";
+    public static final String REPORTES_JDBC_TEMPLATE = "reportesJdbcTemplate";
+    public static final String REPORTES_EXECUTOR = "reportesExecutor";
+
+    private final ThreadPoolTaskExecutor reportesExecutor;
+
+    public ReportesConfig(
+            @Value("${contabilidad.reportes.hilos}") int hilos,
+            @Value("${contabilidad.reportes.capacidad-cola}") int capacidadCola) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setThreadNamePrefix("reportes-");
+        executor.setCorePoolSize(hilos);
+        executor.setMaxPoolSize(hilos);
+        executor.setQueueCapacity(capacidadCola);
+        // La política por defecto (AbortPolicy) rechaza sin esperar cuando la cola está llena
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        this.reportesExecutor = executor;
+    }
+
+    /**
+     * Pool principal (JPA y transacciones), configurado con spring.datasource y spring.datasource.hikari
+     */
+    @Bean
+    @Primary
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource dataSource(DataSourceProperties properties) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("oltp");
+        return dataSource;
+    }
+
+    /**
+     * Pool de solo lectura para reportes y exportaciones; misma base de datos, conexiones propias
+     */
+    @Bean(REPORTES_DATA_SOURCE)
+    public HikariDataSource reportesDataSource(
+            DataSourceProperties properties,
+            @Value("${contabilidad.reportes.conexiones}") int conexiones,
+            @Value("${contabilidad.reportes.espera-conexion}") Duration esperaConexion) {
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("reportes");
+        dataSource.setMaximumPoolSize(conexiones);
+        dataSource.setMinimumIdle(1);
+        dataSource.setConnectionTimeout(esperaConexion.toMillis());
+        dataSource.setReadOnly(true);
+        return dataSource;
+    }
+
+    @Bean(REPORTES_JDBC_TEMPLATE)
+    public JdbcTemplate reportesJdbcTemplate(@Qualifier(REPORTES_DATA_SOURCE) HikariDataSource dataSource) {
+        return new JdbcTemplate(dataSource);
+    }
+
+    @Bean(REPORTES_EXECUTOR)
+    public ThreadPoolTaskExecutor reportesExecutor() {
+        return reportesExecutor;
+    }
+
+    @Override
+    public void configureAsyncSupport(AsyncSupportConfigurer configurer) {
+        configurer.setTaskExecutor(reportesExecutor);
+    }
+}
@@ -0,0 +1,22 @@
+package com.contabilidad.config;
+
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Respuesta de los endpoints asíncronos cuando el ejecutor de reportes está lleno
+ */
+@RestControllerAdvice
+public class ReportesExceptionHandler {
+
+    @ExceptionHandler(TaskRejectedException.class)
+    public ResponseEntity<Void> reporteRechazado() {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "5")
+                .build();
+    }
+}
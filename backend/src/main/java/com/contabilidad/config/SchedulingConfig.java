@@ -0,0 +1,12 @@
+package com.contabilidad.config;
+
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+/**
+ * Tareas programadas (exportación diaria del libro diario, limpieza de reportes, sincronización de versiones)
+ */
+@Configuration
+@EnableScheduling
+public class SchedulingConfig {
+}
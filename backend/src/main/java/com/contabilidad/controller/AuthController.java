@@ -0,0 +1,44 @@
+package com.contabilidad.controller;
+
+import com.contabilidad.dto.TokenDTO;
+import com.contabilidad.dto.request.CredencialesRequest;
+import com.contabilidad.service.TokenService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirements;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.authentication.AuthenticationManager;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.AuthenticationException;
+import org.springframework.web.bind.annotation.*;
+
+@RestController
+@RequestMapping("/api/auth")
+@Tag(name = "Seguridad", description = "Endpoints relacionados con autenticación y seguridad")
+@CrossOrigin(origins = "*")
+public class AuthController {
+    
+    @Autowired
+    private AuthenticationManager authenticationManager;
+    
+    @Autowired
+    private TokenService tokenService;
+    
+    @PostMapping("/token")
+    @SecurityRequirements
+    @Operation(summary = "Obtener un token de acceso",
+            description = "Valida usuario y contraseña y devuelve un JWT para el header Authorization: Bearer de las demás peticiones")
+    public ResponseEntity<TokenDTO> emitirToken(@Valid @RequestBody CredencialesRequest request) {
+        try {
+            Authentication autenticacion = authenticationManager.authenticate(
+                    UsernamePasswordAuthenticationToken.unauthenticated(request.getUsuario(), request.getContrasena()));
+            return ResponseEntity.ok(tokenService.emitir(autenticacion));
+        } catch (AuthenticationException e) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package com.contabilidad.controller;
+
+import com.contabilidad.dto.SolicitudAsincronaDTO;
+import com.contabilidad.dto.request.TransaccionRequest;
+import com.contabilidad.service.ContabilizacionAsincronaService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.support.ServletUriComponentsBuilder;
+
+import java.net.URI;
+import java.util.concurrent.RejectedExecutionException;
+
+@RestController
+@RequestMapping("/api/transacciones/asincronas")
+@Tag(name = "Transacciones", description = "Gestión de transacciones contables")
+@CrossOrigin(origins = "*")
+@ConditionalOnProperty(prefix = "contabilidad.contabilizacion-asincrona", name = "habilitada", havingValue = "true")
+public class ContabilizacionAsincronaController {
+    
+    private static final String REINTENTAR_EN_SEGUNDOS = "1";
+    
+    @Autowired
+    private ContabilizacionAsincronaService contabilizacionAsincronaService;
+    
+    @PostMapping
+    @Operation(summary = "Encolar transacción para registro asíncrono",
+            description = "Devuelve 202 con la URL de consulta del estado; 503 si la cola está llena")
+    public ResponseEntity<SolicitudAsincronaDTO> encolarTransaccion(@Valid @RequestBody TransaccionRequest request) {
+        try {
+            SolicitudAsincronaDTO solicitud = contabilizacionAsincronaService.encolar(request);
+            URI ubicacion = ServletUriComponentsBuilder.fromCurrentRequest()
+                    .path("/{id}")
+                    .buildAndExpand(solicitud.getId())
+                    .toUri();
+            return ResponseEntity.accepted().location(ubicacion).body(solicitud);
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, REINTENTAR_EN_SEGUNDOS)
+                    .build();
+        }
+    }
+    
+    @GetMapping("/{id}")
+    @Operation(summary = "Consultar estado de una transacción encolada")
+    public ResponseEntity<SolicitudAsincronaDTO> consultarSolicitud(@PathVariable String id) {
+        return contabilizacionAsincronaService.consultar(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
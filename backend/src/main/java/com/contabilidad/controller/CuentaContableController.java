@@ -1,16 +1,22 @@
 package com.contabilidad.controller;
 
 import com.contabilidad.dto.CuentaContableDTO;
+import com.contabilidad.dto.ResultadoReclasificacionDTO;
 import com.contabilidad.dto.request.CuentaContableRequest;
+import com.contabilidad.dto.request.ReclasificacionCuentaRequest;
 import com.contabilidad.model.TipoCuenta;
 import com.contabilidad.service.CuentaContableService;
+import com.contabilidad.service.VersionesService;
+import com.contabilidad.service.VersionesService.Agregado;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
 
@@ -23,18 +29,31 @@ public class CuentaContableController {
     @Autowired
     private CuentaContableService cuentaContableService;
     
+    @Autowired
+    private VersionesService versionesService;
+    
     @GetMapping
-    @Operation(summary = "Obtener todas las cuentas contables")
-    public ResponseEntity<List<CuentaContableDTO>> getAllCuentas() {
+    @Operation(summary = "Obtener todas las cuentas contables",
+            description = "Responde 304 sin consultar la base de datos si If-None-Match coincide con el ETag actual")
+    public ResponseEntity<List<CuentaContableDTO>> getAllCuentas(WebRequest webRequest) {
+        String etag = versionesService.etiqueta(Agregado.CUENTAS);
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
         List<CuentaContableDTO> cuentas = cuentaContableService.getAllCuentas();
-        return ResponseEntity.ok(cuentas);
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache().cachePrivate()).body(cuentas);
     }
     
     @GetMapping("/activas")
-    @Operation(summary = "Obtener solo cuentas activas")
-    public ResponseEntity<List<CuentaContableDTO>> getCuentasActivas() {
+    @Operation(summary = "Obtener solo cuentas activas",
+            description = "Responde 304 sin consultar la base de datos si If-None-Match coincide con el ETag actual")
+    public ResponseEntity<List<CuentaContableDTO>> getCuentasActivas(WebRequest webRequest) {
+        String etag = versionesService.etiqueta(Agregado.CUENTAS);
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
         List<CuentaContableDTO> cuentas = cuentaContableService.getCuentasActivas();
-        return ResponseEntity.ok(cuentas);
+        return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache().cachePrivate()).body(cuentas);
     }
     
     @GetMapping("/{id}")
@@ -87,8 +106,25 @@ public class CuentaContableController {
     @DeleteMapping("/{id}")
     @Operation(summary = "Eliminar cuenta contable")
     public ResponseEntity<Void> deleteCuenta(@PathVariable Long id) {
-        boolean deleted = cuentaContableService.deleteCuenta(id);
-        return deleted ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+        try {
+            boolean deleted = cuentaContableService.deleteCuenta(id);
+            return deleted ? ResponseEntity.noContent().build() : ResponseEntity.notFound().build();
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @PostMapping("/{id}/reclasificar")
+    @Operation(summary = "Reclasificar partidas a otra cuenta",
+            description = "Mueve las partidas de la cuenta (opcionalmente solo las de un rango de fechas) " +
+                    "a la cuenta destino y traslada el saldo correspondiente")
+    public ResponseEntity<ResultadoReclasificacionDTO> reclasificarPartidas(
+            @PathVariable Long id, @Valid @RequestBody ReclasificacionCuentaRequest request) {
+        try {
+            return ResponseEntity.ok(cuentaContableService.reclasificarPartidas(id, request));
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().build();
+        }
     }
     
     @GetMapping("/search")
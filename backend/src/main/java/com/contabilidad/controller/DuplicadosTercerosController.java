@@ -0,0 +1,53 @@
+package com.contabilidad.controller;
+
+import com.contabilidad.dto.EstadoDeteccionDuplicadosDTO;
+import com.contabilidad.dto.ParDuplicadoDTO;
+import com.contabilidad.service.DeteccionDuplicadosService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.security.SecurityRequirement;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/terceros/duplicados")
+@Tag(name = "Terceros", description = "Gestión de terceros (clientes, proveedores, empleados)")
+@SecurityRequirement(name = "bearerAuth")
+public class DuplicadosTercerosController {
+    
+    @Autowired
+    private DeteccionDuplicadosService deteccionDuplicadosService;
+    
+    @GetMapping
+    @Operation(summary = "Obtener terceros probablemente duplicados",
+            description = "Pares encontrados por el último análisis terminado, ordenados de mayor a menor puntaje")
+    public ResponseEntity<List<ParDuplicadoDTO>> getDuplicados(
+            @RequestParam(defaultValue = "0") double puntajeMinimo,
+            @RequestParam(defaultValue = "100") int limite) {
+        if (limite <= 0) {
+            return ResponseEntity.badRequest().build();
+        }
+        return ResponseEntity.ok(deteccionDuplicadosService.getDuplicados(puntajeMinimo, limite));
+    }
+    
+    @PostMapping("/analisis")
+    @Operation(summary = "Iniciar análisis de terceros duplicados",
+            description = "Se ejecuta en segundo plano; el avance se consulta en /api/terceros/duplicados/estado")
+    public ResponseEntity<EstadoDeteccionDuplicadosDTO> iniciarAnalisis() {
+        try {
+            return ResponseEntity.status(HttpStatus.ACCEPTED).body(deteccionDuplicadosService.iniciarAnalisis());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(deteccionDuplicadosService.getEstado());
+        }
+    }
+    
+    @GetMapping("/estado")
+    @Operation(summary = "Consultar el avance del análisis de duplicados")
+    public ResponseEntity<EstadoDeteccionDuplicadosDTO> getEstado() {
+        return ResponseEntity.ok(deteccionDuplicadosService.getEstado());
+    }
+}
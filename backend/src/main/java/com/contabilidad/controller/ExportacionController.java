@@ -0,0 +1,100 @@
+package com.contabilidad.controller;
+
+import com.contabilidad.dto.ManifiestoExportacionDTO;
+import com.contabilidad.service.ExportacionLibroDiarioService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Optional;
+
+@RestController
+@RequestMapping("/api/exportaciones")
+@Tag(name = "Exportaciones", description = "Exportación del libro diario para auditoría y bodega de datos")
+@CrossOrigin(origins = "*")
+public class ExportacionController {
+    
+    /**
+     * Atributos con los que Tomcat envía el archivo con sendfile, sin copiarlo a la memoria de la aplicación
+     */
+    private static final String SENDFILE_SOPORTADO = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_ARCHIVO = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_INICIO = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_FIN = "org.apache.tomcat.sendfile.end";
+    
+    @Autowired
+    private ExportacionLibroDiarioService exportacionLibroDiarioService;
+    
+    @GetMapping("/libro-diario")
+    @Operation(summary = "Obtener los manifiestos de las exportaciones del libro diario")
+    public ResponseEntity<List<ManifiestoExportacionDTO>> getExportaciones() {
+        try {
+            return ResponseEntity.ok(exportacionLibroDiarioService.getExportaciones());
+        } catch (IOException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
+    @PostMapping("/libro-diario")
+    @Operation(summary = "Exportar ahora el libro diario",
+            description = "Exporta las transacciones modificadas desde la última exportación, igual que la tarea programada")
+    public ResponseEntity<ManifiestoExportacionDTO> exportarLibroDiario() {
+        try {
+            return ResponseEntity.status(HttpStatus.CREATED).body(exportacionLibroDiarioService.exportar());
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
+        } catch (IOException | RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
+    @GetMapping("/libro-diario/{exportacion}/{archivo}")
+    @Operation(summary = "Descargar un segmento o el manifiesto de una exportación")
+    public void descargarArchivo(@PathVariable String exportacion, @PathVariable String archivo,
+                                 HttpServletRequest request, HttpServletResponse response) throws IOException {
+        Optional<Path> ruta = exportacionLibroDiarioService.getArchivo(exportacion, archivo);
+        if (ruta.isEmpty()) {
+            response.sendError(HttpStatus.NOT_FOUND.value());
+            return;
+        }
+        Path path = ruta.get();
+        long tamano = Files.size(path);
+        response.setContentType(archivo.equals(ExportacionLibroDiarioService.ARCHIVO_MANIFIESTO)
+                ? MediaType.APPLICATION_JSON_VALUE : "application/gzip");
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename(archivo)
+                .build()
+                .toString());
+        response.setContentLengthLong(tamano);
+        
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SOPORTADO))) {
+            request.setAttribute(SENDFILE_ARCHIVO, path.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_INICIO, 0L);
+            request.setAttribute(SENDFILE_FIN, tamano);
+            return;
+        }
+        try (FileChannel canal = FileChannel.open(path, StandardOpenOption.READ)) {
+            WritableByteChannel destino = Channels.newChannel(response.getOutputStream());
+            long enviados = 0;
+            while (enviados < tamano) {
+                enviados += canal.transferTo(enviados, tamano - enviados, destino);
+            }
+        }
+    }
+}
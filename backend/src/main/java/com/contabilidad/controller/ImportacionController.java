@@ -0,0 +1,57 @@
+package com.contabilidad.controller;
+
+import com.contabilidad.dto.ResultadoImportacionDTO;
+import com.contabilidad.service.ImportacionAsientosService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+
+@RestController
+@RequestMapping("/api/importaciones")
+@Tag(name = "Importaciones", description = "Carga masiva de asientos contables")
+@CrossOrigin(origins = "*")
+public class ImportacionController {
+    
+    private static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv;charset=UTF-8");
+    
+    @Autowired
+    private ImportacionAsientosService importacionAsientosService;
+    
+    @PostMapping(value = "/asientos", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(summary = "Importar asientos desde un archivo CSV",
+            description = "Columnas: referencia, fecha, descripcion, documento_tercero, codigo_cuenta, tipo, valor y opcionalmente tipo_comprobante. " +
+                    "Las filas de un mismo asiento deben ser consecutivas.")
+    public ResponseEntity<ResultadoImportacionDTO> importarAsientos(@RequestParam("archivo") MultipartFile archivo) {
+        try (InputStream contenido = archivo.getInputStream()) {
+            ResultadoImportacionDTO resultado = importacionAsientosService.importarAsientos(contenido);
+            return ResponseEntity.ok(resultado);
+        } catch (IOException | RuntimeException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
+    @GetMapping("/{id}/errores")
+    @Operation(summary = "Descargar el reporte de errores de una importación")
+    public ResponseEntity<Resource> getReporteErrores(@PathVariable String id) {
+        return importacionAsientosService.getReporteErrores(id)
+                .map(reporte -> ResponseEntity.ok()
+                        .contentType(TEXT_CSV)
+                        .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                                .filename(reporte.getFileName().toString())
+                                .build()
+                                .toString())
+                        .<Resource>body(new FileSystemResource(reporte)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
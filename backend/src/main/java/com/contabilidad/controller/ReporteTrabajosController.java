@@ -0,0 +1,87 @@
+package com.contabilidad.controller;
+
+import com.contabilidad.dto.TrabajoReporteDTO;
+import com.contabilidad.dto.request.SolicitudReporteRequest;
+import com.contabilidad.service.TrabajosReporteService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/reportes/jobs")
+@Tag(name = "Reportes", description = "Reportes pesados ejecutados en segundo plano")
+@CrossOrigin(origins = "*")
+public class ReporteTrabajosController {
+    
+    @Autowired
+    private TrabajosReporteService trabajosReporteService;
+    
+    @PostMapping
+    @Operation(summary = "Solicitar un reporte",
+            description = "Devuelve el trabajo en cola; una solicitud idéntica a otra sin terminar devuelve ese mismo trabajo. " +
+                    "ANTIGUEDAD_SALDOS requiere cuentaId (cuenta por cobrar o por pagar) y aplica los pagos a las " +
+                    "deudas más antiguas de cada tercero. " +
+                    "Responde 503 si la cola de reportes está llena.")
+    public ResponseEntity<TrabajoReporteDTO> solicitarReporte(@Valid @RequestBody SolicitudReporteRequest request) {
+        try {
+            TrabajoReporteDTO trabajo = trabajosReporteService.solicitar(request);
+            return ResponseEntity.status(HttpStatus.ACCEPTED)
+                    .header(HttpHeaders.LOCATION, "/api/reportes/jobs/" + trabajo.getId())
+                    .body(trabajo);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (IllegalStateException e) {
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                    .header(HttpHeaders.RETRY_AFTER, "30")
+                    .build();
+        }
+    }
+    
+    @GetMapping
+    @Operation(summary = "Listar los trabajos de reportes conservados")
+    public ResponseEntity<List<TrabajoReporteDTO>> getTrabajos() {
+        return ResponseEntity.ok(trabajosReporteService.getTrabajos());
+    }
+    
+    @GetMapping("/{id}")
+    @Operation(summary = "Consultar el estado de un trabajo")
+    public ResponseEntity<TrabajoReporteDTO> getTrabajo(@PathVariable String id) {
+        return trabajosReporteService.getTrabajo(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    @GetMapping("/{id}/resultado")
+    @Operation(summary = "Descargar el resultado de un trabajo terminado (JSON)")
+    public ResponseEntity<Resource> getResultado(@PathVariable String id) {
+        return trabajosReporteService.getResultado(id)
+                .<ResponseEntity<Resource>>map(archivo -> ResponseEntity.ok()
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                                .filename("reporte-" + id + ".json")
+                                .build()
+                                .toString())
+                        .body(new FileSystemResource(archivo)))
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    @DeleteMapping("/{id}")
+    @Operation(summary = "Cancelar un trabajo en cola o en ejecución",
+            description = "Si está en ejecución se cancela también la consulta en la base de datos")
+    public ResponseEntity<TrabajoReporteDTO> cancelarTrabajo(@PathVariable String id) {
+        return trabajosReporteService.cancelar(id)
+                .map(ResponseEntity::ok)
+                .orElse(ResponseEntity.notFound().build());
+    }
+}
@@ -2,16 +2,21 @@ package com.contabilidad.controller;
 
 import com.contabilidad.dto.CuentaContableDTO;
 import com.contabilidad.service.CuentaContableService;
+import com.contabilidad.service.VersionesService;
+import com.contabilidad.service.VersionesService.Agregado;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
 import java.util.List;
+import java.util.concurrent.Callable;
 
 @RestController
 @RequestMapping("/api/saldos")
@@ -22,11 +27,23 @@ public class SaldoController {
     @Autowired
     private CuentaContableService cuentaContableService;
     
+    @Autowired
+    private VersionesService versionesService;
+    
     @GetMapping
-    @Operation(summary = "Obtener saldos de todas las cuentas activas")
-    public ResponseEntity<List<CuentaContableDTO>> getSaldosTodasLasCuentas() {
-        List<CuentaContableDTO> saldos = cuentaContableService.getSaldosTodasLasCuentas();
-        return ResponseEntity.ok(saldos);
+    @Operation(summary = "Obtener saldos de todas las cuentas activas",
+            description = "Se ejecuta en el ejecutor de reportes; responde 503 con Retry-After si está saturado. " +
+                    "Si If-None-Match coincide con el ETag actual responde 304 sin pasar por el ejecutor")
+    public Callable<ResponseEntity<List<CuentaContableDTO>>> getSaldosTodasLasCuentas(WebRequest webRequest) {
+        // Los saldos cambian con el plan de cuentas y con cada movimiento del libro
+        String etag = versionesService.etiqueta(Agregado.CUENTAS, Agregado.LIBRO);
+        if (webRequest.checkNotModified(etag)) {
+            return null;
+        }
+        return () -> ResponseEntity.ok()
+                .eTag(etag)
+                .cacheControl(CacheControl.noCache().cachePrivate())
+                .body(cuentaContableService.getSaldosTodasLasCuentas());
     }
     
     @GetMapping("/{cuentaId}")
@@ -0,0 +1,79 @@
+package com.contabilidad.controller;
+
+import com.contabilidad.dto.ResultadoRestauracionDTO;
+import com.contabilidad.service.SnapshotContableService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+
+@RestController
+@RequestMapping("/api/snapshots")
+@Tag(name = "Snapshots", description = "Copia binaria completa de los datos contables para clonar ambientes")
+@CrossOrigin(origins = "*")
+public class SnapshotController {
+    
+    private static final DateTimeFormatter FORMATO_NOMBRE = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+    
+    @Autowired
+    private SnapshotContableService snapshotContableService;
+    
+    @GetMapping
+    @Operation(summary = "Descargar un snapshot binario de cuentas, terceros, transacciones y partidas")
+    public ResponseEntity<StreamingResponseBody> exportarSnapshot() {
+        String nombre = "contabilidad-" + FORMATO_NOMBRE.format(LocalDateTime.now()) + ".snap";
+        StreamingResponseBody cuerpo = salida -> snapshotContableService.exportar(Channels.newChannel(salida));
+        return ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                        .filename(nombre)
+                        .build()
+                        .toString())
+                .body(cuerpo);
+    }
+    
+    @PostMapping(value = "/restauracion", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    @Operation(summary = "Restaurar un snapshot",
+            description = "Reemplaza todos los datos contables. Solo disponible si contabilidad.snapshots.restauracion-habilitada es true; " +
+                    "las instancias deben reiniciarse después de restaurar. Los datos se cargan en tablas aparte y " +
+                    "reemplazan a las actuales en un solo paso: si la restauración falla, los datos no cambian y " +
+                    "basta con repetirla.")
+    public ResponseEntity<ResultadoRestauracionDTO> restaurarSnapshot(@RequestParam("archivo") MultipartFile archivo) {
+        if (!snapshotContableService.isRestauracionHabilitada()) {
+            return ResponseEntity.status(HttpStatus.FORBIDDEN).build();
+        }
+        Path temporal = null;
+        try {
+            temporal = Files.createTempFile("snapshot-", ".snap");
+            archivo.transferTo(temporal);
+            return ResponseEntity.ok(snapshotContableService.restaurar(temporal));
+        } catch (IOException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (SQLException | RuntimeException e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        } finally {
+            if (temporal != null) {
+                try {
+                    Files.deleteIfExists(temporal);
+                } catch (IOException ignored) {
+                    // el archivo temporal se elimina con el directorio temporal del sistema
+                }
+            }
+        }
+    }
+}
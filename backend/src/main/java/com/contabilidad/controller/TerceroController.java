@@ -1,8 +1,14 @@
 package com.contabilidad.controller;
 
+import com.contabilidad.dto.ResultadoCargaTercerosDTO;
+import com.contabilidad.dto.ResultadoFusionTercerosDTO;
 import com.contabilidad.dto.TerceroDTO;
+import com.contabilidad.dto.request.FusionTercerosRequest;
 import com.contabilidad.dto.request.TerceroRequest;
+import com.contabilidad.service.ListadoStreamingService;
 import com.contabilidad.service.TerceroService;
+import com.contabilidad.service.VersionesService;
+import com.contabilidad.service.VersionesService.Agregado;
 import com.contabilidad.util.EncryptionUtil;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
@@ -16,12 +22,17 @@ import io.swagger.v3.oas.annotations.security.SecurityRequirement;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.CacheControl;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Locale;
 
 @RestController
 @RequestMapping("/api/terceros")
@@ -35,11 +46,18 @@ public class TerceroController {
     @Autowired
     private EncryptionUtil encryptionUtil;
     
+    @Autowired
+    private ListadoStreamingService listadoStreamingService;
+    
+    @Autowired
+    private VersionesService versionesService;
+    
     @GetMapping
     @Operation(
         summary = "Listar todos los terceros",
         description = "Obtiene una lista completa de todos los terceros registrados en el sistema. " +
-                     "Incluye información básica como nombre, tipo de documento, email y estado activo."
+                     "Incluye información básica como nombre, tipo de documento, email y estado activo. " +
+                     "Si If-None-Match coincide con el ETag actual responde 304 sin consultar la base de datos."
     )
     @ApiResponses(value = {
         @ApiResponse(
@@ -67,19 +85,50 @@ public class TerceroController {
                 )
             )
         ),
+        @ApiResponse(responseCode = "304", description = "La lista no ha cambiado desde el ETag indicado"),
         @ApiResponse(responseCode = "401", description = "No autorizado"),
         @ApiResponse(responseCode = "403", description = "Acceso prohibido"),
         @ApiResponse(responseCode = "500", description = "Error interno del servidor")
     })
-    public ResponseEntity<List<TerceroDTO>> getAllTerceros() {
+    public ResponseEntity<List<TerceroDTO>> getAllTerceros(WebRequest webRequest) {
         try {
+            String etag = versionesService.etiqueta(Agregado.TERCEROS);
+            if (webRequest.checkNotModified(etag)) {
+                return null;
+            }
             List<TerceroDTO> terceros = terceroService.getAllTerceros();
-            return ResponseEntity.ok(terceros);
+            return ResponseEntity.ok().eTag(etag).cacheControl(CacheControl.noCache().cachePrivate()).body(terceros);
         } catch (Exception e) {
             return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
         }
     }
     
+    @GetMapping("/stream")
+    @Operation(
+        summary = "Exportar terceros en streaming",
+        description = "Escribe los terceros a medida que se leen de la base de datos, sin cargarlos en memoria. " +
+                     "Formato JSON (arreglo, por defecto) o NDJSON (un objeto por línea)."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(responseCode = "200", description = "Terceros exportados"),
+        @ApiResponse(responseCode = "400", description = "Formato no soportado")
+    })
+    public ResponseEntity<StreamingResponseBody> streamTerceros(
+        @Parameter(description = "json o ndjson", example = "ndjson")
+        @RequestParam(defaultValue = "json") String formato
+    ) {
+        ListadoStreamingService.Formato formatoSalida;
+        try {
+            formatoSalida = ListadoStreamingService.Formato.valueOf(formato.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        StreamingResponseBody cuerpo = salida -> listadoStreamingService.escribirTerceros(salida, formatoSalida);
+        return ResponseEntity.ok()
+            .contentType(MediaType.parseMediaType(formatoSalida.getMediaType()))
+            .body(cuerpo);
+    }
+    
     @GetMapping("/{id}")
     @Operation(
         summary = "Obtener tercero por ID",
@@ -191,6 +240,35 @@ public class TerceroController {
         }
     }
     
+    @PostMapping("/lote")
+    @Operation(
+        summary = "Crear o actualizar terceros en bloque",
+        description = "Usa el número de documento como clave: crea los terceros nuevos y actualiza los existentes. " +
+                     "Cada registro se valida por separado y los rechazados se informan con su posición en la lista."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Carga procesada; el resumen incluye los registros rechazados",
+            content = @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ResultadoCargaTercerosDTO.class)
+            )
+        ),
+        @ApiResponse(responseCode = "400", description = "Solicitud vacía"),
+        @ApiResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public ResponseEntity<ResultadoCargaTercerosDTO> cargarTerceros(@RequestBody List<TerceroRequest> requests) {
+        if (requests == null || requests.isEmpty()) {
+            return ResponseEntity.badRequest().build();
+        }
+        try {
+            return ResponseEntity.ok(terceroService.cargarTerceros(requests));
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
     @PutMapping("/{id}")
     @Operation(
         summary = "Actualizar tercero existente",
@@ -270,10 +348,42 @@ public class TerceroController {
         }
     }
     
+    @PostMapping("/{id}/fusionar")
+    @Operation(
+        summary = "Fusionar terceros duplicados",
+        description = "Reasigna todas las transacciones de los terceros duplicados al tercero indicado " +
+                     "y desactiva los duplicados."
+    )
+    @ApiResponses(value = {
+        @ApiResponse(
+            responseCode = "200",
+            description = "Fusión completada",
+            content = @Content(
+                mediaType = "application/json",
+                schema = @Schema(implementation = ResultadoFusionTercerosDTO.class)
+            )
+        ),
+        @ApiResponse(responseCode = "400", description = "Terceros inexistentes o solicitud inválida"),
+        @ApiResponse(responseCode = "500", description = "Error interno del servidor")
+    })
+    public ResponseEntity<ResultadoFusionTercerosDTO> fusionarTerceros(
+        @Parameter(description = "ID del tercero que se conserva", example = "1")
+        @PathVariable Long id,
+        @Valid @RequestBody FusionTercerosRequest request
+    ) {
+        try {
+            return ResponseEntity.ok(terceroService.fusionarTerceros(id, request.getDuplicados()));
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        } catch (Exception e) {
+            return ResponseEntity.status(HttpStatus.INTERNAL_SERVER_ERROR).build();
+        }
+    }
+    
     @GetMapping("/search")
     @Operation(
         summary = "Buscar terceros",
-        description = "Busca terceros por nombre, email o número de documento. " +
+        description = "Busca terceros por nombre o número de documento. " +
                      "Soporta búsqueda parcial y es case-insensitive."
     )
     @ApiResponses(value = {
@@ -289,7 +399,7 @@ public class TerceroController {
         @ApiResponse(responseCode = "500", description = "Error interno del servidor")
     })
     public ResponseEntity<List<TerceroDTO>> searchTerceros(
-        @Parameter(description = "Término de búsqueda (nombre, email o documento)", example = "Juan")
+        @Parameter(description = "Término de búsqueda (nombre o documento)", example = "Juan")
         @RequestParam String query
     ) {
         try {
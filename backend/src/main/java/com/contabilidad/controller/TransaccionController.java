@@ -1,7 +1,13 @@
 package com.contabilidad.controller;
 
+import com.contabilidad.dto.ResultadoLoteDTO;
 import com.contabilidad.dto.TransaccionDTO;
+import com.contabilidad.dto.request.CambioEstadoLoteRequest;
 import com.contabilidad.dto.request.TransaccionRequest;
+import com.contabilidad.model.Transaccion;
+import com.contabilidad.service.IdempotenciaService;
+import com.contabilidad.service.IdempotenciaService.ConflictoIdempotenciaException;
+import com.contabilidad.service.ListadoStreamingService;
 import com.contabilidad.service.TransaccionService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.tags.Tag;
@@ -9,11 +15,14 @@ import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.time.LocalDate;
 import java.util.List;
+import java.util.Locale;
 
 @RestController
 @RequestMapping("/api/transacciones")
@@ -24,6 +33,12 @@ public class TransaccionController {
     @Autowired
     private TransaccionService transaccionService;
     
+    @Autowired
+    private IdempotenciaService idempotenciaService;
+    
+    @Autowired
+    private ListadoStreamingService listadoStreamingService;
+    
     @GetMapping
     @Operation(summary = "Obtener todas las transacciones")
     public ResponseEntity<List<TransaccionDTO>> getAllTransacciones() {
@@ -48,11 +63,19 @@ public class TransaccionController {
     }
     
     @PostMapping
-    @Operation(summary = "Crear nueva transacción")
-    public ResponseEntity<TransaccionDTO> createTransaccion(@Valid @RequestBody TransaccionRequest request) {
+    @Operation(summary = "Crear nueva transacción",
+            description = "Con la cabecera Idempotency-Key los reintentos devuelven la transacción original durante " +
+                    "contabilidad.idempotencia.retencion; reutilizar la clave con otro cuerpo responde 409")
+    public ResponseEntity<TransaccionDTO> createTransaccion(
+            @RequestHeader(value = "Idempotency-Key", required = false) String claveIdempotencia,
+            @Valid @RequestBody TransaccionRequest request) {
         try {
-            TransaccionDTO transaccion = transaccionService.createTransaccion(request);
+            TransaccionDTO transaccion = claveIdempotencia != null
+                    ? idempotenciaService.registrarTransaccion(claveIdempotencia, request)
+                    : transaccionService.createTransaccion(request);
             return ResponseEntity.status(HttpStatus.CREATED).body(transaccion);
+        } catch (ConflictoIdempotenciaException e) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).build();
         } catch (RuntimeException e) {
             return ResponseEntity.badRequest().build();
         }
@@ -103,6 +126,30 @@ public class TransaccionController {
         return ResponseEntity.ok(transacciones);
     }
     
+    @GetMapping("/stream")
+    @Operation(summary = "Exportar transacciones con sus partidas en streaming",
+            description = "Las filas se escriben a medida que se leen de la base de datos; formato JSON (arreglo) o NDJSON")
+    public ResponseEntity<StreamingResponseBody> streamTransacciones(
+            @RequestParam(defaultValue = "json") String formato,
+            @RequestParam(required = false) Long terceroId,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaInicio,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate fechaFin,
+            @RequestParam(required = false) String estado) {
+        ListadoStreamingService.Formato formatoSalida;
+        Transaccion.Estado estadoFiltro;
+        try {
+            formatoSalida = ListadoStreamingService.Formato.valueOf(formato.toUpperCase(Locale.ROOT));
+            estadoFiltro = estado != null ? Transaccion.Estado.valueOf(estado.toUpperCase(Locale.ROOT)) : null;
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().build();
+        }
+        StreamingResponseBody cuerpo = salida -> listadoStreamingService.escribirTransacciones(
+                salida, formatoSalida, terceroId, fechaInicio, fechaFin, estadoFiltro);
+        return ResponseEntity.ok()
+                .contentType(MediaType.parseMediaType(formatoSalida.getMediaType()))
+                .body(cuerpo);
+    }
+    
     @GetMapping("/search")
     @Operation(summary = "Buscar transacciones por descripción")
     public ResponseEntity<List<TransaccionDTO>> searchTransaccionesByDescripcion(@RequestParam String descripcion) {
@@ -150,6 +197,17 @@ public class TransaccionController {
         }
     }
     
+    @PostMapping("/estado/lote")
+    @Operation(summary = "Cambiar el estado de varias transacciones por IDs o por filtro")
+    public ResponseEntity<ResultadoLoteDTO> cambiarEstadoLote(@Valid @RequestBody CambioEstadoLoteRequest request) {
+        try {
+            ResultadoLoteDTO resultado = transaccionService.cambiarEstadoLote(request);
+            return ResponseEntity.ok(resultado);
+        } catch (RuntimeException e) {
+            return ResponseEntity.badRequest().build();
+        }
+    }
+    
     @PutMapping("/{id}/anular")
     @Operation(summary = "Anular una transacción")
     public ResponseEntity<TransaccionDTO> anularTransaccion(@PathVariable Long id) {
@@ -0,0 +1,103 @@
+package com.contabilidad.dto;
+
+import java.time.LocalDateTime;
+
+public class EstadoDeteccionDuplicadosDTO {
+    
+    public enum Fase {
+        SIN_EJECUTAR, CARGANDO, AGRUPANDO, COMPARANDO, TERMINADO, FALLIDO
+    }
+    
+    private Fase fase;
+    private LocalDateTime fechaInicio;
+    private LocalDateTime fechaFin;
+    private long terceros;
+    private long bloques;
+    private long bloquesProcesados;
+    private long paresComparados;
+    private long candidatos;
+    private String mensaje;
+    
+    // Constructors
+    public EstadoDeteccionDuplicadosDTO() {}
+    
+    // Static factory method
+    public static EstadoDeteccionDuplicadosDTO sinEjecutar() {
+        EstadoDeteccionDuplicadosDTO estado = new EstadoDeteccionDuplicadosDTO();
+        estado.setFase(Fase.SIN_EJECUTAR);
+        return estado;
+    }
+    
+    // Getters and Setters
+    public Fase getFase() {
+        return fase;
+    }
+    
+    public void setFase(Fase fase) {
+        this.fase = fase;
+    }
+    
+    public LocalDateTime getFechaInicio() {
+        return fechaInicio;
+    }
+    
+    public void setFechaInicio(LocalDateTime fechaInicio) {
+        this.fechaInicio = fechaInicio;
+    }
+    
+    public LocalDateTime getFechaFin() {
+        return fechaFin;
+    }
+    
+    public void setFechaFin(LocalDateTime fechaFin) {
+        this.fechaFin = fechaFin;
+    }
+    
+    public long getTerceros() {
+        return terceros;
+    }
+    
+    public void setTerceros(long terceros) {
+        this.terceros = terceros;
+    }
+    
+    public long getBloques() {
+        return bloques;
+    }
+    
+    public void setBloques(long bloques) {
+        this.bloques = bloques;
+    }
+    
+    public long getBloquesProcesados() {
+        return bloquesProcesados;
+    }
+    
+    public void setBloquesProcesados(long bloquesProcesados) {
+        this.bloquesProcesados = bloquesProcesados;
+    }
+    
+    public long getParesComparados() {
+        return paresComparados;
+    }
+    
+    public void setParesComparados(long paresComparados) {
+        this.paresComparados = paresComparados;
+    }
+    
+    public long getCandidatos() {
+        return candidatos;
+    }
+    
+    public void setCandidatos(long candidatos) {
+        this.candidatos = candidatos;
+    }
+    
+    public String getMensaje() {
+        return mensaje;
+    }
+    
+    public void setMensaje(String mensaje) {
+        this.mensaje = mensaje;
+    }
+}
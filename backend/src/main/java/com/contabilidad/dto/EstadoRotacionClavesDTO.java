@@ -0,0 +1,115 @@
+package com.contabilidad.dto;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+public class EstadoRotacionClavesDTO {
+    
+    public enum Fase {
+        SIN_EJECUTAR, EN_CURSO, TERMINADO, FALLIDO
+    }
+    
+    private Fase fase;
+    private String claveActiva;
+    private List<String> clavesRetenidas;
+    private LocalDateTime fechaInicio;
+    private LocalDateTime fechaFin;
+    private long terceroMaximoId;
+    private long filasRevisadas;
+    private long filasRecifradas;
+    private long filasModificadasConcurrentemente;
+    private double filasPorSegundo;
+    private String mensaje;
+    
+    // Constructors
+    public EstadoRotacionClavesDTO() {}
+    
+    // Getters and Setters
+    public Fase getFase() {
+        return fase;
+    }
+    
+    public void setFase(Fase fase) {
+        this.fase = fase;
+    }
+    
+    public String getClaveActiva() {
+        return claveActiva;
+    }
+    
+    public void setClaveActiva(String claveActiva) {
+        this.claveActiva = claveActiva;
+    }
+    
+    public List<String> getClavesRetenidas() {
+        return clavesRetenidas;
+    }
+    
+    public void setClavesRetenidas(List<String> clavesRetenidas) {
+        this.clavesRetenidas = clavesRetenidas;
+    }
+    
+    public LocalDateTime getFechaInicio() {
+        return fechaInicio;
+    }
+    
+    public void setFechaInicio(LocalDateTime fechaInicio) {
+        this.fechaInicio = fechaInicio;
+    }
+    
+    public LocalDateTime getFechaFin() {
+        return fechaFin;
+    }
+    
+    public void setFechaFin(LocalDateTime fechaFin) {
+        this.fechaFin = fechaFin;
+    }
+    
+    public long getTerceroMaximoId() {
+        return terceroMaximoId;
+    }
+    
+    public void setTerceroMaximoId(long terceroMaximoId) {
+        this.terceroMaximoId = terceroMaximoId;
+    }
+    
+    public long getFilasRevisadas() {
+        return filasRevisadas;
+    }
+    
+    public void setFilasRevisadas(long filasRevisadas) {
+        this.filasRevisadas = filasRevisadas;
+    }
+    
+    public long getFilasRecifradas() {
+        return filasRecifradas;
+    }
+    
+    public void setFilasRecifradas(long filasRecifradas) {
+        this.filasRecifradas = filasRecifradas;
+    }
+    
+    public long getFilasModificadasConcurrentemente() {
+        return filasModificadasConcurrentemente;
+    }
+    
+    public void setFilasModificadasConcurrentemente(long filasModificadasConcurrentemente) {
+        this.filasModificadasConcurrentemente = filasModificadasConcurrentemente;
+    }
+    
+    public double getFilasPorSegundo() {
+        return filasPorSegundo;
+    }
+    
+    public void setFilasPorSegundo(double filasPorSegundo) {
+        this.filasPorSegundo = filasPorSegundo;
+    }
+    
+    public String getMensaje() {
+        return mensaje;
+    }
+    
+    public void setMensaje(String mensaje) {
+        this.mensaje = mensaje;
+    }
+}
@@ -0,0 +1,129 @@
+package com.contabilidad.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Manifiesto de una exportación del libro diario: ventana exportada y archivos generados con su suma SHA-256
+ */
+public class ManifiestoExportacionDTO {
+    private String id;
+    private String formato;
+    private String desde;
+    private String hasta;
+    private long filas;
+    private List<ArchivoExportado> archivos = new ArrayList<>();
+    
+    public static class ArchivoExportado {
+        private String nombre;
+        private long filas;
+        private long bytes;
+        private String sha256;
+        
+        public ArchivoExportado() {}
+        
+        public ArchivoExportado(String nombre, long filas, long bytes, String sha256) {
+            this.nombre = nombre;
+            this.filas = filas;
+            this.bytes = bytes;
+            this.sha256 = sha256;
+        }
+        
+        public String getNombre() {
+            return nombre;
+        }
+        
+        public void setNombre(String nombre) {
+            this.nombre = nombre;
+        }
+        
+        public long getFilas() {
+            return filas;
+        }
+        
+        public void setFilas(long filas) {
+            this.filas = filas;
+        }
+        
+        public long getBytes() {
+            return bytes;
+        }
+        
+        public void setBytes(long bytes) {
+            this.bytes = bytes;
+        }
+        
+        public String getSha256() {
+            return sha256;
+        }
+        
+        public void setSha256(String sha256) {
+            this.sha256 = sha256;
+        }
+    }
+    
+    // Constructors
+    public ManifiestoExportacionDTO() {}
+    
+    public ManifiestoExportacionDTO(String id, String formato, String desde, String hasta) {
+        this.id = id;
+        this.formato = formato;
+        this.desde = desde;
+        this.hasta = hasta;
+    }
+    
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+    
+    public void setId(String id) {
+        this.id = id;
+    }
+    
+    public String getFormato() {
+        return formato;
+    }
+    
+    public void setFormato(String formato) {
+        this.formato = formato;
+    }
+    
+    /**
+     * Inicio (exclusivo) de la ventana de modificaciones exportada; nulo en la primera exportación
+     */
+    public String getDesde() {
+        return desde;
+    }
+    
+    public void setDesde(String desde) {
+        this.desde = desde;
+    }
+    
+    /**
+     * Fin (inclusivo) de la ventana de modificaciones exportada
+     */
+    public String getHasta() {
+        return hasta;
+    }
+    
+    public void setHasta(String hasta) {
+        this.hasta = hasta;
+    }
+    
+    public long getFilas() {
+        return filas;
+    }
+    
+    public void setFilas(long filas) {
+        this.filas = filas;
+    }
+    
+    public List<ArchivoExportado> getArchivos() {
+        return archivos;
+    }
+    
+    public void setArchivos(List<ArchivoExportado> archivos) {
+        this.archivos = archivos;
+    }
+}
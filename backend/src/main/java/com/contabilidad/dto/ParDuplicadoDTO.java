@@ -0,0 +1,82 @@
+package com.contabilidad.dto;
+
+public class ParDuplicadoDTO {
+    private Long terceroId;
+    private String nombre;
+    private String numeroDocumento;
+    private Long duplicadoId;
+    private String duplicadoNombre;
+    private String duplicadoNumeroDocumento;
+    private double puntaje;
+    
+    // Constructors
+    public ParDuplicadoDTO() {}
+    
+    public ParDuplicadoDTO(Long terceroId, String nombre, String numeroDocumento,
+                           Long duplicadoId, String duplicadoNombre, String duplicadoNumeroDocumento, double puntaje) {
+        this.terceroId = terceroId;
+        this.nombre = nombre;
+        this.numeroDocumento = numeroDocumento;
+        this.duplicadoId = duplicadoId;
+        this.duplicadoNombre = duplicadoNombre;
+        this.duplicadoNumeroDocumento = duplicadoNumeroDocumento;
+        this.puntaje = puntaje;
+    }
+    
+    // Getters and Setters
+    public Long getTerceroId() {
+        return terceroId;
+    }
+    
+    public void setTerceroId(Long terceroId) {
+        this.terceroId = terceroId;
+    }
+    
+    public String getNombre() {
+        return nombre;
+    }
+    
+    public void setNombre(String nombre) {
+        this.nombre = nombre;
+    }
+    
+    public String getNumeroDocumento() {
+        return numeroDocumento;
+    }
+    
+    public void setNumeroDocumento(String numeroDocumento) {
+        this.numeroDocumento = numeroDocumento;
+    }
+    
+    public Long getDuplicadoId() {
+        return duplicadoId;
+    }
+    
+    public void setDuplicadoId(Long duplicadoId) {
+        this.duplicadoId = duplicadoId;
+    }
+    
+    public String getDuplicadoNombre() {
+        return duplicadoNombre;
+    }
+    
+    public void setDuplicadoNombre(String duplicadoNombre) {
+        this.duplicadoNombre = duplicadoNombre;
+    }
+    
+    public String getDuplicadoNumeroDocumento() {
+        return duplicadoNumeroDocumento;
+    }
+    
+    public void setDuplicadoNumeroDocumento(String duplicadoNumeroDocumento) {
+        this.duplicadoNumeroDocumento = duplicadoNumeroDocumento;
+    }
+    
+    public double getPuntaje() {
+        return puntaje;
+    }
+    
+    public void setPuntaje(double puntaje) {
+        this.puntaje = puntaje;
+    }
+}
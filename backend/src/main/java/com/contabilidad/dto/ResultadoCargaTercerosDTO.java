@@ -0,0 +1,127 @@
+package com.contabilidad.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ResultadoCargaTercerosDTO {
+    private int solicitados;
+    private int creados;
+    private int actualizados;
+    private int sinCambios;
+    private List<Fallo> fallos = new ArrayList<>();
+    
+    // Constructors
+    public ResultadoCargaTercerosDTO() {}
+    
+    public ResultadoCargaTercerosDTO(int solicitados) {
+        this.solicitados = solicitados;
+    }
+    
+    // Helper methods
+    public void agregarFallo(int indice, String numeroDocumento, String mensaje) {
+        fallos.add(new Fallo(indice, numeroDocumento, mensaje));
+    }
+    
+    public void acumular(ResultadoCargaTercerosDTO parcial) {
+        this.creados += parcial.creados;
+        this.actualizados += parcial.actualizados;
+        this.sinCambios += parcial.sinCambios;
+        this.fallos.addAll(parcial.fallos);
+    }
+    
+    public void sumarCreado() {
+        creados++;
+    }
+    
+    public void sumarActualizado() {
+        actualizados++;
+    }
+    
+    public void sumarSinCambios() {
+        sinCambios++;
+    }
+    
+    // Getters and Setters
+    public int getSolicitados() {
+        return solicitados;
+    }
+    
+    public void setSolicitados(int solicitados) {
+        this.solicitados = solicitados;
+    }
+    
+    public int getCreados() {
+        return creados;
+    }
+    
+    public void setCreados(int creados) {
+        this.creados = creados;
+    }
+    
+    public int getActualizados() {
+        return actualizados;
+    }
+    
+    public void setActualizados(int actualizados) {
+        this.actualizados = actualizados;
+    }
+    
+    public int getSinCambios() {
+        return sinCambios;
+    }
+    
+    public void setSinCambios(int sinCambios) {
+        this.sinCambios = sinCambios;
+    }
+    
+    public int getFallidos() {
+        return fallos.size();
+    }
+    
+    public List<Fallo> getFallos() {
+        return fallos;
+    }
+    
+    public void setFallos(List<Fallo> fallos) {
+        this.fallos = fallos;
+    }
+    
+    // Inner class for per-record failures (indice = posición del registro en la solicitud)
+    public static class Fallo {
+        private int indice;
+        private String numeroDocumento;
+        private String mensaje;
+        
+        public Fallo() {}
+        
+        public Fallo(int indice, String numeroDocumento, String mensaje) {
+            this.indice = indice;
+            this.numeroDocumento = numeroDocumento;
+            this.mensaje = mensaje;
+        }
+        
+        public int getIndice() {
+            return indice;
+        }
+        
+        public void setIndice(int indice) {
+            this.indice = indice;
+        }
+        
+        public String getNumeroDocumento() {
+            return numeroDocumento;
+        }
+        
+        public void setNumeroDocumento(String numeroDocumento) {
+            this.numeroDocumento = numeroDocumento;
+        }
+        
+        public String getMensaje() {
+            return mensaje;
+        }
+        
+        public void setMensaje(String mensaje) {
+            this.mensaje = mensaje;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.contabilidad.dto;
+
+import java.util.List;
+
+public class ResultadoFusionTercerosDTO {
+    private Long terceroId;
+    private List<Long> duplicados;
+    private long transaccionesReasignadas;
+    private int tercerosDesactivados;
+    
+    // Constructors
+    public ResultadoFusionTercerosDTO() {}
+    
+    public ResultadoFusionTercerosDTO(Long terceroId, List<Long> duplicados) {
+        this.terceroId = terceroId;
+        this.duplicados = duplicados;
+    }
+    
+    // Getters and Setters
+    public Long getTerceroId() {
+        return terceroId;
+    }
+    
+    public void setTerceroId(Long terceroId) {
+        this.terceroId = terceroId;
+    }
+    
+    public List<Long> getDuplicados() {
+        return duplicados;
+    }
+    
+    public void setDuplicados(List<Long> duplicados) {
+        this.duplicados = duplicados;
+    }
+    
+    public long getTransaccionesReasignadas() {
+        return transaccionesReasignadas;
+    }
+    
+    public void setTransaccionesReasignadas(long transaccionesReasignadas) {
+        this.transaccionesReasignadas = transaccionesReasignadas;
+    }
+    
+    public int getTercerosDesactivados() {
+        return tercerosDesactivados;
+    }
+    
+    public void setTercerosDesactivados(int tercerosDesactivados) {
+        this.tercerosDesactivados = tercerosDesactivados;
+    }
+}
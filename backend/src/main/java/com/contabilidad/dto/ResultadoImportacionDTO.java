@@ -0,0 +1,83 @@
+package com.contabilidad.dto;
+
+public class ResultadoImportacionDTO {
+    private String id;
+    private long filasLeidas;
+    private long asientosLeidos;
+    private long asientosRegistrados;
+    private long asientosRechazados;
+    private String urlErrores;
+    
+    // Constructors
+    public ResultadoImportacionDTO() {}
+    
+    public ResultadoImportacionDTO(String id) {
+        this.id = id;
+    }
+    
+    // Helper methods
+    public void sumarFila() {
+        filasLeidas++;
+    }
+    
+    public void sumarAsiento() {
+        asientosLeidos++;
+    }
+    
+    public void sumarRegistrados(long cantidad) {
+        asientosRegistrados += cantidad;
+    }
+    
+    public void sumarRechazado() {
+        asientosRechazados++;
+    }
+    
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+    
+    public void setId(String id) {
+        this.id = id;
+    }
+    
+    public long getFilasLeidas() {
+        return filasLeidas;
+    }
+    
+    public void setFilasLeidas(long filasLeidas) {
+        this.filasLeidas = filasLeidas;
+    }
+    
+    public long getAsientosLeidos() {
+        return asientosLeidos;
+    }
+    
+    public void setAsientosLeidos(long asientosLeidos) {
+        this.asientosLeidos = asientosLeidos;
+    }
+    
+    public long getAsientosRegistrados() {
+        return asientosRegistrados;
+    }
+    
+    public void setAsientosRegistrados(long asientosRegistrados) {
+        this.asientosRegistrados = asientosRegistrados;
+    }
+    
+    public long getAsientosRechazados() {
+        return asientosRechazados;
+    }
+    
+    public void setAsientosRechazados(long asientosRechazados) {
+        this.asientosRechazados = asientosRechazados;
+    }
+    
+    public String getUrlErrores() {
+        return urlErrores;
+    }
+    
+    public void setUrlErrores(String urlErrores) {
+        this.urlErrores = urlErrores;
+    }
+}
@@ -0,0 +1,95 @@
+package com.contabilidad.dto;
+
+import java.util.ArrayList;
+import java.util.List;
+
+public class ResultadoLoteDTO {
+    private int solicitadas;
+    private int actualizadas;
+    private int sinCambios;
+    private List<Fallo> fallos = new ArrayList<>();
+    
+    // Constructors
+    public ResultadoLoteDTO() {}
+    
+    public ResultadoLoteDTO(int solicitadas) {
+        this.solicitadas = solicitadas;
+    }
+    
+    // Helper methods
+    public void agregarFallo(Long id, String mensaje) {
+        fallos.add(new Fallo(id, mensaje));
+    }
+    
+    public void acumular(ResultadoLoteDTO parcial) {
+        this.actualizadas += parcial.actualizadas;
+        this.sinCambios += parcial.sinCambios;
+        this.fallos.addAll(parcial.fallos);
+    }
+    
+    // Getters and Setters
+    public int getSolicitadas() {
+        return solicitadas;
+    }
+    
+    public void setSolicitadas(int solicitadas) {
+        this.solicitadas = solicitadas;
+    }
+    
+    public int getActualizadas() {
+        return actualizadas;
+    }
+    
+    public void setActualizadas(int actualizadas) {
+        this.actualizadas = actualizadas;
+    }
+    
+    public int getSinCambios() {
+        return sinCambios;
+    }
+    
+    public void setSinCambios(int sinCambios) {
+        this.sinCambios = sinCambios;
+    }
+    
+    public int getFallidas() {
+        return fallos.size();
+    }
+    
+    public List<Fallo> getFallos() {
+        return fallos;
+    }
+    
+    public void setFallos(List<Fallo> fallos) {
+        this.fallos = fallos;
+    }
+    
+    // Inner class for per-id failures
+    public static class Fallo {
+        private Long id;
+        private String mensaje;
+        
+        public Fallo() {}
+        
+        public Fallo(Long id, String mensaje) {
+            this.id = id;
+            this.mensaje = mensaje;
+        }
+        
+        public Long getId() {
+            return id;
+        }
+        
+        public void setId(Long id) {
+            this.id = id;
+        }
+        
+        public String getMensaje() {
+            return mensaje;
+        }
+        
+        public void setMensaje(String mensaje) {
+            this.mensaje = mensaje;
+        }
+    }
+}
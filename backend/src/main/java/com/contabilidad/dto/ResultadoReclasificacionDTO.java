@@ -0,0 +1,54 @@
+package com.contabilidad.dto;
+
+import java.math.BigDecimal;
+
+public class ResultadoReclasificacionDTO {
+    private Long cuentaOrigenId;
+    private Long cuentaDestinoId;
+    private long partidasReclasificadas;
+    private BigDecimal saldoTrasladado = BigDecimal.ZERO;
+    
+    // Constructors
+    public ResultadoReclasificacionDTO() {}
+    
+    public ResultadoReclasificacionDTO(Long cuentaOrigenId, Long cuentaDestinoId) {
+        this.cuentaOrigenId = cuentaOrigenId;
+        this.cuentaDestinoId = cuentaDestinoId;
+    }
+    
+    // Getters and Setters
+    public Long getCuentaOrigenId() {
+        return cuentaOrigenId;
+    }
+    
+    public void setCuentaOrigenId(Long cuentaOrigenId) {
+        this.cuentaOrigenId = cuentaOrigenId;
+    }
+    
+    public Long getCuentaDestinoId() {
+        return cuentaDestinoId;
+    }
+    
+    public void setCuentaDestinoId(Long cuentaDestinoId) {
+        this.cuentaDestinoId = cuentaDestinoId;
+    }
+    
+    public long getPartidasReclasificadas() {
+        return partidasReclasificadas;
+    }
+    
+    public void setPartidasReclasificadas(long partidasReclasificadas) {
+        this.partidasReclasificadas = partidasReclasificadas;
+    }
+    
+    /**
+     * Saldo (débitos - créditos de transacciones activas) que pasó de la cuenta origen a la destino
+     */
+    public BigDecimal getSaldoTrasladado() {
+        return saldoTrasladado;
+    }
+    
+    public void setSaldoTrasladado(BigDecimal saldoTrasladado) {
+        this.saldoTrasladado = saldoTrasladado;
+    }
+}
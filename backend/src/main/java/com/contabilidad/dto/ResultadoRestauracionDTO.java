@@ -0,0 +1,69 @@
+package com.contabilidad.dto;
+
+/**
+ * Resultado de una restauración completada. Una restauración fallida no devuelve resultado y deja los datos
+ * como estaban: las tablas se reemplazan en un solo paso al final
+ */
+public class ResultadoRestauracionDTO {
+    private int version;
+    private long cuentas;
+    private long terceros;
+    private long transacciones;
+    private long partidas;
+    private long milisegundos;
+    
+    // Constructors
+    public ResultadoRestauracionDTO() {}
+    
+    // Getters and Setters
+    /**
+     * Versión del formato del snapshot restaurado
+     */
+    public int getVersion() {
+        return version;
+    }
+    
+    public void setVersion(int version) {
+        this.version = version;
+    }
+    
+    public long getCuentas() {
+        return cuentas;
+    }
+    
+    public void setCuentas(long cuentas) {
+        this.cuentas = cuentas;
+    }
+    
+    public long getTerceros() {
+        return terceros;
+    }
+    
+    public void setTerceros(long terceros) {
+        this.terceros = terceros;
+    }
+    
+    public long getTransacciones() {
+        return transacciones;
+    }
+    
+    public void setTransacciones(long transacciones) {
+        this.transacciones = transacciones;
+    }
+    
+    public long getPartidas() {
+        return partidas;
+    }
+    
+    public void setPartidas(long partidas) {
+        this.partidas = partidas;
+    }
+    
+    public long getMilisegundos() {
+        return milisegundos;
+    }
+    
+    public void setMilisegundos(long milisegundos) {
+        this.milisegundos = milisegundos;
+    }
+}
@@ -0,0 +1,69 @@
+package com.contabilidad.dto;
+
+public class SolicitudAsincronaDTO {
+    
+    public enum Estado {
+        EN_COLA, REGISTRADA, RECHAZADA
+    }
+    
+    private String id;
+    private Estado estado;
+    private Long transaccionId;
+    private String mensaje;
+    
+    // Constructors
+    public SolicitudAsincronaDTO() {}
+    
+    public SolicitudAsincronaDTO(String id, Estado estado, Long transaccionId, String mensaje) {
+        this.id = id;
+        this.estado = estado;
+        this.transaccionId = transaccionId;
+        this.mensaje = mensaje;
+    }
+    
+    // Static factory methods
+    public static SolicitudAsincronaDTO enCola(String id) {
+        return new SolicitudAsincronaDTO(id, Estado.EN_COLA, null, null);
+    }
+    
+    public static SolicitudAsincronaDTO registrada(String id, Long transaccionId) {
+        return new SolicitudAsincronaDTO(id, Estado.REGISTRADA, transaccionId, null);
+    }
+    
+    public static SolicitudAsincronaDTO rechazada(String id, String mensaje) {
+        return new SolicitudAsincronaDTO(id, Estado.RECHAZADA, null, mensaje);
+    }
+    
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+    
+    public void setId(String id) {
+        this.id = id;
+    }
+    
+    public Estado getEstado() {
+        return estado;
+    }
+    
+    public void setEstado(Estado estado) {
+        this.estado = estado;
+    }
+    
+    public Long getTransaccionId() {
+        return transaccionId;
+    }
+    
+    public void setTransaccionId(Long transaccionId) {
+        this.transaccionId = transaccionId;
+    }
+    
+    public String getMensaje() {
+        return mensaje;
+    }
+    
+    public void setMensaje(String mensaje) {
+        this.mensaje = mensaje;
+    }
+}
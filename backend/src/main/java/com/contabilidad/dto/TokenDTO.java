@@ -0,0 +1,43 @@
+package com.contabilidad.dto;
+
+import java.time.Instant;
+
+public class TokenDTO {
+    
+    private String token;
+    private String tipo = "Bearer";
+    private Instant expiraEn;
+    
+    // Constructors
+    public TokenDTO() {}
+    
+    public TokenDTO(String token, Instant expiraEn) {
+        this.token = token;
+        this.expiraEn = expiraEn;
+    }
+    
+    // Getters and Setters
+    public String getToken() {
+        return token;
+    }
+    
+    public void setToken(String token) {
+        this.token = token;
+    }
+    
+    public String getTipo() {
+        return tipo;
+    }
+    
+    public void setTipo(String tipo) {
+        this.tipo = tipo;
+    }
+    
+    public Instant getExpiraEn() {
+        return expiraEn;
+    }
+    
+    public void setExpiraEn(Instant expiraEn) {
+        this.expiraEn = expiraEn;
+    }
+}
@@ -0,0 +1,144 @@
+package com.contabilidad.dto;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+public class TrabajoReporteDTO {
+    
+    public enum Tipo {
+        BALANCE_PRUEBA, ANTIGUEDAD_SALDOS, LIBRO_MAYOR
+    }
+    
+    /**
+     * Orden en la cola: los trabajos de mayor prioridad se ejecutan primero
+     */
+    public enum Prioridad {
+        ALTA, NORMAL, BAJA
+    }
+    
+    public enum Estado {
+        EN_COLA, EN_EJECUCION, TERMINADO, FALLIDO, CANCELADO, VENCIDO
+    }
+    
+    private String id;
+    private Tipo tipo;
+    private Prioridad prioridad;
+    private Estado estado;
+    private LocalDate fechaInicio;
+    private LocalDate fechaFin;
+    private Long cuentaId;
+    private LocalDateTime fechaSolicitud;
+    private LocalDateTime fechaInicioEjecucion;
+    private LocalDateTime fechaFinEjecucion;
+    private LocalDateTime fechaExpiracion;
+    private long filas;
+    private String mensaje;
+    
+    // Constructors
+    public TrabajoReporteDTO() {}
+    
+    // Getters and Setters
+    public String getId() {
+        return id;
+    }
+    
+    public void setId(String id) {
+        this.id = id;
+    }
+    
+    public Tipo getTipo() {
+        return tipo;
+    }
+    
+    public void setTipo(Tipo tipo) {
+        this.tipo = tipo;
+    }
+    
+    public Prioridad getPrioridad() {
+        return prioridad;
+    }
+    
+    public void setPrioridad(Prioridad prioridad) {
+        this.prioridad = prioridad;
+    }
+    
+    public Estado getEstado() {
+        return estado;
+    }
+    
+    public void setEstado(Estado estado) {
+        this.estado = estado;
+    }
+    
+    public LocalDate getFechaInicio() {
+        return fechaInicio;
+    }
+    
+    public void setFechaInicio(LocalDate fechaInicio) {
+        this.fechaInicio = fechaInicio;
+    }
+    
+    public LocalDate getFechaFin() {
+        return fechaFin;
+    }
+    
+    public void setFechaFin(LocalDate fechaFin) {
+        this.fechaFin = fechaFin;
+    }
+    
+    public Long getCuentaId() {
+        return cuentaId;
+    }
+    
+    public void setCuentaId(Long cuentaId) {
+        this.cuentaId = cuentaId;
+    }
+    
+    public LocalDateTime getFechaSolicitud() {
+        return fechaSolicitud;
+    }
+    
+    public void setFechaSolicitud(LocalDateTime fechaSolicitud) {
+        this.fechaSolicitud = fechaSolicitud;
+    }
+    
+    public LocalDateTime getFechaInicioEjecucion() {
+        return fechaInicioEjecucion;
+    }
+    
+    public void setFechaInicioEjecucion(LocalDateTime fechaInicioEjecucion) {
+        this.fechaInicioEjecucion = fechaInicioEjecucion;
+    }
+    
+    public LocalDateTime getFechaFinEjecucion() {
+        return fechaFinEjecucion;
+    }
+    
+    public void setFechaFinEjecucion(LocalDateTime fechaFinEjecucion) {
+        this.fechaFinEjecucion = fechaFinEjecucion;
+    }
+    
+    public LocalDateTime getFechaExpiracion() {
+        return fechaExpiracion;
+    }
+    
+    public void setFechaExpiracion(LocalDateTime fechaExpiracion) {
+        this.fechaExpiracion = fechaExpiracion;
+    }
+    
+    public long getFilas() {
+        return filas;
+    }
+    
+    public void setFilas(long filas) {
+        this.filas = filas;
+    }
+    
+    public String getMensaje() {
+        return mensaje;
+    }
+    
+    public void setMensaje(String mensaje) {
+        this.mensaje = mensaje;
+    }
+}
@@ -18,6 +18,8 @@ public class TransaccionDTO {
     private LocalDate fecha;
     private String descripcion;
     private String estado;
+    private String tipoComprobante;
+    private Long numeroComprobante;
     private List<PartidaContableDTO> partidas;
     private BigDecimal totalDebitos;
     private BigDecimal totalCreditos;
@@ -43,6 +45,8 @@ public class TransaccionDTO {
         this.fecha = transaccion.getFecha();
         this.descripcion = transaccion.getDescripcion();
         this.estado = transaccion.getEstado() != null ? transaccion.getEstado().name() : "ACTIVA";
+        this.tipoComprobante = transaccion.getTipoComprobante() != null ? transaccion.getTipoComprobante().name() : null;
+        this.numeroComprobante = transaccion.getNumeroComprobante();
         
         if (transaccion.getPartidas() != null) {
             this.partidas = transaccion.getPartidas().stream()
@@ -132,6 +136,22 @@ public class TransaccionDTO {
         this.estado = estado;
     }
     
+    public String getTipoComprobante() {
+        return tipoComprobante;
+    }
+    
+    public void setTipoComprobante(String tipoComprobante) {
+        this.tipoComprobante = tipoComprobante;
+    }
+    
+    public Long getNumeroComprobante() {
+        return numeroComprobante;
+    }
+    
+    public void setNumeroComprobante(Long numeroComprobante) {
+        this.numeroComprobante = numeroComprobante;
+    }
+    
     public List<PartidaContableDTO> getPartidas() {
         return partidas;
     }
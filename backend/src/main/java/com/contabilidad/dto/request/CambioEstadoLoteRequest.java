@@ -0,0 +1,69 @@
+package com.contabilidad.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+
+import java.time.LocalDate;
+import java.util.List;
+
+public class CambioEstadoLoteRequest {
+    
+    private List<Long> ids; // Opcional: si no se indica se usan los filtros
+    
+    private String estadoActual; // Filtro opcional
+    
+    private LocalDate fechaInicio; // Filtro opcional
+    
+    private LocalDate fechaFin; // Filtro opcional
+    
+    @NotBlank(message = "El nuevo estado es obligatorio")
+    private String nuevoEstado;
+    
+    // Constructors
+    public CambioEstadoLoteRequest() {}
+    
+    public CambioEstadoLoteRequest(List<Long> ids, String nuevoEstado) {
+        this.ids = ids;
+        this.nuevoEstado = nuevoEstado;
+    }
+    
+    // Getters and Setters
+    public List<Long> getIds() {
+        return ids;
+    }
+    
+    public void setIds(List<Long> ids) {
+        this.ids = ids;
+    }
+    
+    public String getEstadoActual() {
+        return estadoActual;
+    }
+    
+    public void setEstadoActual(String estadoActual) {
+        this.estadoActual = estadoActual;
+    }
+    
+    public LocalDate getFechaInicio() {
+        return fechaInicio;
+    }
+    
+    public void setFechaInicio(LocalDate fechaInicio) {
+        this.fechaInicio = fechaInicio;
+    }
+    
+    public LocalDate getFechaFin() {
+        return fechaFin;
+    }
+    
+    public void setFechaFin(LocalDate fechaFin) {
+        this.fechaFin = fechaFin;
+    }
+    
+    public String getNuevoEstado() {
+        return nuevoEstado;
+    }
+    
+    public void setNuevoEstado(String nuevoEstado) {
+        this.nuevoEstado = nuevoEstado;
+    }
+}
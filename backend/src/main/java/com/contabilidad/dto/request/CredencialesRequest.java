@@ -0,0 +1,37 @@
+package com.contabilidad.dto.request;
+
+import jakarta.validation.constraints.NotBlank;
+
+public class CredencialesRequest {
+    
+    @NotBlank(message = "El usuario es obligatorio")
+    private String usuario;
+    
+    @NotBlank(message = "La contraseña es obligatoria")
+    private String contrasena;
+    
+    // Constructors
+    public CredencialesRequest() {}
+    
+    public CredencialesRequest(String usuario, String contrasena) {
+        this.usuario = usuario;
+        this.contrasena = contrasena;
+    }
+    
+    // Getters and Setters
+    public String getUsuario() {
+        return usuario;
+    }
+    
+    public void setUsuario(String usuario) {
+        this.usuario = usuario;
+    }
+    
+    public String getContrasena() {
+        return contrasena;
+    }
+    
+    public void setContrasena(String contrasena) {
+        this.contrasena = contrasena;
+    }
+}
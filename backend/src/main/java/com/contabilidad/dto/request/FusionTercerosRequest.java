@@ -0,0 +1,27 @@
+package com.contabilidad.dto.request;
+
+import jakarta.validation.constraints.NotEmpty;
+
+import java.util.List;
+
+public class FusionTercerosRequest {
+    
+    @NotEmpty(message = "Debe indicar al menos un tercero duplicado")
+    private List<Long> duplicados;
+    
+    // Constructors
+    public FusionTercerosRequest() {}
+    
+    public FusionTercerosRequest(List<Long> duplicados) {
+        this.duplicados = duplicados;
+    }
+    
+    // Getters and Setters
+    public List<Long> getDuplicados() {
+        return duplicados;
+    }
+    
+    public void setDuplicados(List<Long> duplicados) {
+        this.duplicados = duplicados;
+    }
+}
@@ -0,0 +1,51 @@
+package com.contabilidad.dto.request;
+
+import jakarta.validation.constraints.NotNull;
+
+import java.time.LocalDate;
+
+public class ReclasificacionCuentaRequest {
+    
+    @NotNull(message = "La cuenta destino es obligatoria")
+    private Long cuentaDestinoId;
+    
+    /**
+     * Rango opcional de fechas de las transacciones cuyas partidas se reclasifican
+     */
+    private LocalDate fechaInicio;
+    private LocalDate fechaFin;
+    
+    // Constructors
+    public ReclasificacionCuentaRequest() {}
+    
+    public ReclasificacionCuentaRequest(Long cuentaDestinoId, LocalDate fechaInicio, LocalDate fechaFin) {
+        this.cuentaDestinoId = cuentaDestinoId;
+        this.fechaInicio = fechaInicio;
+        this.fechaFin = fechaFin;
+    }
+    
+    // Getters and Setters
+    public Long getCuentaDestinoId() {
+        return cuentaDestinoId;
+    }
+    
+    public void setCuentaDestinoId(Long cuentaDestinoId) {
+        this.cuentaDestinoId = cuentaDestinoId;
+    }
+    
+    public LocalDate getFechaInicio() {
+        return fechaInicio;
+    }
+    
+    public void setFechaInicio(LocalDate fechaInicio) {
+        this.fechaInicio = fechaInicio;
+    }
+    
+    public LocalDate getFechaFin() {
+        return fechaFin;
+    }
+    
+    public void setFechaFin(LocalDate fechaFin) {
+        this.fechaFin = fechaFin;
+    }
+}
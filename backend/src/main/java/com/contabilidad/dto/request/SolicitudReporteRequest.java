@@ -0,0 +1,72 @@
+package com.contabilidad.dto.request;
+
+import com.contabilidad.dto.TrabajoReporteDTO.Prioridad;
+import com.contabilidad.dto.TrabajoReporteDTO.Tipo;
+import jakarta.validation.constraints.NotNull;
+
+import java.time.LocalDate;
+
+public class SolicitudReporteRequest {
+    
+    @NotNull(message = "El tipo de reporte es obligatorio")
+    private Tipo tipo;
+    
+    private LocalDate fechaInicio; // Obligatoria excepto en ANTIGUEDAD_SALDOS
+    
+    @NotNull(message = "La fecha final es obligatoria")
+    private LocalDate fechaFin; // En ANTIGUEDAD_SALDOS es la fecha de corte
+    
+    private Long cuentaId; // Obligatoria en ANTIGUEDAD_SALDOS; en los demás limita el reporte a una cuenta
+    
+    private Prioridad prioridad; // Opcional: NORMAL por defecto
+    
+    // Constructors
+    public SolicitudReporteRequest() {}
+    
+    public SolicitudReporteRequest(Tipo tipo, LocalDate fechaInicio, LocalDate fechaFin) {
+        this.tipo = tipo;
+        this.fechaInicio = fechaInicio;
+        this.fechaFin = fechaFin;
+    }
+    
+    // Getters and Setters
+    public Tipo getTipo() {
+        return tipo;
+    }
+    
+    public void setTipo(Tipo tipo) {
+        this.tipo = tipo;
+    }
+    
+    public LocalDate getFechaInicio() {
+        return fechaInicio;
+    }
+    
+    public void setFechaInicio(LocalDate fechaInicio) {
+        this.fechaInicio = fechaInicio;
+    }
+    
+    public LocalDate getFechaFin() {
+        return fechaFin;
+    }
+    
+    public void setFechaFin(LocalDate fechaFin) {
+        this.fechaFin = fechaFin;
+    }
+    
+    public Long getCuentaId() {
+        return cuentaId;
+    }
+    
+    public void setCuentaId(Long cuentaId) {
+        this.cuentaId = cuentaId;
+    }
+    
+    public Prioridad getPrioridad() {
+        return prioridad;
+    }
+    
+    public void setPrioridad(Prioridad prioridad) {
+        this.prioridad = prioridad;
+    }
+}
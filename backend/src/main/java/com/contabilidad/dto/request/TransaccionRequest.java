@@ -1,5 +1,6 @@
 package com.contabilidad.dto.request;
 
+import com.contabilidad.model.TipoComprobante;
 import com.contabilidad.model.TipoPartida;
 import jakarta.validation.Valid;
 import jakarta.validation.constraints.NotBlank;
@@ -24,6 +25,8 @@ public class TransaccionRequest {
     
     private String estado = "ACTIVA"; // Por defecto ACTIVA
     
+    private TipoComprobante tipoComprobante = TipoComprobante.NOTA_CONTABLE; // Por defecto nota contable
+    
     @Valid
     @NotNull(message = "Las partidas son obligatorias")
     @Size(min = 2, message = "Debe tener al menos 2 partidas (un débito y un crédito)")
@@ -72,6 +75,14 @@ public class TransaccionRequest {
         this.estado = estado;
     }
     
+    public TipoComprobante getTipoComprobante() {
+        return tipoComprobante;
+    }
+    
+    public void setTipoComprobante(TipoComprobante tipoComprobante) {
+        this.tipoComprobante = tipoComprobante;
+    }
+    
     public List<PartidaRequest> getPartidas() {
         return partidas;
     }
@@ -0,0 +1,102 @@
+package com.contabilidad.model;
+
+import jakarta.persistence.*;
+import org.springframework.data.domain.Persistable;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "claves_idempotencia")
+public class ClaveIdempotencia implements Persistable<String> {
+    
+    @Id
+    @Column(length = 100)
+    private String clave;
+    
+    @Column(name = "transaccion_id", nullable = false)
+    private Long transaccionId;
+    
+    /**
+     * SHA-256 (hex) del cuerpo de la solicitud que registró la clave
+     */
+    @Column(name = "huella_solicitud", nullable = false, length = 64)
+    private String huellaSolicitud;
+    
+    @Column(name = "fecha_creacion", nullable = false)
+    private LocalDateTime fechaCreacion;
+    
+    /**
+     * La clave es asignada por el cliente, así que se marca como nueva
+     * hasta que se persiste o se carga para que save() haga INSERT directamente
+     */
+    @Transient
+    private boolean nueva = true;
+    
+    // Constructors
+    public ClaveIdempotencia() {}
+    
+    public ClaveIdempotencia(String clave, Long transaccionId, String huellaSolicitud) {
+        this.clave = clave;
+        this.transaccionId = transaccionId;
+        this.huellaSolicitud = huellaSolicitud;
+        this.fechaCreacion = LocalDateTime.now();
+    }
+    
+    @PostLoad
+    @PostPersist
+    void marcarPersistida() {
+        this.nueva = false;
+    }
+    
+    @Override
+    public String getId() {
+        return clave;
+    }
+    
+    @Override
+    public boolean isNew() {
+        return nueva;
+    }
+    
+    // Getters and Setters
+    public String getClave() {
+        return clave;
+    }
+    
+    public void setClave(String clave) {
+        this.clave = clave;
+    }
+    
+    public Long getTransaccionId() {
+        return transaccionId;
+    }
+    
+    public void setTransaccionId(Long transaccionId) {
+        this.transaccionId = transaccionId;
+    }
+    
+    public String getHuellaSolicitud() {
+        return huellaSolicitud;
+    }
+    
+    public void setHuellaSolicitud(String huellaSolicitud) {
+        this.huellaSolicitud = huellaSolicitud;
+    }
+    
+    public LocalDateTime getFechaCreacion() {
+        return fechaCreacion;
+    }
+    
+    public void setFechaCreacion(LocalDateTime fechaCreacion) {
+        this.fechaCreacion = fechaCreacion;
+    }
+    
+    @Override
+    public String toString() {
+        return "ClaveIdempotencia{" +
+                "clave='" + clave + '\'' +
+                ", transaccionId=" + transaccionId +
+                ", fechaCreacion=" + fechaCreacion +
+                '}';
+    }
+}
@@ -0,0 +1,36 @@
+package com.contabilidad.model;
+
+import jakarta.persistence.*;
+
+@Entity
+@Table(name = "consecutivos_comprobante")
+public class ConsecutivoComprobante {
+    
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(name = "tipo_comprobante")
+    private TipoComprobante tipoComprobante;
+    
+    @Column(name = "siguiente_numero", nullable = false)
+    private Long siguienteNumero;
+    
+    // Constructors
+    public ConsecutivoComprobante() {}
+    
+    // Getters and Setters
+    public TipoComprobante getTipoComprobante() {
+        return tipoComprobante;
+    }
+    
+    public void setTipoComprobante(TipoComprobante tipoComprobante) {
+        this.tipoComprobante = tipoComprobante;
+    }
+    
+    public Long getSiguienteNumero() {
+        return siguienteNumero;
+    }
+    
+    public void setSiguienteNumero(Long siguienteNumero) {
+        this.siguienteNumero = siguienteNumero;
+    }
+}
@@ -5,6 +5,7 @@ import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
 
+import java.math.BigDecimal;
 import java.util.List;
 
 @Entity
@@ -12,7 +13,10 @@ import java.util.List;
 public class CuentaContable {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "cuentas_contables_gen")
+    @TableGenerator(name = "cuentas_contables_gen", table = GeneradorIds.TABLA,
+            pkColumnName = GeneradorIds.COLUMNA_ENTIDAD, valueColumnName = GeneradorIds.COLUMNA_VALOR,
+            pkColumnValue = "cuentas_contables", allocationSize = GeneradorIds.TAMANO_BLOQUE)
     private Long id;
     
     @NotBlank(message = "El código es obligatorio")
@@ -40,7 +44,15 @@ public class CuentaContable {
     @Column(nullable = false)
     private boolean activo = true;
     
-    @OneToMany(mappedBy = "cuentaContable", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    /**
+     * Saldo acumulado (débitos - créditos) de las transacciones ACTIVAS.
+     * Se mantiene de forma incremental mediante actualizaciones atómicas en la base de datos,
+     * por eso no se incluye en los INSERT/UPDATE generados para la entidad.
+     */
+    @Column(nullable = false, precision = 15, scale = 2, insertable = false, updatable = false)
+    private BigDecimal saldo = BigDecimal.ZERO;
+    
+    @OneToMany(mappedBy = "cuentaContable", fetch = FetchType.LAZY)
     private List<PartidaContable> partidas;
     
     // Constructors
@@ -103,6 +115,14 @@ public class CuentaContable {
         this.activo = activo;
     }
     
+    public BigDecimal getSaldo() {
+        return saldo;
+    }
+    
+    public void setSaldo(BigDecimal saldo) {
+        this.saldo = saldo;
+    }
+    
     public List<PartidaContable> getPartidas() {
         return partidas;
     }
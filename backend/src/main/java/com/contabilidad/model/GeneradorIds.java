@@ -0,0 +1,18 @@
+package com.contabilidad.model;
+
+/**
+ * Parámetros de la tabla generador_ids, desde la cual cada instancia del backend reserva
+ * bloques de IDs. Así los INSERT no dependen de AUTO_INCREMENT y Hibernate puede agruparlos
+ * en lotes JDBC, manteniendo IDs únicos entre varias instancias.
+ */
+public final class GeneradorIds {
+    
+    public static final String TABLA = "generador_ids";
+    public static final String COLUMNA_ENTIDAD = "entidad";
+    public static final String COLUMNA_VALOR = "siguiente_valor";
+    
+    /** IDs reservados por cada acceso a la tabla */
+    public static final int TAMANO_BLOQUE = 100;
+    
+    private GeneradorIds() {}
+}
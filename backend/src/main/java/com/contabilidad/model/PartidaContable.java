@@ -11,7 +11,10 @@ import java.math.BigDecimal;
 public class PartidaContable {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "partidas_contables_gen")
+    @TableGenerator(name = "partidas_contables_gen", table = GeneradorIds.TABLA,
+            pkColumnName = GeneradorIds.COLUMNA_ENTIDAD, valueColumnName = GeneradorIds.COLUMNA_VALOR,
+            pkColumnValue = "partidas_contables", allocationSize = GeneradorIds.TAMANO_BLOQUE)
     private Long id;
     
     @NotNull(message = "La transacción es obligatoria")
@@ -1,5 +1,7 @@
 package com.contabilidad.model;
 
+import com.contabilidad.util.BlindIndex;
+import com.contabilidad.util.EncryptedStringConverter;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.Email;
 import jakarta.validation.constraints.NotBlank;
@@ -9,14 +11,17 @@ import java.util.List;
 
 @Entity
 @Table(name = "terceros", indexes = {
-    @Index(name = "idx_numero_documento", columnList = "numero_documento", unique = true),
-    @Index(name = "idx_email", columnList = "email"),
+    @Index(name = "idx_numero_documento_hash", columnList = "numero_documento_hash", unique = true),
     @Index(name = "idx_activo", columnList = "activo")
 })
+@EntityListeners(TerceroListener.class)
 public class Tercero {
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "terceros_gen")
+    @TableGenerator(name = "terceros_gen", table = GeneradorIds.TABLA,
+            pkColumnName = GeneradorIds.COLUMNA_ENTIDAD, valueColumnName = GeneradorIds.COLUMNA_VALOR,
+            pkColumnValue = "terceros", allocationSize = GeneradorIds.TAMANO_BLOQUE)
     private Long id;
     
     @NotBlank(message = "El nombre es obligatorio")
@@ -29,25 +34,36 @@ public class Tercero {
     private String tipoDocumento;
     
     @NotBlank(message = "El número de documento es obligatorio")
-    @Column(name = "numero_documento", nullable = false, length = 20, unique = true)
+    @Convert(converter = EncryptedStringConverter.class)
+    @Column(name = "numero_documento", nullable = false, length = 100)
     private String numeroDocumento;
     
+    /**
+     * HMAC del número de documento (ver TerceroListener): permite buscar por documento y garantizar
+     * que sea único sin guardarlo en claro
+     */
+    @Column(name = "numero_documento_hash", length = BlindIndex.LENGTH, unique = true)
+    private String numeroDocumentoHash;
+    
     @Email(message = "El formato del email no es válido")
-    @Column(name = "email", length = 100)
+    @Convert(converter = EncryptedStringConverter.class)
+    @Column(name = "email", length = 255)
     private String email;
     
     @Pattern(regexp = "^[0-9+\\-\\s()]*$", message = "El formato del teléfono no es válido")
-    @Column(name = "telefono", length = 20)
+    @Convert(converter = EncryptedStringConverter.class)
+    @Column(name = "telefono", length = 100)
     private String telefono;
     
-    @Column(name = "direccion", length = 300)
+    @Convert(converter = EncryptedStringConverter.class)
+    @Column(name = "direccion", columnDefinition = "TEXT")
     private String direccion;
     
     @NotNull(message = "El estado activo es obligatorio")
     @Column(name = "activo", nullable = false)
     private Boolean activo = true;
     
-    @OneToMany(mappedBy = "tercero", cascade = CascadeType.ALL, fetch = FetchType.LAZY)
+    @OneToMany(mappedBy = "tercero", fetch = FetchType.LAZY)
     private List<Transaccion> transacciones;
     
     // Constructores
@@ -93,6 +109,14 @@ public class Tercero {
         this.numeroDocumento = numeroDocumento;
     }
     
+    public String getNumeroDocumentoHash() {
+        return numeroDocumentoHash;
+    }
+    
+    public void setNumeroDocumentoHash(String numeroDocumentoHash) {
+        this.numeroDocumentoHash = numeroDocumentoHash;
+    }
+    
     public String getEmail() {
         return email;
     }
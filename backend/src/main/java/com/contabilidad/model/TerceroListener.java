@@ -0,0 +1,24 @@
+package com.contabilidad.model;
+
+import com.contabilidad.util.BlindIndex;
+import jakarta.persistence.PrePersist;
+import jakarta.persistence.PreUpdate;
+
+/**
+ * Mantiene el índice ciego del número de documento cada vez que se guarda un tercero.
+ * Hibernate obtiene la instancia desde el contexto de Spring.
+ */
+public class TerceroListener {
+    
+    private final BlindIndex blindIndex;
+    
+    public TerceroListener(BlindIndex blindIndex) {
+        this.blindIndex = blindIndex;
+    }
+    
+    @PrePersist
+    @PreUpdate
+    public void calcularIndiceDocumento(Tercero tercero) {
+        tercero.setNumeroDocumentoHash(blindIndex.compute(tercero.getNumeroDocumento()));
+    }
+}
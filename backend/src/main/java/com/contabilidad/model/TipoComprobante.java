@@ -0,0 +1,22 @@
+package com.contabilidad.model;
+
+public enum TipoComprobante {
+    INGRESO("Comprobante de ingreso"),
+    EGRESO("Comprobante de egreso"),
+    NOTA_CONTABLE("Nota contable");
+    
+    private final String descripcion;
+    
+    TipoComprobante(String descripcion) {
+        this.descripcion = descripcion;
+    }
+    
+    public String getDescripcion() {
+        return descripcion;
+    }
+    
+    @Override
+    public String toString() {
+        return descripcion;
+    }
+}
@@ -10,7 +10,9 @@ import java.util.ArrayList;
 import java.util.List;
 
 @Entity
-@Table(name = "transacciones")
+@Table(name = "transacciones", uniqueConstraints = {
+    @UniqueConstraint(name = "uk_transacciones_comprobante", columnNames = {"tipo_comprobante", "numero_comprobante"})
+})
 public class Transaccion {
     
     public enum Estado {
@@ -18,7 +20,10 @@ public class Transaccion {
     }
     
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "transacciones_gen")
+    @TableGenerator(name = "transacciones_gen", table = GeneradorIds.TABLA,
+            pkColumnName = GeneradorIds.COLUMNA_ENTIDAD, valueColumnName = GeneradorIds.COLUMNA_VALOR,
+            pkColumnValue = "transacciones", allocationSize = GeneradorIds.TAMANO_BLOQUE)
     private Long id;
     
     @NotNull(message = "El tercero es obligatorio")
@@ -39,6 +44,14 @@ public class Transaccion {
     @Column(nullable = false)
     private Estado estado = Estado.ACTIVA;
     
+    @NotNull(message = "El tipo de comprobante es obligatorio")
+    @Enumerated(EnumType.STRING)
+    @Column(name = "tipo_comprobante", nullable = false)
+    private TipoComprobante tipoComprobante = TipoComprobante.NOTA_CONTABLE;
+    
+    @Column(name = "numero_comprobante", nullable = false)
+    private Long numeroComprobante;
+    
     @OneToMany(mappedBy = "transaccion", cascade = CascadeType.ALL, fetch = FetchType.LAZY, orphanRemoval = true)
     private List<PartidaContable> partidas = new ArrayList<>();
     
@@ -103,6 +116,22 @@ public class Transaccion {
         this.estado = estado;
     }
     
+    public TipoComprobante getTipoComprobante() {
+        return tipoComprobante;
+    }
+    
+    public void setTipoComprobante(TipoComprobante tipoComprobante) {
+        this.tipoComprobante = tipoComprobante;
+    }
+    
+    public Long getNumeroComprobante() {
+        return numeroComprobante;
+    }
+    
+    public void setNumeroComprobante(Long numeroComprobante) {
+        this.numeroComprobante = numeroComprobante;
+    }
+    
     public List<PartidaContable> getPartidas() {
         return partidas;
     }
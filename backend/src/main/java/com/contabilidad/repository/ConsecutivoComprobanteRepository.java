@@ -0,0 +1,25 @@
+package com.contabilidad.repository;
+
+import com.contabilidad.model.ConsecutivoComprobante;
+import com.contabilidad.model.TipoComprobante;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.util.Optional;
+
+@Repository
+public interface ConsecutivoComprobanteRepository extends JpaRepository<ConsecutivoComprobante, TipoComprobante> {
+    
+    /**
+     * Avanzar el consecutivo de un tipo; bloquea la fila hasta el fin de la transacción
+     */
+    @Modifying
+    @Query("UPDATE ConsecutivoComprobante c SET c.siguienteNumero = c.siguienteNumero + :cantidad WHERE c.tipoComprobante = :tipo")
+    int avanzar(@Param("tipo") TipoComprobante tipo, @Param("cantidad") long cantidad);
+    
+    @Query("SELECT c.siguienteNumero FROM ConsecutivoComprobante c WHERE c.tipoComprobante = :tipo")
+    Optional<Long> findSiguienteNumero(@Param("tipo") TipoComprobante tipo);
+}
@@ -3,6 +3,7 @@ package com.contabilidad.repository;
 import com.contabilidad.model.CuentaContable;
 import com.contabilidad.model.TipoCuenta;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
@@ -45,29 +46,11 @@ public interface CuentaContableRepository extends JpaRepository<CuentaContable,
     List<CuentaContable> findByActivoTrueAndNombreContainingIgnoreCase(String nombre);
     
     /**
-     * Calcular saldo de una cuenta específica
-     * Suma de débitos - Suma de créditos
+     * Obtener el saldo almacenado de una cuenta específica
+     * Suma de débitos - Suma de créditos de las transacciones ACTIVAS
      */
-    @Query("SELECT " +
-           "COALESCE(SUM(CASE WHEN pc.tipo = 'DEBE' THEN pc.valor ELSE 0 END), 0) - " +
-           "COALESCE(SUM(CASE WHEN pc.tipo = 'HABER' THEN pc.valor ELSE 0 END), 0) " +
-           "FROM PartidaContable pc " +
-           "WHERE pc.cuentaContable.id = :cuentaId")
-    BigDecimal calcularSaldoPorCuenta(@Param("cuentaId") Long cuentaId);
-    
-    /**
-     * Calcular saldos de todas las cuentas activas
-     */
-    @Query(value = "SELECT cc.*, " +
-            "COALESCE(SUM(CASE WHEN pc.tipo = 'DEBE' THEN pc.valor ELSE 0 END), 0) - " +
-            "COALESCE(SUM(CASE WHEN pc.tipo = 'HABER' THEN pc.valor ELSE 0 END), 0) " +
-            "as saldo " +
-            "FROM cuentas_contables cc " +
-            "LEFT JOIN partidas_contables pc ON cc.id = pc.cuenta_id " +
-            "WHERE cc.activo = 1 " +
-            "GROUP BY cc.id, cc.codigo, cc.nombre, cc.tipo " +
-            "ORDER BY cc.codigo", nativeQuery = true)
-    List<Object[]> findAllWithSaldo();
+    @Query("SELECT cc.saldo FROM CuentaContable cc WHERE cc.id = :cuentaId")
+    Optional<BigDecimal> findSaldoById(@Param("cuentaId") Long cuentaId);
     
     /**
      * Calcular saldo de una cuenta hasta una fecha específica
@@ -77,29 +60,32 @@ public interface CuentaContableRepository extends JpaRepository<CuentaContable,
            "COALESCE(SUM(CASE WHEN pc.tipo = 'HABER' THEN pc.valor ELSE 0 END), 0) " +
            "FROM PartidaContable pc " +
            "WHERE pc.cuentaContable.id = :cuentaId " +
+           "AND pc.transaccion.estado = 'ACTIVA' " +
            "AND pc.transaccion.fecha <= :fecha")
     BigDecimal calcularSaldoPorCuentaHastaFecha(
             @Param("cuentaId") Long cuentaId, 
             @Param("fecha") java.time.LocalDate fecha);
     
-    @Query(value = "SELECT cc.*, " +
-            "COALESCE(SUM(CASE WHEN pc.tipo = 'DEBE' THEN pc.valor ELSE 0 END), 0) - " +
-            "COALESCE(SUM(CASE WHEN pc.tipo = 'HABER' THEN pc.valor ELSE 0 END), 0) " +
-            "as saldo " +
+    @Query(value = "SELECT cc.id, cc.codigo, cc.nombre, cc.tipo, cc.permite_saldo_negativo, cc.activo, cc.saldo " +
             "FROM cuentas_contables cc " +
-            "LEFT JOIN partidas_contables pc ON cc.id = pc.cuenta_id " +
-            "WHERE cc.id = :cuentaId " +
-            "GROUP BY cc.id, cc.codigo, cc.nombre, cc.tipo", nativeQuery = true)
+            "WHERE cc.id = :cuentaId", nativeQuery = true)
     Optional<Object[]> findByIdWithSaldo(@Param("cuentaId") Long cuentaId);
     
-    @Query(value = "SELECT cc.*, " +
-            "COALESCE(SUM(CASE WHEN pc.tipo = 'DEBE' THEN pc.valor ELSE 0 END), 0) - " +
-            "COALESCE(SUM(CASE WHEN pc.tipo = 'HABER' THEN pc.valor ELSE 0 END), 0) " +
-            "as saldo " +
+    @Query(value = "SELECT cc.id, cc.codigo, cc.nombre, cc.tipo, cc.permite_saldo_negativo, cc.activo, cc.saldo " +
             "FROM cuentas_contables cc " +
-            "LEFT JOIN partidas_contables pc ON cc.id = pc.cuenta_id " +
             "WHERE cc.tipo = :tipo AND cc.activo = 1 " +
-            "GROUP BY cc.id, cc.codigo, cc.nombre, cc.tipo " +
             "ORDER BY cc.codigo", nativeQuery = true)
     List<Object[]> findByTipoWithSaldo(@Param("tipo") String tipo);
-} 
\ No newline at end of file
+    
+    /**
+     * Sumar una variación al saldo almacenado de una cuenta.
+     * La actualización es atómica y solo se aplica si la cuenta permite saldo negativo,
+     * si la variación no disminuye el saldo o si el saldo resultante no es negativo.
+     * Retorna 0 cuando la variación fue rechazada o la cuenta no existe.
+     */
+    @Modifying
+    @Query("UPDATE CuentaContable cc SET cc.saldo = cc.saldo + :variacion " +
+           "WHERE cc.id = :cuentaId " +
+           "AND (cc.permiteSaldoNegativo = true OR :variacion >= 0 OR cc.saldo + :variacion >= 0)")
+    int sumarASaldo(@Param("cuentaId") Long cuentaId, @Param("variacion") BigDecimal variacion);
+}
\ No newline at end of file
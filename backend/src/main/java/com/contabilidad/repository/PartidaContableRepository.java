@@ -0,0 +1,77 @@
+package com.contabilidad.repository;
+
+import com.contabilidad.model.PartidaContable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+
+@Repository
+public interface PartidaContableRepository extends JpaRepository<PartidaContable, Long> {
+    
+    /**
+     * Sumar los movimientos (débitos - créditos) por cuenta de un conjunto de transacciones.
+     * Cada fila contiene [cuentaId, variación].
+     */
+    @Query("SELECT pc.cuentaContable.id, " +
+           "SUM(CASE WHEN pc.tipo = 'DEBE' THEN pc.valor ELSE -pc.valor END) " +
+           "FROM PartidaContable pc " +
+           "WHERE pc.transaccion.id IN :transaccionIds " +
+           "GROUP BY pc.cuentaContable.id")
+    List<Object[]> sumarMovimientosPorCuenta(@Param("transaccionIds") Collection<Long> transaccionIds);
+    
+    /**
+     * Verificar si una cuenta tiene partidas registradas (sin cargar la colección)
+     */
+    boolean existsByCuentaContableId(Long cuentaId);
+    
+    /**
+     * Sumar los movimientos (débitos - créditos) de las transacciones ACTIVAS de una cuenta en un rango de fechas
+     */
+    @Query(value = "SELECT COALESCE(SUM(CASE WHEN pc.tipo = 'DEBE' THEN pc.valor ELSE -pc.valor END), 0) " +
+           "FROM partidas_contables pc " +
+           "JOIN transacciones t ON t.id = pc.transaccion_id " +
+           "WHERE pc.cuenta_id = :cuentaId AND t.estado = 'ACTIVA' " +
+           "AND (:fechaInicio IS NULL OR t.fecha >= :fechaInicio) " +
+           "AND (:fechaFin IS NULL OR t.fecha <= :fechaFin)",
+           nativeQuery = true)
+    BigDecimal sumarMovimientosActivosPorCuenta(
+            @Param("cuentaId") Long cuentaId,
+            @Param("fechaInicio") LocalDate fechaInicio,
+            @Param("fechaFin") LocalDate fechaFin);
+    
+    /**
+     * Obtener y bloquear el siguiente bloque de partidas de una cuenta en un rango de fechas.
+     * FOR UPDATE bloquea también las transacciones, de modo que una anulación concurrente
+     * no puede cambiar su estado mientras se mueve el bloque.
+     * Cada fila contiene [partidaId, variación], con variación 0 para transacciones no activas.
+     */
+    @Query(value = "SELECT pc.id, CASE WHEN t.estado <> 'ACTIVA' THEN 0 " +
+           "WHEN pc.tipo = 'DEBE' THEN pc.valor ELSE -pc.valor END " +
+           "FROM partidas_contables pc " +
+           "JOIN transacciones t ON t.id = pc.transaccion_id " +
+           "WHERE pc.cuenta_id = :cuentaId " +
+           "AND (:fechaInicio IS NULL OR t.fecha >= :fechaInicio) " +
+           "AND (:fechaFin IS NULL OR t.fecha <= :fechaFin) " +
+           "ORDER BY pc.id LIMIT :limite FOR UPDATE",
+           nativeQuery = true)
+    List<Object[]> bloquearPartidasParaReclasificar(
+            @Param("cuentaId") Long cuentaId,
+            @Param("fechaInicio") LocalDate fechaInicio,
+            @Param("fechaFin") LocalDate fechaFin,
+            @Param("limite") int limite);
+    
+    /**
+     * Mover un conjunto de partidas a otra cuenta sin cargarlas en el contexto de persistencia
+     */
+    @Modifying
+    @Query(value = "UPDATE partidas_contables SET cuenta_id = :cuentaId WHERE id IN (:partidaIds)",
+           nativeQuery = true)
+    int reasignarCuenta(@Param("partidaIds") Collection<Long> partidaIds, @Param("cuentaId") Long cuentaId);
+}
@@ -1,26 +1,71 @@
 package com.contabilidad.repository;
 
 import com.contabilidad.model.Tercero;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.HibernateHints;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Repository
 public interface TerceroRepository extends JpaRepository<Tercero, Long> {
     
     /**
-     * Buscar tercero por número de documento
+     * Buscar tercero por el índice ciego de su número de documento (ver BlindIndex)
      */
-    Optional<Tercero> findByNumeroDocumento(String numeroDocumento);
+    Optional<Tercero> findByNumeroDocumentoHash(String numeroDocumentoHash);
     
     /**
-     * Verificar si existe un tercero con el número de documento
+     * Buscar terceros por los índices ciegos de varios números de documento en una sola consulta
      */
-    boolean existsByNumeroDocumento(String numeroDocumento);
+    List<Tercero> findByNumeroDocumentoHashIn(Collection<String> numerosDocumentoHash);
+    
+    /**
+     * Recorrer los índices ciegos de todos los números de documento sin cargarlos en memoria
+     * (requiere una transacción abierta)
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query("SELECT t.numeroDocumentoHash FROM Tercero t WHERE t.numeroDocumentoHash IS NOT NULL")
+    Stream<String> streamIndicesDocumento();
+    
+    /**
+     * Recorrer los datos usados para detectar duplicados: [id, nombre, numeroDocumento, email]
+     */
+    @QueryHints(@QueryHint(name = HibernateHints.HINT_FETCH_SIZE, value = "" + Integer.MIN_VALUE))
+    @Query("SELECT t.id, t.nombre, t.numeroDocumento, t.email FROM Tercero t")
+    Stream<Object[]> streamDatosComparacion();
+    
+    /**
+     * Verificar si existe un tercero con el índice ciego del número de documento
+     */
+    boolean existsByNumeroDocumentoHash(String numeroDocumentoHash);
+    
+    /**
+     * Verificar si otro tercero tiene el índice ciego del número de documento
+     */
+    boolean existsByNumeroDocumentoHashAndIdNot(String numeroDocumentoHash, Long id);
+    
+    /**
+     * Obtener un bloque de terceros que aún no tienen índice ciego: [id, numero_documento]
+     */
+    @Query(value = "SELECT id, numero_documento FROM terceros WHERE numero_documento_hash IS NULL " +
+                   "ORDER BY id LIMIT :limite", nativeQuery = true)
+    List<Object[]> findSinIndiceDocumento(@Param("limite") int limite);
+    
+    /**
+     * Asignar el índice ciego del número de documento
+     */
+    @Modifying
+    @Query(value = "UPDATE terceros SET numero_documento_hash = :indice WHERE id = :id", nativeQuery = true)
+    int asignarIndiceDocumento(@Param("id") Long id, @Param("indice") String indice);
     
     /**
      * Buscar terceros por nombre (búsqueda parcial, case-insensitive)
@@ -28,14 +73,23 @@ public interface TerceroRepository extends JpaRepository<Tercero, Long> {
     List<Tercero> findByNombreContainingIgnoreCase(String nombre);
     
     /**
-     * Buscar terceros por nombre, email o número de documento
+     * Buscar terceros por nombre (búsqueda parcial) o número de documento (coincidencia exacta por su índice
+     * ciego: los datos cifrados no admiten LIKE)
      */
     @Query("SELECT t FROM Tercero t WHERE " +
            "LOWER(t.nombre) LIKE LOWER(:query) OR " +
-           "LOWER(t.email) LIKE LOWER(:query) OR " +
-           "LOWER(t.numeroDocumento) LIKE LOWER(:query)")
-    List<Tercero> findByNombreContainingIgnoreCaseOrEmailContainingIgnoreCaseOrNumeroDocumentoContaining(
-        @Param("query") String query);
+           "t.numeroDocumentoHash = :indiceDocumento")
+    List<Tercero> findByNombreContainingIgnoreCaseOrNumeroDocumentoHash(
+        @Param("query") String query, @Param("indiceDocumento") String indiceDocumento);
+    
+    /**
+     * Obtener los datos de listado de todos los terceros sin cargar entidades, con número de documento,
+     * email, teléfono y dirección tal como están guardados (cifrados): [id, nombre, tipoDocumento, numeroDocumento,
+     * email, telefono, direccion, activo]
+     */
+    @Query(value = "SELECT id, nombre, tipo_documento, numero_documento, email, telefono, direccion, activo " +
+                   "FROM terceros ORDER BY id", nativeQuery = true)
+    List<Object[]> findDatosListado();
     
     /**
      * Buscar terceros activos
@@ -72,4 +126,11 @@ public interface TerceroRepository extends JpaRepository<Tercero, Long> {
     List<Tercero> findTercerosConTransaccionesEnRango(
             @Param("fechaInicio") java.time.LocalDate fechaInicio,
             @Param("fechaFin") java.time.LocalDate fechaFin);
-} 
\ No newline at end of file
+    
+    /**
+     * Desactivar un conjunto de terceros
+     */
+    @Modifying
+    @Query("UPDATE Tercero t SET t.activo = false WHERE t.id IN :ids AND t.activo = true")
+    int desactivar(@Param("ids") Collection<Long> ids);
+}
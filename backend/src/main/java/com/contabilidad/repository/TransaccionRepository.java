@@ -1,13 +1,18 @@
 package com.contabilidad.repository;
 
 import com.contabilidad.model.Transaccion;
+import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface TransaccionRepository extends JpaRepository<Transaccion, Long> {
@@ -76,4 +81,74 @@ public interface TransaccionRepository extends JpaRepository<Transaccion, Long>
             @Param("fechaInicio") LocalDate fechaInicio,
             @Param("fechaFin") LocalDate fechaFin,
             @Param("descripcion") String descripcion);
-} 
\ No newline at end of file
+    
+    /**
+     * Obtener y bloquear una transacción para cambiar su estado.
+     * El bloqueo espera a que termine una reclasificación en curso de sus partidas y evita que otro
+     * cambio de estado lea el mismo estado anterior hasta el commit.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT t FROM Transaccion t WHERE t.id = :id")
+    Optional<Transaccion> findByIdParaActualizar(@Param("id") Long id);
+    
+    /**
+     * Obtener y bloquear el estado actual de un conjunto de transacciones, en orden de ID para evitar
+     * bloqueos cruzados. Cada fila contiene [id, estado] (estado como texto).
+     * Al ser una lectura con bloqueo, las partidas que se lean después en la misma transacción ya incluyen
+     * las reclasificaciones confirmadas antes de obtener el bloqueo.
+     */
+    @Query(value = "SELECT id, estado FROM transacciones WHERE id IN (:ids) ORDER BY id FOR UPDATE",
+           nativeQuery = true)
+    List<Object[]> bloquearEstadosByIdIn(@Param("ids") Collection<Long> ids);
+    
+    /**
+     * Buscar IDs de transacciones por estado y rango de fechas opcionales
+     */
+    @Query("SELECT t.id FROM Transaccion t " +
+           "WHERE (:estado IS NULL OR t.estado = :estado) " +
+           "AND (:fechaInicio IS NULL OR t.fecha >= :fechaInicio) " +
+           "AND (:fechaFin IS NULL OR t.fecha <= :fechaFin) " +
+           "ORDER BY t.id")
+    List<Long> findIdsWithFilters(
+            @Param("estado") Transaccion.Estado estado,
+            @Param("fechaInicio") LocalDate fechaInicio,
+            @Param("fechaFin") LocalDate fechaFin);
+    
+    /**
+     * Cambiar el estado de un conjunto de transacciones que aún se encuentran en el estado anterior
+     */
+    @Modifying
+    @Query("UPDATE Transaccion t SET t.estado = :estadoNuevo " +
+           "WHERE t.id IN :ids AND t.estado = :estadoAnterior")
+    int actualizarEstado(
+            @Param("ids") Collection<Long> ids,
+            @Param("estadoAnterior") Transaccion.Estado estadoAnterior,
+            @Param("estadoNuevo") Transaccion.Estado estadoNuevo);
+    
+    /**
+     * Verificar si un tercero tiene transacciones asociadas
+     */
+    boolean existsByTerceroId(Long terceroId);
+    
+    /**
+     * Reasignar a otro tercero hasta :limite transacciones de los terceros indicados.
+     * Se invoca repetidamente hasta que no queden filas, para mantener cortas las transacciones.
+     */
+    @Modifying
+    @Query(value = "UPDATE transacciones SET tercero_id = :destino WHERE tercero_id IN (:origenes) LIMIT :limite",
+           nativeQuery = true)
+    int reasignarTercero(
+            @Param("origenes") Collection<Long> origenes,
+            @Param("destino") Long destino,
+            @Param("limite") int limite);
+    
+    /**
+     * Marcar como modificadas las transacciones de un conjunto de partidas.
+     * Necesario cuando solo cambian las partidas, para que la exportación incremental del libro diario las incluya.
+     */
+    @Modifying
+    @Query(value = "UPDATE transacciones t JOIN partidas_contables pc ON pc.transaccion_id = t.id " +
+           "SET t.fecha_modificacion = CURRENT_TIMESTAMP(6) WHERE pc.id IN (:partidaIds)",
+           nativeQuery = true)
+    int marcarModificadasPorPartidas(@Param("partidaIds") Collection<Long> partidaIds);
+}
\ No newline at end of file
@@ -0,0 +1,108 @@
+package com.contabilidad.service;
+
+import com.contabilidad.model.TipoComprobante;
+import com.contabilidad.repository.ConsecutivoComprobanteRepository;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Numeración consecutiva de comprobantes por tipo (ingreso, egreso, nota contable).
+ * <ul>
+ *   <li>RANGOS: cada instancia reserva bloques de números en una transacción corta e independiente
+ *   y los entrega desde memoria. No serializa los registros, pero un reinicio puede dejar huecos
+ *   y el orden de los números no sigue estrictamente el orden de commit.</li>
+ *   <li>ESTRICTO: el número se toma de la fila del tipo dentro de la transacción que registra el
+ *   comprobante, lo que bloquea solo esa fila hasta el commit. Sin huecos.</li>
+ * </ul>
+ */
+@Service
+@Transactional
+public class ConsecutivoService {
+    
+    public enum Modo {
+        RANGOS, ESTRICTO
+    }
+    
+    @Autowired
+    private ConsecutivoComprobanteRepository consecutivoComprobanteRepository;
+    
+    private final Modo modo;
+    private final int tamanoRango;
+    private final TransactionTemplate reservaTemplate;
+    private final Map<TipoComprobante, RangoReservado> rangos = new EnumMap<>(TipoComprobante.class);
+    
+    public ConsecutivoService(
+            PlatformTransactionManager transactionManager,
+            @Value("${contabilidad.consecutivos.modo}") Modo modo,
+            @Value("${contabilidad.consecutivos.tamano-rango}") int tamanoRango) {
+        this.modo = modo;
+        this.tamanoRango = tamanoRango;
+        this.reservaTemplate = new TransactionTemplate(transactionManager);
+        this.reservaTemplate.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        for (TipoComprobante tipo : TipoComprobante.values()) {
+            rangos.put(tipo, new RangoReservado());
+        }
+    }
+    
+    /**
+     * Asignar el siguiente número de comprobante del tipo indicado.
+     * En modo ESTRICTO debe invocarse justo antes de guardar la transacción, para que el bloqueo
+     * de la fila del consecutivo dure lo menos posible.
+     */
+    public Long asignarNumero(TipoComprobante tipo) {
+        if (modo == Modo.ESTRICTO) {
+            return reservar(tipo, 1);
+        }
+        
+        RangoReservado rango = rangos.get(tipo);
+        synchronized (rango) {
+            if (rango.siguiente >= rango.limite) {
+                long inicio = reservaTemplate.execute(status -> reservar(tipo, tamanoRango));
+                rango.siguiente = inicio;
+                rango.limite = inicio + tamanoRango;
+            }
+            return rango.siguiente++;
+        }
+    }
+    
+    /**
+     * Descartar los rangos reservados en memoria; los siguientes números se reservan de nuevo desde la base de datos
+     */
+    public void descartarRangos() {
+        for (RangoReservado rango : rangos.values()) {
+            synchronized (rango) {
+                rango.siguiente = 0;
+                rango.limite = 0;
+            }
+        }
+    }
+    
+    public Modo getModo() {
+        return modo;
+    }
+    
+    /**
+     * Avanzar el consecutivo en la transacción actual y devolver el primer número reservado
+     */
+    private long reservar(TipoComprobante tipo, int cantidad) {
+        if (consecutivoComprobanteRepository.avanzar(tipo, cantidad) == 0) {
+            throw new RuntimeException("No existe consecutivo configurado para el comprobante " + tipo.name());
+        }
+        return consecutivoComprobanteRepository.findSiguienteNumero(tipo)
+                .orElseThrow(() -> new RuntimeException("No existe consecutivo configurado para el comprobante " + tipo.name()))
+                - cantidad;
+    }
+    
+    private static class RangoReservado {
+        private long siguiente;
+        private long limite;
+    }
+}
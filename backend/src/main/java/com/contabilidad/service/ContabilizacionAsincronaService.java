@@ -0,0 +1,254 @@
+package com.contabilidad.service;
+
+import com.contabilidad.dto.SolicitudAsincronaDTO;
+import com.contabilidad.dto.request.TransaccionRequest;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Registro asíncrono de transacciones con confirmación agrupada.
+ * Las solicitudes se encolan en memoria y un único hilo escritor las registra en grupos
+ * de hasta N transacciones (o cada T milisegundos) dentro de una sola transacción de base de datos,
+ * de modo que muchas transacciones comparten un mismo commit.
+ */
+@Service
+@ConditionalOnProperty(prefix = "contabilidad.contabilizacion-asincrona", name = "habilitada", havingValue = "true")
+public class ContabilizacionAsincronaService {
+    
+    private static final Logger log = LoggerFactory.getLogger(ContabilizacionAsincronaService.class);
+    
+    @Autowired
+    private TransaccionService transaccionService;
+    
+    @Autowired
+    private CuentaContableService cuentaContableService;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    private final BlockingQueue<SolicitudPendiente> cola;
+    private final Cache<String, SolicitudAsincronaDTO> estados;
+    private final int tamanoGrupo;
+    private final long esperaGrupoNanos;
+    private final Duration esperaEncolar;
+    private final Duration tiempoDrenado;
+    
+    private volatile boolean aceptando = true;
+    private Thread escritor;
+    
+    public ContabilizacionAsincronaService(
+            @Value("${contabilidad.contabilizacion-asincrona.capacidad-cola}") int capacidadCola,
+            @Value("${contabilidad.contabilizacion-asincrona.tamano-grupo}") int tamanoGrupo,
+            @Value("${contabilidad.contabilizacion-asincrona.espera-grupo}") Duration esperaGrupo,
+            @Value("${contabilidad.contabilizacion-asincrona.espera-encolar}") Duration esperaEncolar,
+            @Value("${contabilidad.contabilizacion-asincrona.tiempo-drenado}") Duration tiempoDrenado,
+            @Value("${contabilidad.contabilizacion-asincrona.retencion-estados}") Duration retencionEstados,
+            @Value("${contabilidad.contabilizacion-asincrona.maximo-estados}") long maximoEstados) {
+        this.cola = new ArrayBlockingQueue<>(capacidadCola);
+        this.tamanoGrupo = tamanoGrupo;
+        this.esperaGrupoNanos = esperaGrupo.toNanos();
+        this.esperaEncolar = esperaEncolar;
+        this.tiempoDrenado = tiempoDrenado;
+        this.estados = Caffeine.newBuilder()
+                .maximumSize(maximoEstados)
+                .expireAfterWrite(retencionEstados)
+                .build();
+    }
+    
+    @PostConstruct
+    void iniciar() {
+        escritor = new Thread(this::procesarCola, "contabilizacion-asincrona");
+        escritor.start();
+    }
+    
+    /**
+     * Detener la recepción de solicitudes y registrar las que ya están en cola
+     */
+    @PreDestroy
+    void detener() throws InterruptedException {
+        aceptando = false;
+        escritor.join(tiempoDrenado.toMillis());
+        if (escritor.isAlive()) {
+            log.warn("La cola de contabilización no se drenó en {}; quedan {} solicitudes sin registrar", tiempoDrenado, cola.size());
+            escritor.interrupt();
+        }
+    }
+    
+    /**
+     * Encolar una transacción para registro asíncrono.
+     * Si la cola está llena durante el tiempo de espera configurado se rechaza la solicitud.
+     */
+    public SolicitudAsincronaDTO encolar(TransaccionRequest request) {
+        if (!aceptando) {
+            throw new RejectedExecutionException("El registro asíncrono se está deteniendo");
+        }
+        
+        SolicitudPendiente solicitud = new SolicitudPendiente(UUID.randomUUID().toString(), request);
+        SolicitudAsincronaDTO estado = SolicitudAsincronaDTO.enCola(solicitud.id);
+        estados.put(solicitud.id, estado);
+        
+        boolean encolada;
+        try {
+            encolada = cola.offer(solicitud, esperaEncolar.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            encolada = false;
+        }
+        if (!encolada) {
+            estados.invalidate(solicitud.id);
+            throw new RejectedExecutionException("La cola de registro asíncrono está llena");
+        }
+        // detener() pudo llegar entre la primera verificación y el offer, y el escritor pudo terminar sin ver
+        // esta solicitud. Si el escritor ya la tomó, remove no la encuentra y se registra normalmente
+        if (!aceptando && cola.remove(solicitud)) {
+            estados.invalidate(solicitud.id);
+            throw new RejectedExecutionException("El registro asíncrono se está deteniendo");
+        }
+        return estado;
+    }
+    
+    /**
+     * Consultar el estado de una solicitud
+     */
+    public Optional<SolicitudAsincronaDTO> consultar(String id) {
+        return Optional.ofNullable(estados.getIfPresent(id));
+    }
+    
+    public int getTamanoCola() {
+        return cola.size();
+    }
+    
+    private void procesarCola() {
+        List<SolicitudPendiente> grupo = new ArrayList<>(tamanoGrupo);
+        while (aceptando || !cola.isEmpty()) {
+            try {
+                SolicitudPendiente primera = cola.poll(esperaGrupoNanos, TimeUnit.NANOSECONDS);
+                if (primera == null) {
+                    continue;
+                }
+                grupo.add(primera);
+                
+                // Completar el grupo hasta N solicitudes o hasta que venza la espera T
+                long limite = System.nanoTime() + esperaGrupoNanos;
+                while (grupo.size() < tamanoGrupo) {
+                    cola.drainTo(grupo, tamanoGrupo - grupo.size());
+                    long restante = limite - System.nanoTime();
+                    if (grupo.size() >= tamanoGrupo || restante <= 0) {
+                        break;
+                    }
+                    SolicitudPendiente siguiente = cola.poll(restante, TimeUnit.NANOSECONDS);
+                    if (siguiente == null) {
+                        break;
+                    }
+                    grupo.add(siguiente);
+                }
+                
+                registrarGrupo(grupo);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                log.error("Error inesperado en el registro asíncrono de transacciones", e);
+                grupo.forEach(solicitud -> rechazar(solicitud, e.getMessage()));
+            } finally {
+                grupo.clear();
+            }
+        }
+    }
+    
+    /**
+     * Registrar un grupo de solicitudes con un solo commit.
+     * Primero se validan contra saldos en memoria para excluir las que fallarían; si aun así
+     * el commit agrupado falla, cada solicitud se registra en su propia transacción.
+     */
+    private void registrarGrupo(List<SolicitudPendiente> grupo) {
+        List<SolicitudPendiente> validas = new ArrayList<>(grupo.size());
+        Set<Long> cuentas = new HashSet<>();
+        for (SolicitudPendiente solicitud : grupo) {
+            try {
+                solicitud.movimientos = transaccionService.prevalidarTransaccion(solicitud.request);
+                cuentas.addAll(solicitud.movimientos.keySet());
+                validas.add(solicitud);
+            } catch (RuntimeException e) {
+                rechazar(solicitud, e.getMessage());
+            }
+        }
+        if (validas.isEmpty()) {
+            return;
+        }
+        
+        ProyeccionSaldos saldos = cuentaContableService.proyectarSaldos(cuentas);
+        List<SolicitudPendiente> aceptadas = new ArrayList<>(validas.size());
+        for (SolicitudPendiente solicitud : validas) {
+            Optional<Long> cuentaRechazada = saldos.aplicar(solicitud.movimientos);
+            if (cuentaRechazada.isPresent()) {
+                rechazar(solicitud, "La transacción generaría un saldo negativo en la cuenta con ID " + cuentaRechazada.get());
+            } else {
+                aceptadas.add(solicitud);
+            }
+        }
+        if (aceptadas.isEmpty()) {
+            return;
+        }
+        
+        try {
+            List<Long> ids = transactionTemplate.execute(status -> {
+                List<Long> registradas = new ArrayList<>(aceptadas.size());
+                for (SolicitudPendiente solicitud : aceptadas) {
+                    registradas.add(transaccionService.createTransaccion(solicitud.request).getId());
+                }
+                return registradas;
+            });
+            for (int i = 0; i < aceptadas.size(); i++) {
+                estados.put(aceptadas.get(i).id, SolicitudAsincronaDTO.registrada(aceptadas.get(i).id, ids.get(i)));
+            }
+        } catch (RuntimeException e) {
+            for (SolicitudPendiente solicitud : aceptadas) {
+                try {
+                    Long id = transaccionService.createTransaccion(solicitud.request).getId();
+                    estados.put(solicitud.id, SolicitudAsincronaDTO.registrada(solicitud.id, id));
+                } catch (RuntimeException individual) {
+                    rechazar(solicitud, individual.getMessage());
+                }
+            }
+        }
+    }
+    
+    private void rechazar(SolicitudPendiente solicitud, String mensaje) {
+        estados.put(solicitud.id, SolicitudAsincronaDTO.rechazada(solicitud.id, mensaje));
+    }
+    
+    private static class SolicitudPendiente {
+        private final String id;
+        private final TransaccionRequest request;
+        private Map<Long, BigDecimal> movimientos;
+        
+        SolicitudPendiente(String id, TransaccionRequest request) {
+            this.id = id;
+            this.request = request;
+        }
+    }
+}
@@ -1,41 +1,108 @@
 package com.contabilidad.service;
 
+import com.contabilidad.config.CacheConfig;
+import com.contabilidad.config.ReportesConfig;
 import com.contabilidad.dto.CuentaContableDTO;
+import com.contabilidad.dto.ResultadoReclasificacionDTO;
 import com.contabilidad.dto.request.CuentaContableRequest;
+import com.contabilidad.dto.request.ReclasificacionCuentaRequest;
 import com.contabilidad.model.CuentaContable;
 import com.contabilidad.model.TipoCuenta;
 import com.contabilidad.repository.CuentaContableRepository;
+import com.contabilidad.repository.PartidaContableRepository;
+import com.contabilidad.repository.TransaccionRepository;
+import com.contabilidad.service.VersionesService.Agregado;
+import com.contabilidad.util.SingleFlight;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
-import java.util.stream.Collectors;
+import java.util.Set;
+import java.util.TreeMap;
 
 @Service
 @Transactional
 public class CuentaContableService {
     
+    /**
+     * Número de partidas movidas por transacción durante una reclasificación
+     */
+    private static final int TAMANO_BLOQUE_RECLASIFICACION = 1000;
+    
+    private static final String CONSULTA_SALDOS =
+            "SELECT cc.id, cc.codigo, cc.nombre, cc.tipo, cc.permite_saldo_negativo, cc.activo, cc.saldo " +
+            "FROM cuentas_contables cc " +
+            "WHERE cc.activo = 1 " +
+            "ORDER BY cc.codigo";
+    
     @Autowired
     private CuentaContableRepository cuentaContableRepository;
     
+    @Autowired
+    private PartidaContableRepository partidaContableRepository;
+    
+    @Autowired
+    private TransaccionRepository transaccionRepository;
+    
+    @Autowired
+    private CacheManager cacheManager;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private VersionesService versionesService;
+    
+    @Autowired
+    @Qualifier(ReportesConfig.REPORTES_JDBC_TEMPLATE)
+    private JdbcTemplate reportesJdbcTemplate;
+    
+    /**
+     * Listados completos: las llamadas simultáneas comparten una sola consulta. La llave lleva la versión de los
+     * agregados leída antes de consultar, para que quien llega después de una escritura no reciba un resultado
+     * consultado antes de ella
+     */
+    private final SingleFlight<String, List<CuentaContableDTO>> listados;
+    
+    public CuentaContableService(@Value("${contabilidad.coalescencia.ttl}") Duration ttlCoalescencia) {
+        this.listados = new SingleFlight<>(ttlCoalescencia);
+    }
+    
     /**
      * Obtener todas las cuentas contables
      */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public List<CuentaContableDTO> getAllCuentas() {
-        List<CuentaContable> cuentas = cuentaContableRepository.findAll();
-        return CuentaContableDTO.fromEntityList(cuentas);
+        return listados.execute("cuentas:" + versionesService.etiqueta(Agregado.CUENTAS), () ->
+                Collections.unmodifiableList(CuentaContableDTO.fromEntityList(cuentaContableRepository.findAll())));
     }
     
     /**
      * Obtener solo cuentas activas
      */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public List<CuentaContableDTO> getCuentasActivas() {
-        List<CuentaContable> cuentas = cuentaContableRepository.findByActivoTrue();
-        return CuentaContableDTO.fromEntityList(cuentas);
+        return listados.execute("cuentas-activas:" + versionesService.etiqueta(Agregado.CUENTAS), () ->
+                Collections.unmodifiableList(CuentaContableDTO.fromEntityList(cuentaContableRepository.findByActivoTrue())));
     }
     
     /**
@@ -63,12 +130,14 @@ public class CuentaContableService {
         cuenta.setActivo(request.isActivo());
         
         CuentaContable savedCuenta = cuentaContableRepository.save(cuenta);
+        versionesService.incrementar(Agregado.CUENTAS);
         return CuentaContableDTO.fromEntity(savedCuenta);
     }
     
     /**
      * Actualizar cuenta contable
      */
+    @CacheEvict(value = CacheConfig.CUENTAS, key = "#id")
     public Optional<CuentaContableDTO> updateCuenta(Long id, CuentaContableRequest request) {
         return cuentaContableRepository.findById(id)
                 .map(cuenta -> {
@@ -85,6 +154,7 @@ public class CuentaContableService {
                     cuenta.setActivo(request.isActivo());
                     
                     CuentaContable updatedCuenta = cuentaContableRepository.save(cuenta);
+                    versionesService.incrementar(Agregado.CUENTAS);
                     return CuentaContableDTO.fromEntity(updatedCuenta);
                 });
     }
@@ -92,11 +162,13 @@ public class CuentaContableService {
     /**
      * Activar cuenta
      */
+    @CacheEvict(value = CacheConfig.CUENTAS, key = "#id")
     public Optional<CuentaContableDTO> activarCuenta(Long id) {
         return cuentaContableRepository.findById(id)
                 .map(cuenta -> {
                     cuenta.setActivo(true);
                     CuentaContable updatedCuenta = cuentaContableRepository.save(cuenta);
+                    versionesService.incrementar(Agregado.CUENTAS);
                     return CuentaContableDTO.fromEntity(updatedCuenta);
                 });
     }
@@ -104,11 +176,13 @@ public class CuentaContableService {
     /**
      * Desactivar cuenta
      */
+    @CacheEvict(value = CacheConfig.CUENTAS, key = "#id")
     public Optional<CuentaContableDTO> desactivarCuenta(Long id) {
         return cuentaContableRepository.findById(id)
                 .map(cuenta -> {
                     cuenta.setActivo(false);
                     CuentaContable updatedCuenta = cuentaContableRepository.save(cuenta);
+                    versionesService.incrementar(Agregado.CUENTAS);
                     return CuentaContableDTO.fromEntity(updatedCuenta);
                 });
     }
@@ -116,14 +190,81 @@ public class CuentaContableService {
     /**
      * Eliminar cuenta contable
      */
+    @CacheEvict(value = CacheConfig.CUENTAS, key = "#id")
     public boolean deleteCuenta(Long id) {
         if (cuentaContableRepository.existsById(id)) {
+            // Verificar si tiene movimientos (sin cargar la colección de partidas)
+            if (partidaContableRepository.existsByCuentaContableId(id)) {
+                throw new RuntimeException("No se puede eliminar una cuenta con movimientos; use la reclasificación o desactívela");
+            }
             cuentaContableRepository.deleteById(id);
+            versionesService.incrementar(Agregado.CUENTAS);
             return true;
         }
         return false;
     }
     
+    /**
+     * Reclasificar las partidas de una cuenta a otra, opcionalmente solo las de un rango de fechas.
+     * Las partidas se mueven por bloques con UPDATE sobre la base de datos, sin cargarlas en el contexto
+     * de persistencia, y cada bloque ajusta los saldos almacenados de ambas cuentas en su propia transacción.
+     * Si un bloque falla, los bloques anteriores quedan aplicados y la operación puede repetirse para
+     * terminar de mover las partidas restantes.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ResultadoReclasificacionDTO reclasificarPartidas(Long origenId, ReclasificacionCuentaRequest request) {
+        Long destinoId = request.getCuentaDestinoId();
+        LocalDate fechaInicio = request.getFechaInicio();
+        LocalDate fechaFin = request.getFechaFin();
+        if (origenId.equals(destinoId)) {
+            throw new RuntimeException("La cuenta destino debe ser distinta de la cuenta origen");
+        }
+        if (fechaInicio != null && fechaFin != null && fechaInicio.isAfter(fechaFin)) {
+            throw new RuntimeException("La fecha inicial no puede ser posterior a la fecha final");
+        }
+        if (!cuentaContableRepository.existsById(origenId)) {
+            throw new RuntimeException("La cuenta con ID " + origenId + " no existe");
+        }
+        validarCuentaActiva(destinoId);
+        
+        // Validar de antemano el efecto total sobre los saldos para no dejar la reclasificación a medias
+        BigDecimal total = partidaContableRepository.sumarMovimientosActivosPorCuenta(origenId, fechaInicio, fechaFin);
+        Optional<Long> rechazada = proyectarSaldos(List.of(origenId, destinoId))
+                .aplicar(Map.of(origenId, total.negate(), destinoId, total));
+        if (rechazada.isPresent()) {
+            throw new RuntimeException("La reclasificación generaría un saldo negativo en la cuenta con ID " +
+                    rechazada.get() + ", la cual no permite saldos negativos");
+        }
+        
+        ResultadoReclasificacionDTO resultado = new ResultadoReclasificacionDTO(origenId, destinoId);
+        int movidas;
+        do {
+            movidas = transactionTemplate.execute(status -> {
+                List<Object[]> bloque = partidaContableRepository.bloquearPartidasParaReclasificar(
+                        origenId, fechaInicio, fechaFin, TAMANO_BLOQUE_RECLASIFICACION);
+                if (bloque.isEmpty()) {
+                    return 0;
+                }
+                List<Long> partidaIds = new ArrayList<>(bloque.size());
+                BigDecimal variacion = BigDecimal.ZERO;
+                for (Object[] fila : bloque) {
+                    partidaIds.add(((Number) fila[0]).longValue());
+                    variacion = variacion.add((BigDecimal) fila[1]);
+                }
+                partidaContableRepository.reasignarCuenta(partidaIds, destinoId);
+                transaccionRepository.marcarModificadasPorPartidas(partidaIds);
+                aplicarMovimientos(Map.of(origenId, variacion.negate(), destinoId, variacion));
+                resultado.setSaldoTrasladado(resultado.getSaldoTrasladado().add(variacion));
+                return bloque.size();
+            });
+            resultado.setPartidasReclasificadas(resultado.getPartidasReclasificadas() + movidas);
+        } while (movidas == TAMANO_BLOQUE_RECLASIFICACION);
+        
+        cacheManager.getCache(CacheConfig.CUENTAS).evict(origenId);
+        cacheManager.getCache(CacheConfig.CUENTAS).evict(destinoId);
+        return resultado;
+    }
+    
     /**
      * Buscar cuentas por nombre
      */
@@ -152,7 +293,7 @@ public class CuentaContableService {
      * Calcular saldo de una cuenta específica
      */
     public BigDecimal calcularSaldoCuenta(Long cuentaId) {
-        return cuentaContableRepository.calcularSaldoPorCuenta(cuentaId);
+        return cuentaContableRepository.findSaldoById(cuentaId).orElse(BigDecimal.ZERO);
     }
     
     /**
@@ -160,40 +301,36 @@ public class CuentaContableService {
      */
     public Optional<CuentaContableDTO> getCuentaConSaldo(Long cuentaId) {
         return cuentaContableRepository.findById(cuentaId)
-                .map(cuenta -> {
-                    BigDecimal saldo = cuentaContableRepository.calcularSaldoPorCuenta(cuentaId);
-                    return CuentaContableDTO.fromEntityWithSaldo(cuenta, saldo);
-                });
+                .map(cuenta -> CuentaContableDTO.fromEntityWithSaldo(cuenta, cuenta.getSaldo()));
     }
     
     /**
-     * Obtener saldos de todas las cuentas activas
+     * Obtener saldos de todas las cuentas activas.
+     * Es una lectura de reportes: usa el pool de reportes y no toma conexión del pool transaccional.
+     * Las llamadas simultáneas comparten una sola consulta; el resultado puede tener a lo sumo
+     * contabilidad.coalescencia.ttl más la duración de la consulta.
      */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public List<CuentaContableDTO> getSaldosTodasLasCuentas() {
-        List<Object[]> resultados = cuentaContableRepository.findAllWithSaldo();
-        
-        return resultados.stream()
-                .map(resultado -> {
-                    Long id = (Long) resultado[0];
-                    String codigo = (String) resultado[1];
-                    String nombre = (String) resultado[2];
-                    // Convertir el campo a String de forma robusta
-                    TipoCuenta tipo = TipoCuenta.valueOf(resultado[3].toString());
-                    Boolean permiteSaldoNegativo = (Boolean) resultado[4];
-                    Boolean activo = (Boolean) resultado[5];
-                    BigDecimal saldo = (BigDecimal) resultado[6];
-                    
-                    CuentaContable cuenta = new CuentaContable();
-                    cuenta.setId(id);
-                    cuenta.setCodigo(codigo);
-                    cuenta.setNombre(nombre);
-                    cuenta.setTipo(tipo);
-                    cuenta.setPermiteSaldoNegativo(permiteSaldoNegativo);
-                    cuenta.setActivo(activo);
-                    
-                    return CuentaContableDTO.fromEntityWithSaldo(cuenta, saldo);
-                })
-                .collect(Collectors.toList());
+        return listados.execute("saldos:" + versionesService.etiqueta(Agregado.CUENTAS, Agregado.LIBRO),
+                this::consultarSaldos);
+    }
+    
+    private List<CuentaContableDTO> consultarSaldos() {
+        return Collections.unmodifiableList(reportesJdbcTemplate.query(CONSULTA_SALDOS, (rs, numero) -> {
+            BigDecimal saldo = rs.getBigDecimal(7);
+            
+            CuentaContable cuenta = new CuentaContable();
+            cuenta.setId(rs.getLong(1));
+            cuenta.setSaldo(saldo);
+            cuenta.setCodigo(rs.getString(2));
+            cuenta.setNombre(rs.getString(3));
+            cuenta.setTipo(TipoCuenta.valueOf(rs.getString(4)));
+            cuenta.setPermiteSaldoNegativo(rs.getBoolean(5));
+            cuenta.setActivo(rs.getBoolean(6));
+            
+            return CuentaContableDTO.fromEntityWithSaldo(cuenta, saldo);
+        }));
     }
     
     /**
@@ -222,8 +359,11 @@ public class CuentaContableService {
     }
     
     /**
-     * Obtener cuenta por ID para uso interno
+     * Obtener cuenta por ID para uso interno.
+     * El resultado se guarda en caché: la entidad devuelta es de solo lectura y su saldo
+     * puede no estar actualizado (usar calcularSaldoCuenta para consultarlo).
      */
+    @Cacheable(value = CacheConfig.CUENTAS, key = "#id", unless = "#result == null")
     public Optional<CuentaContable> getCuentaEntityById(Long id) {
         return cuentaContableRepository.findById(id);
     }
@@ -236,9 +376,59 @@ public class CuentaContableService {
         if (cuenta.isEmpty()) {
             throw new RuntimeException("La cuenta con ID " + cuentaId + " no existe");
         }
-        if (!cuenta.get().isActivo()) {
-            throw new RuntimeException("La cuenta " + cuenta.get().getCodigo() + " - " + 
-                    cuenta.get().getNombre() + " está inactiva y no puede ser utilizada en transacciones");
+        validarCuentaActiva(cuenta.get());
+    }
+    
+    /**
+     * Validar que una cuenta ya cargada está activa
+     */
+    public void validarCuentaActiva(CuentaContable cuenta) {
+        if (!cuenta.isActivo()) {
+            throw new RuntimeException("La cuenta " + cuenta.getCodigo() + " - " + 
+                    cuenta.getNombre() + " está inactiva y no puede ser utilizada en transacciones");
+        }
+    }
+    
+    /**
+     * Aplicar variaciones de saldo (cuentaId -> débitos - créditos) a los saldos almacenados.
+     * Las cuentas se actualizan en orden de ID para evitar bloqueos cruzados entre transacciones.
+     * Una variación que deja en negativo una cuenta que no lo permite no actualiza ninguna fila y se rechaza;
+     * es la única validación de saldos negativos, sin lecturas previas del saldo.
+     */
+    public void aplicarMovimientos(Map<Long, BigDecimal> movimientos) {
+        if (!movimientos.isEmpty()) {
+            versionesService.incrementar(Agregado.LIBRO);
+        }
+        for (Map.Entry<Long, BigDecimal> movimiento : new TreeMap<>(movimientos).entrySet()) {
+            Long cuentaId = movimiento.getKey();
+            BigDecimal variacion = movimiento.getValue();
+            if (variacion.signum() == 0) {
+                continue;
+            }
+            
+            if (cuentaContableRepository.sumarASaldo(cuentaId, variacion) == 0) {
+                CuentaContable cuenta = cuentaContableRepository.findById(cuentaId)
+                        .orElseThrow(() -> new RuntimeException("La cuenta con ID " + cuentaId + " no existe"));
+                BigDecimal saldoProyectado = calcularSaldoCuenta(cuentaId).add(variacion);
+                throw new RuntimeException("La transacción generaría un saldo negativo (" + 
+                        saldoProyectado + ") en la cuenta " + cuenta.getCodigo() + " - " + 
+                        cuenta.getNombre() + ", la cual no permite saldos negativos");
+            }
+        }
+    }
+    
+    /**
+     * Cargar los saldos actuales de un conjunto de cuentas para validar movimientos en memoria
+     */
+    public ProyeccionSaldos proyectarSaldos(Collection<Long> cuentaIds) {
+        Map<Long, BigDecimal> saldos = new HashMap<>();
+        Set<Long> permitenSaldoNegativo = new HashSet<>();
+        for (CuentaContable cuenta : cuentaContableRepository.findAllById(cuentaIds)) {
+            saldos.put(cuenta.getId(), cuenta.getSaldo());
+            if (cuenta.isPermiteSaldoNegativo()) {
+                permitenSaldoNegativo.add(cuenta.getId());
+            }
         }
+        return new ProyeccionSaldos(saldos, permitenSaldoNegativo);
     }
-} 
\ No newline at end of file
+}
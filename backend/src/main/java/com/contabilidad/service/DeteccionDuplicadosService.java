@@ -0,0 +1,373 @@
+package com.contabilidad.service;
+
+import com.contabilidad.dto.EstadoDeteccionDuplicadosDTO;
+import com.contabilidad.dto.EstadoDeteccionDuplicadosDTO.Fase;
+import com.contabilidad.dto.ParDuplicadoDTO;
+import com.contabilidad.repository.TerceroRepository;
+import com.contabilidad.util.JaroWinkler;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.text.Normalizer;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Detección de terceros probablemente duplicados.
+ * <p>
+ * Los terceros se normalizan y se agrupan en bloques por prefijo del documento, por cada palabra
+ * significativa del nombre y por email. Solo se comparan pares dentro de un mismo bloque (nunca todos
+ * contra todos); en los bloques muy grandes se compara cada tercero con sus vecinos en orden alfabético.
+ * La comparación corre en un ForkJoinPool propio y el avance se registra al terminar cada lote de bloques.
+ */
+@Service
+public class DeteccionDuplicadosService {
+    
+    private static final Logger log = LoggerFactory.getLogger(DeteccionDuplicadosService.class);
+    
+    private static final int LONGITUD_PREFIJO_DOCUMENTO = 6;
+    private static final int LONGITUD_MINIMA_PALABRA = 3;
+    
+    /**
+     * Bloques más grandes que este tamaño se comparan por ventana deslizante en lugar de todos los pares
+     */
+    private static final int MAXIMO_TAMANO_BLOQUE = 200;
+    private static final int VENTANA_BLOQUE_GRANDE = 20;
+    
+    /**
+     * Bloques comparados entre cada registro de avance
+     */
+    private static final int BLOQUES_POR_LOTE = 2000;
+    
+    private static final Pattern MARCAS_DIACRITICAS = Pattern.compile("\\p{M}+");
+    private static final Pattern NO_ALFANUMERICO = Pattern.compile("[^A-Z0-9]+");
+    private static final Set<String> PALABRAS_IGNORADAS = Set.of(
+            "SAS", "LTDA", "LIMITADA", "CIA", "S", "A", "EU", "DE", "DEL", "LA", "LAS", "LOS", "EL", "Y", "SOCIEDAD");
+    
+    @Autowired
+    private TerceroRepository terceroRepository;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    private final double umbral;
+    private final int maximoResultados;
+    private final ForkJoinPool pool;
+    private final ExecutorService coordinador = Executors.newSingleThreadExecutor(tarea -> {
+        Thread hilo = new Thread(tarea, "deteccion-duplicados");
+        hilo.setDaemon(true);
+        return hilo;
+    });
+    
+    private volatile Progreso progreso;
+    private volatile List<ParDuplicadoDTO> resultados = List.of();
+    
+    public DeteccionDuplicadosService(
+            @Value("${contabilidad.terceros.duplicados.umbral}") double umbral,
+            @Value("${contabilidad.terceros.duplicados.maximo-resultados}") int maximoResultados,
+            @Value("${contabilidad.terceros.duplicados.paralelismo}") int paralelismo) {
+        this.umbral = umbral;
+        this.maximoResultados = maximoResultados;
+        this.pool = new ForkJoinPool(paralelismo > 0 ? paralelismo : Runtime.getRuntime().availableProcessors());
+    }
+    
+    @PreDestroy
+    void detener() {
+        coordinador.shutdownNow();
+        pool.shutdownNow();
+    }
+    
+    /**
+     * Iniciar un análisis en segundo plano
+     * @throws IllegalStateException si ya hay un análisis en curso
+     */
+    public synchronized EstadoDeteccionDuplicadosDTO iniciarAnalisis() {
+        Progreso actual = progreso;
+        if (actual != null && actual.enCurso()) {
+            throw new IllegalStateException("Ya hay un análisis de duplicados en curso");
+        }
+        Progreso nuevo = new Progreso();
+        progreso = nuevo;
+        coordinador.submit(() -> ejecutar(nuevo));
+        return nuevo.toDTO();
+    }
+    
+    /**
+     * Obtener el avance del último análisis
+     */
+    public EstadoDeteccionDuplicadosDTO getEstado() {
+        Progreso actual = progreso;
+        return actual != null ? actual.toDTO() : EstadoDeteccionDuplicadosDTO.sinEjecutar();
+    }
+    
+    /**
+     * Obtener los pares candidatos del último análisis terminado, ordenados por puntaje
+     */
+    public List<ParDuplicadoDTO> getDuplicados(double puntajeMinimo, int limite) {
+        return resultados.stream()
+                .filter(par -> par.getPuntaje() >= puntajeMinimo)
+                .limit(limite)
+                .collect(Collectors.toList());
+    }
+    
+    private void ejecutar(Progreso progreso) {
+        try {
+            progreso.fase = Fase.CARGANDO;
+            List<TerceroNormalizado> terceros = cargarTerceros();
+            progreso.terceros = terceros.size();
+            
+            progreso.fase = Fase.AGRUPANDO;
+            List<int[]> bloques = agrupar(terceros);
+            progreso.bloques = bloques.size();
+            
+            progreso.fase = Fase.COMPARANDO;
+            ConcurrentHashMap<Long, Double> candidatos = new ConcurrentHashMap<>();
+            for (int inicio = 0; inicio < bloques.size(); inicio += BLOQUES_POR_LOTE) {
+                List<int[]> lote = bloques.subList(inicio, Math.min(inicio + BLOQUES_POR_LOTE, bloques.size()));
+                pool.submit(() -> lote.parallelStream()
+                        .forEach(bloque -> compararBloque(bloque, terceros, candidatos, progreso)))
+                        .get();
+                progreso.bloquesProcesados.addAndGet(lote.size());
+                progreso.candidatos = candidatos.size();
+            }
+            
+            resultados = construirResultados(candidatos, terceros);
+            progreso.candidatos = candidatos.size();
+            progreso.fechaFin = LocalDateTime.now();
+            progreso.fase = Fase.TERMINADO;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            progreso.fallar("Análisis interrumpido");
+        } catch (ExecutionException | RuntimeException e) {
+            log.error("Error en la detección de terceros duplicados", e);
+            progreso.fallar(e.getMessage());
+        }
+    }
+    
+    private List<TerceroNormalizado> cargarTerceros() {
+        return transactionTemplate.execute(status -> {
+            List<TerceroNormalizado> terceros = new ArrayList<>();
+            try (Stream<Object[]> filas = terceroRepository.streamDatosComparacion()) {
+                filas.forEach(fila -> terceros.add(new TerceroNormalizado(
+                        (Long) fila[0], (String) fila[1], (String) fila[2], (String) fila[3])));
+            }
+            return terceros;
+        });
+    }
+    
+    /**
+     * Agrupar los terceros por claves de bloque; se descartan los bloques de un solo tercero
+     */
+    private List<int[]> agrupar(List<TerceroNormalizado> terceros) {
+        Map<String, List<Integer>> bloques = new HashMap<>();
+        for (int i = 0; i < terceros.size(); i++) {
+            for (String clave : terceros.get(i).clavesBloque()) {
+                bloques.computeIfAbsent(clave, k -> new ArrayList<>(2)).add(i);
+            }
+        }
+        List<int[]> resultado = new ArrayList<>();
+        for (List<Integer> bloque : bloques.values()) {
+            if (bloque.size() > 1) {
+                resultado.add(bloque.stream().mapToInt(Integer::intValue).toArray());
+            }
+        }
+        return resultado;
+    }
+    
+    private void compararBloque(int[] bloque, List<TerceroNormalizado> terceros,
+                                ConcurrentHashMap<Long, Double> candidatos, Progreso progreso) {
+        long comparados = 0;
+        if (bloque.length <= MAXIMO_TAMANO_BLOQUE) {
+            for (int i = 0; i < bloque.length; i++) {
+                for (int j = i + 1; j < bloque.length; j++) {
+                    evaluar(bloque[i], bloque[j], terceros, candidatos);
+                    comparados++;
+                }
+            }
+        } else {
+            int[] ordenado = Arrays.stream(bloque)
+                    .boxed()
+                    .sorted(Comparator.comparing(indice -> terceros.get(indice).nombreOrdenado))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            for (int i = 0; i < ordenado.length; i++) {
+                for (int j = i + 1; j < Math.min(ordenado.length, i + 1 + VENTANA_BLOQUE_GRANDE); j++) {
+                    evaluar(ordenado[i], ordenado[j], terceros, candidatos);
+                    comparados++;
+                }
+            }
+        }
+        progreso.paresComparados.add(comparados);
+    }
+    
+    private void evaluar(int primero, int segundo, List<TerceroNormalizado> terceros,
+                         ConcurrentHashMap<Long, Double> candidatos) {
+        double puntaje = puntuar(terceros.get(primero), terceros.get(segundo));
+        if (puntaje >= umbral) {
+            long clave = primero < segundo
+                    ? ((long) primero << 32) | segundo
+                    : ((long) segundo << 32) | primero;
+            candidatos.merge(clave, puntaje, Math::max);
+        }
+    }
+    
+    /**
+     * Puntaje de similitud entre 0 y 1: 50% nombre, 40% documento y 10% email.
+     * Un mismo documento (con o sin dígito de verificación) con nombres parecidos se considera duplicado seguro.
+     */
+    private double puntuar(TerceroNormalizado a, TerceroNormalizado b) {
+        double nombre = Math.max(
+                JaroWinkler.similarity(a.nombre, b.nombre),
+                JaroWinkler.similarity(a.nombreOrdenado, b.nombreOrdenado));
+        boolean mismoDocumento = mismoDocumento(a.documento, b.documento);
+        double documento = mismoDocumento ? 1 : JaroWinkler.similarity(a.documento, b.documento);
+        double email = a.email != null && a.email.equals(b.email) ? 1 : 0;
+        
+        double puntaje = 0.5 * nombre + 0.4 * documento + 0.1 * email;
+        if (mismoDocumento && nombre >= 0.6) {
+            puntaje = Math.max(puntaje, 0.95);
+        }
+        return puntaje;
+    }
+    
+    /**
+     * Documentos iguales, o iguales salvo un dígito de verificación final (por ejemplo, NIT con y sin DV)
+     */
+    private static boolean mismoDocumento(String a, String b) {
+        if (a == null || b == null || a.isEmpty() || b.isEmpty()) {
+            return false;
+        }
+        if (a.equals(b)) {
+            return true;
+        }
+        String largo = a.length() > b.length() ? a : b;
+        String corto = a.length() > b.length() ? b : a;
+        return largo.length() == corto.length() + 1
+                && corto.length() >= LONGITUD_PREFIJO_DOCUMENTO
+                && largo.startsWith(corto);
+    }
+    
+    private List<ParDuplicadoDTO> construirResultados(Map<Long, Double> candidatos, List<TerceroNormalizado> terceros) {
+        return candidatos.entrySet().stream()
+                .sorted(Map.Entry.<Long, Double>comparingByValue().reversed())
+                .limit(maximoResultados)
+                .map(candidato -> {
+                    TerceroNormalizado a = terceros.get((int) (candidato.getKey() >>> 32));
+                    TerceroNormalizado b = terceros.get((int) (candidato.getKey() & 0xffffffffL));
+                    double puntaje = Math.round(candidato.getValue() * 1000) / 1000.0;
+                    return new ParDuplicadoDTO(a.id, a.nombreOriginal, a.documentoOriginal,
+                            b.id, b.nombreOriginal, b.documentoOriginal, puntaje);
+                })
+                .collect(Collectors.toList());
+    }
+    
+    private static String normalizar(String valor) {
+        if (valor == null) {
+            return "";
+        }
+        String sinTildes = MARCAS_DIACRITICAS.matcher(Normalizer.normalize(valor, Normalizer.Form.NFD)).replaceAll("");
+        return NO_ALFANUMERICO.matcher(sinTildes.toUpperCase(Locale.ROOT)).replaceAll(" ").trim();
+    }
+    
+    private static class TerceroNormalizado {
+        private final long id;
+        private final String nombreOriginal;
+        private final String documentoOriginal;
+        private final String nombre;
+        private final String nombreOrdenado;
+        private final String[] palabras;
+        private final String documento;
+        private final String email;
+        
+        TerceroNormalizado(Long id, String nombre, String documento, String email) {
+            this.id = id;
+            this.nombreOriginal = nombre;
+            this.documentoOriginal = documento;
+            this.palabras = Arrays.stream(normalizar(nombre).split(" "))
+                    .filter(palabra -> !palabra.isEmpty() && !PALABRAS_IGNORADAS.contains(palabra))
+                    .toArray(String[]::new);
+            this.nombre = String.join(" ", palabras);
+            this.nombreOrdenado = Arrays.stream(palabras).sorted().collect(Collectors.joining(" "));
+            this.documento = normalizar(documento).replace(" ", "");
+            this.email = email != null && !email.isBlank() ? email.trim().toLowerCase(Locale.ROOT) : null;
+        }
+        
+        Set<String> clavesBloque() {
+            Set<String> claves = new LinkedHashSet<>();
+            if (documento.length() >= LONGITUD_PREFIJO_DOCUMENTO) {
+                claves.add("D:" + documento.substring(0, LONGITUD_PREFIJO_DOCUMENTO));
+            }
+            for (String palabra : palabras) {
+                if (palabra.length() >= LONGITUD_MINIMA_PALABRA) {
+                    claves.add("N:" + palabra);
+                }
+            }
+            if (email != null) {
+                claves.add("E:" + email);
+            }
+            return claves;
+        }
+    }
+    
+    /**
+     * Avance de un análisis; se actualiza desde el hilo coordinador y se lee desde las consultas de estado
+     */
+    private static class Progreso {
+        private final LocalDateTime fechaInicio = LocalDateTime.now();
+        private volatile LocalDateTime fechaFin;
+        private volatile Fase fase = Fase.CARGANDO;
+        private volatile long terceros;
+        private volatile long bloques;
+        private final AtomicLong bloquesProcesados = new AtomicLong();
+        private final LongAdder paresComparados = new LongAdder();
+        private volatile long candidatos;
+        private volatile String mensaje;
+        
+        boolean enCurso() {
+            return fase != Fase.TERMINADO && fase != Fase.FALLIDO;
+        }
+        
+        void fallar(String mensaje) {
+            this.mensaje = mensaje;
+            this.fechaFin = LocalDateTime.now();
+            this.fase = Fase.FALLIDO;
+        }
+        
+        EstadoDeteccionDuplicadosDTO toDTO() {
+            EstadoDeteccionDuplicadosDTO estado = new EstadoDeteccionDuplicadosDTO();
+            estado.setFase(fase);
+            estado.setFechaInicio(fechaInicio);
+            estado.setFechaFin(fechaFin);
+            estado.setTerceros(terceros);
+            estado.setBloques(bloques);
+            estado.setBloquesProcesados(bloquesProcesados.get());
+            estado.setParesComparados(paresComparados.sum());
+            estado.setCandidatos(candidatos);
+            estado.setMensaje(mensaje);
+            return estado;
+        }
+    }
+}
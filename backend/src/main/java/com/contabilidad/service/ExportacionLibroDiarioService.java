@@ -0,0 +1,404 @@
+package com.contabilidad.service;
+
+import com.contabilidad.config.ReportesConfig;
+import com.contabilidad.dto.ManifiestoExportacionDTO;
+import com.contabilidad.dto.ManifiestoExportacionDTO.ArchivoExportado;
+import com.contabilidad.util.EncryptionUtil;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HexFormat;
+import java.util.List;
+import java.util.Locale;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.regex.Pattern;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Exportación programada del libro diario (una fila por partida) a archivos comprimidos.
+ * <p>
+ * Cada ejecución exporta las transacciones modificadas desde la marca de agua anterior, leyéndolas con un
+ * cursor de solo avance y escribiéndolas por segmentos gzip (CSV o NDJSON) sobre FileChannel, de modo que la
+ * memoria usada no depende del volumen exportado. Al terminar se escribe un manifiesto con las filas y la suma
+ * SHA-256 de cada segmento, la carpeta se publica con un movimiento atómico y se avanza la marca de agua.
+ */
+@Service
+public class ExportacionLibroDiarioService {
+    
+    private static final Logger log = LoggerFactory.getLogger(ExportacionLibroDiarioService.class);
+    
+    public static final String ARCHIVO_MANIFIESTO = "manifiesto.json";
+    
+    private static final String ARCHIVO_MARCA_AGUA = "marca-agua.properties";
+    private static final String PROPIEDAD_MARCA_AGUA = "hasta";
+    private static final String SUFIJO_TEMPORAL = ".tmp";
+    private static final int TAMANO_BUFFER = 64 * 1024;
+    private static final DateTimeFormatter FORMATO_ID = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS");
+    private static final Pattern NOMBRE_VALIDO = Pattern.compile("[A-Za-z0-9][A-Za-z0-9._-]*");
+    
+    private static final String[] COLUMNAS = {
+            "transaccion_id", "fecha", "tipo_comprobante", "numero_comprobante", "descripcion", "estado",
+            "tercero_id", "tercero_documento", "tercero_nombre",
+            "partida_id", "cuenta_codigo", "cuenta_nombre", "tipo", "valor", "fecha_modificacion"};
+    
+    private static final String CONSULTA =
+            "SELECT t.id, t.fecha, t.tipo_comprobante, t.numero_comprobante, t.descripcion, t.estado, " +
+            "t.tercero_id, te.numero_documento, te.nombre, " +
+            "pc.id, cc.codigo, cc.nombre, pc.tipo, pc.valor, t.fecha_modificacion " +
+            "FROM transacciones t " +
+            "JOIN partidas_contables pc ON pc.transaccion_id = t.id " +
+            "JOIN cuentas_contables cc ON cc.id = pc.cuenta_id " +
+            "LEFT JOIN terceros te ON te.id = t.tercero_id " +
+            "WHERE t.fecha_modificacion > ? AND t.fecha_modificacion <= ? " +
+            "ORDER BY t.fecha_modificacion, t.id, pc.id";
+    
+    public enum Formato {
+        CSV(".csv.gz"),
+        NDJSON(".ndjson.gz");
+        
+        private final String extension;
+        
+        Formato(String extension) {
+            this.extension = extension;
+        }
+    }
+    
+    @Autowired
+    @Qualifier(ReportesConfig.REPORTES_JDBC_TEMPLATE)
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private EncryptionUtil encryptionUtil;
+    
+    private final Path directorio;
+    private final Formato formato;
+    private final long filasPorSegmento;
+    private final Duration margenSeguridad;
+    
+    public ExportacionLibroDiarioService(
+            @Value("${contabilidad.exportaciones.libro-diario.directorio}") String directorio,
+            @Value("${contabilidad.exportaciones.libro-diario.formato}") Formato formato,
+            @Value("${contabilidad.exportaciones.libro-diario.filas-por-segmento}") long filasPorSegmento,
+            @Value("${contabilidad.exportaciones.libro-diario.margen-seguridad}") Duration margenSeguridad) {
+        this.directorio = Paths.get(directorio);
+        this.formato = formato;
+        this.filasPorSegmento = filasPorSegmento;
+        this.margenSeguridad = margenSeguridad;
+    }
+    
+    @Scheduled(cron = "${contabilidad.exportaciones.libro-diario.cron}")
+    public void exportarProgramado() {
+        try {
+            ManifiestoExportacionDTO manifiesto = exportar();
+            log.info("Libro diario exportado: {} ({} filas en {} archivos)",
+                    manifiesto.getId(), manifiesto.getFilas(), manifiesto.getArchivos().size());
+        } catch (IOException | RuntimeException e) {
+            log.error("Error al exportar el libro diario", e);
+        }
+    }
+    
+    /**
+     * Exportar las transacciones modificadas desde la última exportación.
+     * Solo se exporta hasta el instante actual menos el margen de seguridad, para no saltarse transacciones
+     * que ya tenían su fecha de modificación pero aún no estaban confirmadas.
+     */
+    public synchronized ManifiestoExportacionDTO exportar() throws IOException {
+        Files.createDirectories(directorio);
+        LocalDateTime desde = leerMarcaAgua().orElse(null);
+        LocalDateTime hasta = jdbcTemplate.queryForObject("SELECT CURRENT_TIMESTAMP(6)", Timestamp.class)
+                .toLocalDateTime()
+                .minus(margenSeguridad);
+        if (desde != null && !hasta.isAfter(desde)) {
+            throw new IllegalStateException("No hay un nuevo periodo que exportar desde " + desde);
+        }
+        
+        String id = FORMATO_ID.format(hasta);
+        Path temporal = directorio.resolve(id + SUFIJO_TEMPORAL);
+        Path destino = directorio.resolve(id);
+        if (Files.exists(destino)) {
+            throw new IllegalStateException("Ya existe la exportación " + id);
+        }
+        eliminarRecursivo(temporal);
+        Files.createDirectories(temporal);
+        
+        ManifiestoExportacionDTO manifiesto = new ManifiestoExportacionDTO(id, formato.name(),
+                desde != null ? desde.toString() : null, hasta.toString());
+        try {
+            escribirSegmentos(temporal, manifiesto.getArchivos(), desde, hasta);
+            manifiesto.setFilas(manifiesto.getArchivos().stream().mapToLong(ArchivoExportado::getFilas).sum());
+            objectMapper.writerWithDefaultPrettyPrinter()
+                    .writeValue(temporal.resolve(ARCHIVO_MANIFIESTO).toFile(), manifiesto);
+        } catch (IOException | RuntimeException e) {
+            eliminarRecursivo(temporal);
+            throw e;
+        }
+        
+        Files.move(temporal, destino, StandardCopyOption.ATOMIC_MOVE);
+        guardarMarcaAgua(hasta);
+        return manifiesto;
+    }
+    
+    private void escribirSegmentos(Path carpeta, List<ArchivoExportado> archivos,
+                                   LocalDateTime desde, LocalDateTime hasta) throws IOException {
+        Timestamp inicio = Timestamp.valueOf(desde != null ? desde : LocalDateTime.of(1970, 1, 1, 0, 0));
+        Timestamp fin = Timestamp.valueOf(hasta);
+        try (EscritorSegmentos escritor = new EscritorSegmentos(carpeta, archivos)) {
+            jdbcTemplate.query(conexion -> {
+                PreparedStatement sentencia = conexion.prepareStatement(CONSULTA,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                sentencia.setFetchSize(Integer.MIN_VALUE);
+                sentencia.setTimestamp(1, inicio);
+                sentencia.setTimestamp(2, fin);
+                return sentencia;
+            }, escritor::escribir);
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+    
+    /**
+     * Obtener los manifiestos de las exportaciones publicadas, de la más reciente a la más antigua
+     */
+    public List<ManifiestoExportacionDTO> getExportaciones() throws IOException {
+        if (!Files.isDirectory(directorio)) {
+            return List.of();
+        }
+        List<ManifiestoExportacionDTO> manifiestos = new ArrayList<>();
+        try (Stream<Path> carpetas = Files.list(directorio)) {
+            for (Path carpeta : (Iterable<Path>) carpetas.sorted(Comparator.reverseOrder())::iterator) {
+                Path manifiesto = carpeta.resolve(ARCHIVO_MANIFIESTO);
+                if (!carpeta.getFileName().toString().endsWith(SUFIJO_TEMPORAL) && Files.isRegularFile(manifiesto)) {
+                    manifiestos.add(objectMapper.readValue(manifiesto.toFile(), ManifiestoExportacionDTO.class));
+                }
+            }
+        }
+        return manifiestos;
+    }
+    
+    /**
+     * Obtener un archivo (segmento o manifiesto) de una exportación publicada
+     */
+    public Optional<Path> getArchivo(String exportacion, String archivo) {
+        if (!NOMBRE_VALIDO.matcher(exportacion).matches() || !NOMBRE_VALIDO.matcher(archivo).matches()
+                || exportacion.endsWith(SUFIJO_TEMPORAL)) {
+            return Optional.empty();
+        }
+        Path ruta = directorio.resolve(exportacion).resolve(archivo);
+        return Files.isRegularFile(ruta) ? Optional.of(ruta) : Optional.empty();
+    }
+    
+    private Optional<LocalDateTime> leerMarcaAgua() throws IOException {
+        Path archivo = directorio.resolve(ARCHIVO_MARCA_AGUA);
+        if (!Files.isRegularFile(archivo)) {
+            return Optional.empty();
+        }
+        Properties propiedades = new Properties();
+        try (var lector = Files.newBufferedReader(archivo, StandardCharsets.UTF_8)) {
+            propiedades.load(lector);
+        }
+        return Optional.ofNullable(propiedades.getProperty(PROPIEDAD_MARCA_AGUA)).map(LocalDateTime::parse);
+    }
+    
+    private void guardarMarcaAgua(LocalDateTime hasta) throws IOException {
+        Path archivo = directorio.resolve(ARCHIVO_MARCA_AGUA);
+        Path temporal = directorio.resolve(ARCHIVO_MARCA_AGUA + SUFIJO_TEMPORAL);
+        Properties propiedades = new Properties();
+        propiedades.setProperty(PROPIEDAD_MARCA_AGUA, hasta.toString());
+        try (var escritor = Files.newBufferedWriter(temporal, StandardCharsets.UTF_8)) {
+            propiedades.store(escritor, "Marca de agua de la exportacion del libro diario");
+        }
+        Files.move(temporal, archivo, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+    
+    private static void eliminarRecursivo(Path ruta) throws IOException {
+        if (!Files.exists(ruta)) {
+            return;
+        }
+        try (Stream<Path> rutas = Files.walk(ruta)) {
+            for (Path actual : (Iterable<Path>) rutas.sorted(Comparator.reverseOrder())::iterator) {
+                Files.delete(actual);
+            }
+        }
+    }
+    
+    private static String escaparCsv(String valor) {
+        if (valor == null) {
+            return "";
+        }
+        if (valor.indexOf(',') < 0 && valor.indexOf('"') < 0 && valor.indexOf('\n') < 0 && valor.indexOf('\r') < 0) {
+            return valor;
+        }
+        return "\"" + valor.replace("\"", "\"\"") + "\"";
+    }
+    
+    /**
+     * Escribe las filas en segmentos gzip de tamaño acotado y registra cada segmento cerrado en el manifiesto
+     */
+    private class EscritorSegmentos implements AutoCloseable {
+        
+        private final Path carpeta;
+        private final List<ArchivoExportado> archivos;
+        private final Object[] valores = new Object[COLUMNAS.length];
+        
+        private String nombre;
+        private FileChannel canal;
+        private MessageDigest sha256;
+        private Writer salida;
+        private JsonGenerator generador;
+        private long filas;
+        
+        EscritorSegmentos(Path carpeta, List<ArchivoExportado> archivos) {
+            this.carpeta = carpeta;
+            this.archivos = archivos;
+        }
+        
+        void escribir(ResultSet rs) throws SQLException {
+            valores[0] = rs.getLong(1);
+            valores[1] = rs.getDate(2).toLocalDate().toString();
+            valores[2] = rs.getString(3);
+            valores[3] = rs.getLong(4);
+            valores[4] = rs.getString(5);
+            valores[5] = rs.getString(6);
+            long terceroId = rs.getLong(7);
+            valores[6] = rs.wasNull() ? null : terceroId;
+            valores[7] = encryptionUtil.decrypt(rs.getString(8));
+            valores[8] = rs.getString(9);
+            valores[9] = rs.getLong(10);
+            valores[10] = rs.getString(11);
+            valores[11] = rs.getString(12);
+            valores[12] = rs.getString(13);
+            valores[13] = rs.getBigDecimal(14);
+            valores[14] = rs.getTimestamp(15).toLocalDateTime().toString();
+            try {
+                if (canal == null || filas == filasPorSegmento) {
+                    cerrarSegmento();
+                    abrirSegmento();
+                }
+                if (formato == Formato.CSV) {
+                    escribirCsv(valores);
+                } else {
+                    escribirJson(valores);
+                }
+                filas++;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        
+        @Override
+        public void close() throws IOException {
+            cerrarSegmento();
+        }
+        
+        private void abrirSegmento() throws IOException {
+            nombre = String.format(Locale.ROOT, "libro-diario-%05d%s", archivos.size() + 1, formato.extension);
+            canal = FileChannel.open(carpeta.resolve(nombre), StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+            try {
+                sha256 = MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+            // La suma se calcula sobre los bytes comprimidos, tal como quedan en disco
+            OutputStream comprimido = new GZIPOutputStream(
+                    new DigestOutputStream(Channels.newOutputStream(canal), sha256), TAMANO_BUFFER);
+            salida = new BufferedWriter(new OutputStreamWriter(comprimido, StandardCharsets.UTF_8), TAMANO_BUFFER);
+            filas = 0;
+            if (formato == Formato.CSV) {
+                salida.write(String.join(",", COLUMNAS));
+                salida.write('\n');
+            } else {
+                generador = objectMapper.getFactory().createGenerator(salida)
+                        .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                        .setRootValueSeparator(null);
+            }
+        }
+        
+        private void cerrarSegmento() throws IOException {
+            if (canal == null) {
+                return;
+            }
+            if (generador != null) {
+                generador.close();
+                generador = null;
+            }
+            salida.close();
+            archivos.add(new ArchivoExportado(nombre, filas, Files.size(carpeta.resolve(nombre)),
+                    HexFormat.of().formatHex(sha256.digest())));
+            canal = null;
+        }
+        
+        private void escribirCsv(Object[] fila) throws IOException {
+            for (int i = 0; i < fila.length; i++) {
+                if (i > 0) {
+                    salida.write(',');
+                }
+                Object valor = fila[i];
+                if (valor instanceof BigDecimal decimal) {
+                    salida.write(decimal.toPlainString());
+                } else if (valor != null) {
+                    salida.write(escaparCsv(valor.toString()));
+                }
+            }
+            salida.write('\n');
+        }
+        
+        private void escribirJson(Object[] fila) throws IOException {
+            generador.writeStartObject();
+            for (int i = 0; i < fila.length; i++) {
+                Object valor = fila[i];
+                generador.writeFieldName(COLUMNAS[i]);
+                if (valor == null) {
+                    generador.writeNull();
+                } else if (valor instanceof BigDecimal decimal) {
+                    generador.writeNumber(decimal);
+                } else if (valor instanceof Long numero) {
+                    generador.writeNumber(numero);
+                } else {
+                    generador.writeString(valor.toString());
+                }
+            }
+            generador.writeEndObject();
+            generador.writeRaw('\n');
+        }
+    }
+}
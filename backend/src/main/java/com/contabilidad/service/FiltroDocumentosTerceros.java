@@ -0,0 +1,98 @@
+package com.contabilidad.service;
+
+import com.contabilidad.repository.TerceroRepository;
+import com.contabilidad.util.BlindIndex;
+import com.contabilidad.util.BloomFilter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+
+/**
+ * Filtro de Bloom con los números de documento de terceros ya registrados.
+ * Permite descartar sin consultar la base de datos los documentos que con seguridad son nuevos.
+ * Guarda los índices ciegos de los documentos, que se leen de la tabla sin descifrar nada.
+ * Se construye al primer uso; como otras instancias también registran terceros, un documento
+ * ausente del filtro puede existir igualmente, y el índice único de la tabla sigue siendo la garantía.
+ */
+@Component
+public class FiltroDocumentosTerceros {
+    
+    @Autowired
+    private TerceroRepository terceroRepository;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private BlindIndex blindIndex;
+    
+    private final long capacidadMinima;
+    private final double probabilidadFalsoPositivo;
+    
+    private volatile BloomFilter filtro;
+    private volatile long capacidad;
+    private final AtomicLong registrados = new AtomicLong();
+    
+    public FiltroDocumentosTerceros(
+            @Value("${contabilidad.terceros.filtro-documentos.capacidad}") long capacidadMinima,
+            @Value("${contabilidad.terceros.filtro-documentos.probabilidad-falso-positivo}") double probabilidadFalsoPositivo) {
+        this.capacidadMinima = capacidadMinima;
+        this.probabilidadFalsoPositivo = probabilidadFalsoPositivo;
+    }
+    
+    /**
+     * Indicar si el documento puede estar registrado (false significa que con seguridad no lo está en esta instancia)
+     */
+    public boolean puedeExistir(String numeroDocumento) {
+        return obtenerFiltro().mightContain(blindIndex.compute(numeroDocumento));
+    }
+    
+    /**
+     * Registrar un documento nuevo en el filtro
+     */
+    public void registrar(String numeroDocumento) {
+        BloomFilter actual = filtro;
+        if (actual == null) {
+            return;
+        }
+        actual.put(blindIndex.compute(numeroDocumento));
+        // Si se supera la capacidad, la tasa de falsos positivos crece: reconstruir en el siguiente uso
+        if (registrados.incrementAndGet() > capacidad) {
+            filtro = null;
+        }
+    }
+    
+    /**
+     * Descartar el filtro para reconstruirlo desde la base de datos en el siguiente uso
+     */
+    public void invalidar() {
+        filtro = null;
+    }
+    
+    private BloomFilter obtenerFiltro() {
+        BloomFilter actual = filtro;
+        if (actual != null) {
+            return actual;
+        }
+        synchronized (this) {
+            if (filtro == null) {
+                long existentes = terceroRepository.count();
+                long nuevaCapacidad = Math.max(capacidadMinima, existentes * 2);
+                BloomFilter nuevo = new BloomFilter(nuevaCapacidad, probabilidadFalsoPositivo);
+                transactionTemplate.executeWithoutResult(status -> {
+                    try (Stream<String> indices = terceroRepository.streamIndicesDocumento()) {
+                        indices.forEach(nuevo::put);
+                    }
+                });
+                capacidad = nuevaCapacidad;
+                registrados.set(existentes);
+                filtro = nuevo;
+            }
+            return filtro;
+        }
+    }
+}
@@ -0,0 +1,228 @@
+package com.contabilidad.service;
+
+import com.contabilidad.dto.TransaccionDTO;
+import com.contabilidad.dto.request.TransaccionRequest;
+import com.contabilidad.repository.ClaveIdempotenciaRepository;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Registro idempotente de transacciones mediante la cabecera Idempotency-Key.
+ * Los resultados recientes se guardan en memoria; la tabla claves_idempotencia
+ * garantiza la unicidad entre instancias y reinicios.
+ * <p>
+ * Cada clave guarda la huella (SHA-256) del cuerpo de la solicitud: reutilizarla con otro cuerpo es un error
+ * del cliente y se rechaza en lugar de devolver la transacción original. Las claves se conservan durante
+ * contabilidad.idempotencia.retencion; después se purgan de la tabla y pueden volver a usarse.
+ */
+@Service
+public class IdempotenciaService {
+    
+    private static final Logger log = LoggerFactory.getLogger(IdempotenciaService.class);
+    
+    private static final int LONGITUD_MAXIMA_CLAVE = 100;
+    
+    /**
+     * Filas por DELETE al purgar, para no bloquear la tabla durante toda la purga
+     */
+    private static final int FILAS_POR_PURGA = 10_000;
+    
+    @Autowired
+    private ClaveIdempotenciaRepository claveIdempotenciaRepository;
+    
+    @Autowired
+    private TransaccionService transaccionService;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    private final Duration retencion;
+    
+    private final Cache<String, Resultado> resultadosRecientes;
+    
+    private final ConcurrentHashMap<String, SolicitudEnCurso> solicitudesEnCurso = new ConcurrentHashMap<>();
+    
+    public IdempotenciaService(
+            @Value("${contabilidad.idempotencia.maximo-claves}") long maximoClaves,
+            @Value("${contabilidad.idempotencia.retencion}") Duration retencion) {
+        this.retencion = retencion;
+        this.resultadosRecientes = Caffeine.newBuilder()
+                .maximumSize(maximoClaves)
+                .expireAfterWrite(retencion)
+                .build();
+    }
+    
+    /**
+     * Registrar una transacción una sola vez por clave.
+     * Un reintento devuelve el resultado original sin volver a validar ni insertar, y las
+     * solicitudes concurrentes con la misma clave esperan a la primera que está en curso.
+     * @throws ConflictoIdempotenciaException si la clave ya se usó con una solicitud distinta
+     */
+    public TransaccionDTO registrarTransaccion(String clave, TransaccionRequest request) {
+        validarClave(clave);
+        String huella = huella(request);
+        
+        Resultado reciente = resultadosRecientes.getIfPresent(clave);
+        if (reciente != null) {
+            return reciente.para(clave, huella);
+        }
+        
+        SolicitudEnCurso propia = new SolicitudEnCurso(huella);
+        SolicitudEnCurso enCurso = solicitudesEnCurso.putIfAbsent(clave, propia);
+        if (enCurso != null) {
+            TransaccionDTO resultado = esperar(enCurso.resultado);
+            return new Resultado(enCurso.huella, resultado).para(clave, huella);
+        }
+        
+        try {
+            Resultado resultado = ejecutar(clave, huella, request);
+            resultadosRecientes.put(clave, resultado);
+            propia.resultado.complete(resultado.transaccion);
+            return resultado.para(clave, huella);
+        } catch (RuntimeException e) {
+            propia.resultado.completeExceptionally(e);
+            throw e;
+        } finally {
+            solicitudesEnCurso.remove(clave, propia);
+        }
+    }
+    
+    /**
+     * Purgar de la tabla las claves que superaron la retención
+     */
+    @Scheduled(fixedDelayString = "${contabilidad.idempotencia.purga}")
+    public void purgarVencidas() {
+        Timestamp limite = Timestamp.valueOf(LocalDateTime.now().minus(retencion));
+        try {
+            long purgadas = 0;
+            int eliminadas;
+            do {
+                eliminadas = jdbcTemplate.update("DELETE FROM claves_idempotencia WHERE fecha_creacion < ? LIMIT ?",
+                        limite, FILAS_POR_PURGA);
+                purgadas += eliminadas;
+            } while (eliminadas == FILAS_POR_PURGA);
+            if (purgadas > 0) {
+                log.info("Claves de idempotencia purgadas: {}", purgadas);
+            }
+        } catch (DataAccessException e) {
+            log.warn("No se pudieron purgar las claves de idempotencia: {}", e.getMessage());
+        }
+    }
+    
+    private Resultado ejecutar(String clave, String huella, TransaccionRequest request) {
+        Optional<Resultado> previo = buscarResultado(clave);
+        if (previo.isPresent()) {
+            return previo.get();
+        }
+        
+        try {
+            return new Resultado(huella, transaccionService.createTransaccion(request, clave, huella));
+        } catch (DataIntegrityViolationException e) {
+            // Otra instancia registró la misma clave de forma concurrente
+            return buscarResultado(clave).orElseThrow(() -> e);
+        }
+    }
+    
+    private Optional<Resultado> buscarResultado(String clave) {
+        return claveIdempotenciaRepository.findById(clave)
+                .flatMap(registro -> transaccionService.getTransaccionByIdWithPartidas(registro.getTransaccionId())
+                        .map(transaccion -> new Resultado(registro.getHuellaSolicitud(), transaccion)));
+    }
+    
+    /**
+     * SHA-256 (hex) del cuerpo de la solicitud tal como lo serializa Jackson
+     */
+    private String huella(TransaccionRequest request) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(objectMapper.writeValueAsBytes(request));
+            return HexFormat.of().formatHex(digest);
+        } catch (JsonProcessingException | NoSuchAlgorithmException e) {
+            throw new IllegalArgumentException("No se pudo calcular la huella de la solicitud", e);
+        }
+    }
+    
+    private TransaccionDTO esperar(CompletableFuture<TransaccionDTO> enCurso) {
+        try {
+            return enCurso.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException causa) {
+                throw causa;
+            }
+            throw e;
+        }
+    }
+    
+    private void validarClave(String clave) {
+        if (clave.isBlank() || clave.length() > LONGITUD_MAXIMA_CLAVE) {
+            throw new RuntimeException("La clave de idempotencia debe tener entre 1 y " + LONGITUD_MAXIMA_CLAVE + " caracteres");
+        }
+    }
+    
+    /**
+     * Transacción registrada con una clave y huella de la solicitud que la registró
+     */
+    private static class Resultado {
+        private final String huella;
+        private final TransaccionDTO transaccion;
+        
+        Resultado(String huella, TransaccionDTO transaccion) {
+            this.huella = huella;
+            this.transaccion = transaccion;
+        }
+        
+        /**
+         * Devolver la transacción si la solicitud repetida es la misma que la registró
+         */
+        TransaccionDTO para(String clave, String huellaSolicitud) {
+            if (!huella.equals(huellaSolicitud)) {
+                throw new ConflictoIdempotenciaException("La clave de idempotencia " + clave +
+                        " ya se usó con una solicitud distinta");
+            }
+            return transaccion;
+        }
+    }
+    
+    /**
+     * Una clave de idempotencia ya usada llegó con otra solicitud
+     */
+    public static class ConflictoIdempotenciaException extends RuntimeException {
+        
+        public ConflictoIdempotenciaException(String mensaje) {
+            super(mensaje);
+        }
+    }
+    
+    private static class SolicitudEnCurso {
+        private final String huella;
+        private final CompletableFuture<TransaccionDTO> resultado = new CompletableFuture<>();
+        
+        SolicitudEnCurso(String huella) {
+            this.huella = huella;
+        }
+    }
+}
@@ -0,0 +1,461 @@
+package com.contabilidad.service;
+
+import com.contabilidad.dto.ResultadoImportacionDTO;
+import com.contabilidad.dto.request.TransaccionRequest;
+import com.contabilidad.model.CuentaContable;
+import com.contabilidad.model.Tercero;
+import com.contabilidad.model.TipoComprobante;
+import com.contabilidad.model.TipoPartida;
+import com.contabilidad.repository.CuentaContableRepository;
+import com.contabilidad.repository.TerceroRepository;
+import com.contabilidad.util.BlindIndex;
+import com.contabilidad.util.CsvReader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigDecimal;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Importación de asientos contables desde archivos CSV.
+ * <p>
+ * El archivo se lee como flujo y se procesa por bloques de asientos, por lo que la memoria
+ * usada no depende del tamaño del archivo. Las filas de un mismo asiento deben ser consecutivas
+ * y compartir la columna referencia. Cada bloque se valida en paralelo, se comprueba contra los
+ * saldos actuales en memoria y se registra en una sola transacción con inserciones por lotes.
+ * Los asientos rechazados se escriben en un reporte de errores descargable.
+ */
+@Service
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+public class ImportacionAsientosService {
+    
+    /**
+     * Asientos validados y registrados en cada transacción
+     */
+    private static final int TAMANO_BLOQUE = 500;
+    
+    /**
+     * Máximo de partidas por asiento, para que un asiento no pueda crecer sin límite en memoria
+     */
+    private static final int MAXIMO_PARTIDAS_ASIENTO = 1000;
+    
+    private static final String COLUMNA_REFERENCIA = "referencia";
+    private static final String COLUMNA_FECHA = "fecha";
+    private static final String COLUMNA_DESCRIPCION = "descripcion";
+    private static final String COLUMNA_DOCUMENTO_TERCERO = "documento_tercero";
+    private static final String COLUMNA_CODIGO_CUENTA = "codigo_cuenta";
+    private static final String COLUMNA_TIPO = "tipo";
+    private static final String COLUMNA_VALOR = "valor";
+    private static final String COLUMNA_TIPO_COMPROBANTE = "tipo_comprobante";
+    
+    private static final List<String> COLUMNAS_OBLIGATORIAS = List.of(COLUMNA_REFERENCIA, COLUMNA_FECHA,
+            COLUMNA_DESCRIPCION, COLUMNA_DOCUMENTO_TERCERO, COLUMNA_CODIGO_CUENTA, COLUMNA_TIPO, COLUMNA_VALOR);
+    
+    private static final String SUFIJO_REPORTE_ERRORES = "-errores.csv";
+    
+    @Autowired
+    private TerceroRepository terceroRepository;
+    
+    @Autowired
+    private BlindIndex blindIndex;
+    
+    @Autowired
+    private CuentaContableRepository cuentaContableRepository;
+    
+    @Autowired
+    private CuentaContableService cuentaContableService;
+    
+    @Autowired
+    private TransaccionService transaccionService;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    private final Path directorio;
+    
+    public ImportacionAsientosService(@Value("${contabilidad.importaciones.directorio}") String directorio) {
+        this.directorio = Paths.get(directorio);
+    }
+    
+    /**
+     * Importar asientos desde un CSV con encabezado
+     * (referencia, fecha, descripcion, documento_tercero, codigo_cuenta, tipo, valor y opcionalmente tipo_comprobante)
+     */
+    public ResultadoImportacionDTO importarAsientos(InputStream contenido) throws IOException {
+        String id = UUID.randomUUID().toString();
+        ResultadoImportacionDTO resultado = new ResultadoImportacionDTO(id);
+        
+        Files.createDirectories(directorio);
+        Path reporteErrores = directorio.resolve(id + SUFIJO_REPORTE_ERRORES);
+        
+        // El plan de cuentas es pequeño: se carga completo una vez por importación
+        List<CuentaContable> todasLasCuentas = cuentaContableRepository.findAll();
+        Map<String, CuentaContable> cuentasPorCodigo = todasLasCuentas.stream()
+                .collect(Collectors.toMap(CuentaContable::getCodigo, Function.identity()));
+        Map<Long, CuentaContable> cuentasPorId = todasLasCuentas.stream()
+                .collect(Collectors.toMap(CuentaContable::getId, Function.identity()));
+        
+        try (CsvReader lector = new CsvReader(Channels.newChannel(contenido), ',');
+             BufferedWriter errores = Files.newBufferedWriter(reporteErrores, StandardCharsets.UTF_8)) {
+            errores.write("referencia,linea,error");
+            errores.newLine();
+            
+            String[] encabezado = lector.readRow();
+            if (encabezado == null) {
+                throw new RuntimeException("El archivo está vacío");
+            }
+            Map<String, Integer> columnas = indexarColumnas(encabezado);
+            
+            ContextoBloque contexto = new ContextoBloque(cuentasPorCodigo, cuentasPorId, errores, resultado);
+            List<AsientoImportado> bloque = new ArrayList<>(TAMANO_BLOQUE);
+            AsientoImportado actual = null;
+            String[] fila;
+            while ((fila = lector.readRow()) != null) {
+                resultado.sumarFila();
+                String referencia = obtenerCampo(fila, columnas, COLUMNA_REFERENCIA);
+                if (actual == null || !actual.referencia.equals(referencia)) {
+                    if (actual != null) {
+                        bloque.add(actual);
+                        if (bloque.size() == TAMANO_BLOQUE) {
+                            procesarBloque(bloque, contexto);
+                            bloque.clear();
+                        }
+                    }
+                    actual = new AsientoImportado(referencia, lector.getRowLine());
+                    resultado.sumarAsiento();
+                }
+                actual.agregarFila(fila, columnas, lector.getRowLine());
+            }
+            if (actual != null) {
+                bloque.add(actual);
+            }
+            if (!bloque.isEmpty()) {
+                procesarBloque(bloque, contexto);
+            }
+        } catch (IOException | RuntimeException e) {
+            Files.deleteIfExists(reporteErrores);
+            throw e;
+        }
+        
+        if (resultado.getAsientosRechazados() > 0) {
+            resultado.setUrlErrores("/api/importaciones/" + id + "/errores");
+        } else {
+            Files.deleteIfExists(reporteErrores);
+        }
+        return resultado;
+    }
+    
+    /**
+     * Obtener el reporte de errores de una importación
+     */
+    public Optional<Path> getReporteErrores(String id) {
+        try {
+            UUID.fromString(id);
+        } catch (IllegalArgumentException e) {
+            return Optional.empty();
+        }
+        Path reporte = directorio.resolve(id + SUFIJO_REPORTE_ERRORES);
+        return Files.isRegularFile(reporte) ? Optional.of(reporte) : Optional.empty();
+    }
+    
+    /**
+     * Validar en paralelo, verificar saldos en memoria y registrar un bloque de asientos
+     */
+    private void procesarBloque(List<AsientoImportado> bloque, ContextoBloque contexto) throws IOException {
+        // Resolver todos los terceros del bloque con una sola consulta, por índice ciego: así el documento del
+        // archivo coincide con el registrado aunque difiera en mayúsculas o espacios
+        Set<String> documentos = new HashSet<>();
+        for (AsientoImportado asiento : bloque) {
+            if (asiento.error == null && asiento.documentoTercero != null) {
+                asiento.hashDocumentoTercero = blindIndex.compute(asiento.documentoTercero);
+                documentos.add(asiento.hashDocumentoTercero);
+            }
+        }
+        Map<String, Long> terceros = documentos.isEmpty() ? Map.of()
+                : terceroRepository.findByNumeroDocumentoHashIn(documentos).stream()
+                        .collect(Collectors.toMap(Tercero::getNumeroDocumentoHash, Tercero::getId));
+        
+        bloque.parallelStream().forEach(asiento -> asiento.validar(terceros, contexto.cuentasPorCodigo));
+        
+        List<AsientoImportado> validos = new ArrayList<>(bloque.size());
+        Set<Long> cuentaIds = new HashSet<>();
+        for (AsientoImportado asiento : bloque) {
+            if (asiento.error != null) {
+                rechazar(asiento, asiento.error, contexto);
+            } else {
+                validos.add(asiento);
+                cuentaIds.addAll(asiento.movimientos.keySet());
+            }
+        }
+        if (validos.isEmpty()) {
+            return;
+        }
+        
+        // Verificar saldos negativos en el orden del archivo
+        ProyeccionSaldos saldos = cuentaContableService.proyectarSaldos(cuentaIds);
+        List<AsientoImportado> aceptados = new ArrayList<>(validos.size());
+        for (AsientoImportado asiento : validos) {
+            Optional<Long> cuentaRechazada = saldos.aplicar(asiento.movimientos);
+            if (cuentaRechazada.isPresent()) {
+                CuentaContable cuenta = contexto.cuentasPorId.get(cuentaRechazada.get());
+                rechazar(asiento, "El asiento generaría un saldo negativo en la cuenta " + cuenta.getCodigo() +
+                        " - " + cuenta.getNombre() + ", la cual no permite saldos negativos", contexto);
+            } else {
+                aceptados.add(asiento);
+            }
+        }
+        if (aceptados.isEmpty()) {
+            return;
+        }
+        
+        List<TransaccionRequest> requests = aceptados.stream()
+                .map(asiento -> asiento.request)
+                .collect(Collectors.toList());
+        try {
+            Integer registrados = transactionTemplate.execute(status -> transaccionService.registrarLote(requests));
+            contexto.resultado.sumarRegistrados(registrados);
+        } catch (RuntimeException e) {
+            // Si el bloque falla (por ejemplo, por un cambio concurrente de saldos), registrar asiento por asiento
+            for (AsientoImportado asiento : aceptados) {
+                try {
+                    transaccionService.createTransaccion(asiento.request);
+                    contexto.resultado.sumarRegistrados(1);
+                } catch (RuntimeException individual) {
+                    rechazar(asiento, individual.getMessage(), contexto);
+                }
+            }
+        }
+    }
+    
+    private void rechazar(AsientoImportado asiento, String mensaje, ContextoBloque contexto) throws IOException {
+        contexto.resultado.sumarRechazado();
+        contexto.errores.write(escaparCsv(asiento.referencia) + "," + asiento.linea + "," + escaparCsv(mensaje));
+        contexto.errores.newLine();
+    }
+    
+    private Map<String, Integer> indexarColumnas(String[] encabezado) {
+        Map<String, Integer> columnas = new HashMap<>();
+        for (int i = 0; i < encabezado.length; i++) {
+            columnas.put(encabezado[i].trim().toLowerCase(Locale.ROOT), i);
+        }
+        List<String> faltantes = COLUMNAS_OBLIGATORIAS.stream()
+                .filter(columna -> !columnas.containsKey(columna))
+                .collect(Collectors.toList());
+        if (!faltantes.isEmpty()) {
+            throw new RuntimeException("Faltan columnas en el encabezado: " + String.join(", ", faltantes));
+        }
+        return columnas;
+    }
+    
+    private static String obtenerCampo(String[] fila, Map<String, Integer> columnas, String columna) {
+        Integer indice = columnas.get(columna);
+        if (indice == null || indice >= fila.length) {
+            return null;
+        }
+        String valor = fila[indice].trim();
+        return valor.isEmpty() ? null : valor;
+    }
+    
+    private static String escaparCsv(String valor) {
+        if (valor == null) {
+            return "";
+        }
+        if (valor.indexOf(',') < 0 && valor.indexOf('"') < 0 && valor.indexOf('\n') < 0 && valor.indexOf('\r') < 0) {
+            return valor;
+        }
+        return "\"" + valor.replace("\"", "\"\"") + "\"";
+    }
+    
+    private static class ContextoBloque {
+        private final Map<String, CuentaContable> cuentasPorCodigo;
+        private final Map<Long, CuentaContable> cuentasPorId;
+        private final BufferedWriter errores;
+        private final ResultadoImportacionDTO resultado;
+        
+        ContextoBloque(Map<String, CuentaContable> cuentasPorCodigo, Map<Long, CuentaContable> cuentasPorId,
+                       BufferedWriter errores, ResultadoImportacionDTO resultado) {
+            this.cuentasPorCodigo = cuentasPorCodigo;
+            this.cuentasPorId = cuentasPorId;
+            this.errores = errores;
+            this.resultado = resultado;
+        }
+    }
+    
+    /**
+     * Filas de un asiento tal como vienen en el archivo; se interpretan y validan en paralelo
+     */
+    private static class AsientoImportado {
+        private final String referencia;
+        private final long linea;
+        private String fecha;
+        private String descripcion;
+        private String documentoTercero;
+        private String hashDocumentoTercero;
+        private String tipoComprobante;
+        private final List<String[]> partidas = new ArrayList<>();
+        private final List<Long> lineasPartidas = new ArrayList<>();
+        
+        private String error;
+        private TransaccionRequest request;
+        private Map<Long, BigDecimal> movimientos;
+        
+        AsientoImportado(String referencia, long linea) {
+            this.referencia = referencia;
+            this.linea = linea;
+            if (referencia == null) {
+                error = "Línea " + linea + ": la referencia es obligatoria";
+            }
+        }
+        
+        void agregarFila(String[] fila, Map<String, Integer> columnas, long lineaFila) {
+            if (error != null) {
+                return;
+            }
+            if (partidas.size() == MAXIMO_PARTIDAS_ASIENTO) {
+                error = "El asiento supera el máximo de " + MAXIMO_PARTIDAS_ASIENTO + " partidas";
+                partidas.clear();
+                lineasPartidas.clear();
+                return;
+            }
+            if (partidas.isEmpty()) {
+                fecha = obtenerCampo(fila, columnas, COLUMNA_FECHA);
+                descripcion = obtenerCampo(fila, columnas, COLUMNA_DESCRIPCION);
+                documentoTercero = obtenerCampo(fila, columnas, COLUMNA_DOCUMENTO_TERCERO);
+                tipoComprobante = obtenerCampo(fila, columnas, COLUMNA_TIPO_COMPROBANTE);
+            }
+            partidas.add(new String[] {
+                    obtenerCampo(fila, columnas, COLUMNA_CODIGO_CUENTA),
+                    obtenerCampo(fila, columnas, COLUMNA_TIPO),
+                    obtenerCampo(fila, columnas, COLUMNA_VALOR)
+            });
+            lineasPartidas.add(lineaFila);
+        }
+        
+        void validar(Map<String, Long> terceros, Map<String, CuentaContable> cuentas) {
+            if (error != null) {
+                return;
+            }
+            try {
+                TransaccionRequest transaccion = new TransaccionRequest();
+                transaccion.setFecha(interpretarFecha());
+                transaccion.setDescripcion(validarDescripcion());
+                transaccion.setTerceroId(resolverTercero(terceros));
+                if (tipoComprobante != null) {
+                    transaccion.setTipoComprobante(interpretarTipoComprobante());
+                }
+                
+                List<TransaccionRequest.PartidaRequest> partidasRequest = new ArrayList<>(partidas.size());
+                for (int i = 0; i < partidas.size(); i++) {
+                    partidasRequest.add(interpretarPartida(partidas.get(i), lineasPartidas.get(i), cuentas));
+                }
+                transaccion.setPartidas(partidasRequest);
+                
+                ReglasContables.validarPartidas(partidasRequest);
+                movimientos = ReglasContables.calcularMovimientos(partidasRequest);
+                request = transaccion;
+            } catch (RuntimeException e) {
+                error = e.getMessage();
+            }
+            partidas.clear();
+            lineasPartidas.clear();
+        }
+        
+        private LocalDate interpretarFecha() {
+            if (fecha == null) {
+                throw new RuntimeException("La fecha es obligatoria");
+            }
+            try {
+                return LocalDate.parse(fecha);
+            } catch (DateTimeParseException e) {
+                throw new RuntimeException("Fecha inválida (se espera AAAA-MM-DD): " + fecha);
+            }
+        }
+        
+        private TipoComprobante interpretarTipoComprobante() {
+            try {
+                return TipoComprobante.valueOf(tipoComprobante.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new RuntimeException("Tipo de comprobante inválido: " + tipoComprobante);
+            }
+        }
+        
+        private String validarDescripcion() {
+            if (descripcion == null) {
+                throw new RuntimeException("La descripción es obligatoria");
+            }
+            if (descripcion.length() > 200) {
+                throw new RuntimeException("La descripción no puede exceder 200 caracteres");
+            }
+            return descripcion;
+        }
+        
+        private Long resolverTercero(Map<String, Long> terceros) {
+            if (documentoTercero == null) {
+                throw new RuntimeException("El documento del tercero es obligatorio");
+            }
+            Long terceroId = terceros.get(hashDocumentoTercero);
+            if (terceroId == null) {
+                throw new RuntimeException("No existe un tercero con el documento " + documentoTercero);
+            }
+            return terceroId;
+        }
+        
+        private TransaccionRequest.PartidaRequest interpretarPartida(String[] partida, long lineaPartida,
+                                                                     Map<String, CuentaContable> cuentas) {
+            String codigoCuenta = partida[0];
+            CuentaContable cuenta = codigoCuenta != null ? cuentas.get(codigoCuenta) : null;
+            if (cuenta == null) {
+                throw new RuntimeException("Línea " + lineaPartida + ": no existe la cuenta " + codigoCuenta);
+            }
+            if (!cuenta.isActivo()) {
+                throw new RuntimeException("Línea " + lineaPartida + ": la cuenta " + cuenta.getCodigo() + " - " +
+                        cuenta.getNombre() + " está inactiva y no puede ser utilizada en transacciones");
+            }
+            
+            TipoPartida tipo;
+            if ("DEBE".equalsIgnoreCase(partida[1])) {
+                tipo = TipoPartida.DEBE;
+            } else if ("HABER".equalsIgnoreCase(partida[1])) {
+                tipo = TipoPartida.HABER;
+            } else {
+                throw new RuntimeException("Línea " + lineaPartida + ": tipo de partida inválido (DEBE o HABER): " + partida[1]);
+            }
+            
+            BigDecimal valor;
+            try {
+                valor = new BigDecimal(partida[2]);
+            } catch (NumberFormatException | NullPointerException e) {
+                throw new RuntimeException("Línea " + lineaPartida + ": valor inválido: " + partida[2]);
+            }
+            if (valor.signum() <= 0 || valor.scale() > 2) {
+                throw new RuntimeException("Línea " + lineaPartida + ": el valor debe ser positivo y tener máximo 2 decimales");
+            }
+            
+            return new TransaccionRequest.PartidaRequest(cuenta.getId(), tipo, valor);
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package com.contabilidad.service;
+
+import com.contabilidad.util.RateLimiter;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Límites de peticiones por cliente y grupo de endpoints.
+ * <p>
+ * Cada cliente (usuario del token e IP, o solo la IP sin token) tiene un limitador GCRA por grupo; el estado es un único AtomicLong
+ * que se actualiza con CAS, así que las peticiones que pasan no toman ningún bloqueo. Los limitadores se
+ * descartan tras un tiempo sin uso: un cliente que vuelve después de ese tiempo habría recuperado de todas
+ * formas toda su ráfaga, siempre que la inactividad configurada sea mayor que rafaga / permisos-por-segundo.
+ */
+@Service
+public class LimiteTasaService {
+    
+    public enum Grupo {
+        ESCRITURA, LECTURA, REPORTES
+    }
+    
+    private final boolean habilitado;
+    private final Map<Grupo, Limite> limites = new EnumMap<>(Grupo.class);
+    
+    public LimiteTasaService(
+            MeterRegistry meterRegistry,
+            @Value("${contabilidad.limites.habilitado}") boolean habilitado,
+            @Value("${contabilidad.limites.clientes-maximo}") long clientesMaximo,
+            @Value("${contabilidad.limites.inactividad}") Duration inactividad,
+            @Value("${contabilidad.limites.escritura.permisos-por-segundo}") double escrituraPorSegundo,
+            @Value("${contabilidad.limites.escritura.rafaga}") int escrituraRafaga,
+            @Value("${contabilidad.limites.lectura.permisos-por-segundo}") double lecturaPorSegundo,
+            @Value("${contabilidad.limites.lectura.rafaga}") int lecturaRafaga,
+            @Value("${contabilidad.limites.reportes.permisos-por-segundo}") double reportesPorSegundo,
+            @Value("${contabilidad.limites.reportes.rafaga}") int reportesRafaga) {
+        this.habilitado = habilitado;
+        limites.put(Grupo.ESCRITURA, new Limite(Grupo.ESCRITURA, escrituraPorSegundo, escrituraRafaga,
+                clientesMaximo, inactividad, meterRegistry));
+        limites.put(Grupo.LECTURA, new Limite(Grupo.LECTURA, lecturaPorSegundo, lecturaRafaga,
+                clientesMaximo, inactividad, meterRegistry));
+        limites.put(Grupo.REPORTES, new Limite(Grupo.REPORTES, reportesPorSegundo, reportesRafaga,
+                clientesMaximo, inactividad, meterRegistry));
+    }
+    
+    /**
+     * Consumir un permiso del cliente en el grupo
+     * @return 0 si la petición puede continuar, o los nanosegundos que faltan para que haya un permiso disponible
+     */
+    public long consumir(Grupo grupo, String cliente) {
+        if (!habilitado) {
+            return 0;
+        }
+        Limite limite = limites.get(grupo);
+        long espera = limite.limitadores.get(cliente, llave -> new RateLimiter(limite.porSegundo, limite.rafaga))
+                .tryAcquire(1);
+        if (espera == 0) {
+            limite.permitidas.increment();
+        } else {
+            limite.rechazadas.increment();
+        }
+        return espera;
+    }
+    
+    private static class Limite {
+        private final double porSegundo;
+        private final int rafaga;
+        private final Cache<String, RateLimiter> limitadores;
+        private final Counter permitidas;
+        private final Counter rechazadas;
+        
+        Limite(Grupo grupo, double porSegundo, int rafaga, long clientesMaximo, Duration inactividad,
+               MeterRegistry meterRegistry) {
+            // Se valida al arrancar y no con el primer cliente
+            new RateLimiter(porSegundo, rafaga);
+            this.porSegundo = porSegundo;
+            this.rafaga = rafaga;
+            this.limitadores = Caffeine.newBuilder()
+                    .maximumSize(clientesMaximo)
+                    .expireAfterAccess(inactividad)
+                    .build();
+            String etiqueta = grupo.name().toLowerCase(Locale.ROOT);
+            this.permitidas = Counter.builder("contabilidad.limites.peticiones")
+                    .description("Peticiones evaluadas por el limitador de tasa")
+                    .tags("grupo", etiqueta, "resultado", "permitida")
+                    .register(meterRegistry);
+            this.rechazadas = Counter.builder("contabilidad.limites.peticiones")
+                    .description("Peticiones evaluadas por el limitador de tasa")
+                    .tags("grupo", etiqueta, "resultado", "rechazada")
+                    .register(meterRegistry);
+            Gauge.builder("contabilidad.limites.clientes", limitadores, Cache::estimatedSize)
+                    .description("Clientes con un limitador activo")
+                    .tags("grupo", etiqueta)
+                    .register(meterRegistry);
+        }
+    }
+}
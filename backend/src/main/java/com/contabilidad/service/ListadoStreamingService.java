@@ -0,0 +1,272 @@
+package com.contabilidad.service;
+
+import com.contabilidad.config.ReportesConfig;
+import com.contabilidad.model.Transaccion;
+import com.contabilidad.util.EncryptionUtil;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Listados de transacciones y terceros escritos directamente desde el ResultSet al JsonGenerator.
+ * Las filas se leen con un cursor de solo avance (fetch size Integer.MIN_VALUE en MySQL), sin pasar por
+ * el contexto de persistencia ni por listas de DTOs, de modo que la memoria usada no depende del tamaño
+ * del resultado. Los objetos generados tienen los mismos campos que TransaccionDTO y TerceroDTO.
+ */
+@Service
+public class ListadoStreamingService {
+    
+    public enum Formato {
+        /** Un único arreglo JSON */
+        JSON("application/json"),
+        /** Un objeto JSON por línea */
+        NDJSON("application/x-ndjson");
+        
+        private final String mediaType;
+        
+        Formato(String mediaType) {
+            this.mediaType = mediaType;
+        }
+        
+        public String getMediaType() {
+            return mediaType;
+        }
+    }
+    
+    private static final String CONSULTA_TRANSACCIONES =
+            "SELECT t.id, t.tercero_id, te.nombre, te.numero_documento, t.fecha, t.descripcion, t.estado, " +
+            "t.tipo_comprobante, t.numero_comprobante, " +
+            "pc.id, pc.cuenta_id, cc.codigo, cc.nombre, pc.tipo, pc.valor " +
+            "FROM transacciones t " +
+            "LEFT JOIN terceros te ON te.id = t.tercero_id " +
+            "LEFT JOIN partidas_contables pc ON pc.transaccion_id = t.id " +
+            "LEFT JOIN cuentas_contables cc ON cc.id = pc.cuenta_id " +
+            "WHERE 1 = 1";
+    
+    private static final String CONSULTA_TERCEROS =
+            "SELECT id, nombre, tipo_documento, numero_documento, email, telefono, direccion, activo " +
+            "FROM terceros";
+    
+    @Autowired
+    @Qualifier(ReportesConfig.REPORTES_JDBC_TEMPLATE)
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private EncryptionUtil encryptionUtil;
+    
+    /**
+     * Escribir las transacciones (con sus partidas) que cumplen los filtros; los filtros nulos se ignoran
+     */
+    public void escribirTransacciones(OutputStream salida, Formato formato, Long terceroId,
+                                      LocalDate fechaInicio, LocalDate fechaFin, Transaccion.Estado estado) throws IOException {
+        StringBuilder sql = new StringBuilder(CONSULTA_TRANSACCIONES);
+        List<Object> parametros = new ArrayList<>();
+        if (terceroId != null) {
+            sql.append(" AND t.tercero_id = ?");
+            parametros.add(terceroId);
+        }
+        if (fechaInicio != null) {
+            sql.append(" AND t.fecha >= ?");
+            parametros.add(fechaInicio);
+        }
+        if (fechaFin != null) {
+            sql.append(" AND t.fecha <= ?");
+            parametros.add(fechaFin);
+        }
+        if (estado != null) {
+            sql.append(" AND t.estado = ?");
+            parametros.add(estado.name());
+        }
+        // Las partidas de una transacción llegan consecutivas y se agrupan sin acumular filas
+        sql.append(" ORDER BY t.id, pc.id");
+        
+        try (JsonGenerator generador = crearGenerador(salida, formato)) {
+            EscritorTransacciones escritor = new EscritorTransacciones(generador, formato, encryptionUtil);
+            consultar(sql.toString(), parametros, escritor);
+            escritor.terminar();
+        }
+    }
+    
+    /**
+     * Escribir todos los terceros, descifrando número de documento, email, teléfono y dirección
+     */
+    public void escribirTerceros(OutputStream salida, Formato formato) throws IOException {
+        try (JsonGenerator generador = crearGenerador(salida, formato)) {
+            consultar(CONSULTA_TERCEROS + " ORDER BY id", List.of(), rs -> {
+                try {
+                    generador.writeStartObject();
+                    generador.writeNumberField("id", rs.getLong(1));
+                    generador.writeStringField("nombre", rs.getString(2));
+                    generador.writeStringField("tipoDocumento", rs.getString(3));
+                    generador.writeStringField("numeroDocumento", encryptionUtil.decrypt(rs.getString(4)));
+                    generador.writeStringField("email", encryptionUtil.decrypt(rs.getString(5)));
+                    generador.writeStringField("telefono", encryptionUtil.decrypt(rs.getString(6)));
+                    generador.writeStringField("direccion", encryptionUtil.decrypt(rs.getString(7)));
+                    generador.writeBooleanField("activo", rs.getBoolean(8));
+                    generador.writeEndObject();
+                    separar(generador, formato);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+            if (formato == Formato.JSON) {
+                generador.writeEndArray();
+            }
+        }
+    }
+    
+    private JsonGenerator crearGenerador(OutputStream salida, Formato formato) throws IOException {
+        JsonGenerator generador = objectMapper.getFactory().createGenerator(salida)
+                // Si la consulta falla a mitad de camino la respuesta debe quedar incompleta, no cerrada como válida
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_JSON_CONTENT)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                // En NDJSON el separador entre objetos es el salto de línea
+                .setRootValueSeparator(null);
+        if (formato == Formato.JSON) {
+            generador.writeStartArray();
+        }
+        return generador;
+    }
+    
+    private static void separar(JsonGenerator generador, Formato formato) throws IOException {
+        if (formato == Formato.NDJSON) {
+            generador.writeRaw('\n');
+        }
+    }
+    
+    /**
+     * Ejecutar la consulta con un cursor de solo avance para que el driver no cargue todo el resultado
+     */
+    private void consultar(String sql, List<Object> parametros, RowCallbackHandler manejador) throws IOException {
+        try {
+            jdbcTemplate.query(conexion -> {
+                PreparedStatement sentencia = conexion.prepareStatement(sql,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                sentencia.setFetchSize(Integer.MIN_VALUE);
+                for (int i = 0; i < parametros.size(); i++) {
+                    sentencia.setObject(i + 1, parametros.get(i));
+                }
+                return sentencia;
+            }, manejador);
+        } catch (UncheckedIOException e) {
+            // El cliente cerró la conexión
+            throw e.getCause();
+        }
+    }
+    
+    /**
+     * Agrupa las filas consecutivas de una misma transacción en un objeto con sus partidas y totales
+     */
+    private static class EscritorTransacciones implements RowCallbackHandler {
+        
+        private final JsonGenerator generador;
+        private final Formato formato;
+        private final EncryptionUtil encryptionUtil;
+        private long transaccionActual = -1;
+        private BigDecimal totalDebitos;
+        private BigDecimal totalCreditos;
+        
+        EscritorTransacciones(JsonGenerator generador, Formato formato, EncryptionUtil encryptionUtil) {
+            this.generador = generador;
+            this.formato = formato;
+            this.encryptionUtil = encryptionUtil;
+        }
+        
+        @Override
+        public void processRow(ResultSet rs) throws SQLException {
+            try {
+                long transaccionId = rs.getLong(1);
+                if (transaccionId != transaccionActual) {
+                    cerrarTransaccion();
+                    abrirTransaccion(rs, transaccionId);
+                }
+                long partidaId = rs.getLong(10);
+                if (!rs.wasNull()) {
+                    escribirPartida(rs, partidaId);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        
+        void terminar() throws IOException {
+            cerrarTransaccion();
+            if (formato == Formato.JSON) {
+                generador.writeEndArray();
+            }
+        }
+        
+        private void abrirTransaccion(ResultSet rs, long transaccionId) throws SQLException, IOException {
+            transaccionActual = transaccionId;
+            totalDebitos = BigDecimal.ZERO;
+            totalCreditos = BigDecimal.ZERO;
+            
+            generador.writeStartObject();
+            generador.writeNumberField("id", transaccionId);
+            long terceroId = rs.getLong(2);
+            if (rs.wasNull()) {
+                generador.writeNullField("terceroId");
+            } else {
+                generador.writeNumberField("terceroId", terceroId);
+            }
+            generador.writeStringField("terceroNombre", rs.getString(3));
+            generador.writeStringField("terceroDocumento", encryptionUtil.decrypt(rs.getString(4)));
+            generador.writeStringField("fecha", rs.getDate(5).toLocalDate().toString());
+            generador.writeStringField("descripcion", rs.getString(6));
+            String estado = rs.getString(7);
+            generador.writeStringField("estado", estado != null ? estado : Transaccion.Estado.ACTIVA.name());
+            generador.writeStringField("tipoComprobante", rs.getString(8));
+            generador.writeNumberField("numeroComprobante", rs.getLong(9));
+            generador.writeArrayFieldStart("partidas");
+        }
+        
+        private void escribirPartida(ResultSet rs, long partidaId) throws SQLException, IOException {
+            String tipo = rs.getString(14);
+            BigDecimal valor = rs.getBigDecimal(15);
+            if ("DEBE".equals(tipo)) {
+                totalDebitos = totalDebitos.add(valor);
+            } else {
+                totalCreditos = totalCreditos.add(valor);
+            }
+            
+            generador.writeStartObject();
+            generador.writeNumberField("id", partidaId);
+            generador.writeNumberField("cuentaContableId", rs.getLong(11));
+            generador.writeStringField("cuentaContableCodigo", rs.getString(12));
+            generador.writeStringField("cuentaContableNombre", rs.getString(13));
+            generador.writeStringField("tipo", tipo);
+            generador.writeNumberField("valor", valor);
+            generador.writeEndObject();
+        }
+        
+        private void cerrarTransaccion() throws IOException {
+            if (transaccionActual == -1) {
+                return;
+            }
+            generador.writeEndArray();
+            generador.writeNumberField("totalDebitos", totalDebitos);
+            generador.writeNumberField("totalCreditos", totalCreditos);
+            generador.writeBooleanField("balanceado", totalDebitos.compareTo(totalCreditos) == 0);
+            generador.writeEndObject();
+            separar(generador, formato);
+        }
+    }
+}
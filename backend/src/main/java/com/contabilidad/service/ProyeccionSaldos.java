@@ -0,0 +1,44 @@
+package com.contabilidad.service;
+
+import java.math.BigDecimal;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * Saldos en memoria de un conjunto de cuentas, usados para validar varias
+ * transacciones seguidas sin consultar la base de datos por cada una.
+ * Aplica la misma regla que la actualización atómica de saldos: una variación negativa
+ * se rechaza si la cuenta no permite saldo negativo y el saldo resultante queda bajo cero.
+ */
+public class ProyeccionSaldos {
+    
+    private final Map<Long, BigDecimal> saldos;
+    private final Set<Long> permitenSaldoNegativo;
+    
+    public ProyeccionSaldos(Map<Long, BigDecimal> saldos, Set<Long> permitenSaldoNegativo) {
+        this.saldos = saldos;
+        this.permitenSaldoNegativo = permitenSaldoNegativo;
+    }
+    
+    /**
+     * Aplicar los movimientos (cuentaId -> débitos - créditos) si ninguno genera un saldo negativo no permitido.
+     * @return la cuenta que rechazó los movimientos, o vacío si fueron aplicados
+     */
+    public Optional<Long> aplicar(Map<Long, BigDecimal> movimientos) {
+        for (Map.Entry<Long, BigDecimal> movimiento : movimientos.entrySet()) {
+            Long cuentaId = movimiento.getKey();
+            BigDecimal variacion = movimiento.getValue();
+            if (variacion.signum() < 0 && !permitenSaldoNegativo.contains(cuentaId)
+                    && getSaldo(cuentaId).add(variacion).signum() < 0) {
+                return Optional.of(cuentaId);
+            }
+        }
+        movimientos.forEach((cuentaId, variacion) -> saldos.merge(cuentaId, variacion, BigDecimal::add));
+        return Optional.empty();
+    }
+    
+    public BigDecimal getSaldo(Long cuentaId) {
+        return saldos.getOrDefault(cuentaId, BigDecimal.ZERO);
+    }
+}
@@ -0,0 +1,55 @@
+package com.contabilidad.service;
+
+import com.contabilidad.dto.request.TransaccionRequest;
+import com.contabilidad.model.TipoPartida;
+
+import java.math.BigDecimal;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reglas contables que no dependen de la base de datos, compartidas por el registro
+ * individual de transacciones y por la importación masiva de asientos.
+ */
+public final class ReglasContables {
+    
+    private ReglasContables() {}
+    
+    /**
+     * Validar que las partidas estén balanceadas
+     */
+    public static void validarPartidas(List<TransaccionRequest.PartidaRequest> partidas) {
+        if (partidas == null || partidas.size() < 2) {
+            throw new RuntimeException("Debe tener al menos 2 partidas (un débito y un crédito)");
+        }
+        
+        BigDecimal totalDebitos = BigDecimal.ZERO;
+        BigDecimal totalCreditos = BigDecimal.ZERO;
+        
+        for (TransaccionRequest.PartidaRequest partida : partidas) {
+            if (partida.getTipo() == TipoPartida.DEBE) {
+                totalDebitos = totalDebitos.add(partida.getValor());
+            } else if (partida.getTipo() == TipoPartida.HABER) {
+                totalCreditos = totalCreditos.add(partida.getValor());
+            }
+        }
+        
+        if (totalDebitos.compareTo(totalCreditos) != 0) {
+            throw new RuntimeException("Las partidas no están balanceadas. Total débitos: " + 
+                    totalDebitos + ", Total créditos: " + totalCreditos);
+        }
+    }
+    
+    /**
+     * Calcular la variación de saldo por cuenta (débitos - créditos) de un conjunto de partidas
+     */
+    public static Map<Long, BigDecimal> calcularMovimientos(List<TransaccionRequest.PartidaRequest> partidas) {
+        Map<Long, BigDecimal> movimientos = new HashMap<>();
+        for (TransaccionRequest.PartidaRequest partida : partidas) {
+            BigDecimal variacion = partida.getTipo() == TipoPartida.DEBE ? partida.getValor() : partida.getValor().negate();
+            movimientos.merge(partida.getCuentaContableId(), variacion, BigDecimal::add);
+        }
+        return movimientos;
+    }
+}
@@ -0,0 +1,295 @@
+package com.contabilidad.service;
+
+import com.contabilidad.dto.EstadoRotacionClavesDTO;
+import com.contabilidad.dto.EstadoRotacionClavesDTO.Fase;
+import com.contabilidad.util.EncryptionKeyStore;
+import com.contabilidad.util.EncryptionUtil;
+import com.contabilidad.util.RateLimiter;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.IOException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Rotación de la clave de cifrado de los datos de terceros.
+ * <p>
+ * Rotar genera una clave nueva en el almacén de claves y la deja activa para todo lo que se escriba desde
+ * ese momento; luego un trabajo en segundo plano vuelve a cifrar con ella las filas existentes. El rango de
+ * IDs se reparte en bloques que procesan varios hilos en paralelo, y un limitador de filas por segundo
+ * compartido por todos evita que el trabajo compita con las transacciones de los usuarios. Cada bloque se
+ * lee sin bloqueos y se actualiza solo si la fila no cambió mientras tanto (quien la cambió ya la cifró con
+ * la clave activa). Las claves anteriores se conservan para leer backups y snapshots.
+ * <p>
+ * Las demás instancias adoptan la clave nueva al releer el almacén (contabilidad.cifrado.recarga); hasta
+ * entonces siguen cifrando con la anterior, así que el recorrido empieza después de ese intervalo. Al terminar
+ * se vuelve a leer el almacén: si otra instancia rotó la clave mientras tanto, la rotación no se da por
+ * terminada.
+ */
+@Service
+public class RotacionClavesService {
+    
+    private static final Logger log = LoggerFactory.getLogger(RotacionClavesService.class);
+    
+    private static final String CONSULTA_BLOQUE =
+            "SELECT id, numero_documento, email, telefono, direccion FROM terceros WHERE id > ? AND id <= ?";
+    
+    // fecha_actualizacion se conserva: cambiar el cifrado no es una modificación del tercero
+    private static final String ACTUALIZACION =
+            "UPDATE terceros SET numero_documento = ?, email = ?, telefono = ?, direccion = ?, " +
+            "fecha_actualizacion = fecha_actualizacion " +
+            "WHERE id = ? AND numero_documento <=> ? AND email <=> ? AND telefono <=> ? AND direccion <=> ?";
+    
+    private static final int COLUMNAS_CIFRADAS = 4;
+    
+    @Autowired
+    private EncryptionKeyStore keyStore;
+    
+    @Autowired
+    private EncryptionUtil encryptionUtil;
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    private final int tamanoBloque;
+    private final int paralelismo;
+    private final double filasPorSegundo;
+    private final Duration recargaClaves;
+    private final ExecutorService coordinador;
+    private final ExecutorService trabajadores;
+    
+    private volatile Progreso progreso;
+    
+    public RotacionClavesService(
+            @Value("${contabilidad.cifrado.rotacion.tamano-bloque}") int tamanoBloque,
+            @Value("${contabilidad.cifrado.rotacion.paralelismo}") int paralelismo,
+            @Value("${contabilidad.cifrado.rotacion.filas-por-segundo}") double filasPorSegundo,
+            @Value("${contabilidad.cifrado.recarga}") Duration recargaClaves) {
+        this.tamanoBloque = tamanoBloque;
+        this.paralelismo = paralelismo;
+        this.filasPorSegundo = filasPorSegundo;
+        this.recargaClaves = recargaClaves;
+        this.coordinador = Executors.newSingleThreadExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "rotacion-claves");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+        AtomicInteger contador = new AtomicInteger();
+        this.trabajadores = Executors.newFixedThreadPool(paralelismo, tarea -> {
+            Thread hilo = new Thread(tarea, "rotacion-claves-" + contador.incrementAndGet());
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+    
+    @PreDestroy
+    void detener() {
+        coordinador.shutdownNow();
+        trabajadores.shutdownNow();
+    }
+    
+    /**
+     * Iniciar el recifrado en segundo plano
+     * @param generarClave true para crear antes una clave nueva; false para solo completar un recifrado
+     *                     interrumpido o cifrar los datos que aún están en claro
+     * @throws IllegalStateException si ya hay una rotación en curso
+     */
+    public synchronized EstadoRotacionClavesDTO iniciarRotacion(boolean generarClave) throws IOException {
+        Progreso actual = progreso;
+        if (actual != null && actual.enCurso()) {
+            throw new IllegalStateException("Ya hay una rotación de claves en curso");
+        }
+        if (generarClave) {
+            keyStore.rotate();
+        }
+        Progreso nuevo = new Progreso(keyStore.getActiveKeyId());
+        progreso = nuevo;
+        Duration espera = generarClave ? recargaClaves : Duration.ZERO;
+        coordinador.submit(() -> ejecutar(nuevo, espera));
+        return getEstado();
+    }
+    
+    /**
+     * Obtener las claves disponibles y el avance de la última rotación
+     */
+    public EstadoRotacionClavesDTO getEstado() {
+        Progreso actual = progreso;
+        EstadoRotacionClavesDTO estado = new EstadoRotacionClavesDTO();
+        if (actual == null) {
+            estado.setFase(Fase.SIN_EJECUTAR);
+        } else {
+            actual.copiarEn(estado);
+        }
+        estado.setClaveActiva(keyStore.getActiveKeyId());
+        estado.setClavesRetenidas(keyStore.getKeyIds());
+        estado.setFilasPorSegundo(filasPorSegundo);
+        return estado;
+    }
+    
+    /**
+     * @param espera Tiempo para que las demás instancias adopten la clave nueva antes de recorrer la tabla
+     */
+    private void ejecutar(Progreso progreso, Duration espera) {
+        List<Future<?>> tareas = new ArrayList<>();
+        try {
+            Thread.sleep(espera.toMillis());
+            Long maximoId = jdbcTemplate.queryForObject("SELECT COALESCE(MAX(id), 0) FROM terceros", Long.class);
+            progreso.terceroMaximoId = maximoId;
+            
+            RateLimiter limitador = new RateLimiter(filasPorSegundo, tamanoBloque);
+            AtomicLong siguiente = new AtomicLong();
+            for (int i = 0; i < paralelismo; i++) {
+                tareas.add(trabajadores.submit(() -> {
+                    procesarBloques(siguiente, maximoId, limitador, progreso);
+                    return null;
+                }));
+            }
+            for (Future<?> tarea : tareas) {
+                tarea.get();
+            }
+            
+            // Con otra clave activa, lo que se escribió con esta después de rotar queda fuera del recorrido
+            keyStore.reload();
+            String activa = keyStore.getActiveKeyId();
+            if (!activa.equals(progreso.clave)) {
+                log.warn("La clave activa cambió de {} a {} durante la rotación", progreso.clave, activa);
+                progreso.fallar("La clave activa cambió a " + activa + " durante la rotación; " +
+                        "vuelva a ejecutarla sin generar una clave nueva");
+                return;
+            }
+            
+            progreso.fechaFin = LocalDateTime.now();
+            progreso.fase = Fase.TERMINADO;
+            log.info("Rotación a la clave {} terminada: {} filas recifradas de {} revisadas",
+                    progreso.clave, progreso.filasRecifradas.sum(), progreso.filasRevisadas.sum());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            tareas.forEach(tarea -> tarea.cancel(true));
+            progreso.fallar("Rotación interrumpida");
+        } catch (ExecutionException | IOException | RuntimeException e) {
+            tareas.forEach(tarea -> tarea.cancel(true));
+            Throwable causa = e instanceof ExecutionException ? e.getCause() : e;
+            log.error("Error en la rotación de claves", causa);
+            progreso.fallar(causa.getMessage());
+        }
+    }
+    
+    /**
+     * Tomar rangos de IDs hasta agotar la tabla; los hilos comparten el cursor y el limitador
+     */
+    private void procesarBloques(AtomicLong siguiente, long maximoId, RateLimiter limitador,
+                                 Progreso progreso) throws InterruptedException {
+        long desde;
+        while ((desde = siguiente.getAndAdd(tamanoBloque)) < maximoId) {
+            if (Thread.interrupted()) {
+                throw new InterruptedException();
+            }
+            procesarBloque(desde, desde + tamanoBloque, limitador, progreso);
+        }
+    }
+    
+    private void procesarBloque(long desde, long hasta, RateLimiter limitador,
+                                Progreso progreso) throws InterruptedException {
+        List<String[]> filas = jdbcTemplate.query(CONSULTA_BLOQUE, (rs, numero) -> {
+            String[] fila = new String[1 + COLUMNAS_CIFRADAS];
+            fila[0] = rs.getString(1);
+            for (int columna = 1; columna <= COLUMNAS_CIFRADAS; columna++) {
+                fila[columna] = rs.getString(columna + 1);
+            }
+            return fila;
+        }, desde, hasta);
+        if (filas.isEmpty()) {
+            return;
+        }
+        limitador.acquire(filas.size());
+        
+        List<Object[]> actualizaciones = new ArrayList<>();
+        for (String[] fila : filas) {
+            Object[] parametros = new Object[1 + 2 * COLUMNAS_CIFRADAS];
+            boolean cambio = false;
+            for (int columna = 1; columna <= COLUMNAS_CIFRADAS; columna++) {
+                String nuevo = encryptionUtil.reencrypt(fila[columna]);
+                cambio |= !Objects.equals(nuevo, fila[columna]);
+                parametros[columna - 1] = nuevo;
+                parametros[COLUMNAS_CIFRADAS + columna] = fila[columna];
+            }
+            parametros[COLUMNAS_CIFRADAS] = Long.parseLong(fila[0]);
+            if (cambio) {
+                actualizaciones.add(parametros);
+            }
+        }
+        
+        if (!actualizaciones.isEmpty()) {
+            int[] resultados = transactionTemplate.execute(status ->
+                    jdbcTemplate.batchUpdate(ACTUALIZACION, actualizaciones));
+            for (int resultado : resultados) {
+                if (resultado == 0) {
+                    progreso.filasModificadasConcurrentemente.increment();
+                } else {
+                    progreso.filasRecifradas.increment();
+                }
+            }
+        }
+        progreso.filasRevisadas.add(filas.size());
+    }
+    
+    /**
+     * Avance de una rotación; se actualiza desde los hilos de trabajo y se lee desde las consultas de estado
+     */
+    private static class Progreso {
+        private final String clave;
+        private final LocalDateTime fechaInicio = LocalDateTime.now();
+        private volatile LocalDateTime fechaFin;
+        private volatile Fase fase = Fase.EN_CURSO;
+        private volatile long terceroMaximoId;
+        private final LongAdder filasRevisadas = new LongAdder();
+        private final LongAdder filasRecifradas = new LongAdder();
+        private final LongAdder filasModificadasConcurrentemente = new LongAdder();
+        private volatile String mensaje;
+        
+        Progreso(String clave) {
+            this.clave = clave;
+        }
+        
+        boolean enCurso() {
+            return fase == Fase.EN_CURSO;
+        }
+        
+        void fallar(String mensaje) {
+            this.mensaje = mensaje;
+            this.fechaFin = LocalDateTime.now();
+            this.fase = Fase.FALLIDO;
+        }
+        
+        void copiarEn(EstadoRotacionClavesDTO estado) {
+            estado.setFase(fase);
+            estado.setFechaInicio(fechaInicio);
+            estado.setFechaFin(fechaFin);
+            estado.setTerceroMaximoId(terceroMaximoId);
+            estado.setFilasRevisadas(filasRevisadas.sum());
+            estado.setFilasRecifradas(filasRecifradas.sum());
+            estado.setFilasModificadasConcurrentemente(filasModificadasConcurrentemente.sum());
+            estado.setMensaje(mensaje);
+        }
+    }
+}
@@ -0,0 +1,724 @@
+package com.contabilidad.service;
+
+import com.contabilidad.config.CacheConfig;
+import com.contabilidad.dto.ResultadoRestauracionDTO;
+import com.contabilidad.util.BinaryChannelReader;
+import com.contabilidad.util.BinaryChannelWriter;
+import com.contabilidad.util.BlindIndex;
+import com.contabilidad.util.EncryptionUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.Date;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32C;
+
+/**
+ * Snapshot binario de cuentas, terceros, transacciones, partidas y consecutivos.
+ * <p>
+ * Formato (versión 1): la cadena "CSNP", la versión y una sección por tabla, terminada cada una con un 0.
+ * Los IDs se escriben como diferencia con el anterior (varint), las fechas como días desde epoch, los valores
+ * como centavos en un long con zigzag y los enums como índice. Al final va el CRC32C de todo el contenido.
+ * <p>
+ * La restauración carga los datos en copias de las tablas (sufijo _restauracion) sin índices secundarios ni
+ * llaves foráneas, los reconstruye al final y reemplaza las tablas en un solo RENAME TABLE, que es atómico: si
+ * algo falla antes, los datos existentes quedan intactos y las copias se descartan (también al comenzar la
+ * siguiente restauración, si el proceso se interrumpió). claves_idempotencia se reemplaza por una copia vacía
+ * porque referencia transacciones. Los generadores de IDs y los consecutivos se ajustan a los datos
+ * restaurados; las instancias de la aplicación deben reiniciarse después de restaurar para descartar los
+ * bloques de IDs que tenían reservados en memoria.
+ */
+@Service
+public class SnapshotContableService {
+    
+    private static final Logger log = LoggerFactory.getLogger(SnapshotContableService.class);
+    
+    private static final byte[] MAGIA = "CSNP".getBytes(StandardCharsets.US_ASCII);
+    private static final int VERSION = 1;
+    
+    private static final int SECCION_CUENTAS = 1;
+    private static final int SECCION_TERCEROS = 2;
+    private static final int SECCION_TRANSACCIONES = 3;
+    private static final int SECCION_PARTIDAS = 4;
+    private static final int SECCION_CONSECUTIVOS = 5;
+    private static final int FIN = 0;
+    
+    /**
+     * Filas por executeBatch y filas por commit durante la restauración (los commits parciales solo afectan
+     * a las copias de las tablas)
+     */
+    private static final int TAMANO_LOTE = 5000;
+    private static final int FILAS_POR_COMMIT = 100_000;
+    
+    // Valores de las columnas ENUM, en el orden en que se codifican (no cambiar sin subir la versión)
+    private static final String[] TIPOS_CUENTA = {"ACTIVO", "PASIVO", "PATRIMONIO", "INGRESO", "GASTO"};
+    private static final String[] ESTADOS_TRANSACCION = {"ACTIVA", "ANULADA", "PENDIENTE"};
+    private static final String[] TIPOS_COMPROBANTE = {"INGRESO", "EGRESO", "NOTA_CONTABLE"};
+    private static final String[] TIPOS_PARTIDA = {"DEBE", "HABER"};
+    
+    private static final List<String> TABLAS = List.of(
+            "cuentas_contables", "terceros", "transacciones", "partidas_contables");
+    
+    /**
+     * Tablas que reemplaza la restauración, de las que referencian a las que son referenciadas
+     */
+    private static final List<String> TABLAS_REEMPLAZADAS = List.of(
+            "claves_idempotencia", "partidas_contables", "transacciones", "terceros", "cuentas_contables");
+    
+    private static final String SUFIJO_RESTAURACION = "_restauracion";
+    private static final String SUFIJO_ANTERIOR = "_anterior";
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private DataSource dataSource;
+    
+    @Autowired
+    private CacheManager cacheManager;
+    
+    @Autowired
+    private FiltroDocumentosTerceros filtroDocumentos;
+    
+    @Autowired
+    private ConsecutivoService consecutivoService;
+    
+    @Autowired
+    private EncryptionUtil encryptionUtil;
+    
+    @Autowired
+    private BlindIndex blindIndex;
+    
+    @Autowired
+    private VersionesService versionesService;
+    
+    private final TransactionTemplate lecturaConsistente;
+    private final boolean restauracionHabilitada;
+    
+    public SnapshotContableService(
+            PlatformTransactionManager transactionManager,
+            @Value("${contabilidad.snapshots.restauracion-habilitada}") boolean restauracionHabilitada) {
+        // Todas las tablas se leen desde la misma vista consistente de la base de datos
+        this.lecturaConsistente = new TransactionTemplate(transactionManager);
+        this.lecturaConsistente.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.lecturaConsistente.setReadOnly(true);
+        this.restauracionHabilitada = restauracionHabilitada;
+    }
+    
+    public boolean isRestauracionHabilitada() {
+        return restauracionHabilitada;
+    }
+    
+    /**
+     * Escribir un snapshot completo en el canal indicado
+     */
+    public void exportar(WritableByteChannel destino) throws IOException {
+        try (BinaryChannelWriter salida = new BinaryChannelWriter(destino)) {
+            salida.writeBytes(MAGIA);
+            salida.writeVarLong(VERSION);
+            try {
+                lecturaConsistente.executeWithoutResult(status -> {
+                    try {
+                        escribirSecciones(salida);
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+            salida.writeByte(FIN);
+            salida.writeChecksum();
+            log.info("Snapshot exportado: {} bytes", salida.getBytesWritten());
+        }
+    }
+    
+    /**
+     * Reemplazar los datos contables con los del snapshot guardado en el archivo indicado.
+     * Si falla, los datos existentes no cambian y la restauración puede repetirse desde el principio.
+     * @throws IllegalStateException si la restauración no está habilitada en esta instancia
+     */
+    public synchronized ResultadoRestauracionDTO restaurar(Path archivo) throws IOException, SQLException {
+        if (!restauracionHabilitada) {
+            throw new IllegalStateException("La restauración de snapshots no está habilitada en esta instancia");
+        }
+        // Verificar el archivo completo antes de tocar la base de datos
+        verificarSumaControl(archivo);
+        
+        long inicio = System.currentTimeMillis();
+        ResultadoRestauracionDTO resultado = new ResultadoRestauracionDTO();
+        try (BinaryChannelReader entrada = new BinaryChannelReader(FileChannel.open(archivo, StandardOpenOption.READ));
+             Connection conexion = dataSource.getConnection()) {
+            resultado.setVersion(leerEncabezado(entrada));
+            boolean autoCommit = conexion.getAutoCommit();
+            try (Statement sentencia = conexion.createStatement()) {
+                verificarReferenciasExternas(conexion);
+                boolean reemplazadas = false;
+                try {
+                    sentencia.execute("SET FOREIGN_KEY_CHECKS = 0");
+                    sentencia.execute("SET UNIQUE_CHECKS = 0");
+                    // Restos de una restauración interrumpida
+                    eliminarTablas(sentencia, SUFIJO_RESTAURACION);
+                    eliminarTablas(sentencia, SUFIJO_ANTERIOR);
+                    
+                    Map<String, List<String>> llavesForaneas = llavesForaneas(conexion);
+                    for (String tabla : TABLAS_REEMPLAZADAS) {
+                        sentencia.execute("CREATE TABLE " + copia(tabla) + " LIKE " + tabla);
+                    }
+                    Map<String, List<String>> indices = indicesSecundarios(conexion);
+                    eliminarIndices(sentencia, indices);
+                    Map<String, Long> consecutivos = new LinkedHashMap<>();
+                    try {
+                        conexion.setAutoCommit(false);
+                        leerSecciones(entrada, conexion, resultado, consecutivos);
+                        if (!entrada.verifyChecksum()) {
+                            throw new IOException("La suma de control del snapshot no coincide");
+                        }
+                        conexion.commit();
+                    } finally {
+                        conexion.setAutoCommit(autoCommit);
+                    }
+                    crearIndices(sentencia, indices);
+                    crearLlavesForaneas(sentencia, llavesForaneas);
+                    sentencia.execute("SET UNIQUE_CHECKS = 1");
+                    // Con las verificaciones activas, las llaves foráneas siguen a la tabla renombrada
+                    sentencia.execute("SET FOREIGN_KEY_CHECKS = 1");
+                    
+                    reemplazarTablas(sentencia);
+                    reemplazadas = true;
+                    ajustarGeneradores(conexion, sentencia, consecutivos);
+                    sentencia.execute("SET FOREIGN_KEY_CHECKS = 0");
+                    eliminarTablas(sentencia, SUFIJO_ANTERIOR);
+                } finally {
+                    if (!reemplazadas) {
+                        descartarCopias(sentencia);
+                    }
+                    sentencia.execute("SET UNIQUE_CHECKS = 1");
+                    sentencia.execute("SET FOREIGN_KEY_CHECKS = 1");
+                }
+            }
+        } finally {
+            cacheManager.getCache(CacheConfig.CUENTAS).clear();
+            cacheManager.getCache(CacheConfig.TERCEROS).clear();
+            filtroDocumentos.invalidar();
+            consecutivoService.descartarRangos();
+            versionesService.incrementar(VersionesService.Agregado.values());
+        }
+        resultado.setMilisegundos(System.currentTimeMillis() - inicio);
+        log.info("Snapshot restaurado: {} cuentas, {} terceros, {} transacciones, {} partidas en {} ms",
+                resultado.getCuentas(), resultado.getTerceros(), resultado.getTransacciones(),
+                resultado.getPartidas(), resultado.getMilisegundos());
+        return resultado;
+    }
+    
+    private void escribirSecciones(BinaryChannelWriter salida) throws IOException {
+        salida.writeByte(SECCION_CUENTAS);
+        long[] anterior = new long[1];
+        recorrer("SELECT id, codigo, nombre, tipo, permite_saldo_negativo, activo, saldo " +
+                "FROM cuentas_contables ORDER BY id", rs -> {
+            anterior[0] = escribirId(salida, rs.getLong(1), anterior[0]);
+            salida.writeString(rs.getString(2));
+            salida.writeString(rs.getString(3));
+            salida.writeByte(indice(TIPOS_CUENTA, rs.getString(4)));
+            salida.writeByte((rs.getBoolean(5) ? 1 : 0) | (rs.getBoolean(6) ? 2 : 0));
+            salida.writeSignedVarLong(centavos(rs.getBigDecimal(7)));
+        });
+        salida.writeVarLong(FIN);
+        
+        salida.writeByte(SECCION_TERCEROS);
+        anterior[0] = 0;
+        recorrer("SELECT id, nombre, tipo_documento, numero_documento, email, telefono, direccion, activo, " +
+                "fecha_creacion, fecha_actualizacion FROM terceros ORDER BY id", rs -> {
+            anterior[0] = escribirId(salida, rs.getLong(1), anterior[0]);
+            salida.writeString(rs.getString(2));
+            salida.writeString(rs.getString(3));
+            salida.writeString(rs.getString(4));
+            salida.writeString(rs.getString(5));
+            salida.writeString(rs.getString(6));
+            salida.writeString(rs.getString(7));
+            boolean activo = rs.getBoolean(8);
+            salida.writeByte(rs.wasNull() ? 2 : activo ? 1 : 0);
+            escribirInstante(salida, rs.getTimestamp(9), ChronoUnit.SECONDS);
+            escribirInstante(salida, rs.getTimestamp(10), ChronoUnit.SECONDS);
+        });
+        salida.writeVarLong(FIN);
+        
+        salida.writeByte(SECCION_TRANSACCIONES);
+        anterior[0] = 0;
+        recorrer("SELECT id, fecha, descripcion, tercero_id, estado, tipo_comprobante, numero_comprobante, " +
+                "fecha_modificacion FROM transacciones ORDER BY id", rs -> {
+            anterior[0] = escribirId(salida, rs.getLong(1), anterior[0]);
+            salida.writeSignedVarLong(rs.getDate(2).toLocalDate().toEpochDay());
+            salida.writeString(rs.getString(3));
+            salida.writeVarLong(rs.getLong(4));
+            String estado = rs.getString(5);
+            salida.writeByte(estado == null ? 0 : indice(ESTADOS_TRANSACCION, estado) + 1);
+            salida.writeByte(indice(TIPOS_COMPROBANTE, rs.getString(6)));
+            salida.writeVarLong(rs.getLong(7));
+            escribirInstante(salida, rs.getTimestamp(8), ChronoUnit.MICROS);
+        });
+        salida.writeVarLong(FIN);
+        
+        salida.writeByte(SECCION_PARTIDAS);
+        anterior[0] = 0;
+        long[] transaccionAnterior = new long[1];
+        recorrer("SELECT id, transaccion_id, cuenta_id, tipo, valor, descripcion " +
+                "FROM partidas_contables ORDER BY id", rs -> {
+            anterior[0] = escribirId(salida, rs.getLong(1), anterior[0]);
+            // Las partidas de una transacción suelen ser consecutivas: la diferencia casi siempre es 0 o 1
+            long transaccionId = rs.getLong(2);
+            salida.writeSignedVarLong(transaccionId - transaccionAnterior[0]);
+            transaccionAnterior[0] = transaccionId;
+            salida.writeVarLong(rs.getLong(3));
+            salida.writeByte(indice(TIPOS_PARTIDA, rs.getString(4)));
+            salida.writeSignedVarLong(centavos(rs.getBigDecimal(5)));
+            salida.writeString(rs.getString(6));
+        });
+        salida.writeVarLong(FIN);
+        
+        salida.writeByte(SECCION_CONSECUTIVOS);
+        recorrer("SELECT tipo_comprobante, siguiente_numero FROM consecutivos_comprobante", rs -> {
+            salida.writeVarLong(indice(TIPOS_COMPROBANTE, rs.getString(1)) + 1);
+            salida.writeVarLong(rs.getLong(2));
+        });
+        salida.writeVarLong(FIN);
+    }
+    
+    /**
+     * Insertar las secciones en las copias de las tablas; los consecutivos se devuelven para aplicarlos
+     * después de reemplazar las tablas
+     */
+    private void leerSecciones(BinaryChannelReader entrada, Connection conexion, ResultadoRestauracionDTO resultado,
+                               Map<String, Long> consecutivos) throws IOException, SQLException {
+        esperarSeccion(entrada, SECCION_CUENTAS);
+        resultado.setCuentas(insertar(conexion, "INSERT INTO " + copia("cuentas_contables") + " " +
+                "(id, codigo, nombre, tipo, permite_saldo_negativo, activo, saldo) VALUES (?, ?, ?, ?, ?, ?, ?)",
+                entrada, (sentencia, id) -> {
+            sentencia.setLong(1, id);
+            sentencia.setString(2, entrada.readString());
+            sentencia.setString(3, entrada.readString());
+            sentencia.setString(4, valor(TIPOS_CUENTA, entrada.readByte()));
+            int banderas = entrada.readByte();
+            sentencia.setBoolean(5, (banderas & 1) != 0);
+            sentencia.setBoolean(6, (banderas & 2) != 0);
+            sentencia.setBigDecimal(7, BigDecimal.valueOf(entrada.readSignedVarLong(), 2));
+        }));
+        
+        esperarSeccion(entrada, SECCION_TERCEROS);
+        resultado.setTerceros(insertar(conexion, "INSERT INTO " + copia("terceros") + " " +
+                "(id, nombre, tipo_documento, numero_documento, email, telefono, direccion, activo, " +
+                "fecha_creacion, fecha_actualizacion, numero_documento_hash) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)",
+                entrada, (sentencia, id) -> {
+            sentencia.setLong(1, id);
+            String numeroDocumento = null;
+            for (int columna = 2; columna <= 7; columna++) {
+                String valor = entrada.readString();
+                sentencia.setString(columna, valor);
+                if (columna == 4) {
+                    numeroDocumento = valor;
+                }
+            }
+            int activo = entrada.readByte();
+            if (activo == 2) {
+                sentencia.setNull(8, Types.BOOLEAN);
+            } else {
+                sentencia.setBoolean(8, activo == 1);
+            }
+            sentencia.setTimestamp(9, leerInstante(entrada, ChronoUnit.SECONDS));
+            sentencia.setTimestamp(10, leerInstante(entrada, ChronoUnit.SECONDS));
+            // El índice ciego no viaja en el snapshot: se recalcula con la clave de esta instalación
+            sentencia.setString(11, blindIndex.compute(encryptionUtil.decrypt(numeroDocumento)));
+        }));
+        
+        esperarSeccion(entrada, SECCION_TRANSACCIONES);
+        resultado.setTransacciones(insertar(conexion, "INSERT INTO " + copia("transacciones") + " " +
+                "(id, fecha, descripcion, tercero_id, estado, tipo_comprobante, numero_comprobante, fecha_modificacion) " +
+                "VALUES (?, ?, ?, ?, ?, ?, ?, ?)",
+                entrada, (sentencia, id) -> {
+            sentencia.setLong(1, id);
+            sentencia.setDate(2, Date.valueOf(LocalDate.ofEpochDay(entrada.readSignedVarLong())));
+            sentencia.setString(3, entrada.readString());
+            long terceroId = entrada.readVarLong();
+            if (terceroId == 0) {
+                sentencia.setNull(4, Types.BIGINT);
+            } else {
+                sentencia.setLong(4, terceroId);
+            }
+            int estado = entrada.readByte();
+            sentencia.setString(5, estado == 0 ? null : valor(ESTADOS_TRANSACCION, estado - 1));
+            sentencia.setString(6, valor(TIPOS_COMPROBANTE, entrada.readByte()));
+            sentencia.setLong(7, entrada.readVarLong());
+            sentencia.setTimestamp(8, leerInstante(entrada, ChronoUnit.MICROS));
+        }));
+        
+        esperarSeccion(entrada, SECCION_PARTIDAS);
+        long[] transaccionAnterior = new long[1];
+        resultado.setPartidas(insertar(conexion, "INSERT INTO " + copia("partidas_contables") + " " +
+                "(id, transaccion_id, cuenta_id, tipo, valor, descripcion) VALUES (?, ?, ?, ?, ?, ?)",
+                entrada, (sentencia, id) -> {
+            transaccionAnterior[0] += entrada.readSignedVarLong();
+            sentencia.setLong(1, id);
+            sentencia.setLong(2, transaccionAnterior[0]);
+            sentencia.setLong(3, entrada.readVarLong());
+            sentencia.setString(4, valor(TIPOS_PARTIDA, entrada.readByte()));
+            sentencia.setBigDecimal(5, BigDecimal.valueOf(entrada.readSignedVarLong(), 2));
+            sentencia.setString(6, entrada.readString());
+        }));
+        
+        esperarSeccion(entrada, SECCION_CONSECUTIVOS);
+        for (long tipo = entrada.readVarLong(); tipo != FIN; tipo = entrada.readVarLong()) {
+            consecutivos.put(valor(TIPOS_COMPROBANTE, (int) tipo - 1), entrada.readVarLong());
+        }
+        
+        esperarSeccion(entrada, FIN);
+    }
+    
+    /**
+     * Insertar por lotes las filas de una sección hasta encontrar su marca de fin
+     * @return filas insertadas
+     */
+    private long insertar(Connection conexion, String sql, BinaryChannelReader entrada, LectorFila lector)
+            throws IOException, SQLException {
+        long filas = 0;
+        long id = 0;
+        try (PreparedStatement sentencia = conexion.prepareStatement(sql)) {
+            for (long diferencia = entrada.readVarLong(); diferencia != FIN; diferencia = entrada.readVarLong()) {
+                id += diferencia;
+                lector.leer(sentencia, id);
+                sentencia.addBatch();
+                filas++;
+                if (filas % TAMANO_LOTE == 0) {
+                    sentencia.executeBatch();
+                }
+                if (filas % FILAS_POR_COMMIT == 0) {
+                    conexion.commit();
+                }
+            }
+            sentencia.executeBatch();
+            conexion.commit();
+        }
+        return filas;
+    }
+    
+    /**
+     * Obtener los índices secundarios no únicos de las copias de las tablas (copia -> definiciones); las copias
+     * aún no tienen llaves foráneas, así que ningún índice es necesario para respaldarlas
+     */
+    private Map<String, List<String>> indicesSecundarios(Connection conexion) throws SQLException {
+        Map<String, Map<String, List<String>>> columnasPorIndice = new LinkedHashMap<>();
+        try (PreparedStatement sentencia = conexion.prepareStatement(
+                "SELECT TABLE_NAME, INDEX_NAME, COLUMN_NAME FROM information_schema.STATISTICS " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND NON_UNIQUE = 1 AND TABLE_NAME IN (?, ?, ?, ?) " +
+                "ORDER BY TABLE_NAME, INDEX_NAME, SEQ_IN_INDEX")) {
+            for (int i = 0; i < TABLAS.size(); i++) {
+                sentencia.setString(i + 1, copia(TABLAS.get(i)));
+            }
+            try (ResultSet rs = sentencia.executeQuery()) {
+                while (rs.next()) {
+                    columnasPorIndice.computeIfAbsent(rs.getString(1), tabla -> new LinkedHashMap<>())
+                            .computeIfAbsent(rs.getString(2), indice -> new ArrayList<>())
+                            .add(rs.getString(3));
+                }
+            }
+        }
+        
+        Map<String, List<String>> indices = new LinkedHashMap<>();
+        columnasPorIndice.forEach((tabla, porIndice) -> porIndice.forEach((indice, columnas) ->
+                indices.computeIfAbsent(tabla, t -> new ArrayList<>())
+                        .add("INDEX `" + indice + "` (`" + String.join("`, `", columnas) + "`)")));
+        return indices;
+    }
+    
+    /**
+     * Obtener las llaves foráneas de las tablas reemplazadas (copia -> definiciones), apuntando a las copias
+     * de las tablas referenciadas. CREATE TABLE ... LIKE no copia las llaves foráneas, y al renombrar las
+     * copias los nombres generados (copia_ibfk_N) pasan a ser los de la tabla (tabla_ibfk_N)
+     */
+    private Map<String, List<String>> llavesForaneas(Connection conexion) throws SQLException {
+        Map<String, Map<String, String[]>> porLlave = new LinkedHashMap<>();
+        try (PreparedStatement sentencia = conexion.prepareStatement(
+                "SELECT k.TABLE_NAME, k.CONSTRAINT_NAME, k.COLUMN_NAME, k.REFERENCED_TABLE_NAME, " +
+                "k.REFERENCED_COLUMN_NAME, r.UPDATE_RULE, r.DELETE_RULE " +
+                "FROM information_schema.KEY_COLUMN_USAGE k JOIN information_schema.REFERENTIAL_CONSTRAINTS r " +
+                "ON r.CONSTRAINT_SCHEMA = k.CONSTRAINT_SCHEMA AND r.TABLE_NAME = k.TABLE_NAME " +
+                "AND r.CONSTRAINT_NAME = k.CONSTRAINT_NAME " +
+                "WHERE k.TABLE_SCHEMA = DATABASE() AND k.REFERENCED_TABLE_NAME IS NOT NULL " +
+                "ORDER BY k.TABLE_NAME, k.CONSTRAINT_NAME, k.ORDINAL_POSITION");
+             ResultSet rs = sentencia.executeQuery()) {
+            while (rs.next()) {
+                if (!TABLAS_REEMPLAZADAS.contains(rs.getString(1))) {
+                    continue;
+                }
+                String referenciada = rs.getString(4);
+                String[] definicion = {"", "",
+                        TABLAS_REEMPLAZADAS.contains(referenciada) ? copia(referenciada) : referenciada,
+                        rs.getString(6), rs.getString(7)};
+                String[] llave = porLlave.computeIfAbsent(rs.getString(1), tabla -> new LinkedHashMap<>())
+                        .computeIfAbsent(rs.getString(2), nombre -> definicion);
+                llave[0] += (llave[0].isEmpty() ? "`" : ", `") + rs.getString(3) + "`";
+                llave[1] += (llave[1].isEmpty() ? "`" : ", `") + rs.getString(5) + "`";
+            }
+        }
+        
+        Map<String, List<String>> llaves = new LinkedHashMap<>();
+        porLlave.forEach((tabla, porNombre) -> porNombre.values().forEach(llave ->
+                llaves.computeIfAbsent(copia(tabla), t -> new ArrayList<>())
+                        .add("FOREIGN KEY (" + llave[0] + ") REFERENCES " + llave[2] + " (" + llave[1] + ") " +
+                                "ON UPDATE " + llave[3] + " ON DELETE " + llave[4])));
+        return llaves;
+    }
+    
+    /**
+     * Verificar que ninguna tabla que no se reemplaza referencie a una reemplazada: su llave foránea seguiría
+     * a la tabla anterior al renombrarla
+     */
+    private void verificarReferenciasExternas(Connection conexion) throws SQLException {
+        try (PreparedStatement sentencia = conexion.prepareStatement(
+                "SELECT TABLE_NAME, REFERENCED_TABLE_NAME FROM information_schema.KEY_COLUMN_USAGE " +
+                "WHERE TABLE_SCHEMA = DATABASE() AND REFERENCED_TABLE_NAME IS NOT NULL");
+             ResultSet rs = sentencia.executeQuery()) {
+            while (rs.next()) {
+                if (TABLAS_REEMPLAZADAS.contains(rs.getString(2)) && !TABLAS_REEMPLAZADAS.contains(rs.getString(1))) {
+                    throw new IllegalStateException("La tabla " + rs.getString(1) + " referencia a " +
+                            rs.getString(2) + " y no se reemplaza en la restauración");
+                }
+            }
+        }
+    }
+    
+    private void eliminarIndices(Statement sentencia, Map<String, List<String>> indices) throws SQLException {
+        for (Map.Entry<String, List<String>> tabla : indices.entrySet()) {
+            List<String> eliminaciones = tabla.getValue().stream()
+                    .map(definicion -> "DROP " + definicion.substring(0, definicion.indexOf(" (")))
+                    .toList();
+            sentencia.execute("ALTER TABLE " + tabla.getKey() + " " + String.join(", ", eliminaciones));
+        }
+    }
+    
+    private void crearIndices(Statement sentencia, Map<String, List<String>> indices) throws SQLException {
+        // Un solo ALTER por tabla construye todos sus índices en una pasada ordenada
+        for (Map.Entry<String, List<String>> tabla : indices.entrySet()) {
+            List<String> creaciones = tabla.getValue().stream().map(definicion -> "ADD " + definicion).toList();
+            sentencia.execute("ALTER TABLE " + tabla.getKey() + " " + String.join(", ", creaciones));
+        }
+    }
+    
+    /**
+     * Agregar las llaves foráneas a las copias; con FOREIGN_KEY_CHECKS = 0 no se validan las filas
+     */
+    private void crearLlavesForaneas(Statement sentencia, Map<String, List<String>> llaves) throws SQLException {
+        for (Map.Entry<String, List<String>> tabla : llaves.entrySet()) {
+            List<String> creaciones = tabla.getValue().stream().map(definicion -> "ADD " + definicion).toList();
+            sentencia.execute("ALTER TABLE " + tabla.getKey() + " " + String.join(", ", creaciones));
+        }
+    }
+    
+    /**
+     * Reemplazar todas las tablas por sus copias en una sola operación atómica
+     */
+    private void reemplazarTablas(Statement sentencia) throws SQLException {
+        List<String> renombres = new ArrayList<>();
+        for (String tabla : TABLAS_REEMPLAZADAS) {
+            renombres.add(tabla + " TO " + tabla + SUFIJO_ANTERIOR);
+            renombres.add(copia(tabla) + " TO " + tabla);
+        }
+        sentencia.execute("RENAME TABLE " + String.join(", ", renombres));
+    }
+    
+    private void eliminarTablas(Statement sentencia, String sufijo) throws SQLException {
+        sentencia.execute("DROP TABLE IF EXISTS " + TABLAS_REEMPLAZADAS.stream()
+                .map(tabla -> tabla + sufijo)
+                .collect(Collectors.joining(", ")));
+    }
+    
+    /**
+     * Descartar las copias de una restauración fallida sin ocultar el error original
+     */
+    private void descartarCopias(Statement sentencia) {
+        try {
+            sentencia.execute("SET FOREIGN_KEY_CHECKS = 0");
+            eliminarTablas(sentencia, SUFIJO_RESTAURACION);
+        } catch (SQLException e) {
+            log.warn("No se pudieron eliminar las copias de la restauración fallida: {}", e.getMessage());
+        }
+    }
+    
+    private static String copia(String tabla) {
+        return tabla + SUFIJO_RESTAURACION;
+    }
+    
+    /**
+     * Aplicar los consecutivos del snapshot y ajustar los generadores de IDs y los consecutivos para que no
+     * reutilicen valores restaurados
+     */
+    private void ajustarGeneradores(Connection conexion, Statement sentencia, Map<String, Long> consecutivos)
+            throws SQLException {
+        try (PreparedStatement reemplazo = conexion.prepareStatement(
+                "REPLACE INTO consecutivos_comprobante (tipo_comprobante, siguiente_numero) VALUES (?, ?)")) {
+            for (Map.Entry<String, Long> consecutivo : consecutivos.entrySet()) {
+                reemplazo.setString(1, consecutivo.getKey());
+                reemplazo.setLong(2, consecutivo.getValue());
+                reemplazo.addBatch();
+            }
+            reemplazo.executeBatch();
+        }
+        for (String tabla : TABLAS) {
+            sentencia.execute("UPDATE generador_ids SET siguiente_valor = GREATEST(siguiente_valor, " +
+                    "(SELECT COALESCE(MAX(id), 0) + 1 FROM " + tabla + ")) WHERE entidad = '" + tabla + "'");
+        }
+        sentencia.execute("UPDATE consecutivos_comprobante c SET siguiente_numero = GREATEST(siguiente_numero, " +
+                "(SELECT COALESCE(MAX(t.numero_comprobante), 0) + 1 FROM transacciones t " +
+                "WHERE t.tipo_comprobante = c.tipo_comprobante))");
+    }
+    
+    private void verificarSumaControl(Path archivo) throws IOException {
+        try (FileChannel canal = FileChannel.open(archivo, StandardOpenOption.READ)) {
+            long tamano = canal.size();
+            if (tamano < MAGIA.length + 4) {
+                throw new IOException("El archivo no es un snapshot válido");
+            }
+            CRC32C suma = new CRC32C();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+            long pendientes = tamano - 4;
+            while (pendientes > 0) {
+                buffer.clear().limit((int) Math.min(buffer.capacity(), pendientes));
+                int leidos = canal.read(buffer);
+                if (leidos < 0) {
+                    throw new IOException("El archivo no es un snapshot válido");
+                }
+                buffer.flip();
+                suma.update(buffer);
+                pendientes -= leidos;
+            }
+            ByteBuffer almacenada = ByteBuffer.allocate(4);
+            while (almacenada.hasRemaining() && canal.read(almacenada) >= 0) {
+                // leer los 4 bytes finales
+            }
+            if (almacenada.flip().getInt() != (int) suma.getValue()) {
+                throw new IOException("La suma de control del snapshot no coincide");
+            }
+        }
+    }
+    
+    private int leerEncabezado(BinaryChannelReader entrada) throws IOException {
+        if (!Arrays.equals(entrada.readBytes(MAGIA.length), MAGIA)) {
+            throw new IOException("El archivo no es un snapshot válido");
+        }
+        long version = entrada.readVarLong();
+        if (version != VERSION) {
+            throw new IOException("Versión de snapshot no soportada: " + version);
+        }
+        return (int) version;
+    }
+    
+    private static void esperarSeccion(BinaryChannelReader entrada, int seccion) throws IOException {
+        int leida = entrada.readByte();
+        if (leida != seccion) {
+            throw new IOException("Snapshot mal formado: se esperaba la sección " + seccion + " y se encontró " + leida);
+        }
+    }
+    
+    private void recorrer(String sql, EscritorFila escritor) throws IOException {
+        try {
+            jdbcTemplate.query(conexion -> {
+                PreparedStatement sentencia = conexion.prepareStatement(sql,
+                        ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+                sentencia.setFetchSize(Integer.MIN_VALUE);
+                return sentencia;
+            }, (ResultSet rs) -> {
+                try {
+                    escritor.escribir(rs);
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+    }
+    
+    private static long escribirId(BinaryChannelWriter salida, long id, long anterior) throws IOException {
+        salida.writeVarLong(id - anterior);
+        return id;
+    }
+    
+    private static void escribirInstante(BinaryChannelWriter salida, Timestamp instante, ChronoUnit unidad)
+            throws IOException {
+        if (instante == null) {
+            salida.writeByte(0);
+            return;
+        }
+        salida.writeByte(1);
+        salida.writeSignedVarLong(unidad.between(Instant.EPOCH, instante.toInstant()));
+    }
+    
+    private static Timestamp leerInstante(BinaryChannelReader entrada, ChronoUnit unidad) throws IOException {
+        if (entrada.readByte() == 0) {
+            return null;
+        }
+        return Timestamp.from(Instant.EPOCH.plus(entrada.readSignedVarLong(), unidad));
+    }
+    
+    private static long centavos(BigDecimal valor) {
+        return valor.movePointRight(2).longValueExact();
+    }
+    
+    private static int indice(String[] valores, String valor) throws IOException {
+        for (int i = 0; i < valores.length; i++) {
+            if (valores[i].equals(valor)) {
+                return i;
+            }
+        }
+        throw new IOException("Valor no soportado por el formato del snapshot: " + valor);
+    }
+    
+    private static String valor(String[] valores, int indice) throws IOException {
+        if (indice < 0 || indice >= valores.length) {
+            throw new IOException("Snapshot mal formado: índice de enumeración " + indice);
+        }
+        return valores[indice];
+    }
+    
+    @FunctionalInterface
+    private interface EscritorFila {
+        void escribir(ResultSet rs) throws SQLException, IOException;
+    }
+    
+    @FunctionalInterface
+    private interface LectorFila {
+        void leer(PreparedStatement sentencia, long id) throws SQLException, IOException;
+    }
+}
@@ -1,32 +1,163 @@
 package com.contabilidad.service;
 
+import com.contabilidad.config.CacheConfig;
+import com.contabilidad.dto.ResultadoCargaTercerosDTO;
+import com.contabilidad.dto.ResultadoFusionTercerosDTO;
 import com.contabilidad.dto.TerceroDTO;
 import com.contabilidad.dto.request.TerceroRequest;
 import com.contabilidad.model.Tercero;
 import com.contabilidad.repository.TerceroRepository;
+import com.contabilidad.repository.TransaccionRepository;
+import com.contabilidad.service.VersionesService.Agregado;
+import com.contabilidad.util.BlindIndex;
+import com.contabilidad.util.EncryptionUtil;
+import com.contabilidad.util.SingleFlight;
+import jakarta.annotation.PostConstruct;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.validation.ConstraintViolation;
+import jakarta.validation.Validator;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.CacheEvict;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.stream.Collectors;
 
 @Service
 @Transactional
 public class TerceroService {
     
+    /**
+     * Registros procesados en cada transacción de la carga masiva
+     */
+    private static final int TAMANO_BLOQUE_CARGA = 500;
+    
+    /**
+     * Transacciones reasignadas en cada sentencia de la fusión de terceros
+     */
+    private static final int TAMANO_BLOQUE_FUSION = 1000;
+    
+    /**
+     * Terceros completados en cada transacción al calcular los índices ciegos faltantes
+     */
+    private static final int TAMANO_BLOQUE_INDICES = 1000;
+    
     @Autowired
     private TerceroRepository terceroRepository;
     
+    @Autowired
+    private TransaccionRepository transaccionRepository;
+    
+    @Autowired
+    private FiltroDocumentosTerceros filtroDocumentos;
+    
+    @Autowired
+    private EncryptionUtil encryptionUtil;
+    
+    @Autowired
+    private BlindIndex blindIndex;
+    
+    @Autowired
+    private Validator validator;
+    
+    @Autowired
+    private CacheManager cacheManager;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private VersionesService versionesService;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
     /**
-     * Obtener todos los terceros
+     * Listado completo; la llave lleva la versión de los terceros leída antes de consultar
      */
+    private final SingleFlight<String, List<TerceroDTO>> listados;
+    
+    public TerceroService(@Value("${contabilidad.coalescencia.ttl}") Duration ttlCoalescencia) {
+        this.listados = new SingleFlight<>(ttlCoalescencia);
+    }
+    
+    /**
+     * Completar el índice ciego de los terceros que no lo tienen (datos cargados directamente en la base de
+     * datos o anteriores al cifrado del número de documento) antes de atender solicitudes
+     */
+    @PostConstruct
+    public void completarIndicesDocumento() {
+        int completados = 0;
+        List<Object[]> pendientes;
+        do {
+            pendientes = transactionTemplate.execute(status -> {
+                List<Object[]> bloque = terceroRepository.findSinIndiceDocumento(TAMANO_BLOQUE_INDICES);
+                for (Object[] fila : bloque) {
+                    String documento = encryptionUtil.decrypt((String) fila[1]);
+                    terceroRepository.asignarIndiceDocumento(((Number) fila[0]).longValue(), blindIndex.compute(documento));
+                }
+                return bloque;
+            });
+            completados += pendientes.size();
+        } while (pendientes.size() == TAMANO_BLOQUE_INDICES);
+        if (completados > 0) {
+            filtroDocumentos.invalidar();
+        }
+    }
+    
+    /**
+     * Obtener todos los terceros; las llamadas simultáneas comparten una sola consulta y un solo descifrado
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
     public List<TerceroDTO> getAllTerceros() {
-        return terceroRepository.findAll().stream()
-                .map(this::convertToDTO)
-                .collect(Collectors.toList());
+        return listados.execute("terceros:" + versionesService.etiqueta(Agregado.TERCEROS), this::consultarListado);
+    }
+    
+    private List<TerceroDTO> consultarListado() {
+        // Filas sin entidades: los campos cifrados se descifran juntos en lugar de uno por uno en el convertidor
+        List<Object[]> filas = terceroRepository.findDatosListado();
+        String[] cifrados = new String[filas.size() * 4];
+        for (int i = 0; i < filas.size(); i++) {
+            Object[] fila = filas.get(i);
+            for (int j = 0; j < 4; j++) {
+                cifrados[i * 4 + j] = (String) fila[3 + j];
+            }
+        }
+        String[] datos = encryptionUtil.decryptAll(cifrados);
+        
+        List<TerceroDTO> terceros = new ArrayList<>(filas.size());
+        for (int i = 0; i < filas.size(); i++) {
+            Object[] fila = filas.get(i);
+            TerceroDTO dto = new TerceroDTO();
+            dto.setId(((Number) fila[0]).longValue());
+            dto.setNombre((String) fila[1]);
+            dto.setTipoDocumento((String) fila[2]);
+            dto.setNumeroDocumento(datos[i * 4]);
+            dto.setEmail(datos[i * 4 + 1]);
+            dto.setTelefono(datos[i * 4 + 2]);
+            dto.setDireccion(datos[i * 4 + 3]);
+            dto.setActivo(Boolean.TRUE.equals(fila[7]));
+            terceros.add(dto);
+        }
+        return Collections.unmodifiableList(terceros);
     }
     
     /**
@@ -42,7 +173,7 @@ public class TerceroService {
      */
     public TerceroDTO createTercero(TerceroRequest request) {
         // Validar que el número de documento sea único
-        if (terceroRepository.existsByNumeroDocumento(request.getNumeroDocumento())) {
+        if (terceroRepository.existsByNumeroDocumentoHash(blindIndex.compute(request.getNumeroDocumento()))) {
             throw new IllegalArgumentException("El número de documento ya existe");
         }
         
@@ -56,18 +187,21 @@ public class TerceroService {
         tercero.setActivo(true);
         
         Tercero savedTercero = terceroRepository.save(tercero);
+        filtroDocumentos.registrar(savedTercero.getNumeroDocumento());
+        versionesService.incrementar(Agregado.TERCEROS);
         return convertToDTO(savedTercero);
     }
     
     /**
      * Actualizar tercero
      */
+    @CacheEvict(value = CacheConfig.TERCEROS, key = "#id")
     public Optional<TerceroDTO> updateTercero(Long id, TerceroRequest request) {
         return terceroRepository.findById(id)
                 .map(tercero -> {
                     // Validar que el número de documento sea único (excepto para el mismo tercero)
-                    if (!tercero.getNumeroDocumento().equals(request.getNumeroDocumento()) &&
-                        terceroRepository.existsByNumeroDocumento(request.getNumeroDocumento())) {
+                    if (terceroRepository.existsByNumeroDocumentoHashAndIdNot(
+                            blindIndex.compute(request.getNumeroDocumento()), id)) {
                         throw new IllegalArgumentException("El número de documento ya existe");
                     }
                     
@@ -79,35 +213,130 @@ public class TerceroService {
                     tercero.setDireccion(request.getDireccion());
                     
                     Tercero updatedTercero = terceroRepository.save(tercero);
+                    filtroDocumentos.registrar(updatedTercero.getNumeroDocumento());
+                    versionesService.incrementar(Agregado.TERCEROS);
                     return convertToDTO(updatedTercero);
                 });
     }
     
+    /**
+     * Crear o actualizar terceros en bloque, usando el número de documento como clave.
+     * Cada bloque se resuelve con una sola consulta IN (omitiendo los documentos que el filtro
+     * de Bloom descarta) y se guarda en una transacción con inserciones y actualizaciones por lotes.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ResultadoCargaTercerosDTO cargarTerceros(List<TerceroRequest> requests) {
+        ResultadoCargaTercerosDTO resultado = new ResultadoCargaTercerosDTO(requests.size());
+        
+        Set<String> documentosVistos = new HashSet<>();
+        List<RegistroCarga> bloque = new ArrayList<>(TAMANO_BLOQUE_CARGA);
+        for (int i = 0; i < requests.size(); i++) {
+            TerceroRequest request = requests.get(i);
+            String error = validarRegistroCarga(request);
+            if (error == null && !documentosVistos.add(blindIndex.compute(request.getNumeroDocumento()))) {
+                error = "El número de documento está repetido en la solicitud";
+            }
+            if (error != null) {
+                resultado.agregarFallo(i, request != null ? request.getNumeroDocumento() : null, error);
+                continue;
+            }
+            
+            bloque.add(new RegistroCarga(i, request));
+            if (bloque.size() == TAMANO_BLOQUE_CARGA) {
+                resultado.acumular(procesarBloqueCarga(bloque));
+                bloque.clear();
+            }
+        }
+        if (!bloque.isEmpty()) {
+            resultado.acumular(procesarBloqueCarga(bloque));
+        }
+        return resultado;
+    }
+    
+    /**
+     * Fusionar terceros duplicados en el tercero indicado.
+     * Las transacciones se reasignan con sentencias UPDATE por bloques, cada una en su propia
+     * transacción, y luego los duplicados se desactivan. Si el proceso se interrumpe puede
+     * ejecutarse de nuevo: continúa con las transacciones que falten.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ResultadoFusionTercerosDTO fusionarTerceros(Long id, List<Long> duplicados) {
+        List<Long> origenes = duplicados.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .collect(Collectors.toList());
+        if (origenes.isEmpty()) {
+            throw new IllegalArgumentException("Debe indicar al menos un tercero duplicado");
+        }
+        if (origenes.contains(id)) {
+            throw new IllegalArgumentException("El tercero destino no puede estar entre los duplicados");
+        }
+        
+        Tercero destino = terceroRepository.findById(id)
+                .orElseThrow(() -> new IllegalArgumentException("El tercero con ID " + id + " no existe"));
+        if (!destino.isActivo()) {
+            throw new IllegalArgumentException("El tercero destino está inactivo");
+        }
+        List<Tercero> existentes = terceroRepository.findAllById(origenes);
+        if (existentes.size() != origenes.size()) {
+            Set<Long> encontrados = existentes.stream().map(Tercero::getId).collect(Collectors.toSet());
+            List<Long> faltantes = origenes.stream().filter(origen -> !encontrados.contains(origen)).collect(Collectors.toList());
+            throw new IllegalArgumentException("No existen los terceros con ID " + faltantes);
+        }
+        
+        ResultadoFusionTercerosDTO resultado = new ResultadoFusionTercerosDTO(id, origenes);
+        long reasignadas = 0;
+        try {
+            int actualizadas;
+            do {
+                actualizadas = transactionTemplate.execute(status ->
+                        transaccionRepository.reasignarTercero(origenes, id, TAMANO_BLOQUE_FUSION));
+                reasignadas += actualizadas;
+            } while (actualizadas == TAMANO_BLOQUE_FUSION);
+        } finally {
+            // Una sola versión nueva del libro por fusión, y solo si algún bloque confirmado cambió transacciones.
+            // Va en su propia transacción para publicarse aunque falle un bloque posterior o la desactivación
+            if (reasignadas > 0) {
+                transactionTemplate.executeWithoutResult(status -> versionesService.incrementar(Agregado.LIBRO));
+            }
+        }
+        resultado.setTransaccionesReasignadas(reasignadas);
+        
+        resultado.setTercerosDesactivados(transactionTemplate.execute(status -> {
+            origenes.forEach(origen -> cacheManager.getCache(CacheConfig.TERCEROS).evict(origen));
+            versionesService.incrementar(Agregado.TERCEROS);
+            return terceroRepository.desactivar(origenes);
+        }));
+        return resultado;
+    }
+    
     /**
      * Eliminar tercero
      */
+    @CacheEvict(value = CacheConfig.TERCEROS, key = "#id")
     public boolean deleteTercero(Long id) {
         Optional<Tercero> terceroOpt = terceroRepository.findById(id);
         if (terceroOpt.isPresent()) {
             Tercero tercero = terceroOpt.get();
             
-            // Verificar si tiene transacciones asociadas
-            if (tercero.getTransacciones() != null && !tercero.getTransacciones().isEmpty()) {
+            // Verificar si tiene transacciones asociadas (sin cargar la colección)
+            if (transaccionRepository.existsByTerceroId(id)) {
                 throw new IllegalStateException("No se puede eliminar un tercero con transacciones asociadas");
             }
             
             terceroRepository.delete(tercero);
+            versionesService.incrementar(Agregado.TERCEROS);
             return true;
         }
         return false;
     }
     
     /**
-     * Buscar terceros por nombre
+     * Buscar terceros por nombre o número de documento
      */
     public List<TerceroDTO> searchTerceros(String query) {
         String searchQuery = "%" + query.toLowerCase() + "%";
-        return terceroRepository.findByNombreContainingIgnoreCaseOrEmailContainingIgnoreCaseOrNumeroDocumentoContaining(searchQuery)
+        return terceroRepository.findByNombreContainingIgnoreCaseOrNumeroDocumentoHash(searchQuery, blindIndex.compute(query))
                 .stream()
                 .map(this::convertToDTO)
                 .collect(Collectors.toList());
@@ -141,8 +370,10 @@ public class TerceroService {
     }
     
     /**
-     * Obtener tercero por ID para uso interno
+     * Obtener tercero por ID para uso interno.
+     * El resultado se guarda en caché y la entidad devuelta es de solo lectura.
      */
+    @Cacheable(value = CacheConfig.TERCEROS, key = "#id", unless = "#result == null")
     public Optional<Tercero> getTerceroEntityById(Long id) {
         return terceroRepository.findById(id);
     }
@@ -150,11 +381,13 @@ public class TerceroService {
     /**
      * Activar tercero
      */
+    @CacheEvict(value = CacheConfig.TERCEROS, key = "#id")
     public Optional<TerceroDTO> activateTercero(Long id) {
         return terceroRepository.findById(id)
                 .map(tercero -> {
                     tercero.setActivo(true);
                     Tercero updatedTercero = terceroRepository.save(tercero);
+                    versionesService.incrementar(Agregado.TERCEROS);
                     return convertToDTO(updatedTercero);
                 });
     }
@@ -162,15 +395,152 @@ public class TerceroService {
     /**
      * Desactivar tercero
      */
+    @CacheEvict(value = CacheConfig.TERCEROS, key = "#id")
     public Optional<TerceroDTO> deactivateTercero(Long id) {
         return terceroRepository.findById(id)
                 .map(tercero -> {
                     tercero.setActivo(false);
                     Tercero updatedTercero = terceroRepository.save(tercero);
+                    versionesService.incrementar(Agregado.TERCEROS);
                     return convertToDTO(updatedTercero);
                 });
     }
     
+    /**
+     * Guardar un bloque de la carga masiva. Si el filtro no conocía un documento registrado por otra
+     * instancia, el índice único rechaza el bloque y se reintenta consultando todos los documentos;
+     * si vuelve a fallar se guarda registro por registro.
+     */
+    private ResultadoCargaTercerosDTO procesarBloqueCarga(List<RegistroCarga> bloque) {
+        try {
+            return guardarBloqueCarga(bloque, true);
+        } catch (DataIntegrityViolationException e) {
+            try {
+                return guardarBloqueCarga(bloque, false);
+            } catch (RuntimeException reintento) {
+                return guardarPorRegistro(bloque);
+            }
+        } catch (RuntimeException e) {
+            return guardarPorRegistro(bloque);
+        }
+    }
+    
+    private ResultadoCargaTercerosDTO guardarPorRegistro(List<RegistroCarga> bloque) {
+        ResultadoCargaTercerosDTO resultado = new ResultadoCargaTercerosDTO();
+        for (RegistroCarga registro : bloque) {
+            try {
+                resultado.acumular(guardarBloqueCarga(List.of(registro), false));
+            } catch (RuntimeException e) {
+                resultado.agregarFallo(registro.indice, registro.request.getNumeroDocumento(),
+                        "No se pudo guardar el tercero: " + e.getMessage());
+            }
+        }
+        return resultado;
+    }
+    
+    private ResultadoCargaTercerosDTO guardarBloqueCarga(List<RegistroCarga> bloque, boolean usarFiltro) {
+        List<String> nuevosDocumentos = new ArrayList<>();
+        ResultadoCargaTercerosDTO resultado = transactionTemplate.execute(status -> {
+            ResultadoCargaTercerosDTO parcial = new ResultadoCargaTercerosDTO();
+            
+            List<String> candidatos = bloque.stream()
+                    .map(registro -> registro.request.getNumeroDocumento())
+                    .filter(documento -> !usarFiltro || filtroDocumentos.puedeExistir(documento))
+                    .map(blindIndex::compute)
+                    .collect(Collectors.toList());
+            Map<String, Tercero> existentes = candidatos.isEmpty() ? Map.of()
+                    : terceroRepository.findByNumeroDocumentoHashIn(candidatos).stream()
+                            .collect(Collectors.toMap(Tercero::getNumeroDocumentoHash, Function.identity()));
+            
+            List<Tercero> nuevos = new ArrayList<>();
+            for (RegistroCarga registro : bloque) {
+                TerceroRequest request = registro.request;
+                Tercero tercero = existentes.get(blindIndex.compute(request.getNumeroDocumento()));
+                if (tercero == null) {
+                    tercero = new Tercero();
+                    tercero.setNumeroDocumento(request.getNumeroDocumento());
+                    tercero.setActivo(true);
+                    copiarDatos(request, tercero);
+                    nuevos.add(tercero);
+                    parcial.sumarCreado();
+                } else if (copiarDatos(request, tercero)) {
+                    // La entidad está administrada: el cambio se envía en lote al hacer flush
+                    cacheManager.getCache(CacheConfig.TERCEROS).evict(tercero.getId());
+                    parcial.sumarActualizado();
+                } else {
+                    parcial.sumarSinCambios();
+                }
+            }
+            
+            terceroRepository.saveAll(nuevos);
+            terceroRepository.flush();
+            if (parcial.getCreados() + parcial.getActualizados() > 0) {
+                versionesService.incrementar(Agregado.TERCEROS);
+            }
+            entityManager.clear();
+            nuevos.forEach(tercero -> nuevosDocumentos.add(tercero.getNumeroDocumento()));
+            return parcial;
+        });
+        nuevosDocumentos.forEach(filtroDocumentos::registrar);
+        return resultado;
+    }
+    
+    /**
+     * Copiar los datos editables del request al tercero
+     * @return true si algún dato cambió
+     */
+    private boolean copiarDatos(TerceroRequest request, Tercero tercero) {
+        boolean cambio = !Objects.equals(tercero.getNombre(), request.getNombre())
+                || !Objects.equals(tercero.getTipoDocumento(), request.getTipoDocumento())
+                || !Objects.equals(tercero.getEmail(), request.getEmail())
+                || !Objects.equals(tercero.getTelefono(), request.getTelefono())
+                || !Objects.equals(tercero.getDireccion(), request.getDireccion());
+        if (cambio) {
+            tercero.setNombre(request.getNombre());
+            tercero.setTipoDocumento(request.getTipoDocumento());
+            tercero.setEmail(request.getEmail());
+            tercero.setTelefono(request.getTelefono());
+            tercero.setDireccion(request.getDireccion());
+        }
+        return cambio;
+    }
+    
+    /**
+     * Validar y sanitizar un registro de la carga masiva
+     * @return el mensaje de error, o null si el registro es válido
+     */
+    private String validarRegistroCarga(TerceroRequest request) {
+        if (request == null) {
+            return "El registro está vacío";
+        }
+        Set<ConstraintViolation<TerceroRequest>> violaciones = validator.validate(request);
+        if (!violaciones.isEmpty()) {
+            return violaciones.stream()
+                    .map(ConstraintViolation::getMessage)
+                    .sorted()
+                    .collect(Collectors.joining("; "));
+        }
+        if (!encryptionUtil.isSafeInput(request.getNombre()) ||
+            !encryptionUtil.isSafeInput(request.getEmail()) ||
+            !encryptionUtil.isSafeInput(request.getDireccion())) {
+            return "El registro contiene caracteres no permitidos";
+        }
+        request.setNombre(encryptionUtil.sanitizeInput(request.getNombre()));
+        request.setEmail(encryptionUtil.sanitizeInput(request.getEmail()));
+        request.setDireccion(encryptionUtil.sanitizeInput(request.getDireccion()));
+        return null;
+    }
+    
+    private static class RegistroCarga {
+        private final int indice;
+        private final TerceroRequest request;
+        
+        RegistroCarga(int indice, TerceroRequest request) {
+            this.indice = indice;
+            this.request = request;
+        }
+    }
+    
     private TerceroDTO convertToDTO(Tercero tercero) {
         TerceroDTO dto = new TerceroDTO();
         dto.setId(tercero.getId());
@@ -0,0 +1,158 @@
+package com.contabilidad.service;
+
+import com.contabilidad.dto.TokenDTO;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtException;
+import io.jsonwebtoken.JwtParser;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.stereotype.Service;
+
+import javax.crypto.SecretKey;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+import java.util.stream.Collectors;
+
+/**
+ * Emisión y verificación de tokens JWT firmados localmente (HS256).
+ * <p>
+ * No se guarda estado de sesión: cualquier instancia con la misma clave verifica los tokens de las demás.
+ * Verificar la firma y leer los claims cuesta mucho más que atender una consulta sencilla, así que el
+ * resultado de cada verificación exitosa se guarda en una caché acotada, con el SHA-256 del token como llave
+ * y hasta el vencimiento del token. Un token alterado tiene otro hash y nunca encuentra la entrada cacheada.
+ */
+@Service
+public class TokenService {
+    
+    private static final String CLAIM_ROLES = "roles";
+    
+    private final SecretKey clave;
+    private final String emisor;
+    private final Duration duracion;
+    private final JwtParser parser;
+    private final Cache<String, TokenVerificado> verificados;
+    
+    public TokenService(
+            @Value("${contabilidad.seguridad.jwt.clave}") String clave,
+            @Value("${contabilidad.seguridad.jwt.emisor}") String emisor,
+            @Value("${contabilidad.seguridad.jwt.duracion}") Duration duracion,
+            @Value("${contabilidad.seguridad.jwt.cache-maximo}") long cacheMaximo) {
+        if (clave == null || clave.isBlank()) {
+            throw new IllegalStateException("Falta la clave de firma de los tokens (CONTABILIDAD_CLAVE_JWT)");
+        }
+        this.clave = Keys.hmacShaKeyFor(Base64.getDecoder().decode(clave));
+        this.emisor = emisor;
+        this.duracion = duracion;
+        this.parser = Jwts.parserBuilder()
+                .setSigningKey(this.clave)
+                .requireIssuer(emisor)
+                .build();
+        this.verificados = Caffeine.newBuilder()
+                .maximumSize(cacheMaximo)
+                .expireAfter(new Expiry<String, TokenVerificado>() {
+                    @Override
+                    public long expireAfterCreate(String llave, TokenVerificado token, long ahora) {
+                        return Math.max(0, Duration.between(Instant.now(), token.expiracion).toNanos());
+                    }
+                    
+                    @Override
+                    public long expireAfterUpdate(String llave, TokenVerificado token, long ahora, long restante) {
+                        return restante;
+                    }
+                    
+                    @Override
+                    public long expireAfterRead(String llave, TokenVerificado token, long ahora, long restante) {
+                        return restante;
+                    }
+                })
+                .build();
+    }
+    
+    /**
+     * Emitir un token para un usuario ya autenticado
+     */
+    public TokenDTO emitir(Authentication autenticacion) {
+        Instant ahora = Instant.now();
+        Instant expiracion = ahora.plus(duracion);
+        List<String> roles = autenticacion.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .collect(Collectors.toList());
+        String token = Jwts.builder()
+                .setSubject(autenticacion.getName())
+                .setIssuer(emisor)
+                .setIssuedAt(Date.from(ahora))
+                .setExpiration(Date.from(expiracion))
+                .claim(CLAIM_ROLES, roles)
+                .signWith(clave, SignatureAlgorithm.HS256)
+                .compact();
+        return new TokenDTO(token, expiracion);
+    }
+    
+    /**
+     * Verificar un token y obtener la autenticación que representa
+     * @return vacío si el token no es válido o ya venció
+     */
+    public Optional<Authentication> verificar(String token) {
+        String llave = hash(token);
+        TokenVerificado verificado = verificados.getIfPresent(llave);
+        if (verificado == null) {
+            try {
+                verificado = leerClaims(parser.parseClaimsJws(token).getBody());
+            } catch (JwtException | IllegalArgumentException e) {
+                return Optional.empty();
+            }
+            verificados.put(llave, verificado);
+        }
+        // La caché puede devolver una entrada en el mismo instante en que vence
+        if (!verificado.expiracion.isAfter(Instant.now())) {
+            return Optional.empty();
+        }
+        return Optional.of(verificado.autenticacion);
+    }
+    
+    private static TokenVerificado leerClaims(Claims claims) {
+        Collection<?> roles = claims.get(CLAIM_ROLES, Collection.class);
+        List<SimpleGrantedAuthority> autoridades = roles == null ? List.of() : roles.stream()
+                .map(rol -> new SimpleGrantedAuthority(String.valueOf(rol)))
+                .collect(Collectors.toList());
+        Authentication autenticacion = UsernamePasswordAuthenticationToken.authenticated(
+                claims.getSubject(), null, autoridades);
+        return new TokenVerificado(autenticacion, claims.getExpiration().toInstant());
+    }
+    
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.UTF_8));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+    
+    private static class TokenVerificado {
+        private final Authentication autenticacion;
+        private final Instant expiracion;
+        
+        TokenVerificado(Authentication autenticacion, Instant expiracion) {
+            this.autenticacion = autenticacion;
+            this.expiracion = expiracion;
+        }
+    }
+}
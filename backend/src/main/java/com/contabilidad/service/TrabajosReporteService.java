@@ -0,0 +1,622 @@
+package com.contabilidad.service;
+
+import com.contabilidad.config.ReportesConfig;
+import com.contabilidad.dto.TrabajoReporteDTO;
+import com.contabilidad.dto.TrabajoReporteDTO.Estado;
+import com.contabilidad.dto.TrabajoReporteDTO.Prioridad;
+import com.contabilidad.dto.TrabajoReporteDTO.Tipo;
+import com.contabilidad.dto.request.SolicitudReporteRequest;
+import com.contabilidad.util.EncryptionUtil;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Collectors;
+
+/**
+ * Trabajos de reportes pesados (balance de prueba, antigüedad de saldos, libro mayor) ejecutados fuera de la
+ * petición HTTP.
+ * <p>
+ * Los trabajos esperan en una cola por prioridad con un número máximo de trabajos pendientes; cuando está llena
+ * se rechazan de inmediato. Cada trabajo tiene un tiempo máximo: al cumplirse, o si el cliente lo cancela, se
+ * cancela la consulta en curso en MySQL (Statement.cancel) y no solo el hilo. Dos solicitudes idénticas
+ * mientras la primera no ha terminado comparten la misma ejecución y el mismo id. Los resultados se guardan
+ * como archivos JSON en disco local y se eliminan, junto con el trabajo, al vencer su tiempo de retención.
+ */
+@Service
+public class TrabajosReporteService {
+    
+    private static final Logger log = LoggerFactory.getLogger(TrabajosReporteService.class);
+    
+    private static final String EXTENSION = ".json";
+    
+    // Saldo con el signo del sistema: débitos positivos, créditos negativos
+    private static final String VALOR_CON_SIGNO = "CASE pc.tipo WHEN 'DEBE' THEN pc.valor ELSE -pc.valor END";
+    
+    private static final String CONSULTA_BALANCE_PRUEBA =
+            "SELECT cc.codigo, cc.nombre, cc.tipo, " +
+            "COALESCE(SUM(CASE WHEN t.fecha < ? THEN " + VALOR_CON_SIGNO + " END), 0), " +
+            "COALESCE(SUM(CASE WHEN t.fecha >= ? AND pc.tipo = 'DEBE' THEN pc.valor END), 0), " +
+            "COALESCE(SUM(CASE WHEN t.fecha >= ? AND pc.tipo = 'HABER' THEN pc.valor END), 0) " +
+            "FROM cuentas_contables cc " +
+            "LEFT JOIN partidas_contables pc ON pc.cuenta_id = cc.id " +
+            "LEFT JOIN transacciones t ON t.id = pc.transaccion_id AND t.estado = 'ACTIVA' AND t.fecha <= ? " +
+            "WHERE 1 = 1";
+    
+    // Los pagos se aplican primero a las deudas más antiguas (FIFO), así que el saldo de cada tercero está formado
+    // por sus movimientos más recientes del lado del saldo (débitos si es deudor, créditos si es acreedor): a cada
+    // uno, del más reciente al más antiguo, se le asigna lo que falte del saldo. Lo asignado se reparte por la
+    // fecha del movimiento en tramos calculados a partir de la fecha de corte (hace 30, 60 y 90 días)
+    private static final String CONSULTA_ANTIGUEDAD_SALDOS =
+            "SELECT te.id, te.nombre, te.numero_documento, " +
+            "COALESCE(SUM(CASE WHEN m.fecha >= ? THEN m.asignado END), 0), " +
+            "COALESCE(SUM(CASE WHEN m.fecha >= ? AND m.fecha < ? THEN m.asignado END), 0), " +
+            "COALESCE(SUM(CASE WHEN m.fecha >= ? AND m.fecha < ? THEN m.asignado END), 0), " +
+            "COALESCE(SUM(CASE WHEN m.fecha < ? THEN m.asignado END), 0), " +
+            "SUM(m.asignado) " +
+            "FROM (" +
+            "SELECT a.tercero_id, a.fecha, " +
+            "SIGN(a.saldo) * GREATEST(0, LEAST(a.valor, ABS(a.saldo) - a.acumulado + a.valor)) AS asignado " +
+            "FROM (" +
+            "SELECT t.tercero_id, t.fecha, pc.tipo, pc.valor, " +
+            "SUM(" + VALOR_CON_SIGNO + ") OVER (PARTITION BY t.tercero_id) AS saldo, " +
+            "SUM(pc.valor) OVER (PARTITION BY t.tercero_id, pc.tipo ORDER BY t.fecha DESC, pc.id DESC " +
+            "ROWS UNBOUNDED PRECEDING) AS acumulado " +
+            "FROM partidas_contables pc " +
+            "JOIN transacciones t ON t.id = pc.transaccion_id " +
+            "WHERE t.estado = 'ACTIVA' AND t.fecha <= ? AND pc.cuenta_id = ? AND t.tercero_id IS NOT NULL" +
+            ") a " +
+            "WHERE (a.saldo > 0 AND a.tipo = 'DEBE') OR (a.saldo < 0 AND a.tipo = 'HABER')" +
+            ") m " +
+            "JOIN terceros te ON te.id = m.tercero_id " +
+            "GROUP BY te.id, te.nombre, te.numero_documento " +
+            "ORDER BY te.nombre";
+    
+    private static final String CONSULTA_SALDOS_INICIALES =
+            "SELECT pc.cuenta_id, SUM(" + VALOR_CON_SIGNO + ") " +
+            "FROM partidas_contables pc " +
+            "JOIN transacciones t ON t.id = pc.transaccion_id " +
+            "WHERE t.estado = 'ACTIVA' AND t.fecha < ?";
+    
+    private static final String CONSULTA_LIBRO_MAYOR =
+            "SELECT cc.id, cc.codigo, cc.nombre, t.fecha, t.tipo_comprobante, t.numero_comprobante, t.id, " +
+            "COALESCE(pc.descripcion, t.descripcion), te.nombre, pc.tipo, pc.valor " +
+            "FROM partidas_contables pc " +
+            "JOIN transacciones t ON t.id = pc.transaccion_id " +
+            "JOIN cuentas_contables cc ON cc.id = pc.cuenta_id " +
+            "LEFT JOIN terceros te ON te.id = t.tercero_id " +
+            "WHERE t.estado = 'ACTIVA' AND t.fecha >= ? AND t.fecha <= ?";
+    
+    @Autowired
+    @Qualifier(ReportesConfig.REPORTES_JDBC_TEMPLATE)
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private ObjectMapper objectMapper;
+    
+    @Autowired
+    private EncryptionUtil encryptionUtil;
+    
+    private final Path directorio;
+    private final Duration tiempoMaximo;
+    private final Duration retencion;
+    private final ThreadPoolExecutor ejecutor;
+    private final ScheduledExecutorService vigilante;
+    private final Semaphore cupos;
+    private final AtomicLong secuencia = new AtomicLong();
+    
+    private final Map<String, Trabajo> trabajos = new ConcurrentHashMap<>();
+    
+    /**
+     * Trabajos aún no terminados por clave de solicitud, para unir las solicitudes idénticas
+     */
+    private final Map<String, Trabajo> pendientes = new ConcurrentHashMap<>();
+    
+    public TrabajosReporteService(
+            @Value("${contabilidad.reportes.trabajos.directorio}") String directorio,
+            @Value("${contabilidad.reportes.trabajos.hilos}") int hilos,
+            @Value("${contabilidad.reportes.trabajos.capacidad-cola}") int capacidadCola,
+            @Value("${contabilidad.reportes.trabajos.tiempo-maximo}") Duration tiempoMaximo,
+            @Value("${contabilidad.reportes.trabajos.retencion}") Duration retencion) {
+        this.directorio = Paths.get(directorio);
+        this.tiempoMaximo = tiempoMaximo;
+        this.retencion = retencion;
+        // Un cupo por trabajo en ejecución o en cola: la cola por prioridad no tiene límite propio
+        this.cupos = new Semaphore(hilos + capacidadCola);
+        AtomicInteger contador = new AtomicInteger();
+        this.ejecutor = new ThreadPoolExecutor(hilos, hilos, 0, TimeUnit.MILLISECONDS,
+                new PriorityBlockingQueue<>(), tarea -> {
+                    Thread hilo = new Thread(tarea, "reportes-trabajo-" + contador.incrementAndGet());
+                    hilo.setDaemon(true);
+                    return hilo;
+                });
+        this.vigilante = Executors.newSingleThreadScheduledExecutor(tarea -> {
+            Thread hilo = new Thread(tarea, "reportes-trabajo-vigilante");
+            hilo.setDaemon(true);
+            return hilo;
+        });
+    }
+    
+    /**
+     * Los resultados de una ejecución anterior no tienen trabajo asociado y no se pueden consultar
+     */
+    @PostConstruct
+    void limpiarDirectorio() throws IOException {
+        Files.createDirectories(directorio);
+        try (DirectoryStream<Path> archivos = Files.newDirectoryStream(directorio, "*" + EXTENSION + "*")) {
+            for (Path archivo : archivos) {
+                Files.deleteIfExists(archivo);
+            }
+        }
+    }
+    
+    @PreDestroy
+    void detener() {
+        ejecutor.shutdownNow();
+        vigilante.shutdownNow();
+        trabajos.values().forEach(trabajo -> trabajo.cancelarConsulta());
+    }
+    
+    /**
+     * Solicitar un reporte; si ya hay uno idéntico sin terminar se devuelve ese mismo trabajo
+     * @throws IllegalArgumentException si la solicitud no es válida
+     * @throws IllegalStateException si la cola de trabajos está llena
+     */
+    public TrabajoReporteDTO solicitar(SolicitudReporteRequest request) {
+        validar(request);
+        Prioridad prioridad = request.getPrioridad() != null ? request.getPrioridad() : Prioridad.NORMAL;
+        String clave = request.getTipo() + "|" + request.getFechaInicio() + "|" + request.getFechaFin() + "|" +
+                request.getCuentaId();
+        
+        Trabajo[] creado = new Trabajo[1];
+        Trabajo trabajo = pendientes.computeIfAbsent(clave, k -> {
+            creado[0] = new Trabajo(UUID.randomUUID().toString(), clave, request, prioridad, secuencia.incrementAndGet());
+            return creado[0];
+        });
+        if (creado[0] == null) {
+            return trabajo.toDTO();
+        }
+        if (!cupos.tryAcquire()) {
+            pendientes.remove(clave, trabajo);
+            throw new IllegalStateException("La cola de reportes está llena");
+        }
+        trabajos.put(trabajo.id, trabajo);
+        ejecutor.execute(trabajo);
+        return trabajo.toDTO();
+    }
+    
+    /**
+     * Obtener un trabajo por su id
+     */
+    public Optional<TrabajoReporteDTO> getTrabajo(String id) {
+        return Optional.ofNullable(trabajos.get(id)).map(Trabajo::toDTO);
+    }
+    
+    /**
+     * Obtener todos los trabajos conservados, los más recientes primero
+     */
+    public List<TrabajoReporteDTO> getTrabajos() {
+        return trabajos.values().stream()
+                .sorted(Comparator.comparingLong((Trabajo trabajo) -> trabajo.secuencia).reversed())
+                .map(Trabajo::toDTO)
+                .collect(Collectors.toList());
+    }
+    
+    /**
+     * Obtener el archivo de resultado de un trabajo terminado
+     */
+    public Optional<Path> getResultado(String id) {
+        Trabajo trabajo = trabajos.get(id);
+        if (trabajo == null || trabajo.estado != Estado.TERMINADO) {
+            return Optional.empty();
+        }
+        return Optional.of(archivo(trabajo));
+    }
+    
+    /**
+     * Cancelar un trabajo en cola o en ejecución; los trabajos ya terminados no cambian
+     */
+    public Optional<TrabajoReporteDTO> cancelar(String id) {
+        Trabajo trabajo = trabajos.get(id);
+        if (trabajo == null) {
+            return Optional.empty();
+        }
+        if (ejecutor.remove(trabajo)) {
+            // Nunca empezó: se libera aquí lo que liberaría su ejecución
+            trabajo.terminar(Estado.CANCELADO, "Cancelado por el usuario", retencion);
+            liberar(trabajo);
+        } else {
+            trabajo.cancelar(Estado.CANCELADO, "Cancelado por el usuario");
+        }
+        return Optional.of(trabajo.toDTO());
+    }
+    
+    /**
+     * Eliminar los trabajos terminados y sus resultados al vencer la retención
+     */
+    @Scheduled(fixedDelayString = "${contabilidad.reportes.trabajos.limpieza}")
+    public void eliminarVencidos() {
+        LocalDateTime ahora = LocalDateTime.now();
+        for (Trabajo trabajo : trabajos.values()) {
+            LocalDateTime expiracion = trabajo.fechaExpiracion;
+            if (expiracion != null && expiracion.isBefore(ahora)) {
+                trabajos.remove(trabajo.id);
+                try {
+                    Files.deleteIfExists(archivo(trabajo));
+                } catch (IOException e) {
+                    log.warn("No se pudo eliminar el resultado del reporte {}", trabajo.id, e);
+                }
+            }
+        }
+    }
+    
+    private static void validar(SolicitudReporteRequest request) {
+        if (request.getTipo() == null || request.getFechaFin() == null) {
+            throw new IllegalArgumentException("El tipo de reporte y la fecha final son obligatorios");
+        }
+        if (request.getTipo() == Tipo.ANTIGUEDAD_SALDOS) {
+            // Sumando todas las cuentas cada transacción cuadra en cero: la antigüedad solo tiene sentido
+            // sobre una cuenta (por cobrar o por pagar)
+            if (request.getCuentaId() == null) {
+                throw new IllegalArgumentException("La cuenta es obligatoria en el reporte de antigüedad de saldos");
+            }
+        } else {
+            if (request.getFechaInicio() == null) {
+                throw new IllegalArgumentException("La fecha inicial es obligatoria");
+            }
+            if (request.getFechaInicio().isAfter(request.getFechaFin())) {
+                throw new IllegalArgumentException("La fecha inicial no puede ser posterior a la fecha final");
+            }
+        }
+    }
+    
+    private void ejecutar(Trabajo trabajo) {
+        if (!trabajo.iniciar()) {
+            liberar(trabajo);
+            return;
+        }
+        ScheduledFuture<?> limite = vigilante.schedule(() -> trabajo.cancelar(Estado.VENCIDO,
+                "Se superó el tiempo máximo de " + tiempoMaximo), tiempoMaximo.toMillis(), TimeUnit.MILLISECONDS);
+        Path temporal = directorio.resolve(trabajo.id + EXTENSION + ".tmp");
+        try {
+            try (OutputStream salida = Files.newOutputStream(temporal);
+                 JsonGenerator generador = objectMapper.getFactory().createGenerator(salida)) {
+                generador.writeStartArray();
+                switch (trabajo.tipo) {
+                    case BALANCE_PRUEBA -> escribirBalancePrueba(trabajo, generador);
+                    case ANTIGUEDAD_SALDOS -> escribirAntiguedadSaldos(trabajo, generador);
+                    case LIBRO_MAYOR -> escribirLibroMayor(trabajo, generador);
+                }
+                generador.writeEndArray();
+            }
+            Files.move(temporal, archivo(trabajo), StandardCopyOption.REPLACE_EXISTING);
+            trabajo.terminar(Estado.TERMINADO, null, retencion);
+        } catch (IOException | RuntimeException e) {
+            if (trabajo.cancelado != null) {
+                trabajo.terminar(trabajo.cancelado, trabajo.mensaje, retencion);
+            } else {
+                Throwable causa = e instanceof UncheckedIOException ? e.getCause() : e;
+                log.error("Error en el reporte {} ({})", trabajo.id, trabajo.tipo, causa);
+                trabajo.terminar(Estado.FALLIDO, causa.getMessage(), retencion);
+            }
+        } finally {
+            limite.cancel(false);
+            try {
+                Files.deleteIfExists(temporal);
+            } catch (IOException e) {
+                log.warn("No se pudo eliminar el archivo temporal {}", temporal, e);
+            }
+            liberar(trabajo);
+        }
+    }
+    
+    private void liberar(Trabajo trabajo) {
+        pendientes.remove(trabajo.clave, trabajo);
+        cupos.release();
+    }
+    
+    private void escribirBalancePrueba(Trabajo trabajo, JsonGenerator generador) {
+        StringBuilder sql = new StringBuilder(CONSULTA_BALANCE_PRUEBA);
+        List<Object> parametros = new ArrayList<>(List.of(trabajo.fechaInicio, trabajo.fechaInicio,
+                trabajo.fechaInicio, trabajo.fechaFin));
+        if (trabajo.cuentaId != null) {
+            sql.append(" AND cc.id = ?");
+            parametros.add(trabajo.cuentaId);
+        }
+        sql.append(" GROUP BY cc.id, cc.codigo, cc.nombre, cc.tipo ORDER BY cc.codigo");
+        consultar(trabajo, sql.toString(), parametros, rs -> {
+            BigDecimal saldoInicial = rs.getBigDecimal(4);
+            BigDecimal debitos = rs.getBigDecimal(5);
+            BigDecimal creditos = rs.getBigDecimal(6);
+            escribir(trabajo, generador, () -> {
+                generador.writeStartObject();
+                generador.writeStringField("codigo", rs.getString(1));
+                generador.writeStringField("nombre", rs.getString(2));
+                generador.writeStringField("tipo", rs.getString(3));
+                generador.writeNumberField("saldoInicial", saldoInicial);
+                generador.writeNumberField("debitos", debitos);
+                generador.writeNumberField("creditos", creditos);
+                generador.writeNumberField("saldoFinal", saldoInicial.add(debitos).subtract(creditos));
+                generador.writeEndObject();
+            });
+        });
+    }
+    
+    /**
+     * Saldo neto por tercero en una cuenta a la fecha de corte, repartido según la antigüedad de los movimientos
+     */
+    private void escribirAntiguedadSaldos(Trabajo trabajo, JsonGenerator generador) {
+        LocalDate hace30 = trabajo.fechaFin.minusDays(30);
+        LocalDate hace60 = trabajo.fechaFin.minusDays(60);
+        LocalDate hace90 = trabajo.fechaFin.minusDays(90);
+        List<Object> parametros = List.of(hace30, hace60, hace30, hace90, hace60, hace90,
+                trabajo.fechaFin, trabajo.cuentaId);
+        consultar(trabajo, CONSULTA_ANTIGUEDAD_SALDOS, parametros, rs -> escribir(trabajo, generador, () -> {
+            generador.writeStartObject();
+            generador.writeNumberField("terceroId", rs.getLong(1));
+            generador.writeStringField("nombre", rs.getString(2));
+            generador.writeStringField("numeroDocumento", encryptionUtil.decrypt(rs.getString(3)));
+            generador.writeNumberField("hasta30Dias", rs.getBigDecimal(4));
+            generador.writeNumberField("de31a60Dias", rs.getBigDecimal(5));
+            generador.writeNumberField("de61a90Dias", rs.getBigDecimal(6));
+            generador.writeNumberField("masDe90Dias", rs.getBigDecimal(7));
+            generador.writeNumberField("total", rs.getBigDecimal(8));
+            generador.writeEndObject();
+        }));
+    }
+    
+    /**
+     * Movimientos del periodo por cuenta, con el saldo acumulado desde el saldo al inicio del periodo
+     */
+    private void escribirLibroMayor(Trabajo trabajo, JsonGenerator generador) {
+        StringBuilder sqlSaldos = new StringBuilder(CONSULTA_SALDOS_INICIALES);
+        StringBuilder sql = new StringBuilder(CONSULTA_LIBRO_MAYOR);
+        List<Object> parametrosSaldos = new ArrayList<>(List.of(trabajo.fechaInicio));
+        List<Object> parametros = new ArrayList<>(List.of(trabajo.fechaInicio, trabajo.fechaFin));
+        if (trabajo.cuentaId != null) {
+            sqlSaldos.append(" AND pc.cuenta_id = ?");
+            parametrosSaldos.add(trabajo.cuentaId);
+            sql.append(" AND pc.cuenta_id = ?");
+            parametros.add(trabajo.cuentaId);
+        }
+        sqlSaldos.append(" GROUP BY pc.cuenta_id");
+        sql.append(" ORDER BY cc.codigo, t.fecha, t.id, pc.id");
+        
+        Map<Long, BigDecimal> saldosIniciales = new HashMap<>();
+        consultar(trabajo, sqlSaldos.toString(), parametrosSaldos,
+                rs -> saldosIniciales.put(rs.getLong(1), rs.getBigDecimal(2)));
+        
+        long[] cuentaActual = {-1};
+        BigDecimal[] saldo = new BigDecimal[1];
+        consultar(trabajo, sql.toString(), parametros, rs -> {
+            long cuentaId = rs.getLong(1);
+            if (cuentaId != cuentaActual[0]) {
+                cuentaActual[0] = cuentaId;
+                saldo[0] = saldosIniciales.getOrDefault(cuentaId, BigDecimal.ZERO);
+            }
+            boolean debe = "DEBE".equals(rs.getString(10));
+            BigDecimal valor = rs.getBigDecimal(11);
+            saldo[0] = debe ? saldo[0].add(valor) : saldo[0].subtract(valor);
+            escribir(trabajo, generador, () -> {
+                generador.writeStartObject();
+                generador.writeStringField("cuentaCodigo", rs.getString(2));
+                generador.writeStringField("cuentaNombre", rs.getString(3));
+                generador.writeStringField("fecha", rs.getDate(4).toLocalDate().toString());
+                generador.writeStringField("tipoComprobante", rs.getString(5));
+                generador.writeNumberField("numeroComprobante", rs.getLong(6));
+                generador.writeNumberField("transaccionId", rs.getLong(7));
+                generador.writeStringField("descripcion", rs.getString(8));
+                generador.writeStringField("tercero", rs.getString(9));
+                generador.writeNumberField("debito", debe ? valor : BigDecimal.ZERO);
+                generador.writeNumberField("credito", debe ? BigDecimal.ZERO : valor);
+                generador.writeNumberField("saldo", saldo[0]);
+                generador.writeEndObject();
+            });
+        });
+    }
+    
+    /**
+     * Ejecutar la consulta con un cursor de solo avance, registrando la sentencia en el trabajo para poder
+     * cancelarla desde otro hilo
+     */
+    private void consultar(Trabajo trabajo, String sql, List<Object> parametros, RowCallbackHandler manejador) {
+        jdbcTemplate.query(conexion -> {
+            PreparedStatement sentencia = conexion.prepareStatement(sql,
+                    ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+            sentencia.setFetchSize(Integer.MIN_VALUE);
+            // Respaldo del vigilante por si la cancelación llega antes de que la consulta empiece
+            sentencia.setQueryTimeout((int) Math.max(1, trabajo.tiempoRestante().toSeconds()));
+            for (int i = 0; i < parametros.size(); i++) {
+                sentencia.setObject(i + 1, parametros.get(i));
+            }
+            trabajo.registrarSentencia(sentencia);
+            return sentencia;
+        }, (ResultSet rs) -> {
+            if (trabajo.cancelado != null) {
+                throw new CancellationException(trabajo.mensaje);
+            }
+            manejador.processRow(rs);
+        });
+        trabajo.registrarSentencia(null);
+    }
+    
+    private Path archivo(Trabajo trabajo) {
+        return directorio.resolve(trabajo.id + EXTENSION);
+    }
+    
+    private static void escribir(Trabajo trabajo, JsonGenerator generador, EscrituraJson escritura)
+            throws SQLException {
+        try {
+            escritura.escribir();
+            trabajo.filas.incrementAndGet();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+    
+    @FunctionalInterface
+    private interface EscrituraJson {
+        void escribir() throws IOException, SQLException;
+    }
+    
+    /**
+     * Trabajo en la cola; se ordena por prioridad y, a igual prioridad, por orden de llegada
+     */
+    private final class Trabajo implements Runnable, Comparable<Trabajo> {
+        private final String id;
+        private final String clave;
+        private final Tipo tipo;
+        private final Prioridad prioridad;
+        private final LocalDate fechaInicio;
+        private final LocalDate fechaFin;
+        private final Long cuentaId;
+        private final long secuencia;
+        private final LocalDateTime fechaSolicitud = LocalDateTime.now();
+        private final AtomicLong filas = new AtomicLong();
+        private volatile Estado estado = Estado.EN_COLA;
+        private volatile LocalDateTime fechaInicioEjecucion;
+        private volatile LocalDateTime fechaFinEjecucion;
+        private volatile LocalDateTime fechaExpiracion;
+        private volatile String mensaje;
+        private volatile Estado cancelado;
+        private volatile Statement sentencia;
+        
+        Trabajo(String id, String clave, SolicitudReporteRequest request, Prioridad prioridad, long secuencia) {
+            this.id = id;
+            this.clave = clave;
+            this.tipo = request.getTipo();
+            this.prioridad = prioridad;
+            this.fechaInicio = request.getFechaInicio();
+            this.fechaFin = request.getFechaFin();
+            this.cuentaId = request.getCuentaId();
+            this.secuencia = secuencia;
+        }
+        
+        @Override
+        public void run() {
+            ejecutar(this);
+        }
+        
+        @Override
+        public int compareTo(Trabajo otro) {
+            int comparacion = prioridad.compareTo(otro.prioridad);
+            return comparacion != 0 ? comparacion : Long.compare(secuencia, otro.secuencia);
+        }
+        
+        /**
+         * @return false si se canceló mientras esperaba en la cola
+         */
+        synchronized boolean iniciar() {
+            if (cancelado != null) {
+                terminar(cancelado, mensaje, retencion);
+                return false;
+            }
+            estado = Estado.EN_EJECUCION;
+            fechaInicioEjecucion = LocalDateTime.now();
+            return true;
+        }
+        
+        synchronized void terminar(Estado estadoFinal, String mensaje, Duration retencion) {
+            this.estado = estadoFinal;
+            this.mensaje = mensaje;
+            this.fechaFinEjecucion = LocalDateTime.now();
+            this.fechaExpiracion = fechaFinEjecucion.plus(retencion);
+        }
+        
+        synchronized void cancelar(Estado motivo, String mensaje) {
+            if (cancelado != null || (estado != Estado.EN_COLA && estado != Estado.EN_EJECUCION)) {
+                return;
+            }
+            this.mensaje = mensaje;
+            this.cancelado = motivo;
+            cancelarConsulta();
+        }
+        
+        Duration tiempoRestante() {
+            return tiempoMaximo.minus(Duration.between(fechaInicioEjecucion, LocalDateTime.now()));
+        }
+        
+        /**
+         * Una cancelación que llega mientras se prepara la sentencia la cancela apenas se registra
+         */
+        void registrarSentencia(Statement sentencia) {
+            this.sentencia = sentencia;
+            if (sentencia != null && cancelado != null) {
+                cancelarConsulta();
+            }
+        }
+        
+        void cancelarConsulta() {
+            Statement actual = sentencia;
+            if (actual != null) {
+                try {
+                    actual.cancel();
+                } catch (SQLException e) {
+                    log.warn("No se pudo cancelar la consulta del reporte {}", id, e);
+                }
+            }
+        }
+        
+        TrabajoReporteDTO toDTO() {
+            TrabajoReporteDTO dto = new TrabajoReporteDTO();
+            dto.setId(id);
+            dto.setTipo(tipo);
+            dto.setPrioridad(prioridad);
+            dto.setEstado(estado);
+            dto.setFechaInicio(fechaInicio);
+            dto.setFechaFin(fechaFin);
+            dto.setCuentaId(cuentaId);
+            dto.setFechaSolicitud(fechaSolicitud);
+            dto.setFechaInicioEjecucion(fechaInicioEjecucion);
+            dto.setFechaFinEjecucion(fechaFinEjecucion);
+            dto.setFechaExpiracion(fechaExpiracion);
+            dto.setFilas(filas.get());
+            dto.setMensaje(mensaje);
+            return dto;
+        }
+    }
+}
@@ -1,31 +1,69 @@
 package com.contabilidad.service;
 
+import com.contabilidad.dto.ResultadoLoteDTO;
 import com.contabilidad.dto.TransaccionDTO;
+import com.contabilidad.dto.request.CambioEstadoLoteRequest;
 import com.contabilidad.dto.request.TransaccionRequest;
 import com.contabilidad.model.*;
+import com.contabilidad.repository.ClaveIdempotenciaRepository;
+import com.contabilidad.repository.PartidaContableRepository;
 import com.contabilidad.repository.TransaccionRepository;
+import com.contabilidad.service.VersionesService.Agregado;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import java.math.BigDecimal;
 import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 @Service
 @Transactional
 public class TransaccionService {
     
+    /**
+     * Cantidad de transacciones que se actualizan en cada sentencia del cambio de estado masivo
+     */
+    private static final int TAMANO_LOTE_ESTADO = 500;
+    
     @Autowired
     private TransaccionRepository transaccionRepository;
     
+    @Autowired
+    private PartidaContableRepository partidaContableRepository;
+    
     @Autowired
     private TerceroService terceroService;
     
     @Autowired
     private CuentaContableService cuentaContableService;
     
+    @Autowired
+    private ConsecutivoService consecutivoService;
+    
+    @Autowired
+    private ClaveIdempotenciaRepository claveIdempotenciaRepository;
+    
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+    
+    @Autowired
+    private VersionesService versionesService;
+    
+    @PersistenceContext
+    private EntityManager entityManager;
+    
     /**
      * Obtener todas las transacciones
      */
@@ -57,6 +95,92 @@ public class TransaccionService {
      * Crear nueva transacción con validaciones
      */
     public TransaccionDTO createTransaccion(TransaccionRequest request) {
+        return createTransaccion(request, null, null);
+    }
+    
+    /**
+     * Crear nueva transacción registrando la clave de idempotencia y la huella de la solicitud en la misma
+     * transacción. Si la clave ya fue usada, el índice único hace fallar el registro con
+     * DataIntegrityViolationException.
+     */
+    public TransaccionDTO createTransaccion(TransaccionRequest request, String claveIdempotencia, String huellaSolicitud) {
+        Transaccion transaccion = construirTransaccion(request);
+        
+        // Actualizar saldos almacenados (solo las transacciones ACTIVAS afectan saldos); la actualización
+        // condicional rechaza la transacción si deja en negativo una cuenta que no lo permite
+        if (transaccion.getEstado() == Transaccion.Estado.ACTIVA) {
+            cuentaContableService.aplicarMovimientos(calcularMovimientos(transaccion.getPartidas()));
+        }
+        
+        // Numerar el comprobante al final, para que en modo estricto el consecutivo quede bloqueado el menor tiempo posible
+        transaccion.setNumeroComprobante(consecutivoService.asignarNumero(transaccion.getTipoComprobante()));
+        
+        Transaccion savedTransaccion = transaccionRepository.save(transaccion);
+        versionesService.incrementar(Agregado.LIBRO);
+        
+        if (claveIdempotencia != null) {
+            claveIdempotenciaRepository.saveAndFlush(
+                    new ClaveIdempotencia(claveIdempotencia, savedTransaccion.getId(), huellaSolicitud));
+        }
+        
+        return TransaccionDTO.fromEntity(savedTransaccion);
+    }
+    
+    /**
+     * Registrar un lote de transacciones ya validadas en la transacción actual.
+     * Los saldos se actualizan una sola vez con la variación neta del lote y las inserciones
+     * se envían en lotes JDBC; al terminar se vacía el contexto de persistencia.
+     * @return cantidad de transacciones registradas
+     */
+    public int registrarLote(List<TransaccionRequest> requests) {
+        List<Transaccion> transacciones = new ArrayList<>(requests.size());
+        Map<Long, BigDecimal> movimientos = new HashMap<>();
+        for (TransaccionRequest request : requests) {
+            Transaccion transaccion = construirTransaccion(request);
+            if (transaccion.getEstado() == Transaccion.Estado.ACTIVA) {
+                calcularMovimientos(transaccion.getPartidas()).forEach((cuentaId, variacion) ->
+                        movimientos.merge(cuentaId, variacion, BigDecimal::add));
+            }
+            transacciones.add(transaccion);
+        }
+        
+        cuentaContableService.aplicarMovimientos(movimientos);
+        
+        for (Transaccion transaccion : transacciones) {
+            transaccion.setNumeroComprobante(consecutivoService.asignarNumero(transaccion.getTipoComprobante()));
+        }
+        transaccionRepository.saveAll(transacciones);
+        versionesService.incrementar(Agregado.LIBRO);
+        entityManager.flush();
+        entityManager.clear();
+        return transacciones.size();
+    }
+    
+    /**
+     * Validar una solicitud sin registrarla (tercero, balance de partidas y cuentas activas)
+     * y devolver su variación de saldo por cuenta
+     */
+    @Transactional(readOnly = true)
+    public Map<Long, BigDecimal> prevalidarTransaccion(TransaccionRequest request) {
+        if (terceroService.getTerceroEntityById(request.getTerceroId()).isEmpty()) {
+            throw new RuntimeException("El tercero con ID " + request.getTerceroId() + " no existe");
+        }
+        
+        ReglasContables.validarPartidas(request.getPartidas());
+        
+        for (TransaccionRequest.PartidaRequest partidaRequest : request.getPartidas()) {
+            Long cuentaId = partidaRequest.getCuentaContableId();
+            CuentaContable cuenta = cuentaContableService.getCuentaEntityById(cuentaId)
+                    .orElseThrow(() -> new RuntimeException("La cuenta con ID " + cuentaId + " no existe"));
+            cuentaContableService.validarCuentaActiva(cuenta);
+        }
+        return ReglasContables.calcularMovimientos(request.getPartidas());
+    }
+    
+    /**
+     * Construir la transacción y sus partidas validando tercero, balance y cuentas activas
+     */
+    private Transaccion construirTransaccion(TransaccionRequest request) {
         // Validar tercero
         Optional<Tercero> tercero = terceroService.getTerceroEntityById(request.getTerceroId());
         if (tercero.isEmpty()) {
@@ -64,13 +188,16 @@ public class TransaccionService {
         }
         
         // Validar partidas
-        validarPartidas(request.getPartidas());
+        ReglasContables.validarPartidas(request.getPartidas());
         
         // Crear transacción
         Transaccion transaccion = new Transaccion();
         transaccion.setTercero(tercero.get());
         transaccion.setFecha(request.getFecha());
         transaccion.setDescripcion(request.getDescripcion());
+        if (request.getTipoComprobante() != null) {
+            transaccion.setTipoComprobante(request.getTipoComprobante());
+        }
         
         // Crear y agregar partidas
         for (TransaccionRequest.PartidaRequest partidaRequest : request.getPartidas()) {
@@ -80,7 +207,7 @@ public class TransaccionService {
             }
             
             // Validar que la cuenta esté activa
-            cuentaContableService.validarCuentaActiva(partidaRequest.getCuentaContableId());
+            cuentaContableService.validarCuentaActiva(cuenta.get());
             
             PartidaContable partida = new PartidaContable();
             partida.setTransaccion(transaccion);
@@ -90,66 +217,45 @@ public class TransaccionService {
             
             transaccion.addPartida(partida);
         }
-        
-        // Validar saldos negativos antes de guardar
-        validarSaldosNegativos(transaccion);
-        
-        Transaccion savedTransaccion = transaccionRepository.save(transaccion);
-        return TransaccionDTO.fromEntity(savedTransaccion);
+        return transaccion;
     }
     
     /**
-     * Validar que las partidas estén balanceadas
+     * Calcular la variación de saldo por cuenta (débitos - créditos) de un conjunto de partidas
      */
-    private void validarPartidas(List<TransaccionRequest.PartidaRequest> partidas) {
-        if (partidas == null || partidas.size() < 2) {
-            throw new RuntimeException("Debe tener al menos 2 partidas (un débito y un crédito)");
+    private Map<Long, BigDecimal> calcularMovimientos(List<PartidaContable> partidas) {
+        Map<Long, BigDecimal> movimientos = new HashMap<>();
+        for (PartidaContable partida : partidas) {
+            BigDecimal variacion = partida.getTipo() == TipoPartida.DEBE ? partida.getValor() : partida.getValor().negate();
+            movimientos.merge(partida.getCuentaContable().getId(), variacion, BigDecimal::add);
         }
-        
-        BigDecimal totalDebitos = BigDecimal.ZERO;
-        BigDecimal totalCreditos = BigDecimal.ZERO;
-        
-        for (TransaccionRequest.PartidaRequest partida : partidas) {
-            if (partida.getTipo() == TipoPartida.DEBE) {
-                totalDebitos = totalDebitos.add(partida.getValor());
-            } else if (partida.getTipo() == TipoPartida.HABER) {
-                totalCreditos = totalCreditos.add(partida.getValor());
-            }
-        }
-        
-        if (totalDebitos.compareTo(totalCreditos) != 0) {
-            throw new RuntimeException("Las partidas no están balanceadas. Total débitos: " + 
-                    totalDebitos + ", Total créditos: " + totalCreditos);
+        return movimientos;
+    }
+    
+    /**
+     * Obtener la variación de saldo por cuenta de un conjunto de transacciones ya registradas,
+     * multiplicada por el sentido indicado (1 para aplicar, -1 para reversar)
+     */
+    private Map<Long, BigDecimal> obtenerMovimientos(Collection<Long> transaccionIds, int sentido) {
+        Map<Long, BigDecimal> movimientos = new HashMap<>();
+        BigDecimal factor = BigDecimal.valueOf(sentido);
+        for (Object[] fila : partidaContableRepository.sumarMovimientosPorCuenta(transaccionIds)) {
+            movimientos.put((Long) fila[0], ((BigDecimal) fila[1]).multiply(factor));
         }
+        return movimientos;
     }
     
     /**
-     * Validar que no se generen saldos negativos no permitidos
+     * Determinar cómo afecta a los saldos un cambio de estado:
+     * 1 si la transacción pasa a ACTIVA, -1 si deja de estarlo, 0 si no hay efecto
      */
-    private void validarSaldosNegativos(Transaccion transaccion) {
-        for (PartidaContable partida : transaccion.getPartidas()) {
-            CuentaContable cuenta = partida.getCuentaContable();
-            
-            // Solo validar si la cuenta no permite saldo negativo
-            if (!cuenta.isPermiteSaldoNegativo()) {
-                BigDecimal saldoActual = cuentaContableService.calcularSaldoCuenta(cuenta.getId());
-                BigDecimal saldoProyectado = saldoActual;
-                
-                // Calcular el saldo proyectado después de la transacción
-                if (partida.getTipo() == TipoPartida.DEBE) {
-                    saldoProyectado = saldoActual.add(partida.getValor());
-                } else if (partida.getTipo() == TipoPartida.HABER) {
-                    saldoProyectado = saldoActual.subtract(partida.getValor());
-                }
-                
-                // Si el saldo proyectado es negativo, rechazar la transacción
-                if (saldoProyectado.compareTo(BigDecimal.ZERO) < 0) {
-                    throw new RuntimeException("La transacción generaría un saldo negativo (" + 
-                            saldoProyectado + ") en la cuenta " + cuenta.getCodigo() + " - " + 
-                            cuenta.getNombre() + ", la cual no permite saldos negativos");
-                }
-            }
+    private int sentidoAjusteSaldos(Transaccion.Estado estadoAnterior, Transaccion.Estado estadoNuevo) {
+        boolean antesActiva = estadoAnterior == Transaccion.Estado.ACTIVA;
+        boolean ahoraActiva = estadoNuevo == Transaccion.Estado.ACTIVA;
+        if (antesActiva == ahoraActiva) {
+            return 0;
         }
+        return ahoraActiva ? 1 : -1;
     }
     
     /**
@@ -218,22 +324,28 @@ public class TransaccionService {
      * Cambiar estado de una transacción
      */
     public TransaccionDTO cambiarEstadoTransaccion(Long id, String nuevoEstado) {
-        Optional<Transaccion> transaccionOpt = transaccionRepository.findById(id);
+        // Validar el nuevo estado
+        Transaccion.Estado estado = parsearEstado(nuevoEstado);
+        
+        // Bloquear la fila antes de leer el estado y las partidas: dos cambios simultáneos no pueden
+        // reversar dos veces las mismas partidas ni ajustar cuentas de las que una reclasificación las movió
+        Optional<Transaccion> transaccionOpt = transaccionRepository.findByIdParaActualizar(id);
         if (transaccionOpt.isEmpty()) {
             throw new RuntimeException("La transacción con ID " + id + " no existe");
         }
         
         Transaccion transaccion = transaccionOpt.get();
+        Transaccion.Estado estadoAnterior = transaccion.getEstado();
+        transaccion.setEstado(estado);
         
-        // Validar el nuevo estado
-        try {
-            Transaccion.Estado estado = Transaccion.Estado.valueOf(nuevoEstado.toUpperCase());
-            transaccion.setEstado(estado);
-        } catch (IllegalArgumentException e) {
-            throw new RuntimeException("Estado inválido: " + nuevoEstado + ". Estados válidos: ACTIVA, ANULADA, PENDIENTE");
+        // Aplicar o reversar las partidas en los saldos almacenados
+        int sentido = sentidoAjusteSaldos(estadoAnterior, estado);
+        if (sentido != 0) {
+            cuentaContableService.aplicarMovimientos(obtenerMovimientos(List.of(id), sentido));
         }
         
         Transaccion savedTransaccion = transaccionRepository.save(transaccion);
+        versionesService.incrementar(Agregado.LIBRO);
         return TransaccionDTO.fromEntity(savedTransaccion);
     }
     
@@ -241,10 +353,119 @@ public class TransaccionService {
      * Obtener transacciones por estado
      */
     public List<TransaccionDTO> getTransaccionesByEstado(String estado) {
+        Transaccion.Estado estadoEnum = parsearEstado(estado);
+        List<Transaccion> transacciones = transaccionRepository.findByEstadoOrderByFechaDesc(estadoEnum);
+        return TransaccionDTO.fromEntityList(transacciones);
+    }
+    
+    /**
+     * Cambiar el estado de varias transacciones (por IDs o por filtro).
+     * Cada bloque se confirma en su propia transacción con sentencias UPDATE por conjunto;
+     * si el bloque no supera la validación agregada de saldos se procesa transacción por transacción
+     * para reportar los fallos individuales.
+     */
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public ResultadoLoteDTO cambiarEstadoLote(CambioEstadoLoteRequest request) {
+        Transaccion.Estado nuevoEstado = parsearEstado(request.getNuevoEstado());
+        List<Long> ids = resolverIdsLote(request);
+        
+        ResultadoLoteDTO resultado = new ResultadoLoteDTO(ids.size());
+        for (int inicio = 0; inicio < ids.size(); inicio += TAMANO_LOTE_ESTADO) {
+            List<Long> bloque = ids.subList(inicio, Math.min(inicio + TAMANO_LOTE_ESTADO, ids.size()));
+            try {
+                resultado.acumular(transactionTemplate.execute(status -> aplicarCambioEstado(bloque, nuevoEstado)));
+            } catch (RuntimeException e) {
+                for (Long id : bloque) {
+                    try {
+                        resultado.acumular(transactionTemplate.execute(status -> aplicarCambioEstado(List.of(id), nuevoEstado)));
+                    } catch (RuntimeException individual) {
+                        resultado.agregarFallo(id, individual.getMessage());
+                    }
+                }
+            }
+        }
+        return resultado;
+    }
+    
+    /**
+     * Obtener los IDs a procesar en un cambio de estado masivo
+     */
+    private List<Long> resolverIdsLote(CambioEstadoLoteRequest request) {
+        if (request.getIds() != null && !request.getIds().isEmpty()) {
+            return new ArrayList<>(new LinkedHashSet<>(request.getIds()));
+        }
+        if (request.getEstadoActual() == null && request.getFechaInicio() == null && request.getFechaFin() == null) {
+            throw new RuntimeException("Debe indicar los IDs de las transacciones o al menos un filtro");
+        }
+        Transaccion.Estado estadoActual = request.getEstadoActual() != null ? parsearEstado(request.getEstadoActual()) : null;
+        return transaccionRepository.findIdsWithFilters(estadoActual, request.getFechaInicio(), request.getFechaFin());
+    }
+    
+    /**
+     * Aplicar el cambio de estado a un bloque de transacciones dentro de la transacción actual.
+     * Los saldos se ajustan con la suma de las partidas de todo el bloque, de modo que
+     * la validación de saldos negativos se hace sobre el efecto agregado. Los estados se leen con bloqueo,
+     * así que las partidas sumadas después no pueden cambiar de cuenta ni de estado antes del commit.
+     */
+    private ResultadoLoteDTO aplicarCambioEstado(List<Long> ids, Transaccion.Estado nuevoEstado) {
+        ResultadoLoteDTO parcial = new ResultadoLoteDTO();
+        
+        Map<Long, Transaccion.Estado> estadosActuales = new HashMap<>();
+        for (Object[] fila : transaccionRepository.bloquearEstadosByIdIn(ids)) {
+            estadosActuales.put(((Number) fila[0]).longValue(), Transaccion.Estado.valueOf((String) fila[1]));
+        }
+        
+        Map<Transaccion.Estado, List<Long>> porEstadoAnterior = new EnumMap<>(Transaccion.Estado.class);
+        List<Long> aplicar = new ArrayList<>();
+        List<Long> reversar = new ArrayList<>();
+        for (Long id : ids) {
+            Transaccion.Estado estadoAnterior = estadosActuales.get(id);
+            if (estadoAnterior == null) {
+                parcial.agregarFallo(id, "La transacción con ID " + id + " no existe");
+            } else if (estadoAnterior == nuevoEstado) {
+                parcial.setSinCambios(parcial.getSinCambios() + 1);
+            } else {
+                porEstadoAnterior.computeIfAbsent(estadoAnterior, e -> new ArrayList<>()).add(id);
+                int sentido = sentidoAjusteSaldos(estadoAnterior, nuevoEstado);
+                if (sentido > 0) {
+                    aplicar.add(id);
+                } else if (sentido < 0) {
+                    reversar.add(id);
+                }
+            }
+        }
+        
+        // Ajustar saldos con el efecto neto del bloque
+        Map<Long, BigDecimal> movimientos = new HashMap<>();
+        if (!aplicar.isEmpty()) {
+            obtenerMovimientos(aplicar, 1).forEach((cuentaId, variacion) -> movimientos.merge(cuentaId, variacion, BigDecimal::add));
+        }
+        if (!reversar.isEmpty()) {
+            obtenerMovimientos(reversar, -1).forEach((cuentaId, variacion) -> movimientos.merge(cuentaId, variacion, BigDecimal::add));
+        }
+        cuentaContableService.aplicarMovimientos(movimientos);
+        
+        // Actualizar estados; el filtro por estado anterior detecta cambios concurrentes
+        for (Map.Entry<Transaccion.Estado, List<Long>> grupo : porEstadoAnterior.entrySet()) {
+            int actualizadas = transaccionRepository.actualizarEstado(grupo.getValue(), grupo.getKey(), nuevoEstado);
+            if (actualizadas != grupo.getValue().size()) {
+                throw new RuntimeException("Una o más transacciones fueron modificadas por otra operación, intente nuevamente");
+            }
+            parcial.setActualizadas(parcial.getActualizadas() + actualizadas);
+        }
+        if (parcial.getActualizadas() > 0) {
+            versionesService.incrementar(Agregado.LIBRO);
+        }
+        
+        return parcial;
+    }
+    
+    /**
+     * Convertir un estado recibido como texto
+     */
+    private Transaccion.Estado parsearEstado(String estado) {
         try {
-            Transaccion.Estado estadoEnum = Transaccion.Estado.valueOf(estado.toUpperCase());
-            List<Transaccion> transacciones = transaccionRepository.findByEstadoOrderByFechaDesc(estadoEnum);
-            return TransaccionDTO.fromEntityList(transacciones);
+            return Transaccion.Estado.valueOf(estado.toUpperCase());
         } catch (IllegalArgumentException e) {
             throw new RuntimeException("Estado inválido: " + estado + ". Estados válidos: ACTIVA, ANULADA, PENDIENTE");
         }
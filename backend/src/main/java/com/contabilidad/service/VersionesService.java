@@ -0,0 +1,202 @@
+package com.contabilidad.service;
+
+import com.contabilidad.config.CacheConfig;
+import jakarta.annotation.PostConstruct;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Versiones de los agregados (cuentas, terceros, libro) para responder GET condicionales con ETag.
+ * <p>
+ * Los servicios incrementan la versión de un agregado en cada escritura, al confirmar la transacción, y los
+ * controladores comparan If-None-Match con la etiqueta sin consultar la base de datos. La etiqueta debe leerse
+ * antes de consultar los datos: así puede acompañar datos más nuevos que ella (el cliente los vuelve a pedir
+ * completos en la siguiente consulta), pero nunca datos más antiguos.
+ * <p>
+ * Las versiones se comparten entre instancias mediante la tabla versiones_agregados: cada instancia publica
+ * sus escrituras pendientes y lee las versiones globales cada contabilidad.versiones.sincronizacion. Mientras
+ * una escritura no se publica, la etiqueta de la instancia que la hizo lleva su identificador y el número de
+ * escrituras pendientes, de modo que cambia de inmediato sin coincidir con la de otras instancias. Una escritura
+ * hecha en otra instancia se refleja en a lo sumo dos intervalos de sincronización.
+ * <p>
+ * Las mismas versiones mantienen al día las cachés locales de cuentas y terceros: cuando la versión global de
+ * uno de esos agregados sube por escrituras de otra instancia, la caché correspondiente se vacía, así que un
+ * cambio hecho en otra instancia deja de leerse de caché en a lo sumo dos intervalos de sincronización.
+ */
+@Service
+public class VersionesService {
+    
+    private static final Logger log = LoggerFactory.getLogger(VersionesService.class);
+    
+    public enum Agregado {
+        CUENTAS("c", CacheConfig.CUENTAS), TERCEROS("t", CacheConfig.TERCEROS), LIBRO("l", null);
+        
+        private final String prefijo;
+        private final String cache;
+        
+        Agregado(String prefijo, String cache) {
+            this.prefijo = prefijo;
+            this.cache = cache;
+        }
+    }
+    
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+    
+    @Autowired
+    private CacheManager cacheManager;
+    
+    /**
+     * Identifica las escrituras de esta instancia que aún no se han publicado
+     */
+    private final String instancia = Long.toString(ThreadLocalRandom.current().nextLong() & Long.MAX_VALUE, 36);
+    
+    private final Map<Agregado, AtomicReference<Version>> versiones = new EnumMap<>(Agregado.class);
+    
+    public VersionesService() {
+        for (Agregado agregado : Agregado.values()) {
+            versiones.put(agregado, new AtomicReference<>(new Version(agregado, 0, 0)));
+        }
+    }
+    
+    /**
+     * Cargar las versiones globales antes de atender solicitudes; con la versión inicial en 0 la etiqueta
+     * podría coincidir con la de datos de otra época
+     */
+    @PostConstruct
+    public void inicializar() {
+        leerVersionesGlobales();
+    }
+    
+    /**
+     * Incrementar la versión de los agregados modificados.
+     * Dentro de una transacción el incremento se aplica al confirmarla (si se revierte no hay cambio que
+     * anunciar); fuera de una transacción se aplica de inmediato.
+     */
+    public void incrementar(Agregado... agregados) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            registrarEscritura(agregados);
+            return;
+        }
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                registrarEscritura(agregados);
+            }
+        });
+    }
+    
+    /**
+     * Obtener la etiqueta (ETag fuerte, sin comillas) de los datos que dependen de los agregados indicados
+     */
+    public String etiqueta(Agregado... agregados) {
+        StringBuilder etiqueta = new StringBuilder();
+        for (Agregado agregado : agregados) {
+            if (etiqueta.length() > 0) {
+                etiqueta.append('-');
+            }
+            etiqueta.append(versiones.get(agregado).get().etiqueta);
+        }
+        return etiqueta.toString();
+    }
+    
+    /**
+     * Publicar las escrituras pendientes de esta instancia y leer las versiones globales
+     */
+    @Scheduled(fixedDelayString = "${contabilidad.versiones.sincronizacion}")
+    public void sincronizar() {
+        try {
+            Map<Agregado, Long> publicadas = new EnumMap<>(Agregado.class);
+            for (Map.Entry<Agregado, AtomicReference<Version>> entrada : versiones.entrySet()) {
+                long pendientes = entrada.getValue().get().pendientes;
+                if (pendientes > 0) {
+                    // Varias escrituras se publican con un solo incremento: basta con que la versión global cambie
+                    jdbcTemplate.update("UPDATE versiones_agregados SET version = version + 1 WHERE agregado = ?",
+                            entrada.getKey().name());
+                    publicadas.put(entrada.getKey(), pendientes);
+                }
+            }
+            leerVersionesGlobales(publicadas);
+        } catch (DataAccessException e) {
+            log.warn("No se pudieron sincronizar las versiones de los agregados: {}", e.getMessage());
+        }
+    }
+    
+    private void leerVersionesGlobales() {
+        leerVersionesGlobales(Map.of());
+    }
+    
+    /**
+     * Adoptar las versiones globales y descontar las escrituras ya publicadas, en una sola actualización por
+     * agregado para que ninguna etiqueta muestre la versión anterior sin las escrituras pendientes.
+     * Cada publicación suma 1 a la versión global: si subió más que lo publicado aquí, otra instancia escribió
+     * y la caché local del agregado puede tener datos anteriores a esa escritura.
+     */
+    private void leerVersionesGlobales(Map<Agregado, Long> publicadas) {
+        Map<Agregado, Long> globales = new EnumMap<>(Agregado.class);
+        jdbcTemplate.query("SELECT agregado, version FROM versiones_agregados", rs -> {
+            globales.put(Agregado.valueOf(rs.getString(1)), rs.getLong(2));
+        });
+        for (Agregado agregado : Agregado.values()) {
+            if (!globales.containsKey(agregado)) {
+                throw new IllegalStateException("Falta la versión del agregado " + agregado + " en versiones_agregados");
+            }
+            long global = globales.get(agregado);
+            long publicadasAgregado = publicadas.getOrDefault(agregado, 0L);
+            Version anterior = versiones.get(agregado).getAndUpdate(actual -> new Version(agregado,
+                    Math.max(actual.global, global), actual.pendientes - publicadasAgregado));
+            if (global - anterior.global > (publicadasAgregado > 0 ? 1 : 0)) {
+                invalidarCache(agregado);
+            }
+        }
+    }
+    
+    private void invalidarCache(Agregado agregado) {
+        if (agregado.cache == null) {
+            return;
+        }
+        Cache cache = cacheManager.getCache(agregado.cache);
+        if (cache != null) {
+            // Inmediato aunque la caché esté ligada a transacciones: la escritura ya se confirmó en otra instancia
+            cache.invalidate();
+        }
+    }
+    
+    private void registrarEscritura(Agregado... agregados) {
+        for (Agregado agregado : agregados) {
+            versiones.get(agregado).updateAndGet(actual ->
+                    new Version(agregado, actual.global, actual.pendientes + 1));
+        }
+    }
+    
+    /**
+     * Última versión global leída más las escrituras de esta instancia aún no publicadas
+     */
+    private class Version {
+        private final long global;
+        private final long pendientes;
+        private final String etiqueta;
+        
+        Version(Agregado agregado, long global, long pendientes) {
+            this.global = global;
+            this.pendientes = pendientes;
+            this.etiqueta = pendientes == 0
+                    ? agregado.prefijo + global
+                    : agregado.prefijo + global + "." + instancia + "." + pendientes;
+        }
+    }
+}
@@ -0,0 +1,146 @@
+package com.contabilidad.util;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Queue;
+
+/**
+ * Aho-Corasick automaton over a fixed set of ASCII patterns, matched case-insensitively.
+ * The automaton is fully precomputed into a dense transition table, so scanning costs one array
+ * lookup per character regardless of how many patterns there are, and never allocates.
+ * Instances are immutable and thread-safe.
+ */
+public final class AhoCorasick {
+
+    private static final int ALPHABET = 128;
+
+    /** Initial state, also the state after any character that cannot start or continue a match */
+    public static final int INITIAL_STATE = 0;
+
+    private final int[] transitions;
+    private final int[] matchLengths;
+    private final int maxPatternLength;
+
+    /**
+     * @param patterns Non-empty ASCII patterns; letter case is ignored
+     */
+    public AhoCorasick(String... patterns) {
+        List<int[]> trie = new ArrayList<>();
+        List<Integer> lengths = new ArrayList<>();
+        trie.add(newState());
+        lengths.add(0);
+
+        for (String pattern : patterns) {
+            if (pattern.isEmpty()) {
+                throw new IllegalArgumentException("Patterns must not be empty");
+            }
+            int state = INITIAL_STATE;
+            for (int i = 0; i < pattern.length(); i++) {
+                int symbol = fold(pattern.charAt(i));
+                if (symbol < 0) {
+                    throw new IllegalArgumentException("Patterns must be ASCII: " + pattern);
+                }
+                if (trie.get(state)[symbol] < 0) {
+                    trie.get(state)[symbol] = trie.size();
+                    trie.add(newState());
+                    lengths.add(0);
+                }
+                state = trie.get(state)[symbol];
+            }
+            lengths.set(state, pattern.length());
+        }
+
+        this.maxPatternLength = lengths.stream().mapToInt(Integer::intValue).max().orElse(0);
+        int states = trie.size();
+        int[] failure = new int[states];
+        this.transitions = new int[states * ALPHABET];
+        this.matchLengths = new int[states];
+
+        // Breadth-first: every state's failure target is complete before the state itself is filled in
+        Queue<Integer> pending = new ArrayDeque<>();
+        for (int symbol = 0; symbol < ALPHABET; symbol++) {
+            int child = trie.get(INITIAL_STATE)[symbol];
+            if (child < 0) {
+                transitions[symbol] = INITIAL_STATE;
+            } else {
+                transitions[symbol] = child;
+                failure[child] = INITIAL_STATE;
+                pending.add(child);
+            }
+        }
+        while (!pending.isEmpty()) {
+            int state = pending.remove();
+            // The longest pattern ending here is either the state's own or one ending at its failure target
+            matchLengths[state] = lengths.get(state) > 0 ? lengths.get(state) : matchLengths[failure[state]];
+            for (int symbol = 0; symbol < ALPHABET; symbol++) {
+                int child = trie.get(state)[symbol];
+                int fallback = transitions[failure[state] * ALPHABET + symbol];
+                if (child < 0) {
+                    transitions[state * ALPHABET + symbol] = fallback;
+                } else {
+                    transitions[state * ALPHABET + symbol] = child;
+                    failure[child] = fallback;
+                    pending.add(child);
+                }
+            }
+        }
+    }
+
+    /**
+     * Advances the automaton by one character
+     */
+    public int next(int state, char c) {
+        int symbol = fold(c);
+        return symbol < 0 ? INITIAL_STATE : transitions[state * ALPHABET + symbol];
+    }
+
+    /**
+     * Length of the longest pattern ending at the character that led to this state, or 0 if none does
+     */
+    public int matchLength(int state) {
+        return matchLengths[state];
+    }
+
+    /**
+     * Length of the longest pattern; the state after any text depends only on this many characters minus one
+     */
+    public int maxPatternLength() {
+        return maxPatternLength;
+    }
+
+    /**
+     * Tells whether the text contains any of the patterns
+     */
+    public boolean containsAny(CharSequence text) {
+        int state = INITIAL_STATE;
+        for (int i = 0; i < text.length(); i++) {
+            state = next(state, text.charAt(i));
+            if (matchLengths[state] > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Lower-cases a character into the ASCII alphabet; -1 for characters no pattern can contain
+     */
+    private static int fold(char c) {
+        if (c >= ALPHABET) {
+            // Some non-ASCII letters lower-case to ASCII ones (e.g. the Kelvin sign to 'k')
+            c = Character.toLowerCase(c);
+            if (c >= ALPHABET) {
+                return -1;
+            }
+        }
+        return c >= 'A' && c <= 'Z' ? c + ('a' - 'A') : c;
+    }
+
+    private static int[] newState() {
+        int[] state = new int[ALPHABET];
+        Arrays.fill(state, -1);
+        return state;
+    }
+}
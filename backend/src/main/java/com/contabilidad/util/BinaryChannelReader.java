@@ -0,0 +1,115 @@
+package com.contabilidad.util;
+
+import java.io.Closeable;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32C;
+
+/**
+ * Buffered reader for the values written by {@link BinaryChannelWriter}.
+ * Keeps a CRC32C of every byte consumed so the trailing checksum can be verified.
+ */
+public class BinaryChannelReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final ReadableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CRC32C checksum = new CRC32C();
+    /** Buffer position up to which consumed bytes have been added to the checksum */
+    private int checksummedUpTo;
+
+    public BinaryChannelReader(ReadableByteChannel channel) {
+        this.channel = channel;
+        buffer.limit(0);
+    }
+
+    public int readByte() throws IOException {
+        ensureAvailable(1);
+        return buffer.get() & 0xFF;
+    }
+
+    public byte[] readBytes(int length) throws IOException {
+        byte[] value = new byte[length];
+        int offset = 0;
+        while (offset < length) {
+            ensureAvailable(1);
+            int chunk = Math.min(buffer.remaining(), length - offset);
+            buffer.get(value, offset, chunk);
+            offset += chunk;
+        }
+        return value;
+    }
+
+    public long readVarLong() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    public long readSignedVarLong() throws IOException {
+        long value = readVarLong();
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public String readString() throws IOException {
+        long length = readVarLong();
+        if (length == 0) {
+            return null;
+        }
+        if (length - 1 > Integer.MAX_VALUE) {
+            throw new IOException("String too long: " + (length - 1));
+        }
+        return new String(readBytes((int) (length - 1)), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Reads the trailing checksum and compares it with the CRC32C of everything read before it
+     * @return true if the data is intact
+     */
+    public boolean verifyChecksum() throws IOException {
+        updateChecksum(buffer.position());
+        long expected = checksum.getValue();
+        ensureAvailable(4);
+        int stored = buffer.getInt();
+        return (int) expected == stored;
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+
+    private void ensureAvailable(int bytes) throws IOException {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        updateChecksum(buffer.position());
+        buffer.compact();
+        checksummedUpTo = 0;
+        while (buffer.position() < bytes) {
+            if (channel.read(buffer) < 0) {
+                throw new EOFException("Unexpected end of data");
+            }
+        }
+        buffer.flip();
+    }
+
+    private void updateChecksum(int upTo) {
+        if (upTo > checksummedUpTo) {
+            ByteBuffer consumed = buffer.duplicate();
+            consumed.position(checksummedUpTo).limit(upTo);
+            checksum.update(consumed);
+            checksummedUpTo = upTo;
+        }
+    }
+}
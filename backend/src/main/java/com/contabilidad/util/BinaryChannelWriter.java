@@ -0,0 +1,117 @@
+package com.contabilidad.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32C;
+
+/**
+ * Buffered writer of compact binary values (LEB128 varints, zigzag-encoded signed values and
+ * length-prefixed UTF-8 strings) to a channel. Keeps a CRC32C of every byte written.
+ */
+public class BinaryChannelWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    private final WritableByteChannel channel;
+    private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+    private final CRC32C checksum = new CRC32C();
+    private long bytesWritten;
+
+    public BinaryChannelWriter(WritableByteChannel channel) {
+        this.channel = channel;
+    }
+
+    public void writeByte(int value) throws IOException {
+        ensureCapacity(1);
+        buffer.put((byte) value);
+    }
+
+    public void writeBytes(byte[] value) throws IOException {
+        int offset = 0;
+        while (offset < value.length) {
+            ensureCapacity(1);
+            int length = Math.min(buffer.remaining(), value.length - offset);
+            buffer.put(value, offset, length);
+            offset += length;
+        }
+    }
+
+    /**
+     * Writes a non-negative value as an unsigned LEB128 varint (1 byte for values under 128)
+     */
+    public void writeVarLong(long value) throws IOException {
+        ensureCapacity(10);
+        while ((value & ~0x7FL) != 0) {
+            buffer.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        buffer.put((byte) value);
+    }
+
+    /**
+     * Writes a signed value zigzag-encoded, so small negative values also take few bytes
+     */
+    public void writeSignedVarLong(long value) throws IOException {
+        writeVarLong((value << 1) ^ (value >> 63));
+    }
+
+    /**
+     * Writes a string as its UTF-8 length followed by its bytes; null is written as length 0
+     * and non-null strings as length + 1
+     */
+    public void writeString(String value) throws IOException {
+        if (value == null) {
+            writeVarLong(0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        writeVarLong(bytes.length + 1L);
+        writeBytes(bytes);
+    }
+
+    /**
+     * Writes the CRC32C of everything written so far
+     */
+    public void writeChecksum() throws IOException {
+        flushBuffer();
+        long value = checksum.getValue();
+        ensureCapacity(4);
+        buffer.putInt((int) value);
+        flushBuffer();
+    }
+
+    public long getBytesWritten() {
+        return bytesWritten + buffer.position();
+    }
+
+    public void flush() throws IOException {
+        flushBuffer();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBuffer();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private void ensureCapacity(int bytes) throws IOException {
+        if (buffer.remaining() < bytes) {
+            flushBuffer();
+        }
+    }
+
+    private void flushBuffer() throws IOException {
+        buffer.flip();
+        checksum.update(buffer.duplicate());
+        while (buffer.hasRemaining()) {
+            bytesWritten += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+}
@@ -0,0 +1,67 @@
+package com.contabilidad.util;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+import java.util.HexFormat;
+import java.util.Locale;
+
+/**
+ * Keyed HMAC-SHA256 "blind index" for encrypted columns.
+ * The same plaintext always yields the same 64-character hex digest, so the digest can be stored next to the
+ * ciphertext and unique-indexed for exact-match lookups, while the plaintext never reaches the database.
+ * The key must differ from the encryption key and cannot change without recomputing every stored digest.
+ */
+@Component
+public class BlindIndex {
+
+    private static final String ALGORITHM = "HmacSHA256";
+
+    /** Length of the hex digest returned by {@link #compute(String)} */
+    public static final int LENGTH = 64;
+
+    private final SecretKeySpec key;
+
+    /** Mac.getInstance is expensive and a Mac is not thread-safe, so each thread keeps its own */
+    private final ThreadLocal<Mac> mac = ThreadLocal.withInitial(this::createMac);
+
+    public BlindIndex(@Value("${contabilidad.cifrado.clave-indice}") String key) {
+        if (key == null || key.isBlank()) {
+            throw new IllegalStateException("No blind index key configured (CONTABILIDAD_CLAVE_INDICE)");
+        }
+        byte[] keyBytes = Base64.getDecoder().decode(key);
+        if (keyBytes.length < 32) {
+            throw new IllegalArgumentException("The blind index key must be at least 256 bits long");
+        }
+        this.key = new SecretKeySpec(keyBytes, ALGORITHM);
+    }
+
+    /**
+     * Computes the digest of a value, ignoring surrounding whitespace and letter case
+     * (the same equality the plaintext column had under its case-insensitive collation)
+     * @param value The plaintext value
+     * @return Lowercase hex digest, or null for a null value
+     */
+    public String compute(String value) {
+        if (value == null) {
+            return null;
+        }
+        byte[] input = value.trim().toUpperCase(Locale.ROOT).getBytes(StandardCharsets.UTF_8);
+        return HexFormat.of().formatHex(mac.get().doFinal(input));
+    }
+
+    private Mac createMac() {
+        try {
+            Mac instance = Mac.getInstance(ALGORITHM);
+            instance.init(key);
+            return instance;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 is not available", e);
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.contabilidad.util;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.channels.Channels;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Forward-only CSV reader (RFC 4180: quoted fields, escaped quotes and line breaks inside quotes).
+ * Reads from an NIO channel through a fixed-size buffer, so memory usage does not depend on file size.
+ */
+public class CsvReader implements Closeable {
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final char BOM = '\uFEFF';
+
+    private final Reader reader;
+    private final char separator;
+    private final char[] buffer = new char[BUFFER_SIZE];
+    private final StringBuilder field = new StringBuilder();
+    private int position;
+    private int limit;
+    private long lineNumber;
+    private long rowStartLine;
+    private boolean firstRead = true;
+
+    public CsvReader(ReadableByteChannel channel, char separator) {
+        this.reader = Channels.newReader(channel, StandardCharsets.UTF_8.newDecoder(), BUFFER_SIZE);
+        this.separator = separator;
+    }
+
+    /**
+     * Reads the next row
+     * @return the row fields, or null at end of input
+     */
+    public String[] readRow() throws IOException {
+        int c = read();
+        while (c == '\r' || c == '\n') {
+            skipLineBreak(c);
+            c = read();
+        }
+        if (c == -1) {
+            return null;
+        }
+
+        rowStartLine = lineNumber + 1;
+        List<String> fields = new ArrayList<>();
+        boolean quoted = false;
+        boolean fieldWasQuoted = false;
+        field.setLength(0);
+
+        while (true) {
+            if (quoted) {
+                if (c == -1) {
+                    throw new IOException("Unterminated quoted field starting at line " + rowStartLine);
+                }
+                if (c == '"') {
+                    int next = read();
+                    if (next == '"') {
+                        field.append('"');
+                    } else {
+                        quoted = false;
+                        c = next;
+                        continue;
+                    }
+                } else {
+                    if (c == '\n') {
+                        lineNumber++;
+                    }
+                    field.append((char) c);
+                }
+            } else if (c == '"' && field.length() == 0 && !fieldWasQuoted) {
+                quoted = true;
+                fieldWasQuoted = true;
+            } else if (c == separator) {
+                fields.add(field.toString());
+                field.setLength(0);
+                fieldWasQuoted = false;
+            } else if (c == '\r' || c == '\n' || c == -1) {
+                fields.add(field.toString());
+                if (c != -1) {
+                    skipLineBreak(c);
+                }
+                return fields.toArray(new String[0]);
+            } else {
+                field.append((char) c);
+            }
+            c = read();
+        }
+    }
+
+    /**
+     * Line number (1-based) where the last returned row starts
+     */
+    public long getRowLine() {
+        return rowStartLine;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void skipLineBreak(int c) throws IOException {
+        lineNumber++;
+        if (c == '\r') {
+            int next = read();
+            if (next != '\n' && next != -1) {
+                position--;
+            }
+        }
+    }
+
+    private int read() throws IOException {
+        if (position == limit) {
+            limit = reader.read(buffer, 0, buffer.length);
+            position = 0;
+            if (limit <= 0) {
+                limit = 0;
+                return -1;
+            }
+            if (firstRead) {
+                firstRead = false;
+                if (buffer[0] == BOM) {
+                    position = 1;
+                    return read();
+                }
+            }
+        }
+        return buffer[position++];
+    }
+}
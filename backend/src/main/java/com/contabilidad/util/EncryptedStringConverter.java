@@ -0,0 +1,31 @@
+package com.contabilidad.util;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+import org.springframework.stereotype.Component;
+
+/**
+ * Transparently encrypts string attributes on write and decrypts them on read.
+ * Hibernate obtains the instance from the Spring context, so the key configured for {@link EncryptionUtil} is used.
+ * Rows written before encryption was enabled are read back as they are.
+ */
+@Component
+@Converter
+public class EncryptedStringConverter implements AttributeConverter<String, String> {
+
+    private final EncryptionUtil encryptionUtil;
+
+    public EncryptedStringConverter(EncryptionUtil encryptionUtil) {
+        this.encryptionUtil = encryptionUtil;
+    }
+
+    @Override
+    public String convertToDatabaseColumn(String attribute) {
+        return encryptionUtil.encrypt(attribute);
+    }
+
+    @Override
+    public String convertToEntityAttribute(String dbData) {
+        return encryptionUtil.decrypt(dbData);
+    }
+}
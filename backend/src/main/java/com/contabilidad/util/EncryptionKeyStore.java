@@ -0,0 +1,257 @@
+package com.contabilidad.util;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.FileAlreadyExistsException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Versioned AES keys kept in a properties file on local disk.
+ * <p>
+ * Every key has an id ("k1", "k2", ...) that {@link EncryptionUtil} writes in front of each ciphertext, so
+ * values encrypted with any retained key stay readable after a rotation. New values always use the active key.
+ * The first time the store is opened it is seeded with the configured key as "k1", which is also the key
+ * used for ciphertexts written before key ids existed; there is no built-in key, so creating the store without
+ * one configured fails at startup.
+ * <p>
+ * Instances sharing the database must share the key directory. The file is reloaded every
+ * {@code contabilidad.cifrado.recarga}, so a key rotated by another instance becomes the active key here too,
+ * and an unknown key id triggers an immediate reload so its ciphertexts can be read before that.
+ */
+@Component
+public class EncryptionKeyStore {
+
+    private static final Logger log = LoggerFactory.getLogger(EncryptionKeyStore.class);
+
+    private static final String FILE_NAME = "claves.properties";
+    private static final String ACTIVE_PROPERTY = "activa";
+    private static final String KEY_PREFIX = "clave.";
+    private static final String LEGACY_KEY_ID = "k1";
+    private static final int KEY_BYTES = 32;
+
+    private final Path file;
+    private final SecureRandom secureRandom = new SecureRandom();
+
+    private volatile Keys keys;
+
+    public EncryptionKeyStore(@Value("${contabilidad.cifrado.almacen-claves}") String directory,
+                              @Value("${contabilidad.cifrado.clave}") String initialKey) {
+        this.file = Paths.get(directory).resolve(FILE_NAME);
+        try {
+            if (!Files.exists(file)) {
+                if (initialKey == null || initialKey.isBlank()) {
+                    throw new IllegalStateException(
+                            "No encryption key configured (CONTABILIDAD_CLAVE_CIFRADO) to create the key store " + file);
+                }
+                Map<String, byte[]> initial = new LinkedHashMap<>();
+                initial.put(LEGACY_KEY_ID, decodeKey(initialKey));
+                create(new Keys(initial, LEGACY_KEY_ID));
+            }
+            this.keys = read();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unable to open the key store " + file, e);
+        }
+    }
+
+    /**
+     * Id of the key used for new ciphertexts
+     */
+    public String getActiveKeyId() {
+        return keys.activeId;
+    }
+
+    /**
+     * Key used for new ciphertexts
+     */
+    public SecretKey getActiveKey() {
+        Keys current = keys;
+        return current.byId.get(current.activeId);
+    }
+
+    /**
+     * Ids of all retained keys, oldest first
+     */
+    public List<String> getKeyIds() {
+        return List.copyOf(keys.byId.keySet());
+    }
+
+    /**
+     * Id of the key that decrypts ciphertexts written before key ids were introduced
+     */
+    public String getLegacyKeyId() {
+        return LEGACY_KEY_ID;
+    }
+
+    /**
+     * Finds a key by id, reloading the file once if another instance may have added it
+     * @throws IllegalArgumentException if no such key exists
+     */
+    public SecretKey getKey(String id) {
+        SecretKey key = keys.byId.get(id);
+        if (key == null) {
+            synchronized (this) {
+                key = keys.byId.get(id);
+                if (key == null) {
+                    try {
+                        keys = read();
+                    } catch (IOException e) {
+                        throw new UncheckedIOException("Unable to reload the key store " + file, e);
+                    }
+                    key = keys.byId.get(id);
+                }
+            }
+        }
+        if (key == null) {
+            throw new IllegalArgumentException("Unknown encryption key id: " + id);
+        }
+        return key;
+    }
+
+    /**
+     * Reads the file again, picking up keys and the active key set by other instances
+     */
+    public synchronized void reload() throws IOException {
+        Keys reloaded = read();
+        if (!reloaded.activeId.equals(keys.activeId)) {
+            log.info("Encryption key {} is now active (rotated by another instance)", reloaded.activeId);
+        }
+        keys = reloaded;
+    }
+
+    @Scheduled(fixedDelayString = "${contabilidad.cifrado.recarga}")
+    public void scheduledReload() {
+        try {
+            reload();
+        } catch (IOException e) {
+            log.warn("Unable to reload the key store {}, keeping key {} active: {}",
+                    file, keys.activeId, e.getMessage());
+        }
+    }
+
+    /**
+     * Generates a new random key, stores it and makes it the active key
+     * @return The id of the new key
+     */
+    public synchronized String rotate() throws IOException {
+        Keys current = read();
+        Map<String, byte[]> updated = new LinkedHashMap<>();
+        current.byId.forEach((id, key) -> updated.put(id, key.getEncoded()));
+        String id = "k" + (current.byId.size() + 1);
+        while (updated.containsKey(id)) {
+            id = "k" + (Integer.parseInt(id.substring(1)) + 1);
+        }
+        byte[] material = new byte[KEY_BYTES];
+        secureRandom.nextBytes(material);
+        updated.put(id, material);
+
+        Keys rotated = new Keys(updated, id);
+        write(rotated);
+        keys = rotated;
+        log.info("Encryption key {} is now active ({} keys retained)", id, updated.size());
+        return id;
+    }
+
+    private Keys read() throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        Map<String, byte[]> material = new LinkedHashMap<>();
+        properties.stringPropertyNames().stream()
+                .filter(name -> name.startsWith(KEY_PREFIX))
+                .map(name -> name.substring(KEY_PREFIX.length()))
+                .sorted((a, b) -> Integer.compare(Integer.parseInt(a.substring(1)), Integer.parseInt(b.substring(1))))
+                .forEach(id -> material.put(id, decodeKey(properties.getProperty(KEY_PREFIX + id))));
+        String active = properties.getProperty(ACTIVE_PROPERTY);
+        if (active == null || !material.containsKey(active)) {
+            throw new IOException("The key store " + file + " has no valid active key");
+        }
+        return new Keys(material, active);
+    }
+
+    /**
+     * Creates the file only if it does not exist yet, so concurrent first starts agree on the same keys
+     */
+    private void create(Keys initial) throws IOException {
+        Path temporary = writeTemporary(initial);
+        try {
+            Files.move(temporary, file);
+        } catch (FileAlreadyExistsException e) {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    private void write(Keys updated) throws IOException {
+        Path temporary = writeTemporary(updated);
+        try {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    private Path writeTemporary(Keys content) throws IOException {
+        Files.createDirectories(file.getParent());
+        Path temporary = Files.createTempFile(file.getParent(), FILE_NAME, ".tmp");
+        try {
+            Files.setPosixFilePermissions(temporary, PosixFilePermissions.fromString("rw-------"));
+        } catch (UnsupportedOperationException e) {
+            // Not a POSIX file system
+        }
+        Properties properties = new Properties();
+        properties.setProperty(ACTIVE_PROPERTY, content.activeId);
+        content.byId.forEach((id, key) ->
+                properties.setProperty(KEY_PREFIX + id, Base64.getEncoder().encodeToString(key.getEncoded())));
+        try (Writer writer = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            properties.store(writer, "Encryption keys - do not edit or delete");
+        }
+        return temporary;
+    }
+
+    private static byte[] decodeKey(String encoded) {
+        byte[] material = Base64.getDecoder().decode(encoded.trim());
+        if (material.length != 16 && material.length != 24 && material.length != 32) {
+            throw new IllegalArgumentException("The encryption key must be 128, 192 or 256 bits long");
+        }
+        return material;
+    }
+
+    /**
+     * Immutable snapshot of the stored keys
+     */
+    private static final class Keys {
+
+        private final Map<String, SecretKey> byId;
+        private final String activeId;
+
+        Keys(Map<String, byte[]> material, String activeId) {
+            Map<String, SecretKey> converted = new LinkedHashMap<>();
+            material.forEach((id, key) -> converted.put(id, new SecretKeySpec(key, "AES")));
+            this.byId = Collections.unmodifiableMap(converted);
+            this.activeId = activeId;
+        }
+    }
+}
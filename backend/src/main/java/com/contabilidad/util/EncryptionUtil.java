@@ -2,16 +2,16 @@ package com.contabilidad.util;
 
 import org.springframework.stereotype.Component;
 import javax.crypto.Cipher;
-import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.GCMParameterSpec;
-import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
 import java.util.Base64;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.util.Arrays;
+import java.util.stream.IntStream;
 
 @Component
 public class EncryptionUtil {
@@ -19,72 +19,153 @@ public class EncryptionUtil {
     private static final String ALGORITHM = "AES/GCM/NoPadding";
     private static final int GCM_IV_LENGTH = 12;
     private static final int GCM_TAG_LENGTH = 16;
-    private static final int KEY_LENGTH = 256;
-    
-    // In production, this should be stored securely (e.g., environment variable, vault)
-    private static final String SECRET_KEY = "YourSecretKeyHere12345678901234567890123456789012";
-    
-    private final SecretKey secretKey;
+
+    /**
+     * Marks values produced by {@link #encrypt(String)}, which look like "enc:k2:Base64...".
+     * Values without it are treated as legacy plaintext; "enc:Base64..." values predate key ids.
+     */
+    public static final String CIPHERTEXT_PREFIX = "enc:";
+    private static final char KEY_ID_SEPARATOR = ':';
+
+    /** Substrings (SQL keywords and script vectors) that make an input unsafe, matched ignoring case */
+    private static final AhoCorasick UNSAFE_PATTERNS = new AhoCorasick(
+            "select", "insert", "update", "delete", "drop", "create", "alter", "exec", "union",
+            "script", "javascript:", "vbscript:", "onload=", "onerror=", "eval(", "document.cookie");
+
+    /** Script vectors removed by {@link #sanitizeInput(String)}, matched ignoring case */
+    private static final AhoCorasick STRIPPED_PATTERNS = new AhoCorasick(
+            "javascript:", "vbscript:", "onload=", "onerror=", "eval(", "document.cookie");
+
+    private static final String SCRIPT_OPEN = "<script";
+    private static final String SCRIPT_CLOSE = "</script>";
+
+    /** Batches at least this large are decrypted in parallel, each worker using its own cipher */
+    private static final int PARALLEL_BATCH_THRESHOLD = 512;
+
+    private final EncryptionKeyStore keyStore;
     private final SecureRandom secureRandom;
 
-    public EncryptionUtil() {
-        this.secretKey = generateSecretKey();
+    /**
+     * Cipher.getInstance performs a provider lookup and is far more expensive than the AES work itself
+     * for short fields, so every thread keeps its own cipher, IV generator and output buffer.
+     */
+    private final ThreadLocal<CipherState> cipherState = ThreadLocal.withInitial(CipherState::new);
+
+    public EncryptionUtil(EncryptionKeyStore keyStore) {
+        this.keyStore = keyStore;
         this.secureRandom = new SecureRandom();
     }
 
     /**
-     * Encrypts sensitive data
+     * Encrypts sensitive data with the active key
      * @param plaintext The text to encrypt
-     * @return Base64 encoded encrypted string
+     * @return Prefix, key id and Base64 encoded IV + ciphertext
      */
     public String encrypt(String plaintext) {
+        if (plaintext == null || plaintext.isEmpty()) {
+            return plaintext;
+        }
         try {
-            if (plaintext == null || plaintext.isEmpty()) {
-                return plaintext;
-            }
-
-            byte[] iv = new byte[GCM_IV_LENGTH];
-            secureRandom.nextBytes(iv);
+            // Read once: a concurrent rotation must not mix the id of one key with the output of another
+            String keyId = keyStore.getActiveKeyId();
+            SecretKey key = keyStore.getKey(keyId);
+            CipherState state = cipherState.get();
+            state.random.nextBytes(state.iv);
+            state.cipher.init(Cipher.ENCRYPT_MODE, key, new GCMParameterSpec(GCM_TAG_LENGTH * 8, state.iv));
 
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            GCMParameterSpec parameterSpec = new GCMParameterSpec(GCM_TAG_LENGTH * 8, iv);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey, parameterSpec);
+            byte[] input = plaintext.getBytes(StandardCharsets.UTF_8);
+            byte[] output = state.output(GCM_IV_LENGTH + state.cipher.getOutputSize(input.length));
+            System.arraycopy(state.iv, 0, output, 0, GCM_IV_LENGTH);
+            int length = GCM_IV_LENGTH + state.cipher.doFinal(input, 0, input.length, output, GCM_IV_LENGTH);
 
-            byte[] cipherText = cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
-            byte[] encrypted = new byte[iv.length + cipherText.length];
-            System.arraycopy(iv, 0, encrypted, 0, iv.length);
-            System.arraycopy(cipherText, 0, encrypted, iv.length, cipherText.length);
-
-            return Base64.getEncoder().encodeToString(encrypted);
-        } catch (Exception e) {
+            byte[] encoded = Base64.getEncoder().encode(Arrays.copyOf(output, length));
+            return new StringBuilder(CIPHERTEXT_PREFIX.length() + keyId.length() + 1 + encoded.length)
+                    .append(CIPHERTEXT_PREFIX)
+                    .append(keyId)
+                    .append(KEY_ID_SEPARATOR)
+                    .append(new String(encoded, StandardCharsets.ISO_8859_1))
+                    .toString();
+        } catch (GeneralSecurityException e) {
             throw new RuntimeException("Error encrypting data", e);
         }
     }
 
     /**
      * Decrypts encrypted data
-     * @param encryptedText Base64 encoded encrypted string
-     * @return Decrypted plaintext
+     * @param encryptedText Value produced by {@link #encrypt(String)}
+     * @return Decrypted plaintext, or the value itself when it was stored before encryption was enabled
      */
     public String decrypt(String encryptedText) {
+        if (!isEncrypted(encryptedText)) {
+            return encryptedText;
+        }
         try {
-            if (encryptedText == null || encryptedText.isEmpty()) {
-                return encryptedText;
+            // Base64 never contains the separator, so its absence identifies values written before key ids
+            int separator = encryptedText.indexOf(KEY_ID_SEPARATOR, CIPHERTEXT_PREFIX.length());
+            SecretKey key = keyStore.getKey(separator < 0
+                    ? keyStore.getLegacyKeyId()
+                    : encryptedText.substring(CIPHERTEXT_PREFIX.length(), separator));
+            int start = separator < 0 ? CIPHERTEXT_PREFIX.length() : separator + 1;
+
+            CipherState state = cipherState.get();
+            byte[] decoded = Base64.getDecoder().decode(encryptedText.substring(start));
+            if (decoded.length < GCM_IV_LENGTH + GCM_TAG_LENGTH) {
+                throw new IllegalArgumentException("Ciphertext is too short");
             }
+            state.cipher.init(Cipher.DECRYPT_MODE, key,
+                    new GCMParameterSpec(GCM_TAG_LENGTH * 8, decoded, 0, GCM_IV_LENGTH));
 
-            byte[] decoded = Base64.getDecoder().decode(encryptedText);
-            byte[] iv = Arrays.copyOfRange(decoded, 0, GCM_IV_LENGTH);
-            byte[] cipherText = Arrays.copyOfRange(decoded, GCM_IV_LENGTH, decoded.length);
+            int inputLength = decoded.length - GCM_IV_LENGTH;
+            byte[] output = state.output(state.cipher.getOutputSize(inputLength));
+            int length = state.cipher.doFinal(decoded, GCM_IV_LENGTH, inputLength, output, 0);
+            return new String(output, 0, length, StandardCharsets.UTF_8);
+        } catch (GeneralSecurityException | IllegalArgumentException e) {
+            throw new RuntimeException("Error decrypting data", e);
+        }
+    }
 
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            GCMParameterSpec parameterSpec = new GCMParameterSpec(GCM_TAG_LENGTH * 8, iv);
-            cipher.init(Cipher.DECRYPT_MODE, secretKey, parameterSpec);
+    /**
+     * Decrypts a whole page of values at once; nulls and legacy plaintext values are returned unchanged.
+     * Large batches are split across the common pool so each worker reuses its own cipher.
+     * @param values Values as read from the database
+     * @return A new array with the decrypted values in the same positions
+     */
+    public String[] decryptAll(String[] values) {
+        String[] result = new String[values.length];
+        IntStream indexes = IntStream.range(0, values.length);
+        if (values.length >= PARALLEL_BATCH_THRESHOLD) {
+            indexes = indexes.parallel();
+        }
+        indexes.forEach(i -> result[i] = decrypt(values[i]));
+        return result;
+    }
 
-            byte[] plaintext = cipher.doFinal(cipherText);
-            return new String(plaintext, StandardCharsets.UTF_8);
-        } catch (Exception e) {
-            throw new RuntimeException("Error decrypting data", e);
+    /**
+     * Tells whether a stored value was produced by {@link #encrypt(String)}
+     */
+    public boolean isEncrypted(String value) {
+        return value != null && value.startsWith(CIPHERTEXT_PREFIX);
+    }
+
+    /**
+     * Tells whether a stored value needs no re-encryption: it is empty or already encrypted with the active key
+     */
+    public boolean isCurrent(String value) {
+        if (value == null || value.isEmpty()) {
+            return true;
         }
+        String keyId = keyStore.getActiveKeyId();
+        return value.startsWith(CIPHERTEXT_PREFIX)
+                && value.startsWith(keyId, CIPHERTEXT_PREFIX.length())
+                && value.length() > CIPHERTEXT_PREFIX.length() + keyId.length()
+                && value.charAt(CIPHERTEXT_PREFIX.length() + keyId.length()) == KEY_ID_SEPARATOR;
+    }
+
+    /**
+     * Re-encrypts a stored value with the active key if it is not already current
+     */
+    public String reencrypt(String value) {
+        return isCurrent(value) ? value : encrypt(decrypt(value));
     }
 
     /**
@@ -163,29 +244,14 @@ public class EncryptionUtil {
      * @return true if safe, false if potentially dangerous
      */
     public boolean isSafeInput(String input) {
-        if (input == null) {
-            return true;
-        }
-
-        String lowerInput = input.toLowerCase();
-        
-        // Check for SQL injection patterns
-        String[] sqlPatterns = {
-            "select", "insert", "update", "delete", "drop", "create", "alter", "exec", "union",
-            "script", "javascript:", "vbscript:", "onload=", "onerror=", "eval(", "document.cookie"
-        };
-
-        for (String pattern : sqlPatterns) {
-            if (lowerInput.contains(pattern)) {
-                return false;
-            }
-        }
-
-        return true;
+        return input == null || !UNSAFE_PATTERNS.containsAny(input);
     }
 
     /**
-     * Sanitizes input by removing dangerous characters
+     * Sanitizes input by removing script blocks, markup tags and script vectors in a single pass.
+     * Characters inside removed tags are skipped before matching, so a vector split by a tag is still removed,
+     * and so is a vector formed by the characters around a removed one.
+     * Nothing is allocated when the input needs no changes other than trimming.
      * @param input The input to sanitize
      * @return Sanitized input
      */
@@ -194,27 +260,99 @@ public class EncryptionUtil {
             return null;
         }
 
-        return input
-            .replaceAll("<script[^>]*>.*?</script>", "")
-            .replaceAll("<[^>]*>", "")
-            .replaceAll("javascript:", "")
-            .replaceAll("vbscript:", "")
-            .replaceAll("onload=", "")
-            .replaceAll("onerror=", "")
-            .replaceAll("eval\\(", "")
-            .replaceAll("document\\.cookie", "")
-            .trim();
+        int length = input.length();
+        // Created on the first change; until then the output is the input up to the current position
+        StringBuilder output = null;
+        int state = AhoCorasick.INITIAL_STATE;
+        int i = 0;
+        while (i < length) {
+            char c = input.charAt(i);
+            if (c == '<') {
+                int tagEnd = endOfTag(input, i);
+                if (tagEnd > 0) {
+                    if (output == null) {
+                        output = new StringBuilder(length).append(input, 0, i);
+                    }
+                    i = tagEnd;
+                    continue;
+                }
+            }
+            if (output != null) {
+                output.append(c);
+            }
+            i++;
+            state = STRIPPED_PATTERNS.next(state, c);
+            int match = STRIPPED_PATTERNS.matchLength(state);
+            if (match > 0) {
+                if (output == null) {
+                    output = new StringBuilder(length).append(input, 0, i);
+                }
+                output.setLength(output.length() - match);
+                state = stateAfter(output);
+            }
+        }
+        return (output == null ? input : output.toString()).trim();
     }
 
-    private SecretKey generateSecretKey() {
-        try {
-            KeyGenerator keyGen = KeyGenerator.getInstance("AES");
-            keyGen.init(KEY_LENGTH, secureRandom);
-            return keyGen.generateKey();
-        } catch (Exception e) {
-            // Fallback to using the secret key string
-            byte[] keyBytes = SECRET_KEY.getBytes(StandardCharsets.UTF_8);
-            return new SecretKeySpec(keyBytes, "AES");
+    /**
+     * Rebuilds the automaton state from the end of the output, after a match has been cut from it
+     */
+    private static int stateAfter(CharSequence output) {
+        int state = AhoCorasick.INITIAL_STATE;
+        int start = Math.max(0, output.length() - STRIPPED_PATTERNS.maxPatternLength() + 1);
+        for (int i = start; i < output.length(); i++) {
+            state = STRIPPED_PATTERNS.next(state, output.charAt(i));
+        }
+        return state;
+    }
+
+    /**
+     * Finds where the tag starting at the given '<' ends: after the matching "&lt;/script&gt;" for a script
+     * block closed on the same line, otherwise after the next '&gt;'
+     * @return The index after the removed region, or -1 if the tag is never closed
+     */
+    private static int endOfTag(String input, int start) {
+        int close = input.indexOf('>', start + 1);
+        if (close < 0) {
+            return -1;
+        }
+        if (input.regionMatches(true, start, SCRIPT_OPEN, 0, SCRIPT_OPEN.length())) {
+            for (int i = close + 1; i <= input.length() - SCRIPT_CLOSE.length(); i++) {
+                char c = input.charAt(i);
+                if (c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029') {
+                    break;
+                }
+                if (c == '<' && input.regionMatches(true, i, SCRIPT_CLOSE, 0, SCRIPT_CLOSE.length())) {
+                    return i + SCRIPT_CLOSE.length();
+                }
+            }
+        }
+        return close + 1;
+    }
+
+    /**
+     * Per-thread cipher and scratch buffers; a cipher is re-initialized with a fresh IV on every call
+     */
+    private static final class CipherState {
+
+        private final Cipher cipher;
+        private final SecureRandom random = new SecureRandom();
+        private final byte[] iv = new byte[GCM_IV_LENGTH];
+        private byte[] buffer = new byte[256];
+
+        CipherState() {
+            try {
+                this.cipher = Cipher.getInstance(ALGORITHM);
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("AES/GCM is not available", e);
+            }
+        }
+
+        byte[] output(int size) {
+            if (buffer.length < size) {
+                buffer = new byte[Math.max(size, buffer.length * 2)];
+            }
+            return buffer;
         }
     }
-} 
\ No newline at end of file
+}
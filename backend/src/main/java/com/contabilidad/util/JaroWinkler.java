@@ -0,0 +1,79 @@
+package com.contabilidad.util;
+
+/**
+ * Jaro-Winkler string similarity.
+ * Returns a value between 0 (no similarity) and 1 (identical), giving extra weight to common prefixes.
+ */
+public final class JaroWinkler {
+
+    private static final double PREFIX_SCALE = 0.1;
+    private static final int MAX_PREFIX = 4;
+    private static final double BOOST_THRESHOLD = 0.7;
+
+    private JaroWinkler() {}
+
+    /**
+     * Computes the Jaro-Winkler similarity of two strings
+     */
+    public static double similarity(String first, String second) {
+        if (first == null || second == null) {
+            return 0;
+        }
+        if (first.equals(second)) {
+            return 1;
+        }
+        int firstLength = first.length();
+        int secondLength = second.length();
+        if (firstLength == 0 || secondLength == 0) {
+            return 0;
+        }
+
+        int matchWindow = Math.max(0, Math.max(firstLength, secondLength) / 2 - 1);
+        boolean[] firstMatches = new boolean[firstLength];
+        boolean[] secondMatches = new boolean[secondLength];
+
+        int matches = 0;
+        for (int i = 0; i < firstLength; i++) {
+            int start = Math.max(0, i - matchWindow);
+            int end = Math.min(i + matchWindow + 1, secondLength);
+            for (int j = start; j < end; j++) {
+                if (!secondMatches[j] && first.charAt(i) == second.charAt(j)) {
+                    firstMatches[i] = true;
+                    secondMatches[j] = true;
+                    matches++;
+                    break;
+                }
+            }
+        }
+        if (matches == 0) {
+            return 0;
+        }
+
+        int transpositions = 0;
+        int k = 0;
+        for (int i = 0; i < firstLength; i++) {
+            if (firstMatches[i]) {
+                while (!secondMatches[k]) {
+                    k++;
+                }
+                if (first.charAt(i) != second.charAt(k)) {
+                    transpositions++;
+                }
+                k++;
+            }
+        }
+
+        double m = matches;
+        double jaro = (m / firstLength + m / secondLength + (m - transpositions / 2.0) / m) / 3;
+        if (jaro < BOOST_THRESHOLD) {
+            return jaro;
+        }
+
+        int prefix = 0;
+        int maxPrefix = Math.min(MAX_PREFIX, Math.min(firstLength, secondLength));
+        while (prefix < maxPrefix && first.charAt(prefix) == second.charAt(prefix)) {
+            prefix++;
+        }
+        return jaro + prefix * PREFIX_SCALE * (1 - jaro);
+    }
+}
@@ -0,0 +1,64 @@
+package com.contabilidad.util;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free rate limiter based on the generic cell rate algorithm (GCRA).
+ * The whole state is the theoretical arrival time of the next permit, kept in a single AtomicLong:
+ * each permit pushes it forward by one emission interval, and a request is allowed while it stays
+ * within the burst tolerance of the current time.
+ */
+public final class RateLimiter {
+
+    private final long emissionIntervalNanos;
+    private final long burstToleranceNanos;
+    private final AtomicLong theoreticalArrival;
+
+    /**
+     * @param permitsPerSecond Sustained rate
+     * @param burst Permits that may be taken at once after an idle period
+     */
+    public RateLimiter(double permitsPerSecond, int burst) {
+        if (permitsPerSecond <= 0 || burst < 1) {
+            throw new IllegalArgumentException("The rate and the burst must be positive");
+        }
+        this.emissionIntervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.burstToleranceNanos = emissionIntervalNanos * burst;
+        this.theoreticalArrival = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Takes the permits if they are available now
+     * @param permits Number of permits
+     * @return 0 if the permits were taken, otherwise the nanoseconds to wait before they would be
+     */
+    public long tryAcquire(int permits) {
+        long increment = emissionIntervalNanos * permits;
+        // Requests larger than the burst are allowed once the limiter is idle, or they would never pass
+        long tolerance = Math.max(burstToleranceNanos, increment);
+        while (true) {
+            long now = System.nanoTime();
+            long current = theoreticalArrival.get();
+            long next = Math.max(current, now) + increment;
+            long allowedAt = next - tolerance;
+            if (allowedAt - now > 0) {
+                return allowedAt - now;
+            }
+            if (theoreticalArrival.compareAndSet(current, next)) {
+                return 0;
+            }
+        }
+    }
+
+    /**
+     * Waits until the permits are available and takes them
+     * @param permits Number of permits
+     */
+    public void acquire(int permits) throws InterruptedException {
+        long wait;
+        while ((wait = tryAcquire(permits)) > 0) {
+            TimeUnit.NANOSECONDS.sleep(wait);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.contabilidad.util;
+
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Coalesces concurrent calls for the same key into a single execution.
+ * <p>
+ * The first caller for a key runs the loader; callers arriving while it runs wait for and share its result.
+ * A successful result may also be reused for a short time after it completes, so a value can be at most
+ * (loader duration + time to live) old when returned. Failures are never reused: every waiting caller gets
+ * the exception, and the next call runs the loader again.
+ * <p>
+ * Results are shared between callers, so they should be immutable. Expired entries are dropped whenever the
+ * loader runs, so keys that are never requested again (e.g. keys carrying a version) do not accumulate.
+ */
+public final class SingleFlight<K, V> {
+
+    private final long timeToLiveNanos;
+    private final ConcurrentHashMap<K, Flight<V>> flights = new ConcurrentHashMap<>();
+
+    /**
+     * @param timeToLive How long a completed result keeps being returned; zero shares only in-flight calls
+     */
+    public SingleFlight(Duration timeToLive) {
+        if (timeToLive.isNegative()) {
+            throw new IllegalArgumentException("The time to live must not be negative");
+        }
+        this.timeToLiveNanos = timeToLive.toNanos();
+    }
+
+    /**
+     * Returns the in-flight or recent result for the key, or runs the loader if there is none
+     */
+    public V execute(K key, Supplier<V> loader) {
+        long now = System.nanoTime();
+        Flight<V> created = new Flight<>();
+        Flight<V> flight = flights.compute(key, (k, current) ->
+                current != null && current.isReusable(now, timeToLiveNanos) ? current : created);
+        if (flight != created) {
+            return flight.await();
+        }
+        // remove(key, value) semantics: an entry replaced meanwhile by a new flight is kept
+        flights.entrySet().removeIf(entry -> !entry.getValue().isReusable(now, timeToLiveNanos));
+
+        try {
+            V value = loader.get();
+            flight.completedAt = System.nanoTime();
+            flight.result.complete(value);
+            if (timeToLiveNanos == 0) {
+                flights.remove(key, flight);
+            }
+            return value;
+        } catch (RuntimeException | Error e) {
+            flights.remove(key, flight);
+            flight.result.completeExceptionally(e);
+            throw e;
+        }
+    }
+
+    private static final class Flight<V> {
+
+        private final CompletableFuture<V> result = new CompletableFuture<>();
+        private volatile long completedAt;
+
+        boolean isReusable(long now, long timeToLiveNanos) {
+            if (!result.isDone()) {
+                return true;
+            }
+            return !result.isCompletedExceptionally() && now - completedAt < timeToLiveNanos;
+        }
+
+        V await() {
+            try {
+                return result.join();
+            } catch (CompletionException e) {
+                Throwable cause = e.getCause();
+                if (cause instanceof RuntimeException runtime) {
+                    throw runtime;
+                }
+                if (cause instanceof Error error) {
+                    throw error;
+                }
+                throw e;
+            }
+        }
+    }
+}
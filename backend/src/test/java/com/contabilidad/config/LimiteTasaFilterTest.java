@@ -0,0 +1,72 @@
+package com.contabilidad.config;
+
+import com.contabilidad.service.LimiteTasaService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.web.MockFilterChain;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.security.core.context.SecurityContextHolder;
+
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LimiteTasaFilterTest {
+
+    private static final int RAFAGA = 3;
+
+    private final LimiteTasaFilter filtro = new LimiteTasaFilter(new LimiteTasaService(
+            new SimpleMeterRegistry(), true, 1000, Duration.ofMinutes(10),
+            0.001, RAFAGA, 0.001, RAFAGA, 0.001, RAFAGA));
+
+    @AfterEach
+    void limpiarContexto() {
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void dosClientesConElMismoUsuarioTienenCuotasSeparadas() throws Exception {
+        for (int i = 0; i < RAFAGA; i++) {
+            assertThat(escribir("admin", "10.0.0.1").getStatus()).isEqualTo(HttpStatus.OK.value());
+        }
+        MockHttpServletResponse agotado = escribir("admin", "10.0.0.1");
+        assertThat(agotado.getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+        assertThat(agotado.getHeader(HttpHeaders.RETRY_AFTER)).isNotBlank();
+
+        // Otro cliente con la misma cuenta conserva toda su ráfaga
+        for (int i = 0; i < RAFAGA; i++) {
+            assertThat(escribir("admin", "10.0.0.2").getStatus()).isEqualTo(HttpStatus.OK.value());
+        }
+        assertThat(escribir("admin", "10.0.0.2").getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+    }
+
+    @Test
+    void unUsuarioAutenticadoNoConsumeLaCuotaAnonimaDeSuIp() throws Exception {
+        for (int i = 0; i < RAFAGA; i++) {
+            assertThat(escribir(null, "10.0.0.3").getStatus()).isEqualTo(HttpStatus.OK.value());
+        }
+        assertThat(escribir(null, "10.0.0.3").getStatus()).isEqualTo(HttpStatus.TOO_MANY_REQUESTS.value());
+
+        assertThat(escribir("admin", "10.0.0.3").getStatus()).isEqualTo(HttpStatus.OK.value());
+    }
+
+    private MockHttpServletResponse escribir(String usuario, String ip) throws Exception {
+        SecurityContextHolder.clearContext();
+        if (usuario != null) {
+            SecurityContextHolder.getContext().setAuthentication(new UsernamePasswordAuthenticationToken(
+                    usuario, null, List.of(new SimpleGrantedAuthority("ROLE_ADMIN"))));
+        }
+        MockHttpServletRequest request = new MockHttpServletRequest("POST", "/api/transacciones");
+        request.setRemoteAddr(ip);
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        filtro.doFilter(request, response, new MockFilterChain());
+        return response;
+    }
+}
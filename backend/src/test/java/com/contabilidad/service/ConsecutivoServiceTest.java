@@ -0,0 +1,219 @@
+package com.contabilidad.service;
+
+import com.contabilidad.model.ConsecutivoComprobante;
+import com.contabilidad.model.TipoComprobante;
+import com.contabilidad.repository.ConsecutivoComprobanteRepository;
+import com.contabilidad.service.ConsecutivoService.Modo;
+import com.contabilidad.util.BlindIndex;
+import com.contabilidad.util.EncryptionUtil;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Varios hilos, y en RANGOS varias instancias del servicio, piden números del mismo tipo a la vez
+ */
+@DataJpaTest(properties = {
+        "spring.datasource.url=jdbc:h2:mem:consecutivos;MODE=MySQL;DATABASE_TO_LOWER=TRUE;LOCK_TIMEOUT=30000",
+        "spring.datasource.driver-class-name=org.h2.Driver",
+        "spring.jpa.hibernate.ddl-auto=create-drop",
+        "spring.jpa.show-sql=false"
+})
+@AutoConfigureTestDatabase(replace = AutoConfigureTestDatabase.Replace.NONE)
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class ConsecutivoServiceTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ConsecutivoServiceTest.class);
+
+    private static final int HILOS = 8;
+    private static final int REGISTROS_POR_HILO = 200;
+    /** En RANGOS casi todos los números salen de memoria, así que se piden muchos más para forzar la contención */
+    private static final int NUMEROS_POR_HILO = 2_000;
+    private static final long PRIMER_NUMERO = 1;
+    /** Trabajo del registro después de tomar el número (guardar la transacción y sus partidas) */
+    private static final long TRABAJO_REGISTRO_MS = 2;
+    private static final int REGISTROS_MEDIDOS_POR_HILO = 50;
+
+    @MockBean
+    private EncryptionUtil encryptionUtil;
+
+    @MockBean
+    private BlindIndex blindIndex;
+
+    @Autowired
+    private ConsecutivoComprobanteRepository consecutivoComprobanteRepository;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @BeforeEach
+    void setUp() {
+        consecutivoComprobanteRepository.deleteAll();
+        ConsecutivoComprobante consecutivo = new ConsecutivoComprobante();
+        consecutivo.setTipoComprobante(TipoComprobante.INGRESO);
+        consecutivo.setSiguienteNumero(PRIMER_NUMERO);
+        consecutivoComprobanteRepository.save(consecutivo);
+    }
+
+    @Test
+    void estrictoNoDejaHuecosNiAunConTransaccionesRevertidas() throws Exception {
+        ConsecutivoService service = crearServicio(Modo.ESTRICTO, 1);
+        TransactionTemplate registro = new TransactionTemplate(transactionManager);
+
+        List<Long> confirmados = pedirEnParalelo(hilo -> {
+            List<Long> numeros = new ArrayList<>();
+            for (int i = 0; i < REGISTROS_POR_HILO; i++) {
+                // Cada cuarto registro falla después de tomar su número
+                boolean revertir = i % 4 == 3;
+                Long numero = registro.execute(status -> {
+                    Long asignado = service.asignarNumero(TipoComprobante.INGRESO);
+                    if (revertir) {
+                        status.setRollbackOnly();
+                    }
+                    return asignado;
+                });
+                if (!revertir) {
+                    numeros.add(numero);
+                }
+            }
+            return numeros;
+        });
+
+        Collections.sort(confirmados);
+        long total = confirmados.size();
+        assertThat(confirmados).containsExactlyElementsOf(
+                LongStream.range(PRIMER_NUMERO, PRIMER_NUMERO + total).boxed().toList());
+        assertThat(siguienteNumero()).isEqualTo(PRIMER_NUMERO + total);
+    }
+
+    @Test
+    void rangosNoRepiteNumerosEntreHilosNiInstancias() throws Exception {
+        int tamanoRango = 10;
+        ConsecutivoService[] instancias = {
+                crearServicio(Modo.RANGOS, tamanoRango), crearServicio(Modo.RANGOS, tamanoRango)
+        };
+
+        List<Long> asignados = pedirEnParalelo(hilo -> {
+            ConsecutivoService service = instancias[hilo % instancias.length];
+            List<Long> numeros = new ArrayList<>();
+            for (int i = 0; i < NUMEROS_POR_HILO; i++) {
+                numeros.add(service.asignarNumero(TipoComprobante.INGRESO));
+                // Un reinicio pierde los rangos en memoria; deja huecos, pero no repite números
+                if (i == NUMEROS_POR_HILO / 2) {
+                    service.descartarRangos();
+                }
+            }
+            return numeros;
+        });
+
+        Set<Long> distintos = new HashSet<>(asignados);
+        assertThat(distintos).hasSize(HILOS * NUMEROS_POR_HILO);
+        assertThat(Collections.min(asignados)).isEqualTo(PRIMER_NUMERO);
+        // Todo número entregado está dentro de lo reservado en la base de datos
+        assertThat(Collections.max(asignados)).isLessThan(siguienteNumero());
+    }
+
+    @Test
+    void rangosAtiendeMasRegistrosPorSegundoQueEstrictoConContencion() throws Exception {
+        double estricto = registrosPorSegundo(crearServicio(Modo.ESTRICTO, 1));
+        double rangos = registrosPorSegundo(crearServicio(Modo.RANGOS, 10));
+        log.info("Registros por segundo con {} hilos y {} ms de trabajo por registro: ESTRICTO {}, RANGOS {}",
+                HILOS, TRABAJO_REGISTRO_MS, Math.round(estricto), Math.round(rangos));
+
+        // En ESTRICTO el bloqueo de la fila dura todo el registro y los hilos se turnan; en RANGOS no se esperan
+        assertThat(rangos).isGreaterThan(2 * estricto);
+    }
+
+    /**
+     * Todos los hilos registran comprobantes a la vez; cada registro toma su número y sigue trabajando
+     * dentro de la misma transacción, como createTransaccion
+     */
+    private double registrosPorSegundo(ConsecutivoService service) throws Exception {
+        TransactionTemplate registro = new TransactionTemplate(transactionManager);
+        long inicio = System.nanoTime();
+        List<Long> numeros = pedirEnParalelo(hilo -> {
+            List<Long> asignados = new ArrayList<>();
+            for (int i = 0; i < REGISTROS_MEDIDOS_POR_HILO; i++) {
+                asignados.add(registro.execute(status -> {
+                    Long numero = service.asignarNumero(TipoComprobante.INGRESO);
+                    try {
+                        Thread.sleep(TRABAJO_REGISTRO_MS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                    return numero;
+                }));
+            }
+            return asignados;
+        });
+        double segundos = (System.nanoTime() - inicio) / 1e9;
+        assertThat(new HashSet<>(numeros)).hasSize(HILOS * REGISTROS_MEDIDOS_POR_HILO);
+        return numeros.size() / segundos;
+    }
+
+    private ConsecutivoService crearServicio(Modo modo, int tamanoRango) {
+        ConsecutivoService service = new ConsecutivoService(transactionManager, modo, tamanoRango);
+        ReflectionTestUtils.setField(service, "consecutivoComprobanteRepository", consecutivoComprobanteRepository);
+        return service;
+    }
+
+    private long siguienteNumero() {
+        return consecutivoComprobanteRepository.findSiguienteNumero(TipoComprobante.INGRESO).orElseThrow();
+    }
+
+    private interface Tarea {
+        List<Long> ejecutar(int hilo) throws Exception;
+    }
+
+    /**
+     * Ejecutar la tarea en todos los hilos a la vez y juntar los números que devuelven
+     */
+    private static List<Long> pedirEnParalelo(Tarea tarea) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(HILOS);
+        try {
+            CountDownLatch salida = new CountDownLatch(1);
+            List<Future<List<Long>>> resultados = new ArrayList<>();
+            for (int hilo = 0; hilo < HILOS; hilo++) {
+                int numeroHilo = hilo;
+                Callable<List<Long>> llamada = () -> {
+                    salida.await();
+                    return tarea.ejecutar(numeroHilo);
+                };
+                resultados.add(executor.submit(llamada));
+            }
+            salida.countDown();
+            List<Long> numeros = new ArrayList<>();
+            for (Future<List<Long>> resultado : resultados) {
+                numeros.addAll(resultado.get(60, TimeUnit.SECONDS));
+            }
+            return numeros;
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+}
@@ -0,0 +1,132 @@
+package com.contabilidad.service;
+
+import com.contabilidad.dto.TransaccionDTO;
+import com.contabilidad.dto.request.TransaccionRequest;
+import com.contabilidad.dto.request.TransaccionRequest.PartidaRequest;
+import com.contabilidad.model.ClaveIdempotencia;
+import com.contabilidad.model.TipoPartida;
+import com.contabilidad.repository.ClaveIdempotenciaRepository;
+import com.contabilidad.service.IdempotenciaService.ConflictoIdempotenciaException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class IdempotenciaServiceTest {
+
+    private ClaveIdempotenciaRepository claveIdempotenciaRepository;
+    private TransaccionService transaccionService;
+    private JdbcTemplate jdbcTemplate;
+    private IdempotenciaService service;
+
+    @BeforeEach
+    void setUp() {
+        claveIdempotenciaRepository = mock(ClaveIdempotenciaRepository.class);
+        transaccionService = mock(TransaccionService.class);
+        jdbcTemplate = mock(JdbcTemplate.class);
+        service = crearServicio();
+    }
+
+    @Test
+    void unReintentoConLaMismaSolicitudDevuelveLaTransaccionOriginal() {
+        when(claveIdempotenciaRepository.findById("clave-1")).thenReturn(Optional.empty());
+        when(transaccionService.createTransaccion(any(), eq("clave-1"), anyString())).thenReturn(transaccion(10L));
+
+        TransaccionDTO primera = service.registrarTransaccion("clave-1", solicitud("100.00"));
+        TransaccionDTO reintento = service.registrarTransaccion("clave-1", solicitud("100.00"));
+
+        assertThat(reintento).isSameAs(primera);
+        verify(transaccionService, times(1)).createTransaccion(any(), eq("clave-1"), anyString());
+    }
+
+    @Test
+    void reutilizarLaClaveConOtraSolicitudSeRechaza() {
+        when(claveIdempotenciaRepository.findById("clave-1")).thenReturn(Optional.empty());
+        when(transaccionService.createTransaccion(any(), eq("clave-1"), anyString())).thenReturn(transaccion(10L));
+        service.registrarTransaccion("clave-1", solicitud("100.00"));
+
+        assertThatThrownBy(() -> service.registrarTransaccion("clave-1", solicitud("200.00")))
+                .isInstanceOf(ConflictoIdempotenciaException.class);
+        verify(transaccionService, times(1)).createTransaccion(any(), eq("clave-1"), anyString());
+    }
+
+    @Test
+    void laHuellaGuardadaSeComparaTambienDespuesDeUnReinicio() {
+        // Primera instancia: registra la clave y se queda con la huella que guardó
+        when(claveIdempotenciaRepository.findById("clave-1")).thenReturn(Optional.empty());
+        String[] huella = new String[1];
+        when(transaccionService.createTransaccion(any(), eq("clave-1"), anyString())).thenAnswer(invocacion -> {
+            huella[0] = invocacion.getArgument(2);
+            return transaccion(10L);
+        });
+        service.registrarTransaccion("clave-1", solicitud("100.00"));
+
+        // Otra instancia, sin la clave en memoria: la encuentra en la tabla
+        IdempotenciaService otraInstancia = crearServicio();
+        when(claveIdempotenciaRepository.findById("clave-1"))
+                .thenReturn(Optional.of(new ClaveIdempotencia("clave-1", 10L, huella[0])));
+        when(transaccionService.getTransaccionByIdWithPartidas(10L)).thenReturn(Optional.of(transaccion(10L)));
+
+        assertThat(otraInstancia.registrarTransaccion("clave-1", solicitud("100.00")).getId()).isEqualTo(10L);
+        assertThatThrownBy(() -> otraInstancia.registrarTransaccion("clave-1", solicitud("100.01")))
+                .isInstanceOf(ConflictoIdempotenciaException.class);
+        verify(transaccionService, times(1)).createTransaccion(any(), anyString(), anyString());
+    }
+
+    @Test
+    void laPurgaEliminaPorLotesHastaQueNoQuedanClavesVencidas() {
+        when(jdbcTemplate.update(anyString(), any(Timestamp.class), eq(10_000))).thenReturn(10_000, 10_000, 37);
+
+        service.purgarVencidas();
+
+        verify(jdbcTemplate, times(3)).update(anyString(), any(Timestamp.class), eq(10_000));
+    }
+
+    @Test
+    void laPurgaSinClavesVencidasHaceUnaSolaConsulta() {
+        when(jdbcTemplate.update(anyString(), any(Timestamp.class), eq(10_000))).thenReturn(0);
+
+        service.purgarVencidas();
+
+        verify(jdbcTemplate, times(1)).update(anyString(), any(Timestamp.class), eq(10_000));
+    }
+
+    private IdempotenciaService crearServicio() {
+        IdempotenciaService nuevo = new IdempotenciaService(100, Duration.ofHours(24));
+        ReflectionTestUtils.setField(nuevo, "claveIdempotenciaRepository", claveIdempotenciaRepository);
+        ReflectionTestUtils.setField(nuevo, "transaccionService", transaccionService);
+        ReflectionTestUtils.setField(nuevo, "objectMapper", new ObjectMapper().findAndRegisterModules());
+        ReflectionTestUtils.setField(nuevo, "jdbcTemplate", jdbcTemplate);
+        return nuevo;
+    }
+
+    private static TransaccionRequest solicitud(String valor) {
+        return new TransaccionRequest(1L, LocalDate.of(2024, 6, 30), "Venta", List.of(
+                new PartidaRequest(1L, TipoPartida.DEBE, new BigDecimal(valor)),
+                new PartidaRequest(2L, TipoPartida.HABER, new BigDecimal(valor))));
+    }
+
+    private static TransaccionDTO transaccion(Long id) {
+        TransaccionDTO transaccion = new TransaccionDTO();
+        transaccion.setId(id);
+        return transaccion;
+    }
+}
@@ -0,0 +1,153 @@
+package com.contabilidad.service;
+
+import com.contabilidad.dto.TokenDTO;
+import io.jsonwebtoken.Jwts;
+import io.jsonwebtoken.SignatureAlgorithm;
+import io.jsonwebtoken.security.Keys;
+import org.junit.jupiter.api.Test;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.Base64;
+import java.util.Date;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TokenServiceTest {
+
+    private static final String CLAVE = "abwxSxCcKyjDvJREfWCsWMG8aCdiEs67LNhJ+TuaiLs=";
+    private static final String OTRA_CLAVE = "q0Hk3s2m1n8sQyqkz5bV9tqk8b1c0vE6m7n4p2r9s1U=";
+    private static final String EMISOR = "contabilidad";
+
+    private final TokenService tokenService = new TokenService(CLAVE, EMISOR, Duration.ofHours(8), 1000);
+
+    @Test
+    void verificaElTokenEmitido() {
+        Authentication autenticacion = tokenService.verificar(emitir("ana")).orElseThrow();
+
+        assertThat(autenticacion.getName()).isEqualTo("ana");
+        assertThat(autenticacion.isAuthenticated()).isTrue();
+        assertThat(autenticacion.getAuthorities()).extracting(GrantedAuthority::getAuthority)
+                .containsExactly("ROLE_USER");
+    }
+
+    @Test
+    void noArrancaSinClaveDeFirma() {
+        assertThatThrownBy(() -> new TokenService("", EMISOR, Duration.ofHours(8), 1000))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("CONTABILIDAD_CLAVE_JWT");
+        assertThatThrownBy(() -> new TokenService(null, EMISOR, Duration.ofHours(8), 1000))
+                .isInstanceOf(IllegalStateException.class);
+    }
+
+    @Test
+    void laSegundaVerificacionNoVuelveALeerElToken() {
+        String token = emitir("ana");
+
+        Authentication primera = tokenService.verificar(token).orElseThrow();
+        Authentication segunda = tokenService.verificar(token).orElseThrow();
+
+        // La misma instancia: la firma y los claims no se volvieron a procesar
+        assertThat(segunda).isSameAs(primera);
+    }
+
+    @Test
+    void rechazaUnTokenAlteradoAunqueElOriginalEsteEnCache() {
+        String token = emitir("ana");
+        assertThat(tokenService.verificar(token)).isPresent();
+
+        String[] partes = token.split("\\.");
+        String claims = new String(Base64.getUrlDecoder().decode(partes[1]), StandardCharsets.UTF_8);
+        String claimsAlterados = claims.replace("ROLE_USER", "ROLE_ADMIN");
+        assertThat(claimsAlterados).isNotEqualTo(claims);
+        String conClaimsAlterados = partes[0] + "." + base64Url(claimsAlterados) + "." + partes[2];
+        assertThat(tokenService.verificar(conClaimsAlterados)).isEmpty();
+
+        // El primer carácter de la firma, porque los bits sobrantes del último no cambian la firma decodificada
+        char primero = partes[2].charAt(0);
+        String firmaAlterada = partes[0] + "." + partes[1] + "." + (primero == 'A' ? 'B' : 'A')
+                + partes[2].substring(1);
+        assertThat(tokenService.verificar(firmaAlterada)).isEmpty();
+
+        // Un carácter no ASCII no puede confundirse con el original al calcular la llave de la caché
+        String noAscii = token.substring(0, token.length() - 1) + 'é';
+        assertThat(tokenService.verificar(noAscii)).isEmpty();
+
+        String sinFirma = partes[0] + "." + partes[1] + ".";
+        assertThat(tokenService.verificar(sinFirma)).isEmpty();
+        assertThat(tokenService.verificar(token + "x")).isEmpty();
+    }
+
+    @Test
+    void rechazaTokensDeOtraClaveOtroEmisorOSinFirma() {
+        Instant expiracion = Instant.now().plus(1, ChronoUnit.HOURS);
+
+        assertThat(tokenService.verificar(firmar(OTRA_CLAVE, EMISOR, expiracion))).isEmpty();
+        assertThat(tokenService.verificar(firmar(CLAVE, "otro", expiracion))).isEmpty();
+        String sinFirma = Jwts.builder().setSubject("ana").setIssuer(EMISOR)
+                .setExpiration(Date.from(expiracion)).compact();
+        assertThat(tokenService.verificar(sinFirma)).isEmpty();
+        assertThat(tokenService.verificar("")).isEmpty();
+        assertThat(tokenService.verificar("no es un token")).isEmpty();
+    }
+
+    @Test
+    void rechazaUnTokenVencido() {
+        String vencido = firmar(CLAVE, EMISOR, Instant.now().minus(1, ChronoUnit.SECONDS));
+
+        assertThat(tokenService.verificar(vencido)).isEmpty();
+        assertThat(tokenService.verificar(vencido)).isEmpty();
+    }
+
+    @Test
+    void laCacheNoAceptaUnTokenDespuesDeSuVencimiento() throws InterruptedException {
+        // La expiración del JWT tiene precisión de segundos
+        Instant expiracion = Instant.now().truncatedTo(ChronoUnit.SECONDS).plusSeconds(2);
+        String token = firmar(CLAVE, EMISOR, expiracion);
+        assertThat(tokenService.verificar(token)).isPresent();
+
+        Thread.sleep(Math.max(0, Duration.between(Instant.now(), expiracion).toMillis()) + 50);
+
+        assertThat(tokenService.verificar(token)).isEmpty();
+    }
+
+    @Test
+    void unTokenEmitidoConDuracionCeroNoSeAcepta() {
+        TokenService sinDuracion = new TokenService(CLAVE, EMISOR, Duration.ZERO, 1000);
+        TokenDTO token = sinDuracion.emitir(autenticacion("ana"));
+
+        assertThat(sinDuracion.verificar(token.getToken())).isEmpty();
+    }
+
+    private String emitir(String usuario) {
+        return tokenService.emitir(autenticacion(usuario)).getToken();
+    }
+
+    private static Authentication autenticacion(String usuario) {
+        return UsernamePasswordAuthenticationToken.authenticated(usuario, null,
+                List.of(new SimpleGrantedAuthority("ROLE_USER")));
+    }
+
+    private static String firmar(String clave, String emisor, Instant expiracion) {
+        return Jwts.builder()
+                .setSubject("ana")
+                .setIssuer(emisor)
+                .setExpiration(Date.from(expiracion))
+                .claim("roles", List.of("ROLE_USER"))
+                .signWith(Keys.hmacShaKeyFor(Base64.getDecoder().decode(clave)), SignatureAlgorithm.HS256)
+                .compact();
+    }
+
+    private static String base64Url(String texto) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(texto.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,275 @@
+package com.contabilidad.service;
+
+import com.contabilidad.dto.TrabajoReporteDTO;
+import com.contabilidad.dto.TrabajoReporteDTO.Estado;
+import com.contabilidad.dto.TrabajoReporteDTO.Tipo;
+import com.contabilidad.dto.request.SolicitudReporteRequest;
+import com.contabilidad.util.EncryptionUtil;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.math.BigDecimal;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDate;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class TrabajosReporteServiceTest {
+
+    private static final LocalDate CORTE = LocalDate.of(2024, 6, 30);
+
+    private static final long CUENTAS_POR_COBRAR = 1;
+    private static final long CAJA = 2;
+    private static final long VENTAS = 3;
+
+    @TempDir
+    Path directorio;
+
+    private SingleConnectionDataSource baseDatos;
+    private JdbcTemplate jdbcTemplate;
+    private TrabajosReporteService service;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        baseDatos = new SingleConnectionDataSource(
+                "jdbc:h2:mem:reportes;MODE=MySQL;DATABASE_TO_LOWER=TRUE", "sa", "", true);
+        jdbcTemplate = new JdbcTemplate(sinFetchSizeNegativo(baseDatos));
+        crearEsquema();
+
+        EncryptionUtil encryptionUtil = mock(EncryptionUtil.class);
+        when(encryptionUtil.decrypt(any())).thenAnswer(invocacion -> invocacion.getArgument(0));
+
+        service = new TrabajosReporteService(directorio.toString(), 1, 10, Duration.ofMinutes(1), Duration.ofHours(1));
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "objectMapper", new ObjectMapper());
+        ReflectionTestUtils.setField(service, "encryptionUtil", encryptionUtil);
+        service.limpiarDirectorio();
+    }
+
+    @AfterEach
+    void tearDown() {
+        service.detener();
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+        baseDatos.destroy();
+    }
+
+    @Test
+    void antiguedadSaldosRepartePorTramosElSaldoDeLaCuenta() throws Exception {
+        // Tercero 1: dos ventas a crédito pendientes, una de hace 10 días y otra de hace 45
+        registrarVenta(1, 1, CORTE.minusDays(10), "100.00");
+        registrarVenta(2, 1, CORTE.minusDays(45), "50.00");
+        // Tercero 2: venta de hace 100 días ya pagada, no debe aparecer
+        registrarVenta(3, 2, CORTE.minusDays(100), "70.00");
+        registrarTransaccion(4, 2, CORTE.minusDays(5), "ACTIVA");
+        registrarPartida(4, CAJA, "DEBE", "70.00");
+        registrarPartida(4, CUENTAS_POR_COBRAR, "HABER", "70.00");
+        // Las transacciones anuladas no cuentan
+        registrarTransaccion(5, 2, CORTE.minusDays(20), "ANULADA");
+        registrarPartida(5, CUENTAS_POR_COBRAR, "DEBE", "999.00");
+        registrarPartida(5, VENTAS, "HABER", "999.00");
+        // Posterior a la fecha de corte
+        registrarVenta(6, 1, CORTE.plusDays(1), "30.00");
+
+        SolicitudReporteRequest request = new SolicitudReporteRequest(Tipo.ANTIGUEDAD_SALDOS, null, CORTE);
+        request.setCuentaId(CUENTAS_POR_COBRAR);
+        JsonNode filas = ejecutar(request);
+
+        assertThat(filas).hasSize(1);
+        JsonNode fila = filas.get(0);
+        assertThat(fila.get("terceroId").asLong()).isEqualTo(1);
+        assertThat(fila.get("hasta30Dias").decimalValue()).isEqualByComparingTo("100.00");
+        assertThat(fila.get("de31a60Dias").decimalValue()).isEqualByComparingTo("50.00");
+        assertThat(fila.get("de61a90Dias").decimalValue()).isEqualByComparingTo("0");
+        assertThat(fila.get("masDe90Dias").decimalValue()).isEqualByComparingTo("0");
+        assertThat(fila.get("total").decimalValue()).isEqualByComparingTo("150.00");
+    }
+
+    @Test
+    void antiguedadSaldosLimitesDeLosTramos() throws Exception {
+        registrarVenta(1, 1, CORTE.minusDays(30), "1.00");
+        registrarVenta(2, 1, CORTE.minusDays(31), "2.00");
+        registrarVenta(3, 1, CORTE.minusDays(60), "4.00");
+        registrarVenta(4, 1, CORTE.minusDays(61), "8.00");
+        registrarVenta(5, 1, CORTE.minusDays(90), "16.00");
+        registrarVenta(6, 1, CORTE.minusDays(91), "32.00");
+
+        SolicitudReporteRequest request = new SolicitudReporteRequest(Tipo.ANTIGUEDAD_SALDOS, null, CORTE);
+        request.setCuentaId(CUENTAS_POR_COBRAR);
+        JsonNode fila = ejecutar(request).get(0);
+
+        assertThat(fila.get("hasta30Dias").decimalValue()).isEqualByComparingTo("1.00");
+        assertThat(fila.get("de31a60Dias").decimalValue()).isEqualByComparingTo("6.00");
+        assertThat(fila.get("de61a90Dias").decimalValue()).isEqualByComparingTo("24.00");
+        assertThat(fila.get("masDe90Dias").decimalValue()).isEqualByComparingTo("32.00");
+    }
+
+    @Test
+    void antiguedadSaldosAplicaLosPagosALaDeudaMasAntigua() throws Exception {
+        // Venta de 100 hace 100 días y abono de 40 ayer: quedan 60 de la venta vieja, no -40 en el tramo reciente
+        registrarVenta(1, 1, CORTE.minusDays(100), "100.00");
+        registrarPago(2, 1, CORTE.minusDays(1), "40.00");
+        // Tercero 2: el abono cubre la venta más vieja y parte de la siguiente
+        registrarVenta(3, 2, CORTE.minusDays(95), "30.00");
+        registrarVenta(4, 2, CORTE.minusDays(70), "50.00");
+        registrarVenta(5, 2, CORTE.minusDays(10), "20.00");
+        registrarPago(6, 2, CORTE.minusDays(2), "45.00");
+
+        SolicitudReporteRequest request = new SolicitudReporteRequest(Tipo.ANTIGUEDAD_SALDOS, null, CORTE);
+        request.setCuentaId(CUENTAS_POR_COBRAR);
+        JsonNode filas = ejecutar(request);
+
+        assertThat(filas).hasSize(2);
+        JsonNode dos = filas.get(0);
+        assertThat(dos.get("terceroId").asLong()).isEqualTo(2);
+        assertThat(dos.get("hasta30Dias").decimalValue()).isEqualByComparingTo("20.00");
+        assertThat(dos.get("de31a60Dias").decimalValue()).isEqualByComparingTo("0");
+        assertThat(dos.get("de61a90Dias").decimalValue()).isEqualByComparingTo("35.00");
+        assertThat(dos.get("masDe90Dias").decimalValue()).isEqualByComparingTo("0");
+        assertThat(dos.get("total").decimalValue()).isEqualByComparingTo("55.00");
+
+        JsonNode uno = filas.get(1);
+        assertThat(uno.get("terceroId").asLong()).isEqualTo(1);
+        assertThat(uno.get("hasta30Dias").decimalValue()).isEqualByComparingTo("0");
+        assertThat(uno.get("de31a60Dias").decimalValue()).isEqualByComparingTo("0");
+        assertThat(uno.get("de61a90Dias").decimalValue()).isEqualByComparingTo("0");
+        assertThat(uno.get("masDe90Dias").decimalValue()).isEqualByComparingTo("60.00");
+        assertThat(uno.get("total").decimalValue()).isEqualByComparingTo("60.00");
+    }
+
+    @Test
+    void antiguedadSaldosConSaldoAFavorUsaLosCreditosMasRecientes() throws Exception {
+        registrarVenta(1, 1, CORTE.minusDays(100), "100.00");
+        registrarPago(2, 1, CORTE.minusDays(80), "70.00");
+        registrarPago(3, 1, CORTE.minusDays(5), "50.00");
+
+        SolicitudReporteRequest request = new SolicitudReporteRequest(Tipo.ANTIGUEDAD_SALDOS, null, CORTE);
+        request.setCuentaId(CUENTAS_POR_COBRAR);
+        JsonNode fila = ejecutar(request).get(0);
+
+        assertThat(fila.get("hasta30Dias").decimalValue()).isEqualByComparingTo("-20.00");
+        assertThat(fila.get("de61a90Dias").decimalValue()).isEqualByComparingTo("0");
+        assertThat(fila.get("masDe90Dias").decimalValue()).isEqualByComparingTo("0");
+        assertThat(fila.get("total").decimalValue()).isEqualByComparingTo("-20.00");
+    }
+
+    @Test
+    void antiguedadSaldosSinCuentaSeRechaza() {
+        SolicitudReporteRequest request = new SolicitudReporteRequest(Tipo.ANTIGUEDAD_SALDOS, null, CORTE);
+
+        assertThatThrownBy(() -> service.solicitar(request))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("cuenta");
+    }
+
+    private JsonNode ejecutar(SolicitudReporteRequest request) throws Exception {
+        TrabajoReporteDTO trabajo = service.solicitar(request);
+        long limite = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        TrabajoReporteDTO terminado = service.getTrabajo(trabajo.getId()).orElseThrow();
+        while (terminado.getEstado() == Estado.EN_COLA || terminado.getEstado() == Estado.EN_EJECUCION) {
+            assertThat(System.nanoTime()).as("tiempo de espera del reporte").isLessThan(limite);
+            Thread.sleep(10);
+            terminado = service.getTrabajo(trabajo.getId()).orElseThrow();
+        }
+        assertThat(terminado.getEstado()).as(terminado.getMensaje()).isEqualTo(Estado.TERMINADO);
+        return new ObjectMapper().readTree(service.getResultado(trabajo.getId()).orElseThrow().toFile());
+    }
+
+    private void registrarVenta(long transaccionId, long terceroId, LocalDate fecha, String valor) {
+        registrarTransaccion(transaccionId, terceroId, fecha, "ACTIVA");
+        registrarPartida(transaccionId, CUENTAS_POR_COBRAR, "DEBE", valor);
+        registrarPartida(transaccionId, VENTAS, "HABER", valor);
+    }
+
+    private void registrarPago(long transaccionId, long terceroId, LocalDate fecha, String valor) {
+        registrarTransaccion(transaccionId, terceroId, fecha, "ACTIVA");
+        registrarPartida(transaccionId, CAJA, "DEBE", valor);
+        registrarPartida(transaccionId, CUENTAS_POR_COBRAR, "HABER", valor);
+    }
+
+    private void registrarTransaccion(long id, long terceroId, LocalDate fecha, String estado) {
+        jdbcTemplate.update("INSERT INTO transacciones (id, fecha, descripcion, tercero_id, estado) VALUES (?, ?, ?, ?, ?)",
+                id, fecha, "Transacción " + id, terceroId, estado);
+    }
+
+    private void registrarPartida(long transaccionId, long cuentaId, String tipo, String valor) {
+        jdbcTemplate.update("INSERT INTO partidas_contables (transaccion_id, cuenta_id, tipo, valor) VALUES (?, ?, ?, ?)",
+                transaccionId, cuentaId, tipo, new BigDecimal(valor));
+    }
+
+    private void crearEsquema() {
+        jdbcTemplate.execute("CREATE TABLE terceros (id BIGINT PRIMARY KEY, nombre VARCHAR(100) NOT NULL, " +
+                "numero_documento VARCHAR(255))");
+        jdbcTemplate.execute("CREATE TABLE cuentas_contables (id BIGINT PRIMARY KEY, codigo VARCHAR(10) NOT NULL, " +
+                "nombre VARCHAR(100) NOT NULL, tipo ENUM('ACTIVO', 'PASIVO', 'PATRIMONIO', 'INGRESO', 'GASTO') NOT NULL)");
+        jdbcTemplate.execute("CREATE TABLE transacciones (id BIGINT PRIMARY KEY, fecha DATE NOT NULL, " +
+                "descripcion VARCHAR(255), tercero_id BIGINT NOT NULL, " +
+                "estado ENUM('ACTIVA', 'ANULADA', 'PENDIENTE') NOT NULL, " +
+                "tipo_comprobante VARCHAR(20) DEFAULT 'NOTA_CONTABLE', numero_comprobante BIGINT)");
+        jdbcTemplate.execute("CREATE TABLE partidas_contables (id BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                "transaccion_id BIGINT NOT NULL, cuenta_id BIGINT NOT NULL, tipo ENUM('DEBE', 'HABER') NOT NULL, " +
+                "valor DECIMAL(15,2) NOT NULL, descripcion VARCHAR(255))");
+        jdbcTemplate.update("INSERT INTO terceros VALUES (1, 'Cliente Uno', '900100'), (2, 'Cliente Dos', '900200')");
+        jdbcTemplate.update("INSERT INTO cuentas_contables VALUES (?, '1200', 'Cuentas por Cobrar', 'ACTIVO'), " +
+                "(?, '1100', 'Caja', 'ACTIVO'), (?, '4100', 'Ventas', 'INGRESO')", CUENTAS_POR_COBRAR, CAJA, VENTAS);
+    }
+
+    /**
+     * El servicio pide a MySQL un cursor de streaming con fetchSize = Integer.MIN_VALUE; H2 rechaza valores
+     * negativos, así que en la prueba se ignoran
+     */
+    private static DataSource sinFetchSizeNegativo(DataSource dataSource) {
+        return new DelegatingDataSource(dataSource) {
+            @Override
+            public Connection getConnection() throws SQLException {
+                Connection conexion = super.getConnection();
+                return (Connection) Proxy.newProxyInstance(getClass().getClassLoader(),
+                        new Class<?>[] {Connection.class}, (proxy, metodo, argumentos) -> {
+                            Object resultado = invocar(conexion, metodo, argumentos);
+                            if (resultado instanceof PreparedStatement sentencia) {
+                                return envolver(sentencia);
+                            }
+                            return resultado;
+                        });
+            }
+        };
+    }
+
+    private static PreparedStatement envolver(PreparedStatement sentencia) {
+        return (PreparedStatement) Proxy.newProxyInstance(TrabajosReporteServiceTest.class.getClassLoader(),
+                new Class<?>[] {PreparedStatement.class}, (proxy, metodo, argumentos) -> {
+                    if (metodo.getName().equals("setFetchSize") && (int) argumentos[0] < 0) {
+                        return null;
+                    }
+                    return invocar(sentencia, metodo, argumentos);
+                });
+    }
+
+    private static Object invocar(Object destino, Method metodo, Object[] argumentos)
+            throws Throwable {
+        try {
+            return metodo.invoke(destino, argumentos);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,98 @@
+package com.contabilidad.service;
+
+import com.contabilidad.config.CacheConfig;
+import com.contabilidad.service.VersionesService.Agregado;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCacheManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Dos instancias comparten la tabla versiones_agregados y cada una tiene su propia caché de referencia
+ */
+class VersionesServiceTest {
+
+    private SingleConnectionDataSource baseDatos;
+    private JdbcTemplate jdbcTemplate;
+
+    private CacheManager cachesA;
+    private CacheManager cachesB;
+    private VersionesService instanciaA;
+    private VersionesService instanciaB;
+
+    @BeforeEach
+    void setUp() {
+        baseDatos = new SingleConnectionDataSource(
+                "jdbc:h2:mem:versiones;MODE=MySQL;DATABASE_TO_LOWER=TRUE", "sa", "", true);
+        jdbcTemplate = new JdbcTemplate(baseDatos);
+        jdbcTemplate.execute("CREATE TABLE versiones_agregados (agregado VARCHAR(20) NOT NULL PRIMARY KEY, " +
+                "version BIGINT NOT NULL)");
+        jdbcTemplate.update("INSERT INTO versiones_agregados VALUES ('CUENTAS', 0), ('TERCEROS', 0), ('LIBRO', 0)");
+
+        cachesA = new CaffeineCacheManager(CacheConfig.CUENTAS, CacheConfig.TERCEROS);
+        cachesB = new CaffeineCacheManager(CacheConfig.CUENTAS, CacheConfig.TERCEROS);
+        instanciaA = crearInstancia(cachesA);
+        instanciaB = crearInstancia(cachesB);
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbcTemplate.execute("DROP ALL OBJECTS");
+        baseDatos.destroy();
+    }
+
+    @Test
+    void unaEscrituraEnOtraInstanciaVaciaLaCacheDelAgregado() {
+        cachesB.getCache(CacheConfig.TERCEROS).put(1L, "tercero 1");
+        cachesB.getCache(CacheConfig.CUENTAS).put(1L, "cuenta 1");
+
+        instanciaA.incrementar(Agregado.TERCEROS);
+        instanciaA.sincronizar();
+        assertThat(cachesB.getCache(CacheConfig.TERCEROS).get(1L)).isNotNull();
+
+        instanciaB.sincronizar();
+
+        assertThat(cachesB.getCache(CacheConfig.TERCEROS).get(1L)).isNull();
+        assertThat(cachesB.getCache(CacheConfig.CUENTAS).get(1L)).isNotNull();
+        assertThat(instanciaB.etiqueta(Agregado.TERCEROS)).isEqualTo(instanciaA.etiqueta(Agregado.TERCEROS));
+    }
+
+    @Test
+    void lasEscriturasPropiasNoVacianLaCache() {
+        cachesA.getCache(CacheConfig.CUENTAS).put(1L, "cuenta 1");
+
+        instanciaA.incrementar(Agregado.CUENTAS);
+        instanciaA.incrementar(Agregado.CUENTAS);
+        instanciaA.sincronizar();
+
+        assertThat(cachesA.getCache(CacheConfig.CUENTAS).get(1L)).isNotNull();
+        assertThat(instanciaA.etiqueta(Agregado.CUENTAS)).isEqualTo("c1");
+    }
+
+    @Test
+    void unaEscrituraPropiaJuntoConUnaAjenaVaciaLaCache() {
+        cachesA.getCache(CacheConfig.CUENTAS).put(1L, "cuenta 1");
+
+        instanciaB.incrementar(Agregado.CUENTAS);
+        instanciaB.sincronizar();
+        instanciaA.incrementar(Agregado.CUENTAS);
+        instanciaA.sincronizar();
+
+        assertThat(cachesA.getCache(CacheConfig.CUENTAS).get(1L)).isNull();
+        assertThat(instanciaA.etiqueta(Agregado.CUENTAS)).isEqualTo("c2");
+    }
+
+    private VersionesService crearInstancia(CacheManager cacheManager) {
+        VersionesService service = new VersionesService();
+        ReflectionTestUtils.setField(service, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(service, "cacheManager", cacheManager);
+        service.inicializar();
+        return service;
+    }
+}
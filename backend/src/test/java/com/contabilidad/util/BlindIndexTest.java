@@ -0,0 +1,28 @@
+package com.contabilidad.util;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class BlindIndexTest {
+
+    private static final String KEY = "LCmP/4Cu6gmmykltM+U+3NRLeoryKHd5ST5rlqoJEEg=";
+
+    @Test
+    void ignoresCaseAndSurroundingWhitespace() {
+        BlindIndex blindIndex = new BlindIndex(KEY);
+
+        assertThat(blindIndex.compute(" 900123456-k ")).isEqualTo(blindIndex.compute("900123456-K"));
+        assertThat(blindIndex.compute(null)).isNull();
+    }
+
+    @Test
+    void refusesAMissingKey() {
+        assertThatThrownBy(() -> new BlindIndex(" "))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("CONTABILIDAD_CLAVE_INDICE");
+        assertThatThrownBy(() -> new BlindIndex(null))
+                .isInstanceOf(IllegalStateException.class);
+    }
+}
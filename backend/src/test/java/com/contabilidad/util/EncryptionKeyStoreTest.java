@@ -0,0 +1,61 @@
+package com.contabilidad.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Base64;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class EncryptionKeyStoreTest {
+
+    private static final String KEY = "Qiu16r/lnZwkM820RHExLu72h2HblDqlDs5087R6ZR0=";
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void seedsTheStoreWithTheConfiguredKey() {
+        EncryptionKeyStore store = new EncryptionKeyStore(directory.toString(), KEY);
+
+        assertThat(store.getActiveKeyId()).isEqualTo("k1");
+        assertThat(store.getActiveKey().getEncoded()).isEqualTo(Base64.getDecoder().decode(KEY));
+        assertThat(directory.resolve("claves.properties")).exists();
+    }
+
+    @Test
+    void refusesToCreateTheStoreWithoutAKey() {
+        assertThatThrownBy(() -> new EncryptionKeyStore(directory.toString(), ""))
+                .isInstanceOf(IllegalStateException.class)
+                .hasMessageContaining("CONTABILIDAD_CLAVE_CIFRADO");
+        assertThat(Files.exists(directory.resolve("claves.properties"))).isFalse();
+    }
+
+    @Test
+    void opensAnExistingStoreWithoutTheSeedKey() throws Exception {
+        String rotated = new EncryptionKeyStore(directory.toString(), KEY).rotate();
+
+        EncryptionKeyStore reopened = new EncryptionKeyStore(directory.toString(), "");
+
+        assertThat(reopened.getActiveKeyId()).isEqualTo(rotated);
+        assertThat(reopened.getKey("k1").getEncoded()).isEqualTo(Base64.getDecoder().decode(KEY));
+    }
+
+    @Test
+    void reloadAdoptsAKeyRotatedByAnotherInstance() throws Exception {
+        EncryptionKeyStore local = new EncryptionKeyStore(directory.toString(), KEY);
+        EncryptionKeyStore other = new EncryptionKeyStore(directory.toString(), KEY);
+
+        String rotated = other.rotate();
+        assertThat(local.getActiveKeyId()).isEqualTo("k1");
+
+        local.reload();
+
+        assertThat(local.getActiveKeyId()).isEqualTo(rotated);
+        assertThat(local.getActiveKey().getEncoded()).isEqualTo(other.getActiveKey().getEncoded());
+        assertThat(local.getKeyIds()).containsExactly("k1", rotated);
+    }
+}
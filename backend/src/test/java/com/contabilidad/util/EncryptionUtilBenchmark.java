@@ -0,0 +1,74 @@
+package com.contabilidad.util;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Input filtering of a tercero request (name, email, address) as the tercero endpoints do it: reject unsafe
+ * values with {@link EncryptionUtil#isSafeInput(String)}, then clean the three fields with
+ * {@link EncryptionUtil#sanitizeInput(String)}. Compares the current implementation with {@link LegacyInputFilter}.
+ * <p>
+ * Not part of the test suite; run it from the backend directory with
+ * <pre>
+ * mvn -q test-compile dependency:build-classpath -Dmdep.outputFile=target/cp.txt
+ * java -cp target/test-classes:target/classes:$(cat target/cp.txt) org.openjdk.jmh.Main EncryptionUtilBenchmark
+ * </pre>
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class EncryptionUtilBenchmark {
+
+    /** name, email, address; mostly plain data, a few with markup pasted from other systems */
+    private static final String[][] TERCEROS = {
+            {"Juan Carlos Pérez Gómez", "juan.perez@gmail.com", "Calle 10 # 5-20 Apto 301, Bogotá"},
+            {"Distribuidora Andina S.A.S.", "facturacion@distandina.com.co", "Carrera 45 # 26-85 Bodega 12"},
+            {"María Fernanda Núñez", "mfnunez@hotmail.com", "Av. Boyacá # 72-15, Medellín"},
+            {"Ferretería El Tornillo Ltda", "ventas@eltornillo.co", "Diagonal 23 Sur # 14-09 Local 2"},
+            {"Inversiones Álvarez & Cía S. en C.", "contabilidad@inversionesalvarez.com",
+                    "Transversal 93 # 53-48 Torre B Oficina 1105, Parque Empresarial"},
+            {"Transportes del Caribe S.A.", "tesoreria@transcaribe.com.co", "Vía 40 # 71-197 Zona Industrial"},
+            {"Ana Lucía Ospina", "ana.ospina@empresa.com", "<b>Calle 100</b> # 19-61 Of. 802"},
+            {"Comercializadora Ñapa <i>Express</i>", "pedidos@napaexpress.com",
+                    "Km 7 Vía La Calera, Bodega 4 <br> Horario: 8am-5pm"}
+    };
+
+    private final EncryptionUtil encryptionUtil = new EncryptionUtil(null);
+
+    private int next;
+
+    @Benchmark
+    public void legacy(Blackhole blackhole) {
+        String[] tercero = TERCEROS[next++ & 7];
+        if (LegacyInputFilter.isSafeInput(tercero[0]) && LegacyInputFilter.isSafeInput(tercero[1])
+                && LegacyInputFilter.isSafeInput(tercero[2])) {
+            blackhole.consume(LegacyInputFilter.sanitizeInput(tercero[0]));
+            blackhole.consume(LegacyInputFilter.sanitizeInput(tercero[1]));
+            blackhole.consume(LegacyInputFilter.sanitizeInput(tercero[2]));
+        }
+    }
+
+    @Benchmark
+    public void current(Blackhole blackhole) {
+        String[] tercero = TERCEROS[next++ & 7];
+        if (encryptionUtil.isSafeInput(tercero[0]) && encryptionUtil.isSafeInput(tercero[1])
+                && encryptionUtil.isSafeInput(tercero[2])) {
+            blackhole.consume(encryptionUtil.sanitizeInput(tercero[0]));
+            blackhole.consume(encryptionUtil.sanitizeInput(tercero[1]));
+            blackhole.consume(encryptionUtil.sanitizeInput(tercero[2]));
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.contabilidad.util;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EncryptionUtilTest {
+
+    private static final String[] FRAGMENTS = {
+            "select", "insert", "update", "delete", "drop", "create", "alter", "exec", "union",
+            "script", "javascript:", "vbscript:", "onload=", "onerror=", "eval(", "document.cookie",
+            "<", ">", "</", "<b>", "</b>", "<script>", "</script>", "<img src=x>", "\n", " ", "  ",
+            "Juan", "Pérez", "NIT 900.123.456-7", "Calle 10 # 5-20", "a", "e", "o", "(", "=", ":", "."
+    };
+
+    private static final char[] NON_ASCII = {'á', 'é', 'ñ', 'Ñ', 'ü', 'K', 'ſ', '€'};
+
+    private final EncryptionUtil encryptionUtil = new EncryptionUtil(null);
+
+    @Test
+    void isSafeInputMatchesThePreviousImplementation() {
+        Random random = new Random(20240601);
+        for (int i = 0; i < 200_000; i++) {
+            String input = randomInput(random);
+            assertThat(encryptionUtil.isSafeInput(input)).as(input).isEqualTo(LegacyInputFilter.isSafeInput(input));
+        }
+    }
+
+    @Test
+    void sanitizeInputMatchesThePreviousImplementationOnSafeInput() {
+        Random random = new Random(20240602);
+        int compared = 0;
+        for (int i = 0; i < 200_000; i++) {
+            String input = randomInput(random);
+            // Unsafe input is rejected before it is sanitized
+            if (!LegacyInputFilter.isSafeInput(input)) {
+                continue;
+            }
+            compared++;
+            assertThat(encryptionUtil.sanitizeInput(input)).as(input).isEqualTo(LegacyInputFilter.sanitizeInput(input));
+        }
+        assertThat(compared).isGreaterThan(10_000);
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "<SCRIPT>alert(1)</SCRIPT>Juan|Juan",
+            "<Script src=x></sCrIpT> Pérez|Pérez",
+            "Juan<SCRIPT>x</script>Pérez|JuanPérez",
+            "JAVASCRIPT:alert(1)|alert(1)",
+            "VBScript:msgbox|msgbox",
+            "x ONLOAD=y|x y",
+            "OnError=z|z",
+            "EVAL(1)|1)",
+            "DOCUMENT.COOKIE|''",
+            "java<B>script:x|x",
+            "<IMG SRC=x ONERROR=y>Ana|Ana"
+    })
+    void sanitizeInputRemovesUpperCaseScriptVectors(String input, String expected) {
+        assertThat(encryptionUtil.sanitizeInput(input)).isEqualTo(expected);
+    }
+
+    @Test
+    void sanitizeInputRemovesVectorsJoinedByARemoval() {
+        // Same result as the previous implementation, which removed onload= before eval(
+        assertThat(encryptionUtil.sanitizeInput("evaonlo<b>ad=l(x")).isEqualTo(LegacyInputFilter.sanitizeInput("evaonlo<b>ad=l(x"))
+                .isEqualTo("x");
+        // The previous implementation left onload= here because it had already looked for it
+        assertThat(encryptionUtil.sanitizeInput("onl<i>eva<i>l(<i>oad=x")).isEqualTo("x");
+    }
+
+    @ParameterizedTest
+    @CsvSource(delimiter = '|', value = {
+            "<SCRIPT>alert(1)</SCRIPT>",
+            "JavaScript:alert(1)",
+            "'1 UNION SELECT password FROM usuarios'",
+            "DROP TABLE terceros",
+            "x OnLoad=y",
+            "DOCUMENT.COOKIE",
+            // The Kelvin sign lower-cases to 'k'
+            "document.cooKie"
+    })
+    void isSafeInputRejectsPatternsInAnyCase(String input) {
+        assertThat(encryptionUtil.isSafeInput(input)).isFalse();
+    }
+
+    @Test
+    void sanitizeInputKeepsUnclosedTagsAndReturnsCleanInputUnchanged() {
+        String clean = "Comercializadora Andina S.A.S.";
+        assertThat(encryptionUtil.sanitizeInput(clean)).isSameAs(clean);
+        assertThat(encryptionUtil.sanitizeInput("a < b")).isEqualTo("a < b");
+        assertThat(encryptionUtil.sanitizeInput("  a <b> c  ")).isEqualTo("a  c");
+        assertThat(encryptionUtil.sanitizeInput(null)).isNull();
+        assertThat(encryptionUtil.isSafeInput(null)).isTrue();
+    }
+
+    private static String randomInput(Random random) {
+        StringBuilder input = new StringBuilder();
+        int parts = random.nextInt(8);
+        for (int i = 0; i < parts; i++) {
+            switch (random.nextInt(4)) {
+                case 0 -> input.append((char) (' ' + random.nextInt(95)));
+                case 1 -> input.append(NON_ASCII[random.nextInt(NON_ASCII.length)]);
+                default -> {
+                    String fragment = FRAGMENTS[random.nextInt(FRAGMENTS.length)];
+                    // Cut fragments so that patterns also appear split by tags or other characters
+                    if (fragment.length() > 1 && random.nextInt(3) == 0) {
+                        int cut = 1 + random.nextInt(fragment.length() - 1);
+                        fragment = random.nextBoolean() ? fragment.substring(0, cut) : fragment.substring(cut);
+                    }
+                    input.append(random.nextBoolean() ? fragment.toUpperCase() : fragment);
+                }
+            }
+        }
+        return input.toString();
+    }
+}
@@ -0,0 +1,46 @@
+package com.contabilidad.util;
+
+/**
+ * The input filters of {@link EncryptionUtil} as they were before the single-pass rewrite, kept as the reference
+ * for the equivalence tests and the benchmark
+ */
+final class LegacyInputFilter {
+
+    private LegacyInputFilter() {
+    }
+
+    /** isSafeInput before the Aho-Corasick rewrite */
+    static boolean isSafeInput(String input) {
+        if (input == null) {
+            return true;
+        }
+        String lowerInput = input.toLowerCase();
+        String[] sqlPatterns = {
+            "select", "insert", "update", "delete", "drop", "create", "alter", "exec", "union",
+            "script", "javascript:", "vbscript:", "onload=", "onerror=", "eval(", "document.cookie"
+        };
+        for (String pattern : sqlPatterns) {
+            if (lowerInput.contains(pattern)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** sanitizeInput before the single-pass rewrite */
+    static String sanitizeInput(String input) {
+        if (input == null) {
+            return null;
+        }
+        return input
+            .replaceAll("<script[^>]*>.*?</script>", "")
+            .replaceAll("<[^>]*>", "")
+            .replaceAll("javascript:", "")
+            .replaceAll("vbscript:", "")
+            .replaceAll("onload=", "")
+            .replaceAll("onerror=", "")
+            .replaceAll("eval\\(", "")
+            .replaceAll("document\\.cookie", "")
+            .trim();
+    }
+}
@@ -19,9 +19,12 @@ CREATE TABLE IF NOT EXISTS terceros (
     id BIGINT AUTO_INCREMENT PRIMARY KEY,
     nombre VARCHAR(200) NOT NULL,
     tipo_documento VARCHAR(10) NOT NULL CHECK (tipo_documento IN ('CC', 'CE', 'NIT', 'TI', 'PP', 'RC', 'DE', 'PA')),
-    numero_documento VARCHAR(20) NOT NULL UNIQUE,
-    email VARCHAR(100),
-    telefono VARCHAR(20),
+    -- numero_documento, email, telefono y direccion se guardan cifrados (AES-GCM, prefijo "enc:")
+    numero_documento VARCHAR(100) NOT NULL,
+    -- HMAC del número de documento para búsquedas exactas; la aplicación lo completa al iniciar
+    numero_documento_hash VARCHAR(64) UNIQUE,
+    email VARCHAR(255),
+    telefono VARCHAR(100),
     direccion TEXT,
     activo BOOLEAN DEFAULT TRUE,
     fecha_creacion TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
@@ -43,7 +46,8 @@ CREATE TABLE IF NOT EXISTS cuentas_contables (
     nombre VARCHAR(100) NOT NULL,
     tipo ENUM('ACTIVO', 'PASIVO', 'PATRIMONIO', 'INGRESO', 'GASTO') NOT NULL,
     permite_saldo_negativo BOOLEAN DEFAULT FALSE,
-    activo BOOLEAN DEFAULT TRUE
+    activo BOOLEAN DEFAULT TRUE,
+    saldo DECIMAL(15,2) NOT NULL DEFAULT 0
 );
 
 -- Tabla de transacciones
@@ -53,6 +57,10 @@ CREATE TABLE IF NOT EXISTS transacciones (
     descripcion TEXT NOT NULL,
     tercero_id BIGINT,
     estado ENUM('ACTIVA', 'ANULADA', 'PENDIENTE') DEFAULT 'ACTIVA',
+    tipo_comprobante ENUM('INGRESO', 'EGRESO', 'NOTA_CONTABLE') NOT NULL DEFAULT 'NOTA_CONTABLE',
+    numero_comprobante BIGINT,
+    -- Última modificación; la exportación del libro diario la usa como marca de agua
+    fecha_modificacion TIMESTAMP(6) NOT NULL DEFAULT CURRENT_TIMESTAMP(6) ON UPDATE CURRENT_TIMESTAMP(6),
     FOREIGN KEY (tercero_id) REFERENCES terceros(id)
 );
 
@@ -68,6 +76,17 @@ CREATE TABLE IF NOT EXISTS partidas_contables (
     FOREIGN KEY (cuenta_id) REFERENCES cuentas_contables(id)
 );
 
+-- Claves de idempotencia usadas al registrar transacciones, con el SHA-256 del cuerpo de la solicitud;
+-- la aplicación purga las que superan contabilidad.idempotencia.retencion
+CREATE TABLE IF NOT EXISTS claves_idempotencia (
+    clave VARCHAR(100) PRIMARY KEY,
+    transaccion_id BIGINT NOT NULL,
+    huella_solicitud VARCHAR(64) NOT NULL,
+    fecha_creacion TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    INDEX idx_claves_idempotencia_fecha (fecha_creacion),
+    FOREIGN KEY (transaccion_id) REFERENCES transacciones(id) ON DELETE CASCADE
+);
+
 -- Insertar tipos de cuenta
 INSERT INTO tipos_cuenta (nombre, descripcion) VALUES
 ('ACTIVO', 'Recursos económicos que generarán beneficios futuros'),
@@ -367,10 +386,65 @@ INSERT INTO partidas_contables (transaccion_id, cuenta_id, tipo, valor, descripc
 -- Las transacciones 35-134 seguirían el mismo patrón con valores variados
 -- entre 500,000 y 5,000,000 pesos colombianos
 
+-- Inicializar saldos almacenados (solo las transacciones ACTIVAS afectan saldos)
+UPDATE cuentas_contables cc
+SET cc.saldo = (
+    SELECT COALESCE(SUM(CASE WHEN pc.tipo = 'DEBE' THEN pc.valor ELSE -pc.valor END), 0)
+    FROM partidas_contables pc
+    JOIN transacciones t ON t.id = pc.transaccion_id
+    WHERE pc.cuenta_id = cc.id AND t.estado = 'ACTIVA'
+);
+
+-- Tabla de asignación de IDs por bloques (cada instancia reserva rangos de IDs)
+CREATE TABLE IF NOT EXISTS generador_ids (
+    entidad VARCHAR(255) NOT NULL PRIMARY KEY,
+    siguiente_valor BIGINT NOT NULL
+);
+
+-- Continuar la numeración después de los datos iniciales
+INSERT INTO generador_ids (entidad, siguiente_valor)
+SELECT 'terceros', COALESCE(MAX(id), 0) + 1 FROM terceros
+UNION ALL
+SELECT 'cuentas_contables', COALESCE(MAX(id), 0) + 1 FROM cuentas_contables
+UNION ALL
+SELECT 'transacciones', COALESCE(MAX(id), 0) + 1 FROM transacciones
+UNION ALL
+SELECT 'partidas_contables', COALESCE(MAX(id), 0) + 1 FROM partidas_contables;
+
+-- Numerar los comprobantes de los datos iniciales en orden de registro
+SET @numero_comprobante := 0;
+UPDATE transacciones SET numero_comprobante = (@numero_comprobante := @numero_comprobante + 1) ORDER BY id;
+ALTER TABLE transacciones MODIFY numero_comprobante BIGINT NOT NULL;
+CREATE UNIQUE INDEX uk_transacciones_comprobante ON transacciones(tipo_comprobante, numero_comprobante);
+
+-- Consecutivos de comprobante por tipo
+CREATE TABLE IF NOT EXISTS consecutivos_comprobante (
+    tipo_comprobante ENUM('INGRESO', 'EGRESO', 'NOTA_CONTABLE') NOT NULL PRIMARY KEY,
+    siguiente_numero BIGINT NOT NULL
+);
+
+INSERT INTO consecutivos_comprobante (tipo_comprobante, siguiente_numero)
+SELECT 'INGRESO', COALESCE(MAX(numero_comprobante), 0) + 1 FROM transacciones WHERE tipo_comprobante = 'INGRESO'
+UNION ALL
+SELECT 'EGRESO', COALESCE(MAX(numero_comprobante), 0) + 1 FROM transacciones WHERE tipo_comprobante = 'EGRESO'
+UNION ALL
+SELECT 'NOTA_CONTABLE', COALESCE(MAX(numero_comprobante), 0) + 1 FROM transacciones WHERE tipo_comprobante = 'NOTA_CONTABLE';
+
+-- Versiones de los agregados para los ETag de los listados (cada instancia publica aquí sus escrituras)
+CREATE TABLE IF NOT EXISTS versiones_agregados (
+    agregado VARCHAR(20) NOT NULL PRIMARY KEY,
+    version BIGINT NOT NULL
+);
+
+INSERT INTO versiones_agregados (agregado, version) VALUES
+('CUENTAS', 0),
+('TERCEROS', 0),
+('LIBRO', 0);
+
 -- Crear índices para mejorar rendimiento
 CREATE INDEX idx_cuentas_codigo ON cuentas_contables(codigo);
-CREATE INDEX idx_terceros_documento ON terceros(numero_documento);
 CREATE INDEX idx_transacciones_fecha ON transacciones(fecha);
+CREATE INDEX idx_transacciones_fecha_modificacion ON transacciones(fecha_modificacion);
 CREATE INDEX idx_partidas_cuenta ON partidas_contables(cuenta_id);
 CREATE INDEX idx_partidas_transaccion ON partidas_contables(transaccion_id);
 
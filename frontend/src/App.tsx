@@ -1,4 +1,4 @@
-import React from 'react';
+import React, { useEffect, useState } from 'react';
 import { BrowserRouter as Router, Routes, Route } from 'react-router-dom';
 import { ThemeProvider } from '@mui/material/styles';
 import { CssBaseline } from '@mui/material';
@@ -10,6 +10,8 @@ import CuentasPage from './pages/CuentasPage';
 import TercerosPage from './pages/TercerosPage';
 import TransaccionesPage from './pages/TransaccionesPage';
 import SaldosPage from './pages/SaldosPage';
+import LoginPage from './pages/LoginPage';
+import { getToken } from './services/api';
 
 const queryClient = new QueryClient({
   defaultOptions: {
@@ -21,6 +23,27 @@ const queryClient = new QueryClient({
 });
 
 function App() {
+  const [autenticado, setAutenticado] = useState(() => getToken() !== null);
+
+  // El interceptor de la API cierra la sesión cuando el servidor rechaza el token
+  useEffect(() => {
+    const cerrarSesion = () => {
+      setAutenticado(false);
+      queryClient.clear();
+    };
+    window.addEventListener('contabilidad:sesion-cerrada', cerrarSesion);
+    return () => window.removeEventListener('contabilidad:sesion-cerrada', cerrarSesion);
+  }, []);
+
+  if (!autenticado) {
+    return (
+      <ThemeProvider theme={theme}>
+        <CssBaseline />
+        <LoginPage onLogin={() => setAutenticado(true)} />
+      </ThemeProvider>
+    );
+  }
+
   return (
     <QueryClientProvider client={queryClient}>
       <ThemeProvider theme={theme}>
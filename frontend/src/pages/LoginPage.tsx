@@ -0,0 +1,68 @@
+import React, { useState } from 'react';
+import { authAPI } from '../services/api';
+import {
+  Box, Typography, Card, CardContent, TextField, Button, Alert
+} from '@mui/material';
+
+interface LoginPageProps {
+  onLogin: () => void;
+}
+
+const LoginPage: React.FC<LoginPageProps> = ({ onLogin }) => {
+  const [usuario, setUsuario] = useState('');
+  const [contrasena, setContrasena] = useState('');
+  const [error, setError] = useState<string | null>(null);
+  const [enviando, setEnviando] = useState(false);
+
+  const handleSubmit = async (event: React.FormEvent) => {
+    event.preventDefault();
+    setEnviando(true);
+    setError(null);
+    try {
+      await authAPI.login(usuario, contrasena);
+      onLogin();
+    } catch (err: any) {
+      setError(err.response?.status === 401 ? 'Usuario o contraseña incorrectos' : 'No fue posible iniciar sesión');
+    } finally {
+      setEnviando(false);
+    }
+  };
+
+  return (
+    <Box sx={{ display: 'flex', alignItems: 'center', justifyContent: 'center', minHeight: '100vh', backgroundColor: '#F8F9FA' }}>
+      <Card sx={{ width: 360, borderRadius: 3, boxShadow: '0 4px 20px rgba(0,0,0,0.08)' }}>
+        <CardContent sx={{ p: 4 }}>
+          <Typography variant="h5" gutterBottom sx={{ fontWeight: 600, color: '#1E293B', mb: 3 }}>
+            Sistema Contable
+          </Typography>
+          <form onSubmit={handleSubmit}>
+            <TextField
+              label="Usuario"
+              value={usuario}
+              onChange={(e) => setUsuario(e.target.value)}
+              fullWidth
+              required
+              autoFocus
+              sx={{ mb: 2 }}
+            />
+            <TextField
+              label="Contraseña"
+              type="password"
+              value={contrasena}
+              onChange={(e) => setContrasena(e.target.value)}
+              fullWidth
+              required
+              sx={{ mb: 2 }}
+            />
+            {error && <Alert severity="error" sx={{ mb: 2 }}>{error}</Alert>}
+            <Button type="submit" variant="contained" fullWidth disabled={enviando}>
+              Ingresar
+            </Button>
+          </form>
+        </CardContent>
+      </Card>
+    </Box>
+  );
+};
+
+export default LoginPage;
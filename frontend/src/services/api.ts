@@ -9,10 +9,24 @@ export const api = axios.create({
   },
 });
 
+// Token de acceso (POST /auth/token); se envía como Bearer en cada petición
+const TOKEN_KEY = 'contabilidad.token';
+
+export const getToken = () => localStorage.getItem(TOKEN_KEY);
+
+export const clearToken = () => {
+  localStorage.removeItem(TOKEN_KEY);
+  window.dispatchEvent(new Event('contabilidad:sesion-cerrada'));
+};
+
 // Request interceptor
 api.interceptors.request.use(
   (config) => {
     console.log('API Request:', config.method?.toUpperCase(), config.url);
+    const token = getToken();
+    if (token) {
+      config.headers.Authorization = `Bearer ${token}`;
+    }
     return config;
   },
   (error) => {
@@ -28,11 +42,21 @@ api.interceptors.response.use(
   },
   (error) => {
     console.error('API Error:', error.response?.status, error.response?.data);
+    // Token vencido o inválido: volver a la pantalla de ingreso
+    if (error.response?.status === 401 && getToken()) {
+      clearToken();
+    }
     return Promise.reject(error);
   }
 );
 
 // Types
+export interface Token {
+  token: string;
+  tipo: string;
+  expiraEn: string;
+}
+
 export interface Tercero {
   id: number;
   nombre: string;
@@ -67,6 +91,8 @@ export interface Transaccion {
   fecha: string;
   descripcion: string;
   estado: 'ACTIVA' | 'ANULADA' | 'PENDIENTE';
+  tipoComprobante?: 'INGRESO' | 'EGRESO' | 'NOTA_CONTABLE';
+  numeroComprobante?: number;
   terceroId?: number;
   terceroNombre?: string;
   terceroDocumento?: string;
@@ -76,6 +102,16 @@ export interface Transaccion {
   balanceado: boolean;
 }
 
+// Autenticación API
+export const authAPI = {
+  login: (usuario: string, contrasena: string) =>
+    api.post<Token>('/auth/token', { usuario, contrasena }).then(res => {
+      localStorage.setItem(TOKEN_KEY, res.data.token);
+      return res.data;
+    }),
+  logout: clearToken,
+};
+
 // Terceros API
 export const tercerosAPI = {
   getAll: () => api.get<Tercero[]>('/terceros').then(res => res.data),